@@ -0,0 +1,63 @@
+package com.xirizhi.plugingithuboss.handler;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.codec.multipart.FilePart;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 基准测试用的 FilePart：按固定分片大小输出 DataBuffer，模拟 Netty 解析 multipart 时的分片流。
+ */
+class BenchFilePart implements FilePart {
+
+    private static final DefaultDataBufferFactory FACTORY = DefaultDataBufferFactory.sharedInstance;
+
+    private final String filename;
+    private final byte[] data;
+    private final int chunkSize;
+
+    BenchFilePart(String filename, byte[] data, int chunkSize) {
+        this.filename = filename;
+        this.data = data;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public String filename() {
+        return filename;
+    }
+
+    @Override
+    public Mono<Void> transferTo(Path dest) {
+        return Mono.error(new UnsupportedOperationException());
+    }
+
+    @Override
+    public String name() {
+        return "file";
+    }
+
+    @Override
+    public HttpHeaders headers() {
+        return HttpHeaders.EMPTY;
+    }
+
+    @Override
+    public Flux<DataBuffer> content() {
+        return Flux.defer(() -> {
+            List<DataBuffer> chunks = new ArrayList<>();
+            for (int offset = 0; offset < data.length; offset += chunkSize) {
+                int len = Math.min(chunkSize, data.length - offset);
+                chunks.add(FACTORY.wrap(java.nio.ByteBuffer.wrap(data, offset, len)));
+            }
+            return Flux.fromIterable(chunks);
+        });
+    }
+}
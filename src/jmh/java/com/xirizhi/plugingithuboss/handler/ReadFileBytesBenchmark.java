@@ -0,0 +1,41 @@
+package com.xirizhi.plugingithuboss.handler;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 读取 multipart 内容为 byte[]：按 8KB 分片的 DataBuffer 流，覆盖小图到大文件。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReadFileBytesBenchmark {
+
+    @Param({"65536", "1048576", "8388608"})
+    public int size;
+
+    private GithubAttachmentHandler handler;
+    private BenchFilePart filePart;
+
+    @Setup
+    public void setup() {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        handler = new GithubAttachmentHandler(null, null, null, null, null, null, null);
+        filePart = new BenchFilePart("photo.jpg", data, 8192);
+    }
+
+    @Benchmark
+    public byte[] readFileBytes() {
+        return handler.readFileBytes(filePart).block();
+    }
+}
@@ -0,0 +1,61 @@
+package com.xirizhi.plugingithuboss.handler;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+
+/**
+ * 上传路径生成：单线程开销与多线程同名并发时的吞吐。
+ * 每次生成后立即释放占位，模拟上传完成；时间固定在同一秒，同名并发会走序号分支。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UploadPathBenchmark {
+
+    @Param({"", "yyyyMM"})
+    public String namePrefix;
+
+    private UploadPathGenerator generator;
+    private GithubOssPolicySettings settings;
+    private ZonedDateTime now;
+
+    @Setup
+    public void setup() {
+        generator = new UploadPathGenerator(null);
+        settings = new GithubOssPolicySettings();
+        settings.setOwner("owner");
+        settings.setRepoName("repo");
+        settings.setPath("attachments");
+        settings.setNamePrefix(namePrefix);
+        now = ZonedDateTime.now(ZoneId.systemDefault());
+    }
+
+    @Benchmark
+    public String singleThread() {
+        var result = generator.reserve(settings, "holiday-photo.png", now, Set.of());
+        generator.release(result.filePath());
+        return result.filePath();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String contended() {
+        var result = generator.reserve(settings, "holiday-photo.png", now, Set.of());
+        generator.release(result.filePath());
+        return result.filePath();
+    }
+}
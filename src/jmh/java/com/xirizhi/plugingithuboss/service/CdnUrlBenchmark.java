@@ -0,0 +1,91 @@
+package com.xirizhi.plugingithuboss.service;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.xirizhi.plugingithuboss.config.Constant;
+import com.xirizhi.plugingithuboss.extension.GitHubThemeSettings;
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+
+import reactor.core.publisher.Mono;
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.extension.ConfigMap;
+import run.halo.app.extension.Metadata;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.app.infra.utils.JsonUtils;
+
+/**
+ * 永久链接生成：包含插件 ConfigMap 读取（内存桩）、JSON 解析与 URL 拼接，
+ * 对应 Halo 附件列表中每个附件都会调用一次的开销。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CdnUrlBenchmark {
+
+    private GitHubService service;
+    private GithubOssPolicySettings settings;
+    private PermalinkCache cache;
+    private ConfigMap policyConfig;
+    private Attachment attachment;
+
+    @Setup
+    public void setup() {
+        ConfigMap configMap = new ConfigMap();
+        Metadata metadata = new Metadata();
+        metadata.setName(Constant.PLUGIN_GITHUBOSS_CONFIGMAP);
+        configMap.setMetadata(metadata);
+        configMap.setData(Map.of(GitHubThemeSettings.GitHub_BASIC,
+                "{\"jsdelivr\":\"gcore.jsdelivr.net\",\"enableOptimization\":true}"));
+
+        ReactiveExtensionClient client = mock(ReactiveExtensionClient.class);
+        when(client.fetch(ConfigMap.class, Constant.PLUGIN_GITHUBOSS_CONFIGMAP)).thenReturn(Mono.just(configMap));
+        service = new GitHubService(client, null);
+
+        settings = new GithubOssPolicySettings();
+        settings.setOwner("owner");
+        settings.setRepoName("repo");
+        settings.setBranch("master");
+
+        cache = new PermalinkCache(service);
+        policyConfig = new ConfigMap();
+        Metadata policyMetadata = new Metadata();
+        policyMetadata.setName("policy-config");
+        policyConfig.setMetadata(policyMetadata);
+        policyConfig.setData(Map.of("default", JsonUtils.objectToJson(settings)));
+        attachment = new Attachment();
+        Metadata attachmentMetadata = new Metadata();
+        attachmentMetadata.setName("attachment");
+        attachmentMetadata.setAnnotations(Map.of("path", "attachments/202501/01120000-photo.png"));
+        attachment.setMetadata(attachmentMetadata);
+    }
+
+    @Benchmark
+    public String buildCdnUrl() {
+        return service.buildCdnUrl(settings, "attachments/202501/01120000-photo.png").block();
+    }
+
+    @Benchmark
+    public String buildCdnUrlPinned() {
+        return service.buildCdnUrl(settings, "attachments/202501/01120000-photo.png",
+                "7638417db6d59f3c431d3e1f261cc637155684cd").block();
+    }
+
+    // 命中按策略缓存的地址模式：只比较配置原文并拼接字符串
+    @Benchmark
+    public URI cachedPermalink() {
+        return cache.permalink(attachment, policyConfig).block();
+    }
+}
@@ -0,0 +1,58 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 上传请求体构建（Base64 + 字符串拼接）与响应 sha 解析。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UploadBodyBenchmark {
+
+    // 与 GitHub Contents API PUT 返回的结构一致（已省略部分字段）
+    private static final String RESPONSE = """
+            {"content":{"name":"photo-20250101120000.png","path":"attachments/photo-20250101120000.png",\
+            "sha":"95b966ae1c166bd92f8ae7d1c313e738c731dfc3","size":1024,\
+            "url":"https://api.github.com/repos/owner/repo/contents/attachments/photo-20250101120000.png?ref=master",\
+            "html_url":"https://github.com/owner/repo/blob/master/attachments/photo-20250101120000.png",\
+            "git_url":"https://api.github.com/repos/owner/repo/git/blobs/95b966ae1c166bd92f8ae7d1c313e738c731dfc3",\
+            "download_url":"https://raw.githubusercontent.com/owner/repo/master/attachments/photo-20250101120000.png",\
+            "type":"file","_links":{"self":"https://api.github.com/repos/owner/repo/contents/attachments/photo-20250101120000.png?ref=master"}},\
+            "commit":{"sha":"7638417db6d59f3c431d3e1f261cc637155684cd","node_id":"MDY6Q29tbWl0NzYzODQxN2RiNmQ1OWYzYzQzMWQzZTFmMjYxY2M2MzcxNTU2ODRjZA==",\
+            "url":"https://api.github.com/repos/owner/repo/git/commits/7638417db6d59f3c431d3e1f261cc637155684cd",\
+            "author":{"date":"2025-01-01T12:00:00Z","name":"owner","email":"owner@example.com"},\
+            "message":"Upload via Halo AttachmentHandler","tree":{"sha":"691272480426f78a0138979dd3ce63b77f706feb"}}}
+            """;
+
+    @Param({"65536", "1048576", "8388608"})
+    public int size;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        data = new byte[size];
+        new Random(42).nextBytes(data);
+    }
+
+    @Benchmark
+    public String buildUploadBody() {
+        return GitHubService.buildUploadBody("Upload via Halo AttachmentHandler", "master", data);
+    }
+
+    @Benchmark
+    public GitHubService.UploadResult parseUploadResponse() {
+        return GitHubService.parseUploadResponse(RESPONSE);
+    }
+}
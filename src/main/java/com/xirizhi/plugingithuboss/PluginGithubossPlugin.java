@@ -2,6 +2,8 @@ package com.xirizhi.plugingithuboss;
 
 import org.springframework.stereotype.Component;
 
+import com.xirizhi.plugingithuboss.service.PluginWarmup;
+
 import lombok.extern.slf4j.Slf4j;
 import run.halo.app.plugin.BasePlugin;
 import run.halo.app.plugin.PluginContext;
@@ -12,20 +14,25 @@ import run.halo.app.extension.SchemeManager;
 public class PluginGithubossPlugin extends BasePlugin {
 
     private final SchemeManager schemeManager;
+    private final PluginWarmup warmup;
 
-    public PluginGithubossPlugin(PluginContext pluginContext, SchemeManager schemeManager) {
+    public PluginGithubossPlugin(PluginContext pluginContext, SchemeManager schemeManager, PluginWarmup warmup) {
         super(pluginContext);
         this.schemeManager = schemeManager;
+        this.warmup = warmup;
     }
 
     @Override
     public void start() {
         // 注册自定义模型，生成 CRUD APIs
         log.info("githubOss 插件启动成功！");
+        // 后台预热配置、连接与附件索引，进度见 /network/readiness
+        warmup.start();
     }
 
     @Override
     public void stop() {
+        warmup.stop();
         log.info("githubOss 插件停止！");
     }
 }
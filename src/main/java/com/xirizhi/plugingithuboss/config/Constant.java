@@ -4,6 +4,30 @@ public class Constant {
     // 附件是否解除 halo 与到 GitHub 仓库的附件关联
     public static final String ANNOTATION_UNLINKED = "unLinked";
 
+    // 上传时的提交 SHA，用于生成固定到提交的 CDN 永久链接
+    public static final String ANNOTATION_COMMIT_SHA = "commitSha";
+
+    // 异步上传尚未推送到仓库的附件标记，值为 outbox 条目 id
+    public static final String ANNOTATION_PENDING = "pending";
+
+    // 异步上传重试耗尽后放弃推送的附件标记，值为最后一次失败原因；文件保留在 outbox/failed 目录
+    public static final String ANNOTATION_UPLOAD_FAILED = "uploadFailed";
+
+    // 异步上传推送完成前的永久链接前缀（后接附件名），由插件从本地队列直接返回文件内容
+    public static final String PENDING_PERMALINK_PREFIX = "/apis/githubOs.halo.run/v1alpha1/outbox/";
+
+    // 上传时从图片文件头解析的宽高（像素），供内容渲染输出 width/height
+    public static final String ANNOTATION_WIDTH = "width";
+    public static final String ANNOTATION_HEIGHT = "height";
+
+    // 图片占位色（#rrggbb），图片加载前作为背景色显示
+    public static final String ANNOTATION_PLACEHOLDER = "placeholder";
+
+    // 作为 release 附件存储的大文件：release id、附件 id 与下载地址（永久链接），此类附件没有 path/sha
+    public static final String ANNOTATION_RELEASE_ID = "releaseId";
+    public static final String ANNOTATION_ASSET_ID = "assetId";
+    public static final String ANNOTATION_ASSET_URL = "assetUrl";
+
     //主题配置metadata.name
     public static final String PLUGIN_GITHUBOSS_CONFIGMAP = "githuboss-configMap"; 
 }
@@ -1,19 +1,41 @@
 package com.xirizhi.plugingithuboss.controller;
 
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import org.springframework.data.domain.Sort;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
 
 import com.xirizhi.plugingithuboss.service.GitHubService;
 import com.xirizhi.plugingithuboss.service.GitHubService.NetworkTestItem;
+import com.xirizhi.plugingithuboss.service.ArchiveExporter;
+import com.xirizhi.plugingithuboss.service.ArchiveImporter;
+import com.xirizhi.plugingithuboss.service.AttachmentIndex;
+import com.xirizhi.plugingithuboss.service.BulkImporter;
+import com.xirizhi.plugingithuboss.service.CdnUrlPattern;
+import com.xirizhi.plugingithuboss.service.HistoryCompactor;
+import com.xirizhi.plugingithuboss.service.PermalinkCache;
+import com.xirizhi.plugingithuboss.service.PolicyMigrator;
+import com.xirizhi.plugingithuboss.service.RepoReconciler;
+import com.xirizhi.plugingithuboss.service.UploadOutbox;
 import com.xirizhi.plugingithuboss.handler.GithubAttachmentHandler;
 
 import lombok.RequiredArgsConstructor;
@@ -30,7 +52,6 @@ import run.halo.app.extension.router.selector.FieldSelector;
 import run.halo.app.plugin.ApiVersion; // 确保已导入 ApiVersion 注解
 
 import com.xirizhi.plugingithuboss.config.Constant;
-import com.xirizhi.plugingithuboss.extension.GitHubThemeSettings;
 import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
 import com.xirizhi.plugingithuboss.extension.theme.NetworkConfig;
 
@@ -39,6 +60,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 
 /**
  * 后端控制器：提供附件查询、关联、关联解除接口。
+ * 只读查询接口（rootPath、haloList、list、entries、proxy）带 ETag，请求带 If-None-Match 且数据未变化时返回 304，见 {@link ConditionalGet}。
  */
 @Slf4j
 @ApiVersion("githubOs.halo.run/v1alpha1") // 声明API版本（格式：{插件域名}/{版本}）
@@ -46,31 +68,47 @@ import org.springframework.web.bind.annotation.RequestParam;
 @RequiredArgsConstructor
 public class AttachmentsController {
 
+    private static final int MAX_PERMALINK_BATCH = 500;
+
     private final ReactiveExtensionClient client;
     private final GitHubService gitHubService;
     private final GithubAttachmentHandler githubAttachmentHandler;
+    private final RepoReconciler repoReconciler;
+    private final HistoryCompactor historyCompactor;
+    private final BulkImporter bulkImporter;
+    private final ArchiveImporter archiveImporter;
+    private final ArchiveExporter archiveExporter;
+    private final AttachmentIndex attachmentIndex;
+    private final PolicyMigrator policyMigrator;
+    private final PermalinkCache permalinkCache;
+    private final UploadOutbox uploadOutbox;
 
     // 查询 github 存储策略的根目录
+    // ETag 由策略与其 ConfigMap 的版本计算
     @GetMapping("/attachments/rootPath")
-    public Mono<GithubOssPolicySettings> getGitHubRootPath(@RequestParam("policyName") String policyName) {
+    public Mono<ResponseEntity<GithubOssPolicySettings>> getGitHubRootPath(@RequestParam("policyName") String policyName,
+                                                                           ServerWebExchange exchange) {
         return client.fetch(Policy.class, policyName)
                 .map(policy -> {
                     String configMapName = policy.getSpec() != null ? policy.getSpec().getConfigMapName() : null;
                     if (configMapName == null) {
                         throw new IllegalArgumentException("策略 " + policyName + " 未配置 ConfigMap");
                     }
-                    return configMapName;
-                })
-                .flatMap(configMapName -> client.fetch(ConfigMap.class, configMapName))
-                .map(configMap -> {
-                    GithubOssPolicySettings settings = JsonUtils.jsonToObject(configMap.getData().get("default"), GithubOssPolicySettings.class);
-                    String path = settings.getPath();
-                    if (path == null || path.isEmpty() || path.charAt(0) != '/') {
-                        path = '/' + (path == null ? "" : path);
-                    }
-                    settings.setPath(path);
-                    return settings;
+                    return policy;
                 })
+                .flatMap(policy -> client.fetch(ConfigMap.class, policy.getSpec().getConfigMapName())
+                        .flatMap(configMap -> ConditionalGet.respond(exchange,
+                                ConditionalGet.etag("rootPath", policy.getMetadata().getVersion(),
+                                        configMap.getMetadata().getName(), configMap.getMetadata().getVersion()),
+                                () -> Mono.fromSupplier(() -> {
+                                    GithubOssPolicySettings settings = JsonUtils.jsonToObject(configMap.getData().get("default"), GithubOssPolicySettings.class);
+                                    String path = settings.getPath();
+                                    if (path == null || path.isEmpty() || path.charAt(0) != '/') {
+                                        path = '/' + (path == null ? "" : path);
+                                    }
+                                    settings.setPath(path);
+                                    return settings;
+                                }))))
                 .doOnError(error -> log.error("查询策略根目录失败 policyName={}", policyName, error))
                 .onErrorMap(e -> new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,String.valueOf(e.getMessage())));
     }
@@ -78,35 +116,89 @@ public class AttachmentsController {
 
     /**
      * 查询这个附件存储策略，在halo上上传的文件列表
-     * github api接口用的是：https://docs.github.com/en/rest/repos/contents?apiVersion=2022-11-28#list-repository-contents
+     * 结果来自按策略缓存的附件索引（插件启动时预热，附件变更时增量更新），key 为 sha+path；ETag 为索引版本
      * @return
      */
     @GetMapping("/attachments/haloList")
-    public Mono<java.util.Map<String, Boolean>> listGitHubHaloAttachments(@RequestParam("policyName") String policyName) {
-        ListOptions listOptions = new ListOptions();
-        listOptions.setFieldSelector(FieldSelector.of(QueryFactory.equal("spec.policyName", policyName)));
-        return client.listAll(Attachment.class, listOptions, Sort.unsorted())
-                .filter(attachment -> {
-                    var annotations = attachment.getMetadata().getAnnotations();
-                    return annotations != null
-                            && annotations.get("sha") != null
-                            && annotations.get("path") != null;
-                })
-                .collectMap(
-                        att -> att.getMetadata().getAnnotations().get("sha")+att.getMetadata().getAnnotations().get("path"),
-                        att -> true
-                )
+    public Mono<ResponseEntity<Map<String, Boolean>>> listGitHubHaloAttachments(@RequestParam("policyName") String policyName,
+                                                                                ServerWebExchange exchange) {
+        return attachmentIndex.version(policyName)
+                .flatMap(version -> ConditionalGet.respond(exchange, ConditionalGet.etag("haloList", version),
+                        () -> haloAttachments(policyName)))
                 .doOnError(error -> log.error("查询策略附件列表失败 policyName={}", policyName, error))
                 .onErrorMap(e -> new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,String.valueOf(e.getMessage())));
     }
 
+    private Mono<Map<String, Boolean>> haloAttachments(String policyName) {
+        return attachmentIndex.keys(policyName)
+                .map(keys -> {
+                    Map<String, Boolean> linked = new HashMap<>(keys.size() * 2);
+                    keys.forEach(key -> linked.put(key, true));
+                    return linked;
+                });
+    }
+
     /**
      * 查询 GitHub 目录内容并返回给前端。
      * 默认使用策略 ConfigMap.data["default"] 中的 owner/repoName/token/branch/path；
      * 可通过 query 参数 path 覆盖默认路径。
+     * 先读取分支 head 作为版本：未变化时返回 304，不再查询目录；变化时按该提交查询目录，内容与 ETag 一致。
      */
     @GetMapping("/attachments/list")
-    public Mono<String> listGitHubAttachments(@RequestParam("policyName") String policyName,@RequestParam("path") String path) {
+    public Mono<ResponseEntity<String>> listGitHubAttachments(@RequestParam("policyName") String policyName,
+                                                              @RequestParam("path") String path,
+                                                              ServerWebExchange exchange) {
+        return resolveConfig(policyName)
+                .flatMap(config -> settingsOf(config, path).flatMap(settings -> headCommit(settings)
+                        .flatMap(head -> ConditionalGet.respond(exchange,
+                                ConditionalGet.etag("list", config.getMetadata().getName(), config.getMetadata().getVersion(),
+                                        settings.getPath(), head.orElse(null)),
+                                () -> gitHubService.listDirectoryContents(settings, settings.getPath(), head.orElse(null))))))
+                .doOnError(error -> log.error("查询目录内容失败", error))
+                .onErrorMap(e -> new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,String.valueOf(e.getMessage())));
+    }
+
+    /**
+     * 精简版目录列表：只返回 name/path/sha/size/type 与是否已关联，服务端完成关联状态合并、排序、筛选与游标分页。
+     * 排序：目录在前，同类型按 sort（name 或 size，默认 name）排序，desc=true 时倒序。
+     * 筛选：name 名称包含（不区分大小写）、ext 扩展名（逗号分隔）、minSize/maxSize 字节数、linked 关联状态、filesOnly 仅文件。
+     * 分页：首次不传 cursor，之后传上一页返回的 nextCursor；nextCursor 为空表示已到末页。
+     * ETag 由 ConfigMap 版本、分支 head 与附件索引版本计算，未变化时不查询目录。
+     */
+    @GetMapping("/attachments/entries")
+    public Mono<ResponseEntity<DirectoryListing.Page>> listGitHubEntries(@RequestParam("policyName") String policyName,
+                                                         @RequestParam(value = "path", required = false) String path,
+                                                         @RequestParam(value = "name", required = false) String name,
+                                                         @RequestParam(value = "ext", required = false) String ext,
+                                                         @RequestParam(value = "minSize", required = false) Long minSize,
+                                                         @RequestParam(value = "maxSize", required = false) Long maxSize,
+                                                         @RequestParam(value = "linked", required = false) Boolean linked,
+                                                         @RequestParam(value = "filesOnly", required = false) Boolean filesOnly,
+                                                         @RequestParam(value = "sort", required = false) String sort,
+                                                         @RequestParam(value = "desc", required = false) Boolean desc,
+                                                         @RequestParam(value = "cursor", required = false) String cursor,
+                                                         @RequestParam(value = "limit", required = false) Integer limit,
+                                                         ServerWebExchange exchange) {
+        var filter = new DirectoryListing.Filter(name, ext, minSize, maxSize, linked, filesOnly, sort, desc);
+        return resolveConfig(policyName)
+                .flatMap(config -> settingsOf(config, path).flatMap(settings -> Mono.zip(headCommit(settings), attachmentIndex.version(policyName))
+                        .flatMap(versions -> {
+                            String head = versions.getT1().orElse(null);
+                            return ConditionalGet.respond(exchange,
+                                    ConditionalGet.etag("entries", config.getMetadata().getName(), config.getMetadata().getVersion(),
+                                            settings.getPath(), head, versions.getT2()),
+                                    () -> Mono.zip(gitHubService.listDirectoryContents(settings, settings.getPath(), head),
+                                                    attachmentIndex.keys(policyName))
+                                            .map(t -> DirectoryListing.page(t.getT1(), t.getT2(), filter, cursor, limit)));
+                        })))
+                .doOnError(error -> log.error("查询目录列表失败 policyName={}, path={}", policyName, path, error))
+                .onErrorMap(IllegalArgumentException.class, e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()))
+                .onErrorMap(e -> !(e instanceof ResponseStatusException),
+                        e -> new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, String.valueOf(e.getMessage())));
+    }
+
+    // 读取策略的 ConfigMap
+    private Mono<ConfigMap> resolveConfig(String policyName) {
         return client.fetch(Policy.class, policyName)
                 .flatMap(policy -> {
                     String configMapName = policy.getSpec() != null ? policy.getSpec().getConfigMapName() : null;
@@ -114,20 +206,25 @@ public class AttachmentsController {
                         return Mono.error(new RuntimeException("该 Policy 未配置 configMapName"));
                     }
                     return client.fetch(ConfigMap.class, configMapName);
-                })
-                .flatMap(config -> {
-                    String configJson = config.getData() != null ? config.getData().get("default") : null;
-                    if (configJson == null || configJson.isBlank()) {
-                        return Mono.error(new IllegalArgumentException("配置数据为空"));
-                    }
-                    GithubOssPolicySettings settings = JsonUtils.jsonToObject(configJson, GithubOssPolicySettings.class);
-                    if (path != null && !path.isBlank()) {
-                        settings.setPath(path);
-                    }
-                    return gitHubService.listDirectoryContents(settings, settings.getPath());
-                })
-                .doOnError(error -> log.error("查询目录内容失败", error))
-                .onErrorMap(e -> new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,String.valueOf(e.getMessage())));
+                });
+    }
+
+    // 解析策略配置；path 非空时覆盖默认路径
+    private static Mono<GithubOssPolicySettings> settingsOf(ConfigMap config, String path) {
+        String configJson = config.getData() != null ? config.getData().get("default") : null;
+        if (configJson == null || configJson.isBlank()) {
+            return Mono.error(new IllegalStateException("配置数据为空"));
+        }
+        GithubOssPolicySettings settings = JsonUtils.jsonToObject(configJson, GithubOssPolicySettings.class);
+        if (path != null && !path.isBlank()) {
+            settings.setPath(path);
+        }
+        return Mono.just(settings);
+    }
+
+    // 分支 head 提交；无法得到时为空，此时响应不带 ETag
+    private Mono<Optional<String>> headCommit(GithubOssPolicySettings settings) {
+        return gitHubService.headCommit(settings).map(Optional::of).defaultIfEmpty(Optional.empty());
     }
 
     // github 文件关联 halo 上的附件
@@ -146,14 +243,14 @@ public class AttachmentsController {
         // 以第一个请求的策略名为准预先查询该策略下已存在的附件（sha+path）。
         final String policyNameHead = java.util.Optional.ofNullable(reqList.get(0).policyName()).orElse("");
 
-        return listGitHubHaloAttachments(policyNameHead)
+        return haloAttachments(policyNameHead)
                 .onErrorResume(err -> {
                     log.error("查询策略附件列表失败 policyName={}", policyNameHead, err);
                     return Mono.just(java.util.Collections.<String, Boolean>emptyMap());
                 })
                 .flatMap(existingMap -> Flux.fromIterable(reqList)
                         .concatMap(req -> {
-                            // 组合去重键：sha+path，与 listGitHubHaloAttachments 保持一致
+                            // 组合去重键：sha+path，与 /attachments/haloList 保持一致
                             if (existingMap.containsKey(req.sha() + req.path())) {
                                 // 已存在则视为成功，不再创建，避免重复入库
                                 saveCount.incrementAndGet();
@@ -169,7 +266,7 @@ public class AttachmentsController {
                                         return client.fetch(ConfigMap.class, configMapName)
                                                 .flatMap(config -> {
                                                     Attachment attachment = githubAttachmentHandler.buildAttachment(req.path(), req.sha(), req.size(), policy);
-                                                    return client.create(attachment);
+                                                    return client.create(attachment).doOnNext(attachmentIndex::record);
                                                 });
                                     })
                                     .doOnError(err -> {
@@ -197,6 +294,9 @@ public class AttachmentsController {
         java.util.concurrent.atomic.AtomicInteger delCount = new java.util.concurrent.atomic.AtomicInteger();
         java.util.concurrent.atomic.AtomicInteger failCount = new java.util.concurrent.atomic.AtomicInteger();
         java.util.concurrent.atomic.AtomicReference<String> firstErrorMsg = new java.util.concurrent.atomic.AtomicReference<>();
+        // 仅解除关联时文件留在仓库中，记入对账的忽略列表，避免 full 修复重新关联
+        boolean keepFiles = req.unLinked() != null && req.unLinked();
+        Map<String, String> kept = new java.util.concurrent.ConcurrentHashMap<>();
 
         ListOptions listOptions = new ListOptions();
         listOptions.setFieldSelector(FieldSelector.of(QueryFactory.equal("spec.policyName", req.policyName())));
@@ -223,13 +323,17 @@ public class AttachmentsController {
                             if (target == null) {
                                 // 未找到匹配项：默认成功
                                 delCount.incrementAndGet();
+                                keep(kept, keepFiles, unlinkItem);
                                 return Mono.empty();
                             }
-                            if (req.unLinked() != null && req.unLinked()) {
+                            if (keepFiles) {
                                 target.getMetadata().getAnnotations().put(Constant.ANNOTATION_UNLINKED, Boolean.TRUE.toString());
                             }
                             return client.delete(target)
-                                    .doOnSuccess(v -> delCount.incrementAndGet())
+                                    .doOnSuccess(v -> {
+                                        delCount.incrementAndGet();
+                                        keep(kept, keepFiles, unlinkItem);
+                                    })
                                     .doOnError(err -> {
                                         failCount.incrementAndGet();
                                         firstErrorMsg.compareAndSet(null, err.getMessage());
@@ -237,33 +341,242 @@ public class AttachmentsController {
                                     })
                                     .onErrorResume(err -> Mono.empty());
                         })
+                        .then(Mono.defer(() -> repoReconciler.recordUnlinked(req.policyName(), kept)))
                         .then(Mono.fromSupplier(() -> new unlinkRespObject(delCount.get(), failCount.get(), firstErrorMsg.get())))
                 );
     }
 
-    // 读取代理配置
-    @GetMapping("/attachments/proxy")
-    public Mono<NetworkConfig> getProxy() {
-        return gitHubService.getProxyConfig();
+    private static void keep(Map<String, String> kept, boolean keepFiles, unlinkObject item) {
+        if (keepFiles && item.path() != null && item.sha() != null) {
+            kept.put(item.path(), item.sha());
+        }
     }
 
-    // 保存代理配置
-    @PostMapping("/attachments/proxy")
-    public Mono<NetworkConfig> saveProxy(@RequestBody NetworkConfig req) {
-        if (req == null) {
-            return Mono.error(new IllegalArgumentException("请求体不能为空"));
+    /**
+     * 最近一次仓库对账报告，尚未对账过时返回空。
+     */
+    @GetMapping("/attachments/reconcile")
+    public Mono<RepoReconciler.DriftReport> getReconcileReport(@RequestParam("policyName") String policyName) {
+        return repoReconciler.lastReport(policyName);
+    }
+
+    /**
+     * 立即执行一次仓库对账；repair 可选 none/sha/full，不传时使用策略配置。
+     */
+    @PostMapping("/attachments/reconcile")
+    public Mono<RepoReconciler.DriftReport> reconcile(@RequestParam("policyName") String policyName,
+                                                      @RequestParam(value = "repair", required = false) String repair) {
+        return repoReconciler.reconcile(policyName, repair)
+                .onErrorMap(e -> new ResponseStatusException(HttpStatus.CONFLICT, String.valueOf(e.getMessage())));
+    }
+
+    /**
+     * 最近一次历史压缩报告，尚未压缩过时返回空。
+     */
+    @GetMapping("/attachments/compact")
+    public Mono<HistoryCompactor.CompactionReport> getCompactReport(@RequestParam("policyName") String policyName) {
+        return historyCompactor.lastReport(policyName);
+    }
+
+    /**
+     * 立即压缩一次仓库历史；backup 不传时使用策略配置。有上传/删除进行中时返回 SKIPPED 报告。
+     */
+    @PostMapping("/attachments/compact")
+    public Mono<HistoryCompactor.CompactionReport> compact(@RequestParam("policyName") String policyName,
+                                                           @RequestParam(value = "backup", required = false) Boolean backup) {
+        return historyCompactor.compact(policyName, backup)
+                .onErrorMap(e -> new ResponseStatusException(HttpStatus.CONFLICT, String.valueOf(e.getMessage())));
+    }
+
+    /**
+     * 发起服务端批量导入：遍历仓库目录，为未关联的文件创建附件，立即返回任务，进度通过 GET /attachments/import 轮询。
+     * path 为空时使用策略上传目录；exts 为逗号分隔扩展名；minSize/maxSize 单位为字节。
+     */
+    @PostMapping("/attachments/import")
+    public Mono<BulkImporter.ImportJob> startImport(@RequestBody BulkImporter.ImportRequest req) {
+        return bulkImporter.start(req)
+                .onErrorMap(IllegalStateException.class, e -> new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage()))
+                .onErrorMap(IllegalArgumentException.class, e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    // 查询导入任务进度
+    @GetMapping("/attachments/import")
+    public Mono<BulkImporter.ImportJob> getImport(@RequestParam("jobId") String jobId) {
+        return bulkImporter.get(jobId)
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "导入任务不存在: " + jobId)));
+    }
+
+    // 最近的导入任务
+    @GetMapping("/attachments/import/list")
+    public Mono<List<BulkImporter.ImportJob>> listImports() {
+        return Mono.fromSupplier(bulkImporter::list);
+    }
+
+    // 取消导入任务，已创建的附件保留
+    @PostMapping("/attachments/import/cancel")
+    public Mono<BulkImporter.ImportJob> cancelImport(@RequestParam("jobId") String jobId) {
+        return bulkImporter.cancel(jobId)
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "导入任务不存在: " + jobId)));
+    }
+
+    /**
+     * 导出策略目录为 zip：path 为空时导出策略上传目录，为 / 时导出整个仓库；linkedOnly=true 时只包含已关联附件的文件。
+     * 内容从 GitHub 边读边写入响应；目录不存在或为空时返回 400，响应开始后出错则中断连接。
+     */
+    @GetMapping("/attachments/export")
+    public Mono<ResponseEntity<Flux<DataBuffer>>> exportArchive(@RequestParam("policyName") String policyName,
+                                                                @RequestParam(value = "path", required = false) String path,
+                                                                @RequestParam(value = "linkedOnly", required = false) Boolean linkedOnly) {
+        return archiveExporter.export(policyName, path, Boolean.TRUE.equals(linkedOnly))
+                .map(export -> ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType("application/zip"))
+                        .header("Content-Disposition", ContentDisposition.attachment()
+                                .filename(export.filename(), StandardCharsets.UTF_8).build().toString())
+                        .header("X-Export-Files", String.valueOf(export.files()))
+                        .body(export.content()
+                                .doOnError(e -> log.error("导出压缩包中断 policyName={}, path={}", policyName, path, e))))
+                .doOnError(error -> log.error("导出压缩包失败 policyName={}, path={}", policyName, path, error))
+                .onErrorMap(IllegalArgumentException.class, e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()))
+                .onErrorMap(IllegalStateException.class, e -> new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage()))
+                .onErrorMap(e -> !(e instanceof ResponseStatusException),
+                        e -> new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, String.valueOf(e.getMessage())));
+    }
+
+    /**
+     * 发起存储策略迁移：把源策略的附件搬到 GitHub 目标策略，立即返回任务，进度通过 GET /attachments/migrate 轮询。
+     * 插件重启后未完成的任务自动继续。
+     */
+    @PostMapping("/attachments/migrate")
+    public Mono<PolicyMigrator.MigrationJob> startMigration(@RequestBody PolicyMigrator.MigrationRequest req) {
+        return policyMigrator.start(req)
+                .onErrorMap(IllegalStateException.class, e -> new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage()))
+                .onErrorMap(IllegalArgumentException.class, e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    // 查询迁移任务进度
+    @GetMapping("/attachments/migrate")
+    public Mono<PolicyMigrator.MigrationJob> getMigration(@RequestParam("jobId") String jobId) {
+        return policyMigrator.get(jobId)
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "迁移任务不存在: " + jobId)));
+    }
+
+    // 最近的迁移任务
+    @GetMapping("/attachments/migrate/list")
+    public Mono<List<PolicyMigrator.MigrationJob>> listMigrations() {
+        return Mono.fromSupplier(policyMigrator::list);
+    }
+
+    // 取消迁移任务，已迁移的附件保留
+    @PostMapping("/attachments/migrate/cancel")
+    public Mono<PolicyMigrator.MigrationJob> cancelMigration(@RequestParam("jobId") String jobId) {
+        return policyMigrator.cancel(jobId)
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "迁移任务不存在: " + jobId)));
+    }
+
+    /**
+     * 压缩包导入：上传 zip，其中的文件写入 path 目录（为空时使用策略上传目录）并以一个提交落库，再批量创建附件。
+     * 请求在提交与附件创建完成后返回；任一文件上传失败时不产生提交。
+     */
+    @PostMapping(value = "/attachments/archive", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<ArchiveImporter.ArchiveResult> importArchive(@RequestParam("policyName") String policyName,
+                                                             @RequestParam(value = "path", required = false) String path,
+                                                             @RequestPart("file") FilePart file) {
+        return archiveImporter.importArchive(policyName, path, file.filename(), file.content())
+                .doOnError(error -> log.error("压缩包导入失败 policyName={}, path={}", policyName, path, error))
+                .onErrorMap(IllegalArgumentException.class, e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()))
+                .onErrorMap(IllegalStateException.class, e -> new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage()))
+                .onErrorMap(e -> !(e instanceof ResponseStatusException),
+                        e -> new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, String.valueOf(e.getMessage())));
+    }
+
+    /**
+     * 批量解析附件访问地址：请求体为附件名列表，返回 附件名 → 地址；不存在或不属于本插件策略的附件不出现在结果中。
+     * 同一策略只读取一次策略与 ConfigMap，每个附件交给 {@link PermalinkCache#permalink}，与 Halo 调用 getPermalink 的结果一致
+     * （含 release 附件与异步上传待推送的附件）。
+     */
+    @PostMapping("/attachments/permalinks")
+    public Mono<Map<String, String>> resolvePermalinks(@RequestBody List<String> attachmentNames) {
+        if (attachmentNames == null || attachmentNames.isEmpty()) {
+            return Mono.just(Map.of());
         }
-        if (req.getTimeoutMs() == null || req.getTimeoutMs() <= 0) {
-            req.setTimeoutMs(10000);
+        if (attachmentNames.size() > MAX_PERMALINK_BATCH) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "单次最多解析 " + MAX_PERMALINK_BATCH + " 个附件"));
+        }
+        Map<String, Mono<ConfigMap>> configs = new java.util.concurrent.ConcurrentHashMap<>();
+        return Flux.fromIterable(new java.util.LinkedHashSet<>(attachmentNames))
+                .flatMap(name -> client.fetch(Attachment.class, name), 16)
+                .filter(attachment -> attachment.getSpec() != null && attachment.getSpec().getPolicyName() != null)
+                .flatMap(attachment -> configs.computeIfAbsent(attachment.getSpec().getPolicyName(), this::policyConfig)
+                        .flatMap(configMap -> permalinkCache.permalink(attachment, configMap))
+                        .map(uri -> Map.entry(attachment.getMetadata().getName(), uri.toString())))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .doOnError(error -> log.error("批量解析附件地址失败", error))
+                .onErrorMap(e -> new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, String.valueOf(e.getMessage())));
+    }
+
+    /**
+     * 异步上传推送完成前的附件内容（永久链接指向这里，匿名可读，见 role-template-githuboss-outbox.yaml）。
+     * 已推送完成时跳转到仓库访问地址，兼容推送期间已写入文章的旧链接；响应均不允许缓存。
+     */
+    @GetMapping("/outbox/{name}")
+    public Mono<ResponseEntity<byte[]>> pendingUpload(@PathVariable("name") String name) {
+        return client.fetch(Attachment.class, name)
+                .filter(attachment -> attachment.getSpec() != null && attachment.getSpec().getPolicyName() != null
+                        && attachment.getMetadata().getAnnotations() != null
+                        && attachment.getMetadata().getAnnotations().get("path") != null)
+                .flatMap(attachment -> uploadOutbox.pendingData(name)
+                        .map(data -> ResponseEntity.ok()
+                                .cacheControl(CacheControl.noStore())
+                                .contentType(mediaType(attachment))
+                                .header("X-Content-Type-Options", "nosniff")
+                                .header("Content-Security-Policy", "sandbox")
+                                .body(data))
+                        .switchIfEmpty(Mono.defer(() -> policyPattern(attachment.getSpec().getPolicyName())
+                                .filter(pattern -> !attachment.getMetadata().getAnnotations().containsKey(Constant.ANNOTATION_PENDING))
+                                .map(pattern -> ResponseEntity.status(HttpStatus.FOUND)
+                                        .cacheControl(CacheControl.noStore())
+                                        .location(URI.create(pattern.format(attachment.getMetadata().getAnnotations().get("path"),
+                                                attachment.getMetadata().getAnnotations().get(Constant.ANNOTATION_COMMIT_SHA))))
+                                        .<byte[]>build()))))
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "附件不存在或尚未保存: " + name)));
+    }
+
+    private static MediaType mediaType(Attachment attachment) {
+        try {
+            String mediaType = attachment.getSpec().getMediaType();
+            return mediaType == null ? MediaType.APPLICATION_OCTET_STREAM : MediaType.parseMediaType(mediaType);
+        } catch (IllegalArgumentException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
         }
+    }
+
+    private Mono<CdnUrlPattern> policyPattern(String policyName) {
+        return policyConfig(policyName).flatMap(permalinkCache::pattern);
+    }
+
+    // 非本插件模板的策略返回空，其附件不出现在批量解析结果中
+    private Mono<ConfigMap> policyConfig(String policyName) {
+        return client.fetch(Policy.class, policyName)
+                .filter(policy -> policy.getSpec() != null && "githuboss-policy-template".equals(policy.getSpec().getTemplateName())
+                        && policy.getSpec().getConfigMapName() != null)
+                .flatMap(policy -> client.fetch(ConfigMap.class, policy.getSpec().getConfigMapName()))
+                .cache();
+    }
+
+    // 读取代理配置，代理密码以掩码返回；ETag 为插件 ConfigMap 的版本
+    @GetMapping("/attachments/proxy")
+    public Mono<ResponseEntity<NetworkConfig>> getProxy(ServerWebExchange exchange) {
         return client.fetch(ConfigMap.class, Constant.PLUGIN_GITHUBOSS_CONFIGMAP)
-                .flatMap(cm -> {
-                    Map<String, String> data = cm.getData();
-                    if (data == null) data = new HashMap<>();
-                    data.put(GitHubThemeSettings.GitHub_NETWORK, JsonUtils.objectToJson(req));
-                    cm.setData(data);
-                    return client.update(cm).then(Mono.just(req));
-                });
+                .map(cm -> Optional.ofNullable(ConditionalGet.etag("proxy", cm.getMetadata().getVersion())))
+                .onErrorResume(e -> Mono.empty())
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(etag -> ConditionalGet.respond(exchange, etag.orElse(null), gitHubService::getProxyConfigMasked));
+    }
+
+    // 保存代理配置，与 /network/proxy 相同
+    @PostMapping("/attachments/proxy")
+    public Mono<NetworkConfig> saveProxy(@RequestBody NetworkConfig req) {
+        return gitHubService.saveProxyConfig(req);
     }
 
     // 连通性测试：对 github.com 与 api.github.com 进行 DNS 与 HTTP 探测
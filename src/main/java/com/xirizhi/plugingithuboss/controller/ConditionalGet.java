@@ -0,0 +1,89 @@
+package com.xirizhi.plugingithuboss.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ServerWebExchange;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * 只读接口的条件请求：按数据版本生成强 ETag，请求的 If-None-Match 命中时直接返回 304，不再生成响应内容。
+ * 说明：
+ * - ETag 由数据版本（仓库 head 提交、附件索引版本、ConfigMap 版本等）计算，不读取响应内容；
+ *   版本在生成内容之前读取，内容只可能比 ETag 新，最坏情况是下次多返回一次完整内容
+ * - 响应为 Cache-Control: private, no-cache：浏览器可以保存，但每次使用前都要带 If-None-Match 重新验证
+ * - 无法得到数据版本（如平台不支持 Git Data API）时不带 ETag，按原方式返回完整内容
+ */
+final class ConditionalGet {
+
+    private static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
+    private ConditionalGet() {
+    }
+
+    /**
+     * 以各部分版本计算强 ETag（含引号）；任一部分为空时返回 null，表示版本未知。
+     */
+    static String etag(Object... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (Object part : parts) {
+            if (part == null) {
+                return null;
+            }
+            sb.append(part).append('\n');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            return '"' + HexFormat.of().formatHex(digest, 0, 16) + '"';
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * If-None-Match 是否命中；按 RFC 9110 对 If-None-Match 使用弱比较（忽略 W/ 前缀），* 命中任意版本。
+     */
+    static boolean matches(List<String> ifNoneMatch, String etag) {
+        if (etag == null || ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = opaque(etag);
+        for (String header : ifNoneMatch) {
+            for (String candidate : header.split(",")) {
+                String c = candidate.trim();
+                if ("*".equals(c) || opaque(c).equals(opaque)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * etag 命中时返回 304（不订阅 body），否则返回 body 并附带 ETag；两种情况都带 Cache-Control。
+     */
+    static <T> Mono<ResponseEntity<T>> respond(ServerWebExchange exchange, String etag, Supplier<Mono<T>> body) {
+        if (matches(exchange.getRequest().getHeaders().get("If-None-Match"), etag)) {
+            return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CACHE_CONTROL).build());
+        }
+        return body.get().map(value -> {
+            ResponseEntity.BodyBuilder builder = ResponseEntity.ok().cacheControl(CACHE_CONTROL);
+            if (etag != null) {
+                builder.eTag(etag);
+            }
+            return builder.body(value);
+        });
+    }
+
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
@@ -0,0 +1,166 @@
+package com.xirizhi.plugingithuboss.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import run.halo.app.infra.utils.JsonUtils;
+
+/**
+ * 目录列表的精简、排序、筛选与游标分页（纯函数，便于单测）。
+ * 说明：
+ * - 只保留 name/path/sha/size/type、下载地址与关联状态，丢弃 GitHub 返回的 _links、url、git_url 等字段
+ * - 排序固定为目录在前，同类型按名称（或大小）排序，最后以 path 兜底保证全序
+ * - 游标记录上一页最后一项的排序键，而非下标；两次请求之间目录有增删时不会重复或跳过未变化的项
+ */
+final class DirectoryListing {
+
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    private DirectoryListing() {
+    }
+
+    /**
+     * 精简后的目录项；downloadUrl 为平台返回的原始文件地址（目录为空，私有仓库带临时凭据），供管理界面预览；
+     * linked 表示 Halo 中已存在 sha+path 相同的附件。
+     */
+    record Entry(String name, String path, String sha, long size, String type, String downloadUrl, boolean linked) {
+    }
+
+    /**
+     * 一页结果；total 为筛选后的总数，nextCursor 为空表示没有下一页。
+     */
+    record Page(List<Entry> items, String nextCursor, int total) {
+    }
+
+    /**
+     * 筛选条件，字段为 null 表示不限。
+     * name 为不区分大小写的包含匹配；exts 为逗号分隔的扩展名（不含点）；
+     * 指定 exts、minSize、maxSize 或 filesOnly 任一项时只返回文件。
+     */
+    record Filter(String name, String exts, Long minSize, Long maxSize, Boolean linked, Boolean filesOnly,
+                  String sort, Boolean desc) {
+    }
+
+    static Page page(String rawJson, Set<String> linkedKeys, Filter filter, String cursor, Integer limit) {
+        Comparator<Entry> order = comparator(filter);
+        List<Entry> entries = parse(rawJson, linkedKeys).stream()
+                .filter(matcher(filter))
+                .sorted(order)
+                .collect(Collectors.toList());
+
+        int start = 0;
+        Entry after = decodeCursor(cursor);
+        if (after != null) {
+            while (start < entries.size() && order.compare(entries.get(start), after) <= 0) {
+                start++;
+            }
+        }
+        int size = limit == null || limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        int end = Math.min(entries.size(), start + size);
+        List<Entry> items = entries.subList(start, end);
+        String next = end < entries.size() ? encodeCursor(items.get(items.size() - 1)) : null;
+        return new Page(List.copyOf(items), next, entries.size());
+    }
+
+    // 目录接口对单个文件路径返回对象而非数组，统一按列表处理
+    static List<Entry> parse(String rawJson, Set<String> linkedKeys) {
+        List<Entry> result = new ArrayList<>();
+        if (rawJson == null || rawJson.isBlank()) {
+            return result;
+        }
+        JsonNode root = JsonUtils.jsonToObject(rawJson, JsonNode.class);
+        Iterable<JsonNode> nodes = root.isArray() ? root : List.of(root);
+        for (JsonNode node : nodes) {
+            String path = node.path("path").asText("");
+            String sha = node.path("sha").asText("");
+            String name = node.path("name").asText(path);
+            result.add(new Entry(name, path, sha, node.path("size").asLong(0), node.path("type").asText(""),
+                    node.path("download_url").asText(null), linkedKeys.contains(sha + path)));
+        }
+        return result;
+    }
+
+    private static Predicate<Entry> matcher(Filter f) {
+        String name = blankToNull(f.name());
+        Set<String> exts = blankToNull(f.exts()) == null ? null : Arrays.stream(f.exts().split(","))
+                .map(e -> e.trim().toLowerCase(Locale.ROOT))
+                .map(e -> e.startsWith(".") ? e.substring(1) : e)
+                .filter(e -> !e.isEmpty())
+                .collect(Collectors.toSet());
+        boolean filesOnly = Boolean.TRUE.equals(f.filesOnly()) || exts != null
+                || f.minSize() != null || f.maxSize() != null;
+        String needle = name == null ? null : name.toLowerCase(Locale.ROOT);
+        return e -> {
+            if (filesOnly && !"file".equals(e.type())) {
+                return false;
+            }
+            if (needle != null && !e.name().toLowerCase(Locale.ROOT).contains(needle)) {
+                return false;
+            }
+            if (exts != null && !exts.contains(extension(e.name()))) {
+                return false;
+            }
+            if (f.minSize() != null && e.size() < f.minSize()) {
+                return false;
+            }
+            if (f.maxSize() != null && e.size() > f.maxSize()) {
+                return false;
+            }
+            return f.linked() == null || f.linked() == e.linked();
+        };
+    }
+
+    static Comparator<Entry> comparator(Filter f) {
+        Comparator<Entry> byKey = "size".equalsIgnoreCase(f.sort())
+                ? Comparator.comparingLong(Entry::size)
+                : Comparator.comparing(Entry::name, String.CASE_INSENSITIVE_ORDER);
+        if (Boolean.TRUE.equals(f.desc())) {
+            byKey = byKey.reversed();
+        }
+        return Comparator.<Entry>comparingInt(e -> "dir".equals(e.type()) ? 0 : 1)
+                .thenComparing(byKey)
+                .thenComparing(Entry::path);
+    }
+
+    // 游标为 Base64URL(type \n size \n path \n name)，只用于比较位置，对前端不透明
+    static String encodeCursor(Entry e) {
+        String raw = e.type() + "\n" + e.size() + "\n" + e.path() + "\n" + e.name();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Entry decodeCursor(String cursor) {
+        if (blankToNull(cursor) == null) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\n", 4);
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("分页游标格式错误");
+            }
+            return new Entry(parts[3], parts[2], "", Long.parseLong(parts[1]), parts[0], null, false);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的分页游标: " + cursor, e);
+        }
+    }
+
+    private static String extension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static String blankToNull(String s) {
+        return s == null || s.isBlank() ? null : s;
+    }
+}
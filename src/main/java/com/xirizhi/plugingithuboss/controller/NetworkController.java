@@ -1,25 +1,27 @@
 package com.xirizhi.plugingithuboss.controller;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.xirizhi.plugingithuboss.config.Constant;
-import com.xirizhi.plugingithuboss.extension.GitHubThemeSettings;
 import com.xirizhi.plugingithuboss.extension.theme.NetworkConfig;
+import com.xirizhi.plugingithuboss.service.CdnFailover;
+import com.xirizhi.plugingithuboss.service.CdnHealth;
+import com.xirizhi.plugingithuboss.service.GitHubMetrics;
+import com.xirizhi.plugingithuboss.service.GitHubMetrics.MetricSummaryItem;
 import com.xirizhi.plugingithuboss.service.GitHubService;
+import com.xirizhi.plugingithuboss.service.ProxyRouter;
 import com.xirizhi.plugingithuboss.service.GitHubService.NetworkTestItem;
+import com.xirizhi.plugingithuboss.service.LatencyMonitor;
+import com.xirizhi.plugingithuboss.service.PluginWarmup;
+import com.xirizhi.plugingithuboss.service.RequestTimeouts;
 
 import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.Mono;
-import run.halo.app.extension.ConfigMap;
 import run.halo.app.extension.ReactiveExtensionClient;
-import run.halo.app.infra.utils.JsonUtils;
 import run.halo.app.plugin.ApiVersion;
 
 @ApiVersion("githubOs.halo.run/v1alpha1")
@@ -28,31 +30,40 @@ import run.halo.app.plugin.ApiVersion;
 @RequiredArgsConstructor
 public class NetworkController {
     private final GitHubService gitHubService;
+    private final GitHubMetrics gitHubMetrics;
     private final ReactiveExtensionClient client;
+    private final LatencyMonitor latencyMonitor;
+    private final PluginWarmup pluginWarmup;
+    private final CdnFailover cdnFailover;
+
+    // 插件启动预热的进度与各步骤结果
+    @GetMapping("/readiness")
+    public Mono<PluginWarmup.Readiness> readiness() {
+        return Mono.just(pluginWarmup.readiness());
+    }
 
-        // 读取代理配置
+    // 读取代理配置，代理密码以掩码返回
     @GetMapping("/proxy")
     public Mono<NetworkConfig> getProxy() {
-        return gitHubService.getProxyConfig();
+        return gitHubService.getProxyConfigMasked();
     }
 
-    // 保存代理配置
+    // 保存代理配置；代理密码为掩码时沿用已保存的密码
     @PostMapping("/proxy")
     public Mono<NetworkConfig> saveProxy(@RequestBody NetworkConfig req) {
-        if (req == null) {
-            return Mono.error(new IllegalArgumentException("请求体不能为空"));
-        }
-        if (req.getTimeoutMs() == null || req.getTimeoutMs() <= 0) {
-            req.setTimeoutMs(10000);
-        }
-        return client.fetch(ConfigMap.class, Constant.PLUGIN_GITHUBOSS_CONFIGMAP)
-                .flatMap(cm -> {
-                    Map<String, String> data = cm.getData();
-                    if (data == null) data = new HashMap<>();
-                    data.put(GitHubThemeSettings.GitHub_NETWORK, JsonUtils.objectToJson(req));
-                    cm.setData(data);
-                    return client.update(cm).then(Mono.just(req));
-                });
+        return gitHubService.saveProxyConfig(req);
+    }
+
+    // 只读：按主机的代理路由与直连/代理测速结果
+    @GetMapping("/routes")
+    public Mono<java.util.List<ProxyRouter.HostRoute>> routes() {
+        return gitHubService.proxyRoutes(false);
+    }
+
+    // 立即对 auto 主机重新测速并返回结果
+    @PostMapping("/routes/probe")
+    public Mono<java.util.List<ProxyRouter.HostRoute>> probeRoutes() {
+        return gitHubService.proxyRoutes(true);
     }
 
     // 连通性测试：对 github.com 与 api.github.com 进行 DNS 与 HTTP 探测
@@ -64,4 +75,47 @@ public class NetworkController {
         return Mono.zip(m1, m2, m3)
                 .map(t -> java.util.List.of(t.getT1(), t.getT2(), t.getT3()));
     }
+
+    // 只读：后台延迟监控各主机的分阶段 p50/p95/p99 与最近一次采样
+    @GetMapping("/monitor")
+    public Mono<java.util.List<LatencyMonitor.HostLatency>> monitor() {
+        return Mono.fromSupplier(latencyMonitor::view);
+    }
+
+    // 只读：单个主机最近的采样记录
+    @GetMapping("/monitor/history")
+    public Mono<java.util.List<LatencyMonitor.Sample>> monitorHistory(@RequestParam("host") String host,
+                                                                    @RequestParam(value = "limit", defaultValue = "60") int limit) {
+        return Mono.fromSupplier(() -> latencyMonitor.history(host, limit));
+    }
+
+    // 立即采样一次并返回汇总
+    @PostMapping("/monitor/run")
+    public Mono<java.util.List<LatencyMonitor.HostLatency>> runMonitor() {
+        return latencyMonitor.runNow();
+    }
+
+    // 只读：各策略按优先级排列的访问地址提供方及其健康状态
+    @GetMapping("/cdn")
+    public Mono<java.util.List<CdnFailover.PolicyRoutes>> cdnRoutes() {
+        return cdnFailover.routes();
+    }
+
+    // 立即探测全部提供方主机并返回状态
+    @PostMapping("/cdn/probe")
+    public Mono<java.util.List<CdnHealth.HostHealth>> probeCdn() {
+        return cdnFailover.probeNow();
+    }
+
+    // 只读：各 API 主机的平滑耗时、上传吞吐量与当前请求时限
+    @GetMapping("/timeouts")
+    public Mono<java.util.List<RequestTimeouts.Estimate>> timeouts() {
+        return gitHubService.requestTimeouts();
+    }
+
+    // 只读：上传/删除/列表链路的分阶段耗时与 GitHub 响应统计
+    @GetMapping("/metrics")
+    public Mono<java.util.List<MetricSummaryItem>> metrics() {
+        return Mono.fromSupplier(gitHubMetrics::summary);
+    }
 }
\ No newline at end of file
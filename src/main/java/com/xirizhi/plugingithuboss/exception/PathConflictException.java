@@ -0,0 +1,18 @@
+package com.xirizhi.plugingithuboss.exception;
+
+/**
+ * 仓库中已存在同名文件：新建文件不会覆盖旧文件，调用方应换一个文件名重试。
+ */
+public class PathConflictException extends IllegalStateException {
+
+    private final String path;
+
+    public PathConflictException(String path) {
+        super("仓库中已存在同名文件: " + path);
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+}
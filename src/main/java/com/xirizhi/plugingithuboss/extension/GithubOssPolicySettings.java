@@ -15,4 +15,18 @@ public class GithubOssPolicySettings {
     private String namePrefix; // 是否在重命名时追加原文件名后缀
     private String token;       // GitHub PAT
     private Integer minSizeMB;  // 上传文件最小大小(MB)
+    private Boolean pinCommit;  // 是否生成固定到提交 SHA 的 CDN 链接
+    private String forgeType;   // 仓库平台：github（默认）/ ghes / gitea（含 Forgejo）
+    private String apiBaseUrl;  // API 地址，默认 https://api.github.com
+    private String cdnUrlTemplate; // 自定义 CDN/原始地址模板，支持 {owner} {repo} {branch} {ref} {path}
+    private String cdnProviders; // 访问地址提供方，按优先级逗号分隔：jsdelivr / statically / raw / pages / proxy / custom
+    private String cdnDomain;    // pages 提供方的域名（GitHub Pages 或绑定的自定义域名），默认 {owner}.github.io/{repo}
+    private String cdnProxyUrl;  // proxy 提供方的自建反向代理地址
+    private Boolean asyncUpload; // 异步上传/删除：先写入本地队列立即返回，后台推送到仓库
+    private Integer reconcileIntervalHours; // 仓库对账间隔（小时），为空或 0 不定时执行
+    private String reconcileRepair; // 对账修复模式：none（仅报告，默认）/ sha / full
+    private Integer releaseThresholdMB; // 超过该大小（MB）的文件作为 release 附件上传，为空或 0 不启用
+    private String releaseTag;  // 存放附件的 release 标签，默认 githuboss-assets
+    private Integer compactIntervalDays; // 历史压缩间隔（天），为空或 0 不定时执行
+    private Boolean compactBackup; // 压缩前将原历史保存到备份分支，默认开启
 }
\ No newline at end of file
@@ -10,4 +10,7 @@ public class GitHubBasic {
 
     // 前端访问优化开关（开启后注入前端测速脚本）
     private Boolean enableOptimization;
+
+    // 内容渲染时为仓库图片补充宽高与占位色（未配置时视为开启）
+    private Boolean imageSize;
 }
@@ -8,7 +8,23 @@ public class NetworkConfig {
     private String proxyPath;
     // 是否启用代理
     private Boolean enabled;
-    // 接口超时毫秒，默认10000
+    // 小请求的最长时限（毫秒），默认10000；实际时限按操作类型与观测耗时自适应，上传按大小另计
     private Integer timeoutMs;
+    // 建立连接的超时毫秒，默认 min(timeoutMs, 5000)
+    private Integer connectTimeoutMs;
+    // 代理类型：http（默认）/ socks（SOCKS5）
+    private String proxyType;
+    // 代理认证用户名与密码，为空时不认证
+    private String proxyUsername;
+    private String proxyPassword;
+    // 未命中规则的主机走向：proxy（默认，全部走代理）/ auto（定期测速，按主机选择直连或代理中更快的可用路径）
+    private String routeMode;
+    // 按主机的路由规则，逗号或换行分隔，形如 *.jsdelivr.net=direct、api.github.com=proxy、*.example.com=auto，先匹配先生效
+    private String routeRules;
+    // auto 模式测速间隔（分钟），默认 10
+    private Integer probeIntervalMinutes;
+    // 后台延迟监控的主机，逗号或换行分隔，为空时使用 GitHub 与 jsDelivr 默认主机
+    private String monitorHosts;
+    // 后台延迟监控间隔（秒）；未设置或为 0 时不在后台采样，只在查看网络诊断期间采样
+    private Integer monitorIntervalSeconds;
 }
-
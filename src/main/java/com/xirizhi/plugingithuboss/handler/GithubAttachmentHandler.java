@@ -2,8 +2,13 @@ package com.xirizhi.plugingithuboss.handler;
 
 import com.xirizhi.plugingithuboss.config.Constant;
 import com.xirizhi.plugingithuboss.exception.GitHubExceptionHandler;
+import com.xirizhi.plugingithuboss.exception.PathConflictException;
 import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.service.GitHubMetrics;
 import com.xirizhi.plugingithuboss.service.GitHubService;
+import com.xirizhi.plugingithuboss.service.PermalinkCache;
+import com.xirizhi.plugingithuboss.service.ReleaseAssetStore;
+import com.xirizhi.plugingithuboss.service.UploadOutbox;
 
 import lombok.extern.slf4j.Slf4j;
 import org.pf4j.Extension;
@@ -17,6 +22,7 @@ import org.springframework.security.core.context.SecurityContext;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import run.halo.app.core.extension.attachment.Attachment;
 import run.halo.app.core.extension.attachment.Policy;
 import run.halo.app.core.extension.attachment.endpoint.AttachmentHandler;
@@ -26,11 +32,7 @@ import run.halo.app.extension.ReactiveExtensionClient;
 import run.halo.app.infra.utils.JsonUtils;
 
 import java.net.URI;
-import java.nio.file.Paths;
 import java.time.Duration;
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Optional;
 import java.util.UUID;
@@ -50,22 +52,36 @@ import java.util.stream.Stream;
 @Component
 public class GithubAttachmentHandler implements AttachmentHandler {
 
+    // 仓库中已有同名文件时最多尝试的文件名个数
+    private static final int MAX_NAME_ATTEMPTS = 3;
+
     private final ReactiveExtensionClient client;
     private final GitHubService gitHubService;
+    private final GitHubMetrics metrics;
+    private final UploadPathGenerator pathGenerator;
+    private final UploadOutbox outbox;
+    private final PermalinkCache permalinkCache;
+    private final ReleaseAssetStore releaseAssetStore;
 
-    public GithubAttachmentHandler(ReactiveExtensionClient client, GitHubService gitHubService) {
+    public GithubAttachmentHandler(ReactiveExtensionClient client, GitHubService gitHubService, GitHubMetrics metrics,
+                                   UploadPathGenerator pathGenerator, UploadOutbox outbox, PermalinkCache permalinkCache,
+                                   ReleaseAssetStore releaseAssetStore) {
         this.client = client;
         this.gitHubService = gitHubService;
+        this.metrics = metrics;
+        this.pathGenerator = pathGenerator;
+        this.outbox = outbox;
+        this.permalinkCache = permalinkCache;
+        this.releaseAssetStore = releaseAssetStore;
     }
 
-    // 新增：进程内文件路径占位集合（不自动淘汰，上传结束后释放）
-    private static final java.util.Set<String> RESERVED_PATHS = java.util.Collections.synchronizedSet(new java.util.HashSet<>());
-
     /**
      * 上传文件：
      * - 从 Policy 与 ConfigMap 中读取仓库别名（repoName）等配置
      * - 根据策略生成路径并上传到 GitHub
      * - 生成 Halo Attachment 对象并返回，status.permalink 为 CDN URL
+     * - 策略开启 asyncUpload 时写入本地队列后立即返回带 pending 标记的附件，由 UploadOutbox 后台推送
+     * - 策略设置了 releaseThresholdMB 时，超过阈值的文件以原始字节流上传为 release 附件（同步上传，不经过队列）
      */
     @Override
     public Mono<Attachment> upload(UploadContext context) {
@@ -76,106 +92,111 @@ public class GithubAttachmentHandler implements AttachmentHandler {
         var settingJson = context.configMap().getData().getOrDefault("default", "{}");
         GithubOssPolicySettings settings = JsonUtils.jsonToObject(settingJson, GithubOssPolicySettings.class);
         
-        // 简单的 JSON 解析（手动解析关键字段）
-        final String owner = settings.getOwner();
-        final String repoName = settings.getRepoName();
-
-        // 新增：在上传最前阶段生成并占位唯一文件名/路径（秒级加一，不等待真实时间流逝）
-        var pathBuild = buildPathAndName(settings, filePart);
-        
+        // 在上传最前阶段生成并占位唯一文件名/路径（无锁，冲突时追加序号）
         // 文件大小检测优先于 GitHub 连通性
-        return readFileBytes(filePart)
-                .flatMap(bytes -> validateMinSize(bytes, settings.getMinSizeMB()))
-                .flatMap(bytes -> gitHubService.checkConnectivity()
-                        .flatMap(isConnected -> isConnected
-                                ? Mono.just(bytes)
-                                : Mono.error(new IllegalStateException("GitHub 无法访问，请检查网络连接或配置代理"))))
-                .flatMap(bytes -> gitHubService.uploadContent(settings, pathBuild.filePath(), bytes,
-                            "Upload via Halo AttachmentHandler")
-                        .map(sha -> {
-                            log.info("文件上传成功,owner: {}, repoName: {}, 完整仓库名: {}, 完整路径: {}, sha: {}", owner, repoName, owner + "/" + repoName, pathBuild.filePath(), sha);
-                            Attachment attachment = buildAttachment(pathBuild.filePath(), sha, (long) bytes.length, policy);
-                            return attachment;
-                        }))
-                .doFinally(signalType -> {
-                    synchronized (RESERVED_PATHS) {
-                        RESERVED_PATHS.remove(pathBuild.filePath());
-                    }
-                })
+        return metrics.observe("upload", settings, stages -> metrics.stage("path_reserve", "upload", settings,
+                        pathGenerator.reserve(settings, filePart.filename()))
+                .flatMap(pathBuild -> metrics.stage("multipart_read", "upload", settings, readContent(filePart, settings))
+                        .flatMap(content -> store(settings, filePart.filename(), pathBuild.filePath(), content, policy, 1)
+                                .doFinally(signal -> {
+                                    // 换名重试共用同一份内容，全部结束后才删除临时文件
+                                    if (content.large() != null) {
+                                        content.large().cleanup().run();
+                                    }
+                                }))))
+                .contextWrite(GitHubMetrics.withPolicy(policy.getMetadata().getName()))
                 .onErrorMap(GitHubExceptionHandler::map);
     }
 
-    // 新增：将路径与文件名构造逻辑提取为方法，保持原有逻辑不变
-    private record PathBuildResult(String filePath, String filename, String ext) {}
-
-    // 新增：将路径与文件名构造逻辑提取为方法，保持原有逻辑不变
-    private PathBuildResult buildPathAndName(GithubOssPolicySettings settings, FilePart filePart) {
-        final String namePrefix = settings.getNamePrefix();
-        // 基准时间只取一次；若冲突则在此基础上“秒级 +1”
-        var baseNow = Instant.now().atZone(ZoneId.systemDefault());
-
-        final String originalFilename = filePart.filename();
-        final String ext = extractExt(originalFilename);
-        final String trimmedOriginal = Optional.ofNullable(originalFilename)
-                .map(String::trim)
-                .orElse("");
-        // 移除 15 字符限制，改为保留完整原始文件名（不含扩展名）
-        final String baseOriginal = trimmedOriginal.isBlank()
-                ? ""
-                : (ext != null && trimmedOriginal.lastIndexOf('.') >= 0
-                    ? trimmedOriginal.substring(0, trimmedOriginal.lastIndexOf('.'))
-                    : trimmedOriginal);
+    // 写入占位的路径；仓库或 release 中已有同名文件（其他节点或重启前写入，目录视图中还没有）时记入视图，换一个文件名重试
+    private Mono<Attachment> store(GithubOssPolicySettings settings, String originalFilename, String filePath,
+                                   ReleaseAssetStore.Content content, Policy policy, int attempt) {
+        Mono<Attachment> stored = content.large() != null
+                ? uploadAsset(settings, filePath, content.large(), policy)
+                : storeInRepo(settings, filePath, content.bytes(), policy);
+        return stored
+                .doOnNext(attachment -> pathGenerator.markExisting(settings, filePath))
+                .onErrorResume(PathConflictException.class, e -> {
+                    pathGenerator.markExisting(settings, filePath);
+                    if (attempt >= MAX_NAME_ATTEMPTS) {
+                        return Mono.error(e);
+                    }
+                    log.info("仓库中已存在同名文件，换名重试 path={}, attempt={}", filePath, attempt);
+                    return pathGenerator.reserve(settings, originalFilename)
+                            .flatMap(next -> store(settings, originalFilename, next.filePath(), content, policy, attempt + 1));
+                })
+                .doFinally(signalType -> pathGenerator.release(filePath));
+    }
 
-        int bump = 0;
-        final int maxAttempts = 120; // 合理上限，避免极端情况下无限循环
-        while (true) {
-            var now = baseNow.plusSeconds(bump);
+    // 未开启 release 附件模式时整个文件读入内存；开启时只有不超过阈值的文件读入内存
+    private Mono<ReleaseAssetStore.Content> readContent(FilePart filePart, GithubOssPolicySettings settings) {
+        if (!ReleaseAssetStore.enabled(settings)) {
+            return readFileBytes(filePart).map(bytes -> new ReleaseAssetStore.Content(bytes, null));
+        }
+        return ReleaseAssetStore.read(filePart, ReleaseAssetStore.thresholdBytes(settings));
+    }
 
-            final String folderPattern = (namePrefix != null && !namePrefix.isBlank())
-                    ? switch (namePrefix) {
-                        case "yyyy" -> "yyyy";
-                        case "yyyyMM" -> "yyyyMM";
-                        case "yyyyMMdd" -> "yyyyMMdd";
-                        default -> null;
-                    }
-                    : null;
-            final String folderDir = folderPattern == null
-                    ? ""
-                    : DateTimeFormatter.ofPattern(folderPattern).format(now);
+    // 写入仓库：校验大小、解析图片信息后同步提交或写入异步队列
+    private Mono<Attachment> storeInRepo(GithubOssPolicySettings settings, String filePath, byte[] content, Policy policy) {
+        return metrics.stage("size_validation", "upload", settings, validateMinSize(content, settings.getMinSizeMB()))
+                .flatMap(bytes -> metrics.stage("image_probe", "upload", settings, probeImage(bytes))
+                        .flatMap(image -> Boolean.TRUE.equals(settings.getAsyncUpload())
+                                ? enqueueUpload(settings, filePath, bytes, image.orElse(null), policy)
+                                : uploadNow(settings, filePath, bytes, image.orElse(null), policy)));
+    }
 
-            String timePattern;
-            if (folderPattern == null) {
-                timePattern = "yyyyMMddHHmmss";
-            } else if ("yyyy".equals(folderPattern)) {
-                timePattern = "MMddHHmmss";
-            } else if ("yyyyMM".equals(folderPattern)) {
-                timePattern = "ddHHmmss";
-            } else { // "yyyyMMdd"
-                timePattern = "ddHHmmss";
-            }
-            String timePrefix = DateTimeFormatter.ofPattern(timePattern).format(now);
+    // 大文件上传为 release 附件：附件不在仓库中，不记录 path/sha，永久链接为下载地址；release 中已有同名附件时抛出 PathConflictException
+    private Mono<Attachment> uploadAsset(GithubOssPolicySettings settings, String filePath,
+                                         ReleaseAssetStore.LargeBody body, Policy policy) {
+        return releaseAssetStore.upload(settings, ReleaseAssetStore.assetName(filePath), body)
+                .map(asset -> {
+                    log.info("大文件已上传为 release 附件,owner: {}, repoName: {}, 附件: {}, 大小: {}, 地址: {}",
+                            settings.getOwner(), settings.getRepoName(), asset.name(), asset.size(), asset.url());
+                    Attachment attachment = buildAttachment(filePath, null, null, asset.size(), null, policy);
+                    var annotations = attachment.getMetadata().getAnnotations();
+                    annotations.remove("path");
+                    annotations.remove("sha");
+                    annotations.put(Constant.ANNOTATION_RELEASE_ID, String.valueOf(asset.releaseId()));
+                    annotations.put(Constant.ANNOTATION_ASSET_ID, String.valueOf(asset.assetId()));
+                    annotations.put(Constant.ANNOTATION_ASSET_URL, asset.url());
+                    return attachment;
+                });
+    }
 
-            // 将日期后缀追加到原始文件名后面（扩展名前），保留扩展名
-            final String filename = !baseOriginal.isBlank()
-                    ? (baseOriginal + "-" + timePrefix + (ext != null ? ("." + ext) : ""))
-                    : (timePrefix + (ext != null ? ("." + ext) : ""));
+    // 解析图片尺寸与占位色；占位色需要降采样解码，放到弹性线程避免阻塞事件循环
+    private Mono<Optional<ImageProbe.ImageInfo>> probeImage(byte[] bytes) {
+        return Mono.fromCallable(() -> Optional.ofNullable(ImageProbe.probe(bytes)))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
 
-            String tempFilePath = Paths.get(Optional.ofNullable(settings.getPath()).orElse("").trim(),folderDir.trim(),filename)
-                    .normalize()
-                    .toString();
-            final String filePath = tempFilePath.startsWith("/") ? tempFilePath.substring(1) : tempFilePath;
-            synchronized (RESERVED_PATHS) {
-                if (!RESERVED_PATHS.contains(filePath)) {
-                    RESERVED_PATHS.add(filePath);
-                    return new PathBuildResult(filePath, filename, ext);
-                }
-            }
+    // 同步上传：检测连通性后直接提交到仓库
+    private Mono<Attachment> uploadNow(GithubOssPolicySettings settings, String filePath, byte[] bytes,
+                                       ImageProbe.ImageInfo image, Policy policy) {
+        final String owner = settings.getOwner();
+        final String repoName = settings.getRepoName();
+        return metrics.stage("connectivity_check", "upload", settings, gitHubService.checkConnectivity(settings))
+                .flatMap(isConnected -> isConnected
+                        ? Mono.just(bytes)
+                        : Mono.error(new IllegalStateException("GitHub 无法访问，请检查网络连接或配置代理")))
+                .flatMap(b -> gitHubService.uploadContent(settings, filePath, b, "Upload via Halo AttachmentHandler"))
+                .map(result -> {
+                    log.info("文件上传成功,owner: {}, repoName: {}, 完整仓库名: {}, 完整路径: {}, sha: {}, commitSha: {}", owner, repoName, owner + "/" + repoName, filePath, result.sha(), result.commitSha());
+                    return buildAttachment(filePath, result.sha(), result.commitSha(), (long) bytes.length, image, policy);
+                });
+    }
 
-            bump++;
-            if (bump > maxAttempts) {
-                throw new IllegalStateException("无法生成唯一文件名: 冲突过多，请稍后重试");
-            }
-        }
+    // 异步上传：写入本地队列后立即返回，sha 在后台推送成功后回写；此前永久链接指向插件的待推送文件接口，推送后换成 CDN 地址
+    private Mono<Attachment> enqueueUpload(GithubOssPolicySettings settings, String filePath, byte[] bytes,
+                                           ImageProbe.ImageInfo image, Policy policy) {
+        Attachment attachment = buildAttachment(filePath, null, null, (long) bytes.length, image, policy);
+        attachment.getMetadata().getAnnotations().remove("sha");
+        return metrics.stage("outbox_enqueue", "upload", settings, outbox.enqueueUpload(policy.getMetadata().getName(),
+                        attachment.getMetadata().getName(), filePath, bytes, "Upload via Halo AttachmentHandler"))
+                .map(entry -> {
+                    log.info("文件已写入异步上传队列,完整路径: {}, outbox: {}", filePath, entry.getId());
+                    attachment.getMetadata().getAnnotations().put(Constant.ANNOTATION_PENDING, entry.getId());
+                    return attachment;
+                });
     }
 
     /**
@@ -193,14 +214,29 @@ public class GithubAttachmentHandler implements AttachmentHandler {
         
         final String sha = attachment.getMetadata().getAnnotations().get("sha");
         final String path = attachment.getMetadata().getAnnotations().remove("path");
+        final String assetId = attachment.getMetadata().getAnnotations().get(Constant.ANNOTATION_ASSET_ID);
         
-        return Mono.defer(() -> {
+        return metrics.observe("delete", settings, stages -> Mono.defer(() -> {
                     log.info("开始删除远程文件,owner: {}, repoName: {}, 完整仓库名: {}, 完整路径: {}", settings.getOwner(), settings.getRepoName(), settings.getOwner() + "/" + settings.getRepoName(), path);
 
                     boolean unLinked = Boolean.parseBoolean(attachment.getMetadata().getAnnotations().getOrDefault(Constant.ANNOTATION_UNLINKED, Boolean.FALSE.toString()));
                     if (unLinked) {
                         log.info("附件已解除关联，仅逻辑删除 attachment: {}", JsonUtils.objectToJson(attachment));
                         return Mono.just(attachment);
+                    } else if (assetId != null) {
+                        // release 附件直接删除，不经过异步队列
+                        return releaseAssetStore.delete(settings, assetId)
+                                .then(Mono.fromCallable(() -> {
+                                    log.info("release 附件删除成功 assetId: {}", assetId);
+                                    return attachment;
+                                }));
+                    } else if (Boolean.TRUE.equals(settings.getAsyncUpload())) {
+                        // 异步模式：尚未推送的上传直接取消，否则删除写入队列由后台执行
+                        return outbox.cancelUpload(attachment.getMetadata().getName())
+                                .flatMap(cancelled -> cancelled
+                                        ? Mono.just(attachment)
+                                        : outbox.enqueueDelete(attachment.getSpec().getPolicyName(), path, sha,
+                                                "Delete via Halo AttachmentHandler").thenReturn(attachment));
                     } else {
                         return gitHubService.deleteContent(settings, path, sha, "Delete via Halo AttachmentHandler")
                                 .then(Mono.fromCallable(() -> {
@@ -208,36 +244,23 @@ public class GithubAttachmentHandler implements AttachmentHandler {
                                     return attachment;
                                 }));
                     }
-                })
+                }))
+                .contextWrite(GitHubMetrics.withPolicy(context.policy() == null ? null : context.policy().getMetadata().getName()))
                 .doOnError(error -> log.error("删除过程中发生错误", error))
                 .onErrorMap(GitHubExceptionHandler::map);
     }
 
     @Override
     public Mono<URI> getSharedURL(Attachment attachment, Policy policy, ConfigMap configMap, Duration ttl) {
-        // 对于 GitHub 内容，CDN 地址即可视为共享 URL，这里直接返回 permalink 或基于路径构建 CDN URL
-        try {
-            String path = attachment.getMetadata().getAnnotations().get("path");
-
-            var settingJson = configMap.getData().getOrDefault("default", "{}");
-            GithubOssPolicySettings settings = JsonUtils.jsonToObject(settingJson, GithubOssPolicySettings.class);
-            
-            return gitHubService.buildCdnUrl(settings, path).map(URI::create);
-        } catch (Exception e) {
-            return Mono.error(GitHubExceptionHandler.map(e));
-        }
+        // 对于 GitHub 内容，CDN 地址即可视为共享 URL，与 permalink 相同
+        return getPermalink(attachment, policy, configMap);
     }
 
     @Override
     public Mono<URI> getPermalink(Attachment attachment, Policy policy, ConfigMap configMap) {
-        // GitHub 场景：permalink 使用 CDN 地址
+        // GitHub 场景：permalink 使用 CDN 地址；按策略缓存展开后的地址，每个附件只做字符串拼接
         try {
-            String path = attachment.getMetadata().getAnnotations().get("path");
-            
-            var settingJson = configMap.getData().getOrDefault("default", "{}");
-            GithubOssPolicySettings settings = JsonUtils.jsonToObject(settingJson, GithubOssPolicySettings.class);
-                
-            return gitHubService.buildCdnUrl(settings, path).map(URI::create);
+            return permalinkCache.permalink(attachment, configMap).onErrorMap(GitHubExceptionHandler::map);
         } catch (Exception e) {
             return Mono.error(GitHubExceptionHandler.map(e));
         }
@@ -252,11 +275,31 @@ public class GithubAttachmentHandler implements AttachmentHandler {
     }
 
     public Attachment buildAttachment(String path, String sha, long size, Policy policy) {
+        return buildAttachment(path, sha, null, size, policy);
+    }
+
+    // commitSha 为空时（如关联仓库已有文件）永久链接按分支生成
+    public Attachment buildAttachment(String path, String sha, String commitSha, long size, Policy policy) {
+        return buildAttachment(path, sha, commitSha, size, null, policy);
+    }
+
+    // image 为空时（非图片或未读取文件内容）不写入尺寸与占位色
+    public Attachment buildAttachment(String path, String sha, String commitSha, long size, ImageProbe.ImageInfo image, Policy policy) {
         Metadata metadata = new Metadata();
         metadata.setName(UUID.randomUUID().toString());
         HashMap<String, String> annotationMap = new HashMap<>();
         annotationMap.put("path", path);
         annotationMap.put("sha", sha);
+        if (commitSha != null && !commitSha.isBlank()) {
+            annotationMap.put(Constant.ANNOTATION_COMMIT_SHA, commitSha);
+        }
+        if (image != null) {
+            annotationMap.put(Constant.ANNOTATION_WIDTH, String.valueOf(image.width()));
+            annotationMap.put(Constant.ANNOTATION_HEIGHT, String.valueOf(image.height()));
+            if (image.placeholder() != null) {
+                annotationMap.put(Constant.ANNOTATION_PLACEHOLDER, image.placeholder());
+            }
+        }
         metadata.setAnnotations(annotationMap);
 
         Attachment.AttachmentSpec as = new Attachment.AttachmentSpec();
@@ -281,13 +324,6 @@ public class GithubAttachmentHandler implements AttachmentHandler {
         int i = path.lastIndexOf('/');
         return i >= 0 ? path.substring(i + 1) : path;
     }
-    // 获取文件扩展名
-    private String extractExt(String filename) {
-        if (filename == null) return null;
-        int i = filename.lastIndexOf('.');
-        if (i < 0) return null;
-        return filename.substring(i + 1);
-    }
 
     /**
      * 通用：校验文件最小大小（单位 MB），不满足时返回 Mono.error。
@@ -308,7 +344,8 @@ public class GithubAttachmentHandler implements AttachmentHandler {
         return Mono.just(bytes);
     }
 
-    private Mono<byte[]> readFileBytes(FilePart filePart) {
+    // 包可见以便基准测试
+    Mono<byte[]> readFileBytes(FilePart filePart) {
         return filePart.content()
                 .reduce(new java.io.ByteArrayOutputStream(), (baos, dataBuffer) -> {
                     try {
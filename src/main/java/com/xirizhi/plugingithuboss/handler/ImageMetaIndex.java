@@ -0,0 +1,114 @@
+package com.xirizhi.plugingithuboss.handler;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+import com.xirizhi.plugingithuboss.config.Constant;
+
+import lombok.extern.slf4j.Slf4j;
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.app.extension.controller.Controller;
+import run.halo.app.extension.controller.ControllerBuilder;
+import run.halo.app.extension.controller.Reconciler;
+
+/**
+ * 访问地址 → 图片尺寸/占位色 的内存索引，供内容渲染时按 img src 查找。
+ * 说明：
+ * - 通过 Attachment 的 Reconciler 维护：启动时全量同步，之后随附件创建、更新（permalink 生成）、删除增量更新
+ * - 只收录带有尺寸注解的附件；key 去掉协议与域名，前端切换 jsDelivr 节点后的地址同样命中
+ */
+@Slf4j
+@Component
+public class ImageMetaIndex implements Reconciler<Reconciler.Request> {
+
+    private static final Duration FETCH_TIMEOUT = Duration.ofSeconds(10);
+
+    private final ReactiveExtensionClient client;
+    private final Map<String, ImageProbe.ImageInfo> byUrl = new ConcurrentHashMap<>();
+    // 附件名 → key，附件删除或地址变化时移除旧项
+    private final Map<String, String> keysByName = new ConcurrentHashMap<>();
+
+    public ImageMetaIndex(ReactiveExtensionClient client) {
+        this.client = client;
+    }
+
+    /**
+     * 按图片地址查找尺寸，未收录时返回 null。
+     */
+    public ImageProbe.ImageInfo lookup(String url) {
+        String key = key(url);
+        return key == null ? null : byUrl.get(key);
+    }
+
+    public boolean isEmpty() {
+        return byUrl.isEmpty();
+    }
+
+    /**
+     * 收录或移除一个附件。
+     */
+    void index(String name, Attachment attachment) {
+        String oldKey = keysByName.remove(name);
+        if (oldKey != null) {
+            byUrl.remove(oldKey);
+        }
+        if (attachment == null || attachment.getMetadata().getDeletionTimestamp() != null) {
+            return;
+        }
+        ImageProbe.ImageInfo info = fromAnnotations(attachment.getMetadata().getAnnotations());
+        String key = attachment.getStatus() == null ? null : key(attachment.getStatus().getPermalink());
+        if (info == null || key == null) {
+            return;
+        }
+        byUrl.put(key, info);
+        keysByName.put(name, key);
+    }
+
+    @Override
+    public Result reconcile(Request request) {
+        Attachment attachment = client.fetch(Attachment.class, request.name()).blockOptional(FETCH_TIMEOUT).orElse(null);
+        index(request.name(), attachment);
+        return Result.doNotRetry();
+    }
+
+    @Override
+    public Controller setupWith(ControllerBuilder builder) {
+        return builder.extension(new Attachment()).build();
+    }
+
+    static ImageProbe.ImageInfo fromAnnotations(Map<String, String> annotations) {
+        if (annotations == null || !annotations.containsKey(Constant.ANNOTATION_WIDTH)) {
+            return null;
+        }
+        try {
+            int width = Integer.parseInt(annotations.get(Constant.ANNOTATION_WIDTH));
+            int height = Integer.parseInt(annotations.get(Constant.ANNOTATION_HEIGHT));
+            return width > 0 && height > 0 ? new ImageProbe.ImageInfo(width, height, annotations.get(Constant.ANNOTATION_PLACEHOLDER)) : null;
+        } catch (NumberFormatException e) {
+            log.debug("忽略格式错误的图片尺寸注解: {}", annotations);
+            return null;
+        }
+    }
+
+    // 去掉协议与域名，保留路径与查询串
+    static String key(String url) {
+        if (url == null || url.isBlank()) {
+            return null;
+        }
+        try {
+            URI uri = URI.create(url.trim());
+            String path = uri.getRawPath();
+            if (path == null || path.isEmpty()) {
+                return null;
+            }
+            return uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
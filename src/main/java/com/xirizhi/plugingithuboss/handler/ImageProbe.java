@@ -0,0 +1,228 @@
+package com.xirizhi.plugingithuboss.handler;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 上传时提取图片尺寸与占位色，供主题渲染时输出 width/height，避免图片加载后页面重排。
+ * 说明：
+ * - 尺寸只解析文件头（PNG/GIF/JPEG/WebP/BMP），不解码图像；JPEG 按 EXIF 方向交换宽高，与浏览器显示一致
+ * - 占位色为降采样（约 16x16 个采样点）后的平均色，只对 ImageIO 内置支持的格式计算，失败时仅保留尺寸
+ */
+@Slf4j
+public final class ImageProbe {
+
+    // 采样网格边长，解码时按此降采样，内存占用与原图大小无关
+    private static final int SAMPLE_GRID = 16;
+    // 超过该像素数不计算占位色，避免异常文件（解压炸弹）拖慢上传
+    private static final long MAX_SAMPLE_PIXELS = 100_000_000L;
+
+    public record ImageInfo(int width, int height, String placeholder) {}
+
+    private ImageProbe() {}
+
+    /**
+     * 解析图片尺寸与占位色；非图片或文件头无法识别时返回 null。
+     */
+    public static ImageInfo probe(byte[] bytes) {
+        if (bytes == null || bytes.length < 16) {
+            return null;
+        }
+        int[] size;
+        try {
+            size = readSize(bytes);
+        } catch (IndexOutOfBoundsException e) {
+            // 文件头被截断
+            size = null;
+        }
+        if (size == null || size[0] <= 0 || size[1] <= 0) {
+            return null;
+        }
+        String placeholder = (long) size[0] * size[1] <= MAX_SAMPLE_PIXELS ? averageColor(bytes, size) : null;
+        return new ImageInfo(size[0], size[1], placeholder);
+    }
+
+    // 按魔数识别格式并读取宽高
+    static int[] readSize(byte[] b) {
+        if (u8(b, 0) == 0x89 && b[1] == 'P' && b[2] == 'N' && b[3] == 'G') {
+            // IHDR 固定在签名之后
+            return new int[] {be32(b, 16), be32(b, 20)};
+        }
+        if (b[0] == 'G' && b[1] == 'I' && b[2] == 'F' && b[3] == '8') {
+            return new int[] {le16(b, 6), le16(b, 8)};
+        }
+        if (u8(b, 0) == 0xFF && u8(b, 1) == 0xD8) {
+            return jpegSize(b);
+        }
+        if (b[0] == 'R' && b[1] == 'I' && b[2] == 'F' && b[3] == 'F'
+                && b[8] == 'W' && b[9] == 'E' && b[10] == 'B' && b[11] == 'P') {
+            return webpSize(b);
+        }
+        if (b[0] == 'B' && b[1] == 'M') {
+            // 高度为负表示自上而下存储
+            return new int[] {le32(b, 18), Math.abs(le32(b, 22))};
+        }
+        return null;
+    }
+
+    private static int[] webpSize(byte[] b) {
+        String chunk = new String(b, 12, 4, StandardCharsets.US_ASCII);
+        switch (chunk) {
+            case "VP8 " -> {
+                // 有损：关键帧起始码之后为 14 位宽高
+                return new int[] {le16(b, 26) & 0x3FFF, le16(b, 28) & 0x3FFF};
+            }
+            case "VP8L" -> {
+                // 无损：签名字节 0x2F 之后依次为 14 位宽减一、14 位高减一
+                int b0 = u8(b, 21), b1 = u8(b, 22), b2 = u8(b, 23), b3 = u8(b, 24);
+                int width = 1 + (((b1 & 0x3F) << 8) | b0);
+                int height = 1 + (((b3 & 0x0F) << 10) | (b2 << 2) | ((b1 & 0xC0) >> 6));
+                return new int[] {width, height};
+            }
+            case "VP8X" -> {
+                // 扩展格式：画布宽高减一，各 24 位
+                return new int[] {1 + le24(b, 24), 1 + le24(b, 27)};
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    // 逐段跳过 JPEG 标记直到帧头（SOFn），途经 APP1 时读取 EXIF 方向
+    private static int[] jpegSize(byte[] b) {
+        int orientation = 1;
+        int pos = 2;
+        while (pos + 3 < b.length) {
+            if (u8(b, pos) != 0xFF) {
+                return null;
+            }
+            int marker = u8(b, pos + 1);
+            if (marker == 0xFF) {
+                // 填充字节
+                pos++;
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                pos += 2;
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                // 图像结束或扫描数据开始之前仍未遇到帧头
+                return null;
+            }
+            int length = be16(b, pos + 2);
+            boolean sof = marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+            if (sof) {
+                int height = be16(b, pos + 5);
+                int width = be16(b, pos + 7);
+                return orientation >= 5 && orientation <= 8 ? new int[] {height, width} : new int[] {width, height};
+            }
+            if (marker == 0xE1) {
+                orientation = exifOrientation(b, pos + 4, length - 2, orientation);
+            }
+            pos += 2 + length;
+        }
+        return null;
+    }
+
+    // 解析 APP1 中 TIFF 结构的 IFD0，取方向标签（0x0112）
+    private static int exifOrientation(byte[] b, int start, int length, int fallback) {
+        if (length < 14 || b[start] != 'E' || b[start + 1] != 'x' || b[start + 2] != 'i' || b[start + 3] != 'f') {
+            return fallback;
+        }
+        try {
+            int tiff = start + 6;
+            boolean little = b[tiff] == 'I';
+            int ifd = tiff + (little ? le32(b, tiff + 4) : be32(b, tiff + 4));
+            int count = little ? le16(b, ifd) : be16(b, ifd);
+            for (int i = 0; i < count; i++) {
+                int entry = ifd + 2 + i * 12;
+                if (entry + 12 > start + length) {
+                    break;
+                }
+                int tag = little ? le16(b, entry) : be16(b, entry);
+                if (tag == 0x0112) {
+                    return little ? le16(b, entry + 8) : be16(b, entry + 8);
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // EXIF 损坏时忽略方向，尺寸仍以帧头为准
+        }
+        return fallback;
+    }
+
+    // 降采样解码后按不透明度加权求平均色，返回 #rrggbb
+    private static String averageColor(byte[] bytes, int[] size) {
+        // 直接使用内存流，避免 ImageIO 默认在临时目录创建缓存文件
+        try (ImageInputStream in = new MemoryCacheImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(Math.max(1, reader.getWidth(0) / SAMPLE_GRID),
+                        Math.max(1, reader.getHeight(0) / SAMPLE_GRID), 0, 0);
+                BufferedImage image = reader.read(0, param);
+                long r = 0, g = 0, bl = 0, weight = 0;
+                for (int y = 0; y < image.getHeight(); y++) {
+                    for (int x = 0; x < image.getWidth(); x++) {
+                        int argb = image.getRGB(x, y);
+                        int alpha = argb >>> 24;
+                        r += (long) ((argb >> 16) & 0xFF) * alpha;
+                        g += (long) ((argb >> 8) & 0xFF) * alpha;
+                        bl += (long) (argb & 0xFF) * alpha;
+                        weight += alpha;
+                    }
+                }
+                if (weight == 0) {
+                    // 全透明图片不设置占位色
+                    return null;
+                }
+                return String.format("#%02x%02x%02x", r / weight, g / weight, bl / weight);
+            } finally {
+                reader.dispose();
+            }
+        } catch (Exception e) {
+            log.debug("计算图片占位色失败，仅保留尺寸 {}x{}: {}", size[0], size[1], e.getMessage());
+            return null;
+        }
+    }
+
+    private static int u8(byte[] b, int i) {
+        return b[i] & 0xFF;
+    }
+
+    private static int be16(byte[] b, int i) {
+        return (u8(b, i) << 8) | u8(b, i + 1);
+    }
+
+    private static int be32(byte[] b, int i) {
+        return (be16(b, i) << 16) | be16(b, i + 2);
+    }
+
+    private static int le16(byte[] b, int i) {
+        return u8(b, i) | (u8(b, i + 1) << 8);
+    }
+
+    private static int le24(byte[] b, int i) {
+        return le16(b, i) | (u8(b, i + 2) << 16);
+    }
+
+    private static int le32(byte[] b, int i) {
+        return le16(b, i) | (le16(b, i + 2) << 16);
+    }
+}
@@ -0,0 +1,147 @@
+package com.xirizhi.plugingithuboss.handler;
+
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Component;
+
+import com.xirizhi.plugingithuboss.config.Constant;
+import com.xirizhi.plugingithuboss.extension.GitHubThemeSettings;
+import com.xirizhi.plugingithuboss.extension.theme.GitHubBasic;
+
+import reactor.core.publisher.Mono;
+import run.halo.app.extension.ConfigMap;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.app.infra.utils.JsonUtils;
+import run.halo.app.theme.ReactivePostContentHandler;
+import run.halo.app.theme.ReactiveSinglePageContentHandler;
+
+/**
+ * 文章/页面内容渲染：为仓库中的图片补充 width/height、占位背景色与原生懒加载，图片加载前即占好版面。
+ * 说明：
+ * - 按 img 的 src（或懒加载使用的 data-src）在 ImageMetaIndex 中查找上传时记录的尺寸
+ * - 已写明 width 的图片保持原样；已有 style 时不覆盖，只补尺寸
+ * - 插件基本设置中关闭 imageSize 后不处理
+ */
+@Component
+public class ImageSizeContentHandler implements ReactivePostContentHandler, ReactiveSinglePageContentHandler {
+
+    private static final Pattern IMG_TAG = Pattern.compile("<img\\b[^>]*>", Pattern.CASE_INSENSITIVE);
+    private static final Map<String, Pattern> ATTRIBUTES = Stream.of("src", "data-src", "width", "style", "loading", "decoding")
+            .collect(Collectors.toMap(Function.identity(), name -> Pattern.compile(
+                    "\\s" + Pattern.quote(name) + "\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s>]+))", Pattern.CASE_INSENSITIVE)));
+
+    private final ReactiveExtensionClient client;
+    private final ImageMetaIndex index;
+
+    public ImageSizeContentHandler(ReactiveExtensionClient client, ImageMetaIndex index) {
+        this.client = client;
+        this.index = index;
+    }
+
+    @Override
+    public Mono<PostContentContext> handle(PostContentContext postContent) {
+        return enabled(postContent.getContent()).map(on -> {
+            if (on) {
+                postContent.setContent(rewrite(postContent.getContent()));
+            }
+            return postContent;
+        });
+    }
+
+    @Override
+    public Mono<SinglePageContentContext> handle(SinglePageContentContext pageContent) {
+        return enabled(pageContent.getContent()).map(on -> {
+            if (on) {
+                pageContent.setContent(rewrite(pageContent.getContent()));
+            }
+            return pageContent;
+        });
+    }
+
+    // 没有图片或索引为空时不读取配置，直接跳过
+    private Mono<Boolean> enabled(String content) {
+        if (content == null || index.isEmpty() || !IMG_TAG.matcher(content).find()) {
+            return Mono.just(false);
+        }
+        return client.fetch(ConfigMap.class, Constant.PLUGIN_GITHUBOSS_CONFIGMAP)
+                .mapNotNull(ConfigMap::getData)
+                .mapNotNull(data -> data.get(GitHubThemeSettings.GitHub_BASIC))
+                .map(json -> !Boolean.FALSE.equals(JsonUtils.jsonToObject(json, GitHubBasic.class).getImageSize()))
+                .onErrorReturn(true)
+                .defaultIfEmpty(true);
+    }
+
+    /**
+     * 为已收录的图片标签补充属性，其余内容原样保留。
+     */
+    String rewrite(String html) {
+        Matcher matcher = IMG_TAG.matcher(html);
+        StringBuilder sb = null;
+        int last = 0;
+        while (matcher.find()) {
+            String tag = matcher.group();
+            String patched = patchTag(tag);
+            // 未收录的图片原样返回同一对象
+            if (patched == tag) {
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(html.length() + 256);
+            }
+            sb.append(html, last, matcher.start()).append(patched);
+            last = matcher.end();
+        }
+        if (sb == null) {
+            return html;
+        }
+        return sb.append(html, last, html.length()).toString();
+    }
+
+    private String patchTag(String tag) {
+        if (attribute(tag, "width") != null) {
+            return tag;
+        }
+        ImageProbe.ImageInfo info = lookup(attribute(tag, "src"));
+        if (info == null) {
+            info = lookup(attribute(tag, "data-src"));
+        }
+        if (info == null) {
+            return tag;
+        }
+        StringBuilder attrs = new StringBuilder(" width=\"").append(info.width())
+                .append("\" height=\"").append(info.height()).append('"');
+        if (info.placeholder() != null && attribute(tag, "style") == null) {
+            attrs.append(" style=\"background-color:").append(info.placeholder()).append('"');
+        }
+        if (attribute(tag, "loading") == null) {
+            attrs.append(" loading=\"lazy\"");
+        }
+        if (attribute(tag, "decoding") == null) {
+            attrs.append(" decoding=\"async\"");
+        }
+        int end = tag.endsWith("/>") ? tag.length() - 2 : tag.length() - 1;
+        // 自闭合写法保留斜杠前的空白
+        while (end > 4 && Character.isWhitespace(tag.charAt(end - 1))) {
+            end--;
+        }
+        return tag.substring(0, end) + attrs + tag.substring(end);
+    }
+
+    private ImageProbe.ImageInfo lookup(String src) {
+        return src == null ? null : index.lookup(src.replace("&amp;", "&"));
+    }
+
+    // 读取属性值（支持单双引号与无引号写法），不存在时返回 null
+    static String attribute(String tag, String name) {
+        Matcher m = ATTRIBUTES.get(name).matcher(tag);
+        if (!m.find()) {
+            return null;
+        }
+        return m.group(1) != null ? m.group(1) : m.group(2) != null ? m.group(2) : m.group(3);
+    }
+}
@@ -6,9 +6,13 @@ import org.thymeleaf.model.IModel;
 import org.thymeleaf.model.IModelFactory;
 import org.thymeleaf.processor.element.IElementModelStructureHandler;
 
+import java.util.List;
+import java.util.Map;
+
 import com.xirizhi.plugingithuboss.config.Constant;
 import com.xirizhi.plugingithuboss.extension.GitHubThemeSettings;
 import com.xirizhi.plugingithuboss.extension.theme.GitHubBasic;
+import com.xirizhi.plugingithuboss.service.CdnFailover;
 
 import reactor.core.Exceptions;
 import reactor.core.publisher.Mono;
@@ -17,13 +21,19 @@ import run.halo.app.extension.ReactiveExtensionClient;
 import run.halo.app.infra.utils.JsonUtils;
 import run.halo.app.theme.dialect.TemplateHeadProcessor;
 
+/**
+ * 向页面注入前端脚本：开启前端访问优化时选择最快的 jsDelivr 节点；有策略配置了多个访问地址提供方时，
+ * 同时注入按优先级排列的提供方列表，图片所在提供方不可用或加载失败时由脚本换到下一个。
+ */
 @Component
 public class ImageSrcHeadProcessor implements TemplateHeadProcessor {
 
     private final ReactiveExtensionClient client;
+    private final CdnFailover cdnFailover;
 
-    public ImageSrcHeadProcessor(ReactiveExtensionClient extensionClient) {
+    public ImageSrcHeadProcessor(ReactiveExtensionClient extensionClient, CdnFailover cdnFailover) {
         this.client = extensionClient;
+        this.cdnFailover = cdnFailover;
     }
 
     @Override
@@ -32,26 +42,33 @@ public class ImageSrcHeadProcessor implements TemplateHeadProcessor {
                 .map(ConfigMap::getData)
                 .map(data -> JsonUtils.jsonToObject(data.get(GitHubThemeSettings.GitHub_BASIC), GitHubBasic.class))
                 .onErrorMap(throwable -> Exceptions.propagate(new RuntimeException("请检查插件主体文本内容配置是否正确：" + throwable.getMessage())))
-                .map(basic -> {
-                    if (basic.getEnableOptimization()) {
-                        final IModelFactory modelFactory = context.getModelFactory();
-                        model.add(modelFactory.createText(ImageSrcScript()));
-                    }
-                    return Mono.empty();
-                }).then();
+                .flatMap(basic -> cdnFailover.routes()
+                        .onErrorReturn(List.of())
+                        .doOnNext(routes -> {
+                            boolean optimize = Boolean.TRUE.equals(basic.getEnableOptimization());
+                            if (optimize || !routes.isEmpty()) {
+                                final IModelFactory modelFactory = context.getModelFactory();
+                                model.add(modelFactory.createText(ImageSrcScript(optimize, routes)));
+                            }
+                        }))
+                .then();
     }
 
     /**
      * 懒加载 js
      *
-     * @param config 内容配置
+     * @param optimize 是否选择最快的 jsDelivr 节点
+     * @param routes 各策略的提供方列表
      * @return
      */
-    private String ImageSrcScript() {
+    private String ImageSrcScript(boolean optimize, List<CdnFailover.PolicyRoutes> routes) {
+        // 配置中的地址来自策略设置，转义 < 避免提前结束 script 标签
+        String config = JsonUtils.objectToJson(Map.of("optimize", optimize, "policies", routes)).replace("<", "\\u003c");
         return """
                 <!-- github 使用 jsdelivr 路径优化 start -->
-                <script src="/plugins/PluginGitHubOSS/assets/static/plugin-githuboss.js?version=1.0.0"></script>
+                <script>window.githubossCdn = %s;</script>
+                <script src="/plugins/PluginGitHubOSS/assets/static/plugin-githuboss.js?version=1.1.0"></script>
                 <!-- PluginLazyLoad end -->
-               """;
+               """.formatted(config);
     }
 }
\ No newline at end of file
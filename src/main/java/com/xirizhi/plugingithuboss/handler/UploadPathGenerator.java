@@ -0,0 +1,192 @@
+package com.xirizhi.plugingithuboss.handler;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Component;
+
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.service.GitHubService;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * 上传路径生成器：无全局锁，按目录缓存仓库已有文件名，冲突时追加单调递增序号。
+ * 说明：
+ * - 文件名格式与原逻辑一致：{原文件名}-{时间}.{扩展名}，目录由 namePrefix 决定
+ * - 进程内占位使用并发集合，占位与释放均无锁；同一前缀冲突时使用 -1、-2… 序号，不再逐秒递增时间
+ * - 每个目录的已有文件名只在首次或过期后查询一次（并发请求共享同一次查询），上传成功后追加到本地视图，
+ *   避免与仓库中的旧文件重名（仓库拒绝覆盖，重名只能换名重试）；GitHub 读取目录 tree，目录超过 1000 个文件时也完整
+ * - 目录查询失败时本次生成失败，不在空视图上生成文件名
+ */
+@Slf4j
+@Component
+public class UploadPathGenerator {
+
+    // 格式化器线程安全，全部预先创建
+    private static final Map<String, DateTimeFormatter> FOLDER_FORMATTERS = Map.of(
+            "yyyy", DateTimeFormatter.ofPattern("yyyy"),
+            "yyyyMM", DateTimeFormatter.ofPattern("yyyyMM"),
+            "yyyyMMdd", DateTimeFormatter.ofPattern("yyyyMMdd"));
+    private static final Map<String, DateTimeFormatter> TIME_FORMATTERS = Map.of(
+            "", DateTimeFormatter.ofPattern("yyyyMMddHHmmss"),
+            "yyyy", DateTimeFormatter.ofPattern("MMddHHmmss"),
+            "yyyyMM", DateTimeFormatter.ofPattern("ddHHmmss"),
+            "yyyyMMdd", DateTimeFormatter.ofPattern("ddHHmmss"));
+
+    private static final int MAX_ATTEMPTS = 1000;
+    private static final int MAX_COUNTERS = 10_000;
+    private static final Duration VIEW_TTL = Duration.ofMinutes(5);
+
+    public record PathBuildResult(String filePath, String filename, String ext) {}
+
+    // 目录内已有文件名的本地视图
+    private record DirView(Mono<Set<String>> names, long loadedAt) {}
+
+    private final GitHubService gitHubService;
+    private final Set<String> reserved = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, AtomicInteger> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, DirView> views = new ConcurrentHashMap<>();
+
+    public UploadPathGenerator(GitHubService gitHubService) {
+        this.gitHubService = gitHubService;
+    }
+
+    /**
+     * 生成并占位唯一路径：先取目录的已有文件名视图，再在本地完成冲突检测与占位。
+     */
+    public Mono<PathBuildResult> reserve(GithubOssPolicySettings settings, String originalFilename) {
+        var now = Instant.now().atZone(ZoneId.systemDefault());
+        String dir = directory(settings, now);
+        return existingNames(settings, dir)
+                .map(existing -> reserve(settings, originalFilename, now, existing));
+    }
+
+    /**
+     * 同步占位：existing 为目录中已存在的文件名集合。
+     */
+    public PathBuildResult reserve(GithubOssPolicySettings settings, String originalFilename,
+                                   ZonedDateTime now, Set<String> existing) {
+        final String ext = extractExt(originalFilename);
+        final String trimmedOriginal = Optional.ofNullable(originalFilename).map(String::trim).orElse("");
+        final String baseOriginal = trimmedOriginal.isBlank()
+                ? ""
+                : (ext != null && trimmedOriginal.lastIndexOf('.') >= 0
+                    ? trimmedOriginal.substring(0, trimmedOriginal.lastIndexOf('.'))
+                    : trimmedOriginal);
+        final String timePrefix = TIME_FORMATTERS.get(prefixKey(settings)).format(now);
+        final String stem = !baseOriginal.isBlank() ? (baseOriginal + "-" + timePrefix) : timePrefix;
+        final String suffix = ext != null ? ("." + ext) : "";
+        final String dir = directory(settings, now);
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            String filename = attempt == 0 ? stem + suffix : stem + "-" + nextCounter(dir + "/" + stem) + suffix;
+            if (existing.contains(filename)) {
+                continue;
+            }
+            String filePath = join(dir, filename);
+            if (reserved.add(filePath)) {
+                return new PathBuildResult(filePath, filename, ext);
+            }
+        }
+        throw new IllegalStateException("无法生成唯一文件名: 冲突过多，请稍后重试");
+    }
+
+    /**
+     * 上传结束后释放占位。
+     */
+    public void release(String filePath) {
+        reserved.remove(filePath);
+    }
+
+    /**
+     * 上传成功后将文件名加入目录视图，后续生成无需重新查询仓库。
+     */
+    public void markExisting(GithubOssPolicySettings settings, String filePath) {
+        int i = filePath.lastIndexOf('/');
+        String dir = i >= 0 ? filePath.substring(0, i) : "";
+        DirView view = views.get(viewKey(settings, dir));
+        if (view != null) {
+            view.names().subscribe(names -> names.add(filePath.substring(i + 1)));
+        }
+    }
+
+    /**
+     * 预先加载当前上传目录的已有文件名视图，返回文件数。
+     */
+    public Mono<Integer> preload(GithubOssPolicySettings settings) {
+        return existingNames(settings, directory(settings, Instant.now().atZone(ZoneId.systemDefault()))).map(Set::size);
+    }
+
+    private Mono<Set<String>> existingNames(GithubOssPolicySettings settings, String dir) {
+        String key = viewKey(settings, dir);
+        long now = System.currentTimeMillis();
+        DirView view = views.compute(key, (k, v) -> {
+            if (v != null && now - v.loadedAt() < VIEW_TTL.toMillis()) {
+                return v;
+            }
+            // 并发上传共享同一次查询；查询失败不缓存，本次上传随之失败：不在空视图上生成文件名
+            Mono<Set<String>> names = gitHubService.listDirectoryNames(settings, dir)
+                    .map(list -> {
+                        Set<String> set = ConcurrentHashMap.<String>newKeySet(list.size());
+                        set.addAll(list);
+                        return set;
+                    })
+                    .defaultIfEmpty(ConcurrentHashMap.newKeySet())
+                    .doOnError(e -> {
+                        log.warn("查询目录已有文件失败，无法生成文件名 dir={}: {}", dir, e.getMessage());
+                        views.remove(k);
+                    })
+                    .cache();
+            return new DirView(names, now);
+        });
+        return view.names();
+    }
+
+    private int nextCounter(String key) {
+        if (counters.size() > MAX_COUNTERS) {
+            // 序号只用于减少探测次数，唯一性由占位集合与目录视图保证，可安全清空
+            counters.clear();
+        }
+        return counters.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private static String prefixKey(GithubOssPolicySettings settings) {
+        String namePrefix = settings.getNamePrefix();
+        return namePrefix != null && FOLDER_FORMATTERS.containsKey(namePrefix) ? namePrefix : "";
+    }
+
+    private static String directory(GithubOssPolicySettings settings, ZonedDateTime now) {
+        String prefix = prefixKey(settings);
+        String folderDir = prefix.isEmpty() ? "" : FOLDER_FORMATTERS.get(prefix).format(now);
+        String tempDir = Paths.get(Optional.ofNullable(settings.getPath()).orElse("").trim(), folderDir)
+                .normalize()
+                .toString();
+        return tempDir.startsWith("/") ? tempDir.substring(1) : tempDir;
+    }
+
+    private static String join(String dir, String filename) {
+        return dir.isEmpty() ? filename : dir + "/" + filename;
+    }
+
+    private static String viewKey(GithubOssPolicySettings settings, String dir) {
+        return settings.getOwner() + "/" + settings.getRepoName() + "@" + settings.getBranch() + ":" + dir;
+    }
+
+    private static String extractExt(String filename) {
+        if (filename == null) return null;
+        int i = filename.lastIndexOf('.');
+        if (i < 0) return null;
+        return filename.substring(i + 1);
+    }
+}
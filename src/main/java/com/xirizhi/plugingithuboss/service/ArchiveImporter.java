@@ -0,0 +1,257 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+
+import com.xirizhi.plugingithuboss.config.Constant;
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.handler.GithubAttachmentHandler;
+import com.xirizhi.plugingithuboss.handler.ImageProbe;
+import com.xirizhi.plugingithuboss.handler.UploadPathGenerator;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.core.extension.attachment.Policy;
+import run.halo.app.extension.ReactiveExtensionClient;
+
+/**
+ * 压缩包导入：上传 zip，其中的文件写入指定目录并以一个提交落库，再批量创建附件。
+ * 说明：
+ * - 请求体边接收边解压，不缓存整个压缩包；同时驻留内存的文件数受 BLOB_CONCURRENCY 限制
+ * - 每个文件先上传 blob（最多 BLOB_CONCURRENCY 个并发），全部成功后以一个 tree 提交；任一文件失败则不产生提交
+ * - 仅支持 Git Data API 的平台（GitHub、GitHub Enterprise），且分支需已有提交
+ * - 目标路径已有附件时更新其 sha、提交 sha 与大小，否则新建附件（最多 CREATE_CONCURRENCY 个并发）
+ * - 跳过目录、隐藏文件与 __MACOSX 元数据；包含 .. 或绝对路径的条目视为非法压缩包
+ */
+@Slf4j
+@Component
+public class ArchiveImporter {
+
+    static final int BLOB_CONCURRENCY = 8;
+    private static final int CREATE_CONCURRENCY = 8;
+    static final int MAX_ENTRIES = 5000;
+    // GitHub 拒绝超过 100MB 的 blob
+    private static final long MAX_ENTRY_BYTES = 100L * 1024 * 1024;
+    private static final long MAX_TOTAL_BYTES = 1024L * 1024 * 1024;
+    private static final int MAX_ERRORS = 50;
+
+    /**
+     * 导入结果：files 为提交的文件数，created/updated/failed 为附件的新建、更新与失败数。
+     */
+    public record ArchiveResult(String policyName, String folder, String commitSha, int files,
+                                int created, int updated, int failed, List<String> errors) {}
+
+    // 解压出的单个文件，path 为仓库内完整路径
+    record Entry(String path, byte[] data, ImageProbe.ImageInfo image) {}
+
+    private record Blob(String path, String sha, long size, ImageProbe.ImageInfo image) {}
+
+    // 单次解压的状态：已见路径（拒绝重名）与累计解压字节数
+    private static final class ReadState {
+        private final Set<String> seen = new HashSet<>();
+        private long total;
+    }
+
+    private final ReactiveExtensionClient client;
+    private final GitHubService gitHubService;
+    private final GithubAttachmentHandler attachmentHandler;
+    private final UploadPathGenerator pathGenerator;
+
+    public ArchiveImporter(ReactiveExtensionClient client, GitHubService gitHubService,
+                           GithubAttachmentHandler attachmentHandler, UploadPathGenerator pathGenerator) {
+        this.client = client;
+        this.gitHubService = gitHubService;
+        this.attachmentHandler = attachmentHandler;
+        this.pathGenerator = pathGenerator;
+    }
+
+    /**
+     * 导入压缩包；folder 为空时使用策略的上传目录，压缩包内的子目录结构保留。
+     */
+    public Mono<ArchiveResult> importArchive(String policyName, String folder, String filename, Flux<DataBuffer> content) {
+        if (policyName == null || policyName.isBlank()) {
+            return Mono.error(new IllegalArgumentException("policyName 不能为空"));
+        }
+        return client.fetch(Policy.class, policyName)
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("存储策略不存在: " + policyName)))
+                .flatMap(policy -> PluginState.settingsOf(client, policy).flatMap(settings -> {
+                    String root = RepoReconciler.normalizeRoot(folder == null || folder.isBlank() ? settings.getPath() : folder);
+                    return entries(content, root, entryLimit(settings))
+                            .flatMap(entry -> gitHubService.createBlob(settings, entry.data())
+                                    .map(sha -> new Blob(entry.path(), sha, entry.data().length, entry.image())), BLOB_CONCURRENCY)
+                            .collectMap(Blob::path, blob -> blob, LinkedHashMap::new)
+                            .flatMap(blobs -> {
+                                if (blobs.isEmpty()) {
+                                    return Mono.error(new IllegalArgumentException("压缩包中没有可导入的文件"));
+                                }
+                                Map<String, String> tree = new LinkedHashMap<>();
+                                blobs.forEach((path, blob) -> tree.put(path, blob.sha()));
+                                String message = "Import " + blobs.size() + " files from " + (filename == null ? "archive" : filename) + " via Halo";
+                                return gitHubService.commitBlobs(settings, tree, message)
+                                        .flatMap(commitSha -> link(policy, settings, root, commitSha, blobs.values()));
+                            });
+                }));
+    }
+
+    /**
+     * 边接收边解压：阻塞读取在 blockingScheduler 上进行，每次下游请求只解压一个文件。
+     */
+    static Flux<Entry> entries(Flux<DataBuffer> content, String root, long maxEntryBytes) {
+        return Flux.using(() -> new ZipInputStream(DataBufferUtils.subscriberInputStream(content, 4)),
+                        zip -> Flux.<Entry, ReadState>generate(ReadState::new, (state, sink) -> {
+                            try {
+                                Entry entry = nextEntry(zip, state, root, maxEntryBytes);
+                                if (entry == null) {
+                                    sink.complete();
+                                } else {
+                                    sink.next(entry);
+                                }
+                            } catch (IOException e) {
+                                sink.error(new IllegalArgumentException("压缩包读取失败: " + e.getMessage(), e));
+                            } catch (IllegalArgumentException e) {
+                                sink.error(e);
+                            }
+                            return state;
+                        }),
+                        ArchiveImporter::closeQuietly)
+                .subscribeOn(GitHubService.blockingScheduler());
+    }
+
+    private static Entry nextEntry(ZipInputStream zip, ReadState state, String root, long maxEntryBytes) throws IOException {
+        ZipEntry zipEntry;
+        while ((zipEntry = zip.getNextEntry()) != null) {
+            String name = entryPath(zipEntry.getName());
+            if (zipEntry.isDirectory() || name == null) {
+                continue;
+            }
+            String path = root.isEmpty() ? name : root + "/" + name;
+            if (!state.seen.add(path)) {
+                throw new IllegalArgumentException("压缩包内文件重复: " + name);
+            }
+            if (state.seen.size() > MAX_ENTRIES) {
+                throw new IllegalArgumentException("压缩包文件数超过上限 " + MAX_ENTRIES);
+            }
+            // 以实际解压出的字节数判断，不信任条目头中声明的大小
+            byte[] data = zip.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, maxEntryBytes + 1));
+            if (data.length > maxEntryBytes) {
+                throw new IllegalArgumentException("文件超过大小限制 " + (maxEntryBytes / 1024 / 1024) + "MB: " + name);
+            }
+            state.total += data.length;
+            if (state.total > MAX_TOTAL_BYTES) {
+                throw new IllegalArgumentException("压缩包解压后总大小超过上限 " + (MAX_TOTAL_BYTES / 1024 / 1024) + "MB");
+            }
+            return new Entry(path, data, ImageProbe.probe(data));
+        }
+        return null;
+    }
+
+    /**
+     * 规范化条目名：统一分隔符并去掉 ./ 与空段；隐藏文件与 __MACOSX 返回 null（跳过），.. 与绝对路径拒绝。
+     */
+    static String entryPath(String name) {
+        String normalized = name.replace('\\', '/');
+        if (normalized.startsWith("/") || normalized.matches("^[A-Za-z]:.*")) {
+            throw new IllegalArgumentException("压缩包包含绝对路径: " + name);
+        }
+        List<String> segments = new ArrayList<>();
+        for (String segment : normalized.split("/")) {
+            if (segment.isEmpty() || ".".equals(segment)) {
+                continue;
+            }
+            if ("..".equals(segment)) {
+                throw new IllegalArgumentException("压缩包包含非法路径: " + name);
+            }
+            if (segment.startsWith(".") || "__MACOSX".equals(segment)) {
+                return null;
+            }
+            segments.add(segment);
+        }
+        return segments.isEmpty() ? null : String.join("/", segments);
+    }
+
+    private Mono<ArchiveResult> link(Policy policy, GithubOssPolicySettings settings, String root, String commitSha,
+                                     Collection<Blob> blobs) {
+        String policyName = policy.getMetadata().getName();
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger updated = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<String> errors = new CopyOnWriteArrayList<>();
+        return linkedAttachments(policyName)
+                .flatMap(linked -> Flux.fromIterable(blobs)
+                        .flatMap(blob -> {
+                            Attachment fresh = attachmentHandler.buildAttachment(blob.path(), blob.sha(), commitSha, blob.size(), blob.image(), policy);
+                            Attachment existing = linked.get(blob.path());
+                            Mono<Attachment> write = existing == null
+                                    ? client.create(fresh).doOnSuccess(a -> created.incrementAndGet())
+                                    : client.update(refresh(existing, fresh)).doOnSuccess(a -> updated.incrementAndGet());
+                            return write
+                                    .doOnSuccess(a -> pathGenerator.markExisting(settings, blob.path()))
+                                    .onErrorResume(e -> {
+                                        failed.incrementAndGet();
+                                        if (errors.size() < MAX_ERRORS) {
+                                            errors.add(blob.path() + ": " + e.getMessage());
+                                        }
+                                        log.error("压缩包导入创建附件失败 policyName={}, path={}", policyName, blob.path(), e);
+                                        return Mono.empty();
+                                    });
+                        }, CREATE_CONCURRENCY)
+                        .then(Mono.fromSupplier(() -> {
+                            log.info("压缩包导入完成 policyName={}, 目录 {}, 提交 {}, 文件 {}, 新建 {}, 更新 {}, 失败 {}", policyName,
+                                    root, commitSha, blobs.size(), created.get(), updated.get(), failed.get());
+                            return new ArchiveResult(policyName, root, commitSha, blobs.size(),
+                                    created.get(), updated.get(), failed.get(), List.copyOf(errors));
+                        })));
+    }
+
+    // 覆盖写入后以新内容的注解与大小更新已有附件，旧的图片尺寸与占位色一并清除
+    private static Attachment refresh(Attachment existing, Attachment fresh) {
+        Map<String, String> annotations = existing.getMetadata().getAnnotations();
+        annotations.remove(Constant.ANNOTATION_WIDTH);
+        annotations.remove(Constant.ANNOTATION_HEIGHT);
+        annotations.remove(Constant.ANNOTATION_PLACEHOLDER);
+        annotations.putAll(fresh.getMetadata().getAnnotations());
+        if (existing.getSpec() != null) {
+            existing.getSpec().setSize(fresh.getSpec().getSize());
+        }
+        return existing;
+    }
+
+    private Mono<Map<String, Attachment>> linkedAttachments(String policyName) {
+        return AttachmentIndex.listByPolicy(client, policyName)
+                .filter(a -> AttachmentIndex.pathOf(a) != null)
+                .collectMap(AttachmentIndex::pathOf, a -> a);
+    }
+
+    // 单文件上限沿用策略的上传大小限制（minSizeMB 实为最大值），不超过 GitHub 的 blob 上限
+    private static long entryLimit(GithubOssPolicySettings settings) {
+        Integer limitMB = settings.getMinSizeMB();
+        if (limitMB == null || limitMB <= 0) {
+            return MAX_ENTRY_BYTES;
+        }
+        return Math.min(MAX_ENTRY_BYTES, limitMB * 1024L * 1024L);
+    }
+
+    private static void closeQuietly(ZipInputStream zip) {
+        try {
+            zip.close();
+        } catch (IOException ignored) {
+            // 关闭时忽略
+        }
+    }
+}
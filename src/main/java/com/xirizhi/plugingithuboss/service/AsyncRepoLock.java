@@ -0,0 +1,47 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * 按 key（仓库+分支）串行执行响应式操作的非阻塞锁，替代阻塞线程的 ReentrantLock。
+ * 说明：
+ * - 每次加锁把自己的释放信号放到队尾，等待前一个持有者释放，天然 FIFO（公平）
+ * - 等待期间不占用线程；持有期间被取消或出错都会释放
+ * - 等待中被取消时，释放顺延到前一个持有者释放之后，保证后继不会与前一个持有者同时进入
+ */
+final class AsyncRepoLock {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+    <T> Mono<T> withLock(String key, GitHubMetrics.StageRecorder stages, Supplier<Mono<T>> body) {
+        return Mono.defer(() -> {
+            long t0 = System.nanoTime();
+            CompletableFuture<Void> release = new CompletableFuture<>();
+            CompletableFuture<Void> previous = tails.put(key, release);
+            AtomicBoolean acquired = new AtomicBoolean();
+            Runnable unlock = () -> {
+                release.complete(null);
+                tails.remove(key, release);
+            };
+            Mono<Void> acquire = previous == null ? Mono.empty() : Mono.fromFuture(previous, true);
+            return acquire
+                    .then(Mono.defer(() -> {
+                        acquired.set(true);
+                        stages.record("repo_lock_wait", t0);
+                        return body.get();
+                    }))
+                    .doFinally(signal -> {
+                        if (acquired.get() || previous == null) {
+                            unlock.run();
+                        } else {
+                            previous.whenComplete((v, e) -> unlock.run());
+                        }
+                    });
+        });
+    }
+}
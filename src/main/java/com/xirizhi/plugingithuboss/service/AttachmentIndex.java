@@ -0,0 +1,214 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.extension.ListOptions;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.app.extension.controller.Controller;
+import run.halo.app.extension.controller.ControllerBuilder;
+import run.halo.app.extension.controller.Reconciler;
+import run.halo.app.extension.index.query.QueryFactory;
+import run.halo.app.extension.router.selector.FieldSelector;
+
+/**
+ * 按策略缓存 Halo 中已关联的附件（附件名 -> sha/path），目录列表与关联接口据此判断文件是否已关联，不再每次全量扫描附件。
+ * 说明：
+ * - 每个策略首次使用（或插件启动预热）时查询一次，并发请求共享同一次查询；查询失败不缓存
+ * - 之后由 Attachment 的 Reconciler 增量维护：附件创建、修改、迁移到其他策略或删除时更新对应项
+ * - 加载过程中收到变更的附件以变更为准，不会被加载结果覆盖；无法读取变更的附件时丢弃全部缓存，下次使用时重新加载
+ * - 每个策略的索引有版本号，内容变化或重新加载时改变，接口据此生成 ETag
+ */
+@Slf4j
+@Component
+public class AttachmentIndex implements Reconciler<Reconciler.Request> {
+
+    private static final Duration FETCH_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * 已关联附件的仓库 sha 与路径；未记录 sha 的旧附件 sha 为空。
+     */
+    public record Linked(String sha, String path) {}
+
+    private static final class Index {
+        final Map<String, Linked> byName = new ConcurrentHashMap<>();
+        // 加载期间发生变更的附件名，加载结果不覆盖这些项
+        final Set<String> touched = ConcurrentHashMap.newKeySet();
+        volatile boolean loaded;
+        volatile long version;
+        Mono<Index> ready;
+    }
+
+    private final ReactiveExtensionClient client;
+    private final Map<String, Index> indexes = new ConcurrentHashMap<>();
+    // 版本号在插件重启后从头计数，加上实例标识避免与重启前的版本相同
+    private final String instance = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final AtomicLong changes = new AtomicLong();
+
+    public AttachmentIndex(ReactiveExtensionClient client) {
+        this.client = client;
+    }
+
+    /**
+     * 策略下已关联附件的 sha+path 组合（与 /attachments/haloList 的 key 相同）。
+     */
+    public Mono<Set<String>> keys(String policyName) {
+        return index(policyName).map(index -> index.byName.values().stream()
+                .filter(linked -> linked.sha() != null)
+                .map(linked -> linked.sha() + linked.path())
+                .collect(Collectors.toSet()));
+    }
+
+    /**
+     * 策略索引的当前版本，索引内容变化（包括丢弃后重新加载）后不同。
+     */
+    public Mono<String> version(String policyName) {
+        return index(policyName).map(index -> instance + "-" + index.version);
+    }
+
+    /**
+     * 预先加载策略的索引，返回已关联附件数。
+     */
+    public Mono<Integer> preload(String policyName) {
+        return index(policyName).map(index -> index.byName.size());
+    }
+
+    /**
+     * 记录刚创建或更新的附件，不必等待 Reconciler。
+     */
+    public void record(Attachment attachment) {
+        String name = attachment.getMetadata().getName();
+        String policyName = attachment.getSpec() == null ? null : attachment.getSpec().getPolicyName();
+        Index target = policyName == null ? null : indexes.get(policyName);
+        Linked linked = linked(attachment);
+        boolean keep = target != null && linked != null && attachment.getMetadata().getDeletionTimestamp() == null;
+        indexes.values().stream().filter(index -> !keep || index != target).forEach(index -> remove(index, name));
+        if (keep) {
+            if (!target.loaded) {
+                target.touched.add(name);
+            }
+            // 与已记录的相同时（附件其他字段变化）版本不变
+            if (!linked.equals(target.byName.put(name, linked))) {
+                target.version = changes.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 策略下的全部附件（含正在删除的），按 sort 排序。
+     */
+    public static Flux<Attachment> listByPolicy(ReactiveExtensionClient client, String policyName, Sort sort) {
+        ListOptions listOptions = new ListOptions();
+        listOptions.setFieldSelector(FieldSelector.of(QueryFactory.equal("spec.policyName", policyName)));
+        return client.listAll(Attachment.class, listOptions, sort);
+    }
+
+    public static Flux<Attachment> listByPolicy(ReactiveExtensionClient client, String policyName) {
+        return listByPolicy(client, policyName, Sort.unsorted());
+    }
+
+    /**
+     * 策略下已关联附件的仓库路径，返回可修改的并发集合，调用方可在其中登记新占用的路径。
+     */
+    public static Mono<Set<String>> linkedPaths(ReactiveExtensionClient client, String policyName) {
+        return listByPolicy(client, policyName)
+                .mapNotNull(AttachmentIndex::pathOf)
+                .collect(Collectors.toCollection(ConcurrentHashMap::newKeySet));
+    }
+
+    /**
+     * 附件在仓库中的路径（path 注解），未关联仓库文件时为空。
+     */
+    public static String pathOf(Attachment attachment) {
+        Map<String, String> annotations = attachment.getMetadata().getAnnotations();
+        return annotations == null ? null : annotations.get("path");
+    }
+
+    /**
+     * 丢弃全部索引。
+     */
+    public void clear() {
+        indexes.clear();
+    }
+
+    @Override
+    public Result reconcile(Request request) {
+        if (indexes.isEmpty()) {
+            return Result.doNotRetry();
+        }
+        try {
+            Optional<Attachment> attachment = client.fetch(Attachment.class, request.name()).blockOptional(FETCH_TIMEOUT);
+            if (attachment.isPresent()) {
+                record(attachment.get());
+            } else {
+                indexes.values().forEach(index -> remove(index, request.name()));
+            }
+        } catch (RuntimeException e) {
+            log.warn("读取附件 {} 失败，丢弃关联索引: {}", request.name(), e.getMessage());
+            clear();
+        }
+        return Result.doNotRetry();
+    }
+
+    @Override
+    public Controller setupWith(ControllerBuilder builder) {
+        // 启动时不必逐个同步全部附件，索引在首次使用时整体加载
+        return builder.extension(new Attachment()).syncAllOnStart(false).build();
+    }
+
+    private Mono<Index> index(String policyName) {
+        Index index = indexes.computeIfAbsent(policyName, name -> {
+            Index created = new Index();
+            created.version = changes.incrementAndGet();
+            created.ready = load(name, created).cache();
+            return created;
+        });
+        return index.ready;
+    }
+
+    private Mono<Index> load(String policyName, Index index) {
+        return listByPolicy(client, policyName)
+                .filter(attachment -> attachment.getMetadata().getDeletionTimestamp() == null)
+                .doOnNext(attachment -> {
+                    String name = attachment.getMetadata().getName();
+                    Linked linked = linked(attachment);
+                    if (linked != null && !index.touched.contains(name)) {
+                        index.byName.putIfAbsent(name, linked);
+                    }
+                })
+                .then(Mono.fromSupplier(() -> {
+                    index.loaded = true;
+                    index.touched.clear();
+                    log.debug("存储策略 {} 的附件索引已加载，共 {} 项", policyName, index.byName.size());
+                    return index;
+                }))
+                .doOnError(e -> indexes.remove(policyName, index));
+    }
+
+    private void remove(Index index, String name) {
+        if (!index.loaded) {
+            index.touched.add(name);
+        }
+        if (index.byName.remove(name) != null) {
+            index.version = changes.incrementAndGet();
+        }
+    }
+
+    private static Linked linked(Attachment attachment) {
+        String path = pathOf(attachment);
+        return path == null ? null : new Linked(attachment.getMetadata().getAnnotations().get("sha"), path);
+    }
+}
@@ -0,0 +1,224 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Component;
+
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.handler.GithubAttachmentHandler;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import run.halo.app.core.extension.attachment.Policy;
+import run.halo.app.extension.ReactiveExtensionClient;
+
+/**
+ * 服务端批量导入：遍历仓库目录树，为尚未关联的文件批量创建附件，不需要前端逐个目录选择提交。
+ * 说明：
+ * - 通过 Git Data API 按层读取目录（见 {@link GitHubService#walkTree}），每读完一层即开始创建该层的附件
+ * - 附件创建最多 CREATE_CONCURRENCY 个并发；已有附件的路径（任意 sha）跳过，不会重复关联
+ * - 任务在内存中执行，通过任务 id 轮询进度；插件重启后进行中的任务终止，重新发起即可（已导入的文件会被跳过）
+ * - 同一存储策略同时只允许一个导入任务
+ */
+@Slf4j
+@Component
+public class BulkImporter {
+
+    public static final String STATE_RUNNING = "RUNNING";
+    public static final String STATE_SUCCEEDED = "SUCCEEDED";
+    public static final String STATE_FAILED = "FAILED";
+    public static final String STATE_CANCELLED = "CANCELLED";
+
+    private static final int CREATE_CONCURRENCY = 8;
+    private static final int MAX_ERRORS = 50;
+    private static final int MAX_FINISHED_JOBS = 20;
+
+    /**
+     * 导入请求；exts 为逗号分隔的扩展名，minSize/maxSize 为字节数，均可为空。
+     */
+    public record ImportRequest(String policyName, String path, String exts, Long minSize, Long maxSize) {}
+
+    @Data
+    public static class ImportJob {
+        private String id;
+        private String policyName;
+        private String rootPath;
+        private volatile String state;
+        private long startedAt;
+        private volatile long finishedAt;
+        private final AtomicInteger dirsScanned = new AtomicInteger();
+        private final AtomicInteger filesFound = new AtomicInteger();
+        private final AtomicInteger filesMatched = new AtomicInteger();
+        private final AtomicInteger skippedLinked = new AtomicInteger();
+        private final AtomicInteger created = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        // 失败明细最多保留 MAX_ERRORS 条
+        private final List<String> errors = new CopyOnWriteArrayList<>();
+        private volatile String error;
+    }
+
+    private final ReactiveExtensionClient client;
+    private final GitHubService gitHubService;
+    private final GithubAttachmentHandler attachmentHandler;
+
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Disposable> runningJobs = new ConcurrentHashMap<>();
+    private final Set<String> busyPolicies = ConcurrentHashMap.newKeySet();
+
+    public BulkImporter(ReactiveExtensionClient client, GitHubService gitHubService, GithubAttachmentHandler attachmentHandler) {
+        this.client = client;
+        this.gitHubService = gitHubService;
+        this.attachmentHandler = attachmentHandler;
+    }
+
+    /**
+     * 发起导入并立即返回任务；path 为空时使用策略的上传目录。
+     */
+    public Mono<ImportJob> start(ImportRequest request) {
+        if (request == null || request.policyName() == null || request.policyName().isBlank()) {
+            return Mono.error(new IllegalArgumentException("policyName 不能为空"));
+        }
+        String policyName = request.policyName();
+        if (!busyPolicies.add(policyName)) {
+            return Mono.error(new IllegalStateException("存储策略 " + policyName + " 已有导入任务在进行"));
+        }
+        return client.fetch(Policy.class, policyName)
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("存储策略不存在: " + policyName)))
+                .flatMap(policy -> PluginState.settingsOf(client, policy).map(settings -> {
+                    String root = RepoReconciler.normalizeRoot(request.path() == null || request.path().isBlank()
+                            ? settings.getPath() : request.path());
+                    ImportJob job = new ImportJob();
+                    job.setId(UUID.randomUUID().toString());
+                    job.setPolicyName(policyName);
+                    job.setRootPath(root);
+                    job.setState(STATE_RUNNING);
+                    job.setStartedAt(System.currentTimeMillis());
+                    jobs.put(job.getId(), job);
+                    evictFinished();
+                    Disposable running = run(policy, settings, root, request, job)
+                            .doFinally(signal -> {
+                                runningJobs.remove(job.getId());
+                                busyPolicies.remove(policyName);
+                                job.setFinishedAt(System.currentTimeMillis());
+                            })
+                            .subscribe();
+                    runningJobs.put(job.getId(), running);
+                    if (running.isDisposed()) {
+                        runningJobs.remove(job.getId());
+                    }
+                    return job;
+                }))
+                .doOnError(e -> busyPolicies.remove(policyName));
+    }
+
+    public Mono<ImportJob> get(String jobId) {
+        return Mono.justOrEmpty(jobs.get(jobId));
+    }
+
+    /**
+     * 最近的任务，按开始时间倒序。
+     */
+    public List<ImportJob> list() {
+        return jobs.values().stream().sorted(Comparator.comparingLong(ImportJob::getStartedAt).reversed()).toList();
+    }
+
+    /**
+     * 取消进行中的任务：停止遍历与新的创建，已创建的附件保留。
+     */
+    public Mono<ImportJob> cancel(String jobId) {
+        return get(jobId).doOnNext(job -> {
+            Disposable running = runningJobs.remove(jobId);
+            if (running != null && STATE_RUNNING.equals(job.getState())) {
+                job.setState(STATE_CANCELLED);
+                job.setFinishedAt(System.currentTimeMillis());
+                running.dispose();
+                log.info("导入任务已取消 id={}, 已创建 {}", jobId, job.getCreated().get());
+            }
+        });
+    }
+
+    private Mono<Void> run(Policy policy, GithubOssPolicySettings settings, String root, ImportRequest request, ImportJob job) {
+        Set<String> exts = parseExts(request.exts());
+        return AttachmentIndex.linkedPaths(client, policy.getMetadata().getName())
+                .flatMap(linked -> gitHubService.resolveTreeSha(settings, root)
+                        .switchIfEmpty(Mono.error(() -> new IllegalStateException("仓库目录不存在: " + (root.isEmpty() ? "/" : root))))
+                        .flatMapMany(sha -> gitHubService.walkTree(settings, root, sha, () -> job.getDirsScanned().incrementAndGet()))
+                        .filter(file -> {
+                            job.getFilesFound().incrementAndGet();
+                            if (!matches(file, exts, request.minSize(), request.maxSize())) {
+                                return false;
+                            }
+                            job.getFilesMatched().incrementAndGet();
+                            if (!linked.add(file.path())) {
+                                job.getSkippedLinked().incrementAndGet();
+                                return false;
+                            }
+                            return true;
+                        })
+                        .flatMap(file -> client.create(attachmentHandler.buildAttachment(file.path(), file.sha(), file.size(), policy))
+                                .doOnSuccess(a -> job.getCreated().incrementAndGet())
+                                .onErrorResume(e -> {
+                                    job.getFailed().incrementAndGet();
+                                    if (job.getErrors().size() < MAX_ERRORS) {
+                                        job.getErrors().add(file.path() + ": " + e.getMessage());
+                                    }
+                                    return Mono.empty();
+                                }), CREATE_CONCURRENCY)
+                        .then())
+                .doOnSuccess(v -> {
+                    job.setState(STATE_SUCCEEDED);
+                    log.info("导入任务完成 id={}, 目录 {}, 匹配 {}, 新建 {}, 跳过 {}, 失败 {}", job.getId(), job.getDirsScanned().get(),
+                            job.getFilesMatched().get(), job.getCreated().get(), job.getSkippedLinked().get(), job.getFailed().get());
+                })
+                .onErrorResume(e -> {
+                    log.error("导入任务失败 id={}", job.getId(), e);
+                    job.setState(STATE_FAILED);
+                    job.setError(String.valueOf(e.getMessage()));
+                    return Mono.empty();
+                });
+    }
+
+    private static boolean matches(GitHubService.RepoFile file, Set<String> exts, Long minSize, Long maxSize) {
+        if (exts != null) {
+            String name = file.path().substring(file.path().lastIndexOf('/') + 1);
+            int dot = name.lastIndexOf('.');
+            if (!exts.contains(dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT))) {
+                return false;
+            }
+        }
+        return (minSize == null || file.size() >= minSize) && (maxSize == null || file.size() <= maxSize);
+    }
+
+    private static Set<String> parseExts(String exts) {
+        if (exts == null || exts.isBlank()) {
+            return null;
+        }
+        Set<String> result = Arrays.stream(exts.split(","))
+                .map(e -> e.trim().toLowerCase(Locale.ROOT))
+                .map(e -> e.startsWith(".") ? e.substring(1) : e)
+                .filter(e -> !e.isEmpty())
+                .collect(Collectors.toSet());
+        return result.isEmpty() ? null : result;
+    }
+
+    // 只保留最近 MAX_FINISHED_JOBS 个已结束的任务
+    private void evictFinished() {
+        List<ImportJob> finished = jobs.values().stream()
+                .filter(job -> !STATE_RUNNING.equals(job.getState()))
+                .sorted(Comparator.comparingLong(ImportJob::getStartedAt).reversed())
+                .toList();
+        finished.stream().skip(MAX_FINISHED_JOBS).forEach(job -> jobs.remove(job.getId()));
+    }
+}
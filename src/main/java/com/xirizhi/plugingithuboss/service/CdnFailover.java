@@ -0,0 +1,142 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.net.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import run.halo.app.core.extension.attachment.Policy;
+import run.halo.app.extension.ListOptions;
+import run.halo.app.extension.ReactiveExtensionClient;
+
+/**
+ * 访问地址提供方的故障切换：定期探测各策略提供方的主机，并把按优先级排列的提供方列表提供给前端脚本。
+ * 说明：
+ * - 只探测配置了两个及以上提供方的策略；每 PROBE_INTERVAL 对每个主机直连发一次 HEAD /（不走插件代理，
+ *   更接近访客的访问路径），连接/TLS 失败或 5xx 计为失败，状态记录在 CdnHealth
+ * - 服务端生成链接时取第一个健康的提供方；已写入文章的链接由前端脚本处理：
+ *   页面加载时把指向不可用提供方的图片换到下一个，图片加载失败时也依次尝试后面的提供方
+ * - 服务端所在网络与访客不同，探测结果只是粗略信号，前端按访客实际加载结果切换是主要手段
+ * - 策略列表缓存 ROUTES_TTL，策略配置修改后最长在该时间后生效
+ */
+@Slf4j
+@Component
+public class CdnFailover implements InitializingBean, DisposableBean {
+
+    private static final String POLICY_TEMPLATE = "githuboss-policy-template";
+    private static final Duration PROBE_INTERVAL = Duration.ofSeconds(60);
+    private static final Duration ROUTES_TTL = Duration.ofSeconds(30);
+    private static final int CONCURRENCY = 4;
+
+    /**
+     * 策略的提供方列表（按优先级）；branch 用于在不支持固定提交的提供方（pages）与其他提供方之间换算。
+     */
+    public record PolicyRoutes(String policyName, String branch, List<Route> providers) {}
+
+    /**
+     * template 为提交链接模板，含 {ref}、{path} 占位符，见 {@link CdnUrlPattern#template()}。
+     */
+    public record Route(String id, String host, String template, boolean healthy) {}
+
+    private final ReactiveExtensionClient client;
+    private final GitHubService gitHubService;
+    private final Mono<List<PolicyRoutes>> cachedRoutes;
+    private volatile Disposable ticker;
+
+    public CdnFailover(ReactiveExtensionClient client, GitHubService gitHubService) {
+        this.client = client;
+        this.gitHubService = gitHubService;
+        this.cachedRoutes = loadRoutes().cache(value -> ROUTES_TTL, error -> Duration.ZERO, () -> ROUTES_TTL);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        ticker = Flux.interval(Duration.ofSeconds(5), PROBE_INTERVAL)
+                .onBackpressureDrop()
+                .concatMap(tick -> probe().onErrorResume(e -> {
+                    log.warn("访问地址提供方探测失败: {}", e.getMessage());
+                    return Mono.empty();
+                }))
+                .subscribe();
+    }
+
+    @Override
+    public void destroy() {
+        Disposable t = ticker;
+        if (t != null) {
+            t.dispose();
+        }
+    }
+
+    /**
+     * 配置了两个及以上提供方的策略，healthy 为当前健康状态。
+     */
+    public Mono<List<PolicyRoutes>> routes() {
+        CdnHealth health = gitHubService.cdnHealth();
+        return cachedRoutes.map(list -> list.stream()
+                .map(policy -> new PolicyRoutes(policy.policyName(), policy.branch(), policy.providers().stream()
+                        .map(r -> new Route(r.id(), r.host(), r.template(), health.healthy(r.host())))
+                        .toList()))
+                .toList());
+    }
+
+    /**
+     * 立即探测一次，返回各主机状态。
+     */
+    public Mono<List<CdnHealth.HostHealth>> probeNow() {
+        return probe().then(Mono.fromSupplier(() -> gitHubService.cdnHealth().snapshot()));
+    }
+
+    private Mono<Void> probe() {
+        return Mono.zip(cachedRoutes, gitHubService.getProxyConfig()).flatMap(t -> {
+            Set<String> hosts = t.getT1().stream()
+                    .flatMap(policy -> policy.providers().stream())
+                    .map(Route::host)
+                    .filter(host -> host != null)
+                    .collect(Collectors.toSet());
+            CdnHealth health = gitHubService.cdnHealth();
+            health.retain(hosts);
+            int timeoutMs = (int) RequestTimeouts.connect(t.getT2()).toMillis();
+            return Flux.fromIterable(hosts)
+                    .flatMap(host -> Mono.fromCallable(() -> LatencyMonitor.measure(host, Proxy.NO_PROXY, timeoutMs))
+                            .subscribeOn(GitHubService.blockingScheduler())
+                            .doOnNext(sample -> {
+                                String error = sample.error() != null ? sample.error()
+                                        : sample.status() >= 500 ? "HTTP " + sample.status() : null;
+                                boolean wasHealthy = health.healthy(host);
+                                health.record(host, sample.totalMs(), error);
+                                if (wasHealthy != health.healthy(host)) {
+                                    log.warn("访问地址提供方主机 {} {}{}", host, wasHealthy ? "不可用" : "已恢复",
+                                            error == null ? "" : "：" + error);
+                                }
+                            }), CONCURRENCY)
+                    .then();
+        });
+    }
+
+    private Mono<List<PolicyRoutes>> loadRoutes() {
+        return client.listAll(Policy.class, new ListOptions(), Sort.unsorted())
+                .filter(policy -> policy.getSpec() != null && POLICY_TEMPLATE.equals(policy.getSpec().getTemplateName()))
+                .concatMap(policy -> PluginState.settingsOf(client, policy)
+                        .flatMap(settings -> gitHubService.cdnProviders(settings)
+                                .filter(providers -> providers.size() > 1)
+                                .map(providers -> new PolicyRoutes(policy.getMetadata().getName(),
+                                        settings.getBranch() == null ? "main" : settings.getBranch(),
+                                        providers.stream().map(p -> new Route(p.id(), p.host(), p.pattern().template(), true)).toList())))
+                        .onErrorResume(e -> {
+                            log.warn("读取存储策略 {} 的访问地址提供方失败: {}", policy.getMetadata().getName(), e.getMessage());
+                            return Mono.empty();
+                        }))
+                .collectList();
+    }
+}
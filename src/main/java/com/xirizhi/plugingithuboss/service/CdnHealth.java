@@ -0,0 +1,70 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 访问地址提供方的主机健康状态，由 CdnFailover 定期探测更新。
+ * 说明：
+ * - 连续 FAILURES_TO_DOWN 次探测失败（连接/TLS 出错或 5xx）标记为不可用，一次成功即恢复
+ * - 未探测过的主机视为可用
+ * - 任一主机状态变化时 version 加一，缓存了首选地址的地方据此重新选择
+ */
+public final class CdnHealth {
+
+    static final int FAILURES_TO_DOWN = 2;
+
+    /**
+     * 主机状态；lastCheckedAt 为最近一次探测时间，lastError 为最近一次失败原因（成功后清空）。
+     */
+    public record HostHealth(String host, boolean healthy, int consecutiveFailures, long lastCheckedAt, long lastLatencyMs,
+                             String lastError) {}
+
+    private final Map<String, HostHealth> hosts = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * 记录一次探测结果，error 为空表示成功。
+     */
+    void record(String host, long latencyMs, String error) {
+        HostHealth before = hosts.get(host);
+        int failures = error == null ? 0 : (before == null ? 0 : before.consecutiveFailures()) + 1;
+        boolean healthy = failures < FAILURES_TO_DOWN;
+        hosts.put(host, new HostHealth(host, healthy, failures, System.currentTimeMillis(), latencyMs, error));
+        if ((before == null || before.healthy()) != healthy) {
+            version.incrementAndGet();
+        }
+    }
+
+    public boolean healthy(String host) {
+        HostHealth health = host == null ? null : hosts.get(host);
+        return health == null || health.healthy();
+    }
+
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * 只保留仍被策略使用的主机。
+     */
+    void retain(Set<String> active) {
+        if (hosts.values().removeIf(h -> !active.contains(h.host()) && !h.healthy())) {
+            version.incrementAndGet();
+        }
+        hosts.keySet().retainAll(active);
+    }
+
+    void clear() {
+        hosts.clear();
+        version.incrementAndGet();
+    }
+
+    public List<HostHealth> snapshot() {
+        return hosts.values().stream().sorted(Comparator.comparing(HostHealth::host)).toList();
+    }
+}
@@ -0,0 +1,134 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.service.forge.ForgeBackend;
+import com.xirizhi.plugingithuboss.service.forge.ForgeBackends;
+
+/**
+ * 访问地址提供方：策略配置 cdnProviders 为按优先级排列的提供方列表（逗号分隔），生成链接时取第一个健康的提供方。
+ * 提供方：
+ * - jsdelivr：https://{jsdelivr 节点}/gh/{owner}/{repo}@{ref}/{path}，节点取插件基本设置
+ * - statically：https://cdn.statically.io/gh/{owner}/{repo}/{ref}/{path}
+ * - raw：平台原始文件地址，GitHub 为 https://raw.githubusercontent.com/{owner}/{repo}/{ref}/{path}
+ * - pages：GitHub Pages 或绑定的自定义域名 https://{cdnDomain}/{path}，默认 {owner}.github.io/{repo}；
+ *   Pages 只发布分支内容，不支持固定到提交
+ * - proxy：自建反向代理 {cdnProxyUrl}/{owner}/{repo}/{ref}/{path}（路径结构与 raw.githubusercontent.com 相同）
+ * - custom：策略的访问地址模板 cdnUrlTemplate
+ * 说明：
+ * - 未配置 cdnProviders 时与之前相同：有 cdnUrlTemplate 时为 custom，否则 GitHub 为 jsdelivr、其他平台为 raw
+ * - jsdelivr、statically、pages 只支持 github.com 仓库，其他平台配置时忽略；未知名称与缺少所需配置的提供方同样忽略，
+ *   全部被忽略时回到默认，配置错误不会使已有链接无法生成
+ */
+public final class CdnProviders {
+
+    public static final String JSDELIVR = "jsdelivr";
+    public static final String STATICALLY = "statically";
+    public static final String RAW = "raw";
+    public static final String PAGES = "pages";
+    public static final String PROXY = "proxy";
+    public static final String CUSTOM = "custom";
+
+    static final String DEFAULT_JSDELIVR = "gcore.jsdelivr.net";
+    private static final Set<String> KNOWN = Set.of(JSDELIVR, STATICALLY, RAW, PAGES, PROXY, CUSTOM);
+    private static final Set<String> GITHUB_ONLY = Set.of(JSDELIVR, STATICALLY, PAGES);
+
+    /**
+     * 一个提供方在该策略下的访问地址；host 用于健康检查。
+     */
+    public record Provider(String id, String host, CdnUrlPattern pattern) {}
+
+    private CdnProviders() {
+    }
+
+    /**
+     * 按配置顺序展开策略的提供方，去重后至少有一个。
+     */
+    public static List<Provider> resolve(GithubOssPolicySettings settings, String jsdelivr) {
+        ForgeBackend backend = ForgeBackends.of(settings);
+        List<Provider> providers = new ArrayList<>();
+        for (String id : ids(settings.getCdnProviders())) {
+            if (GITHUB_ONLY.contains(id) && !backend.supportsJsdelivr()) {
+                continue;
+            }
+            Provider provider = provider(id, settings, backend, jsdelivr);
+            if (provider != null) {
+                providers.add(provider);
+            }
+        }
+        if (providers.isEmpty()) {
+            String fallback = notBlank(settings.getCdnUrlTemplate()) ? CUSTOM : backend.supportsJsdelivr() ? JSDELIVR : RAW;
+            providers.add(provider(fallback, settings, backend, jsdelivr));
+        }
+        return providers;
+    }
+
+    /**
+     * 解析提供方列表：按出现顺序去重，忽略未知名称。
+     */
+    static List<String> ids(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        Set<String> ids = new LinkedHashSet<>();
+        for (String name : text.split("[,\\s]+")) {
+            String id = name.trim().toLowerCase(Locale.ROOT);
+            if (KNOWN.contains(id)) {
+                ids.add(id);
+            }
+        }
+        return List.copyOf(ids);
+    }
+
+    private static Provider provider(String id, GithubOssPolicySettings settings, ForgeBackend backend, String jsdelivr) {
+        String branch = settings.getBranch() == null ? "main" : settings.getBranch();
+        boolean pinCommit = Boolean.TRUE.equals(settings.getPinCommit());
+        String ref = CdnUrlPattern.REF;
+        String path = CdnUrlPattern.PATH;
+        String template = switch (id) {
+            case JSDELIVR -> "https://" + (notBlank(jsdelivr) ? jsdelivr.trim() : DEFAULT_JSDELIVR) + "/gh/{owner}/{repo}@{ref}/{path}";
+            case STATICALLY -> "https://cdn.statically.io/gh/{owner}/{repo}/{ref}/{path}";
+            case PAGES -> "https://" + (notBlank(settings.getCdnDomain())
+                    ? trimSlashes(settings.getCdnDomain().trim().replaceFirst("^https?://", ""))
+                    : settings.getOwner() + ".github.io/" + settings.getRepoName()) + "/{path}";
+            case PROXY -> notBlank(settings.getCdnProxyUrl())
+                    ? trimSlashes(settings.getCdnProxyUrl().trim()) + "/{owner}/{repo}/{ref}/{path}"
+                    : null;
+            case CUSTOM -> notBlank(settings.getCdnUrlTemplate()) ? settings.getCdnUrlTemplate() : null;
+            default -> null;
+        };
+        CdnUrlPattern pattern;
+        if (RAW.equals(id)) {
+            pattern = new CdnUrlPattern(backend.rawUrl(settings, path, branch, false), backend.rawUrl(settings, path, ref, true), pinCommit);
+        } else if (template != null) {
+            pattern = new CdnUrlPattern(ForgeBackends.fillTemplate(template, settings, branch, branch, path),
+                    ForgeBackends.fillTemplate(template, settings, branch, ref, path), pinCommit);
+        } else {
+            return null;
+        }
+        return new Provider(id, host(pattern), pattern);
+    }
+
+    private static String host(CdnUrlPattern pattern) {
+        try {
+            String host = URI.create(pattern.format("x", null)).getHost();
+            return host == null ? null : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String trimSlashes(String s) {
+        return s.replaceAll("/+$", "");
+    }
+
+    private static boolean notBlank(String s) {
+        return s != null && !s.isBlank();
+    }
+}
@@ -0,0 +1,79 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 预先展开的访问地址：owner/repo/域名/分支等在构建时已填好，生成链接时只拼接 ref 与 path。
+ * 分支链接与提交链接分别保存，后者用于开启 pinCommit 且附件记录了 commitSha 的情况（Gitea 两者的路径结构不同）。
+ */
+public final class CdnUrlPattern {
+
+    // 构建时代替 ref/path 的占位符，不会出现在正常的地址中
+    static final String REF = "\u0001ref\u0001";
+    static final String PATH = "\u0001path\u0001";
+
+    private enum Token { REF, PATH }
+
+    private final Object[] branchParts;
+    private final Object[] commitParts;
+    private final boolean pinCommit;
+
+    CdnUrlPattern(String branchUrl, String commitUrl, boolean pinCommit) {
+        this.branchParts = split(branchUrl);
+        this.commitParts = split(commitUrl);
+        this.pinCommit = pinCommit;
+    }
+
+    /**
+     * 生成访问地址；commitSha 为空或策略未开启 pinCommit 时按分支生成。
+     */
+    public String format(String path, String commitSha) {
+        boolean pinned = pinCommit && commitSha != null && !commitSha.isBlank();
+        Object[] parts = pinned ? commitParts : branchParts;
+        StringBuilder sb = new StringBuilder(64 + (path == null ? 0 : path.length()));
+        for (Object part : parts) {
+            if (part == Token.REF) {
+                sb.append(commitSha);
+            } else if (part == Token.PATH) {
+                sb.append(path);
+            } else {
+                sb.append((String) part);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 提交链接的模板形式，ref 与 path 以 {ref}、{path} 表示，供前端在多个地址间换算；不支持固定提交的地址不含 {ref}。
+     */
+    public String template() {
+        StringBuilder sb = new StringBuilder(64);
+        for (Object part : commitParts) {
+            sb.append(part == Token.REF ? "{ref}" : part == Token.PATH ? "{path}" : (String) part);
+        }
+        return sb.toString();
+    }
+
+    // 按占位符切分为字面量与 Token
+    private static Object[] split(String url) {
+        List<Object> parts = new ArrayList<>();
+        int i = 0;
+        while (i < url.length()) {
+            int ref = url.indexOf(REF, i);
+            int path = url.indexOf(PATH, i);
+            int next = ref < 0 ? path : path < 0 ? ref : Math.min(ref, path);
+            if (next < 0) {
+                parts.add(url.substring(i));
+                break;
+            }
+            if (next > i) {
+                parts.add(url.substring(i, next));
+            }
+            boolean isRef = next == ref;
+            parts.add(isRef ? Token.REF : Token.PATH);
+            i = next + (isRef ? REF : PATH).length();
+        }
+        return parts.toArray();
+    }
+}
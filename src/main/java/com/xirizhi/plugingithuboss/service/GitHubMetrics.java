@@ -0,0 +1,250 @@
+package com.xirizhi.plugingithuboss.service;
+
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValuePercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 上传/删除/列表链路的指标与追踪。
+ * 说明：
+ * - githuboss.operation：整体操作耗时，按 operation/policy/repo/status 打标签
+ * - githuboss.stage：操作内部各阶段耗时（读取 multipart、大小校验、连通性检测、锁等待、请求构建、GitHub 往返、响应解析）
+ * - githuboss.operation.span / githuboss.stage.span：对应的 Observation（追踪 span），与上面的 Timer 不同名，
+ *   避免 Observation 生成的同名 Timer 标签集合不一致被 Prometheus 拒绝；结束时同样带 status 标签
+ * - githuboss.github.responses：GitHub API 响应计数，按 HTTP 状态码分类
+ * - githuboss.network.phase：后台延迟监控按主机测得的 DNS、TCP 连接、代理隧道、TLS 握手、首字节耗时
+ * - Halo 未向插件暴露 MeterRegistry 时退化为插件内的 SimpleMeterRegistry，汇总接口仍可用
+ */
+@Slf4j
+@Component
+public class GitHubMetrics {
+
+    public static final String PREFIX = "githuboss";
+    public static final String OPERATION_TIMER = PREFIX + ".operation";
+    public static final String STAGE_TIMER = PREFIX + ".stage";
+    public static final String OPERATION_SPAN = OPERATION_TIMER + ".span";
+    public static final String STAGE_SPAN = STAGE_TIMER + ".span";
+    public static final String RESPONSE_COUNTER = PREFIX + ".github.responses";
+    public static final String NETWORK_TIMER = PREFIX + ".network.phase";
+
+    // Reactor Context 中传递策略名与父级 Observation 的 key
+    private static final String POLICY_KEY = GitHubMetrics.class.getName() + ".policy";
+    private static final String OBSERVATION_KEY = GitHubMetrics.class.getName() + ".observation";
+    private static final String UNKNOWN = "unknown";
+    // 取消订阅时标记在 span 上的事件
+    private static final Observation.Event CANCELLED = Observation.Event.of("cancelled");
+
+    private final MeterRegistry registry;
+    private final ObservationRegistry observationRegistry;
+
+    public GitHubMetrics(ObjectProvider<MeterRegistry> meterRegistry,
+                         ObjectProvider<ObservationRegistry> observationRegistry) {
+        this.registry = meterRegistry.getIfAvailable(SimpleMeterRegistry::new);
+        this.observationRegistry = observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP);
+    }
+
+    /**
+     * 将策略名写入 Reactor Context，供下游 GitHubService 的指标打标签。
+     */
+    public static Function<Context, Context> withPolicy(String policyName) {
+        return ctx -> ctx.put(POLICY_KEY, policyName == null ? UNKNOWN : policyName);
+    }
+
+    public static String repoOf(GithubOssPolicySettings settings) {
+        if (settings == null) return UNKNOWN;
+        return settings.getOwner() + "/" + settings.getRepoName();
+    }
+
+    /**
+     * 观测一次完整操作：记录 githuboss.operation 计时并创建 Observation span，
+     * 子阶段会通过 Context 取到该 span 作为父级；body 拿到的 StageRecorder 用于阻塞调用内部的分阶段计时。
+     */
+    public <T> Mono<T> observe(String operation, GithubOssPolicySettings settings, Function<StageRecorder, Mono<T>> body) {
+        return Mono.deferContextual(ctx -> {
+            Mono<T> source = body.apply(recorder(operation, settings, ctx));
+            String policy = ctx.getOrDefault(POLICY_KEY, UNKNOWN);
+            String repo = repoOf(settings);
+            Observation observation = Observation.createNotStarted(OPERATION_SPAN, observationRegistry)
+                    .contextualName(PREFIX + " " + operation)
+                    .lowCardinalityKeyValue("operation", operation)
+                    .lowCardinalityKeyValue("policy", policy)
+                    .lowCardinalityKeyValue("repo", repo);
+            Observation parent = ctx.getOrDefault(OBSERVATION_KEY, null);
+            if (parent != null) {
+                observation.parentObservation(parent);
+            }
+            observation.start();
+            long start = System.nanoTime();
+            Tags tags = Tags.of("operation", operation, "policy", policy, "repo", repo);
+            return source
+                    .doOnSuccess(v -> {
+                        observation.lowCardinalityKeyValue("status", "success");
+                        timer(OPERATION_TIMER, tags.and("status", "success")).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    })
+                    .doOnError(e -> {
+                        observation.lowCardinalityKeyValue("status", "error").error(e);
+                        timer(OPERATION_TIMER, tags.and("status", "error")).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    })
+                    .doOnCancel(() -> {
+                        observation.lowCardinalityKeyValue("status", "cancelled").event(CANCELLED);
+                        timer(OPERATION_TIMER, tags.and("status", "cancelled")).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    })
+                    .doFinally(signal -> observation.stop())
+                    .contextWrite(c -> c.put(OBSERVATION_KEY, observation));
+        });
+    }
+
+    /**
+     * 为响应式阶段计时（如 multipart 读取、大小校验、连通性检测）。
+     */
+    public <T> Mono<T> stage(String stage, String operation, GithubOssPolicySettings settings, Mono<T> source) {
+        return Mono.deferContextual(ctx -> {
+            StageRecorder recorder = recorder(operation, settings, ctx);
+            Observation parent = ctx.getOrDefault(OBSERVATION_KEY, null);
+            Observation observation = Observation.createNotStarted(STAGE_SPAN, observationRegistry)
+                    .contextualName(PREFIX + " " + operation + " " + stage)
+                    .lowCardinalityKeyValue("stage", stage)
+                    .lowCardinalityKeyValue("operation", operation);
+            if (parent != null) {
+                observation.parentObservation(parent);
+            }
+            observation.start();
+            long start = System.nanoTime();
+            return source
+                    .doOnSuccess(v -> {
+                        observation.lowCardinalityKeyValue("status", "success");
+                        recorder.record(stage, start, "success");
+                    })
+                    .doOnError(e -> {
+                        observation.lowCardinalityKeyValue("status", "error").error(e);
+                        recorder.record(stage, start, "error");
+                    })
+                    .doOnCancel(() -> {
+                        observation.lowCardinalityKeyValue("status", "cancelled").event(CANCELLED);
+                        recorder.record(stage, start, "cancelled");
+                    })
+                    .doFinally(signal -> observation.stop());
+        });
+    }
+
+    /**
+     * 记录后台延迟监控的单个网络阶段耗时（dns/connect/proxy/tls/ttfb/total），按主机与路由打标签。
+     */
+    public void networkPhase(String host, String route, String phase, long millis) {
+        timer(NETWORK_TIMER, Tags.of("host", host, "route", route, "phase", phase)).record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    private StageRecorder recorder(String operation, GithubOssPolicySettings settings, ContextView ctx) {
+        return new StageRecorder(operation, ctx.getOrDefault(POLICY_KEY, UNKNOWN), repoOf(settings));
+    }
+
+    public final class StageRecorder {
+        private final Tags tags;
+
+        private StageRecorder(String operation, String policy, String repo) {
+            this.tags = Tags.of("operation", operation, "policy", policy, "repo", repo);
+        }
+
+        public void record(String stage, long startNanos, String status) {
+            timer(STAGE_TIMER, tags.and("stage", stage, "status", status))
+                    .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void record(String stage, long startNanos) {
+            record(stage, startNanos, "success");
+        }
+
+        /**
+         * 记录一次 GitHub 往返：阶段计时的 status 为状态码分类（2xx/4xx/5xx），并按具体状态码计数。
+         */
+        public void response(long startNanos, int statusCode) {
+            String status = statusCode < 0 ? "exception" : (statusCode / 100) + "xx";
+            record("github_round_trip", startNanos, status);
+            Counter.builder(RESPONSE_COUNTER)
+                    .tags(tags.and("code", String.valueOf(statusCode)))
+                    .register(registry)
+                    .increment();
+        }
+    }
+
+    private Timer timer(String name, Tags tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+    }
+
+    @Data
+    public static class MetricSummaryItem {
+        private String name;
+        private Map<String, String> tags;
+        private long count;
+        private double totalMs;
+        private double meanMs;
+        private double maxMs;
+        private Map<String, Double> percentilesMs;
+    }
+
+    /**
+     * 汇总插件自身的指标（仅 githuboss.* 前缀），供 NetworkController 只读展示。
+     */
+    public List<MetricSummaryItem> summary() {
+        List<MetricSummaryItem> items = new ArrayList<>();
+        for (Meter meter : registry.getMeters()) {
+            String name = meter.getId().getName();
+            if (!name.startsWith(PREFIX + ".")) continue;
+            MetricSummaryItem item = new MetricSummaryItem();
+            item.setName(name);
+            Map<String, String> tags = new LinkedHashMap<>();
+            for (Tag tag : meter.getId().getTags()) {
+                tags.put(tag.getKey(), tag.getValue());
+            }
+            item.setTags(tags);
+            if (meter instanceof Timer timer) {
+                var snapshot = timer.takeSnapshot();
+                item.setCount(snapshot.count());
+                item.setTotalMs(snapshot.total(TimeUnit.MILLISECONDS));
+                item.setMeanMs(snapshot.mean(TimeUnit.MILLISECONDS));
+                item.setMaxMs(snapshot.max(TimeUnit.MILLISECONDS));
+                Map<String, Double> percentiles = new LinkedHashMap<>();
+                for (ValuePercentile p : snapshot.percentileValues()) {
+                    percentiles.put("p" + Math.round(p.percentile() * 100), p.value(TimeUnit.MILLISECONDS));
+                }
+                item.setPercentilesMs(percentiles);
+            } else if (meter instanceof Counter counter) {
+                item.setCount((long) counter.count());
+            } else {
+                continue;
+            }
+            items.add(item);
+        }
+        items.sort(Comparator.comparing(MetricSummaryItem::getName)
+                .thenComparing(i -> i.getTags().toString()));
+        return items;
+    }
+}
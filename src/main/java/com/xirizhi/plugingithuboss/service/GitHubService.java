@@ -1,12 +1,19 @@
 package com.xirizhi.plugingithuboss.service;
 
 import com.xirizhi.plugingithuboss.config.Constant;
+import com.xirizhi.plugingithuboss.exception.PathConflictException;
 import com.xirizhi.plugingithuboss.extension.GitHubThemeSettings;
 import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
 import com.xirizhi.plugingithuboss.extension.theme.GitHubBasic;
 import com.xirizhi.plugingithuboss.extension.theme.NetworkConfig;
+import com.xirizhi.plugingithuboss.service.forge.ForgeBackend;
+import com.xirizhi.plugingithuboss.service.forge.ForgeBackends;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 import run.halo.app.extension.ConfigMap;
 import run.halo.app.extension.ReactiveExtensionClient;
@@ -14,24 +21,35 @@ import run.halo.app.infra.utils.JsonUtils;
 
 import org.springframework.stereotype.Service;
 
+import java.io.InputStream;
 import java.net.URI;
 import java.net.InetAddress;
-import java.net.InetSocketAddress;
 import java.net.Proxy;
-import java.net.ProxySelector;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * GitHub API 封装服务：负责与 GitHub Contents API 交互。
+ * 平台差异（GitHub Enterprise、Gitea/Forgejo）由策略选择的 ForgeBackend 处理。
+ * 所有请求通过 HttpClient.sendAsync 非阻塞发送，不占用 boundedElastic 线程；取消订阅会取消对应的 HTTP 交换。
+ * 启动参数 -Dgithuboss.virtualThreads=true 时，HttpClient 回调与少量仍需阻塞的操作（DNS 查询）改用虚拟线程。
  * 注意：PAT 需至少具备 repo 的 Contents 权限。
  */
 @Slf4j
@@ -39,136 +57,296 @@ import lombok.extern.slf4j.Slf4j;
 public class GitHubService {
 
 
+    // 读取代理配置时代替已设置的代理密码；保存时收到该值表示沿用已保存的密码
+    public static final String PASSWORD_MASK = "******";
+
     private final ReactiveExtensionClient client;
+    private final GitHubMetrics metrics;
 
-    public GitHubService(ReactiveExtensionClient client) {
+    public GitHubService(ReactiveExtensionClient client, GitHubMetrics metrics) {
         this.client = client;
+        this.metrics = metrics;
     }
 
-    // 新增：按仓库+分支维度的公平锁，串行化提交避免 409 冲突
-    private static final java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.locks.ReentrantLock> REPO_LOCKS = new java.util.concurrent.ConcurrentHashMap<>();
-    private java.util.concurrent.locks.ReentrantLock lockFor(GithubOssPolicySettings settings) {
+    // 按仓库+分支维度的非阻塞公平锁：Contents API 写入时串行化整个请求避免 409；Git Data API 写入时只串行化本节点的 ref 更新阶段
+    private static final AsyncRepoLock REPO_LOCKS = new AsyncRepoLock();
+    private static String lockKey(GithubOssPolicySettings settings) {
         String branch = settings.getBranch() == null ? "main" : settings.getBranch();
-        String key = settings.getOwner() + "/" + settings.getRepoName() + "@" + branch;
-        return REPO_LOCKS.computeIfAbsent(key, k -> new java.util.concurrent.locks.ReentrantLock(true));
+        return settings.getOwner() + "/" + settings.getRepoName() + "@" + branch;
     }
 
+    // HttpClient 按代理配置复用（每个实例自带连接池与 selector 线程，不应每次请求新建）
+    private static final ConcurrentHashMap<String, HttpClient> HTTP_CLIENTS = new ConcurrentHashMap<>();
+    // 与 HTTP_CLIENTS 同 key 的代理路由，持有本机代理桥与测速任务，随客户端一起淘汰；跟随重定向的客户端与之共用同一路由
+    private static final ConcurrentHashMap<String, ProxyRouter> ROUTERS = new ConcurrentHashMap<>();
+    // 跟随重定向的客户端在 HTTP_CLIENTS 中的 key 后缀
+    private static final String REDIRECTING = "|redirect";
+    // 各 API 主机与凭据最近一次返回的速率限制余量
+    private static final RateLimitTracker RATE_LIMITS = new RateLimitTracker();
+    // 各 API 主机按操作类型观测到的耗时与上传吞吐量，用于计算每个请求的时限
+    private static final RequestTimeouts TIMEOUTS = new RequestTimeouts();
+    // 访问地址提供方的主机健康状态，由 CdnFailover 探测更新
+    private static final CdnHealth CDN_HEALTH = new CdnHealth();
+    // 按仓库+分支统计本节点进行中的写入（上传、删除、blob、批量提交），历史压缩据此避开写入
+    private static final ConcurrentHashMap<String, AtomicInteger> WRITES = new ConcurrentHashMap<>();
+    private static final int MAX_HTTP_CLIENTS = 8;
+    // 遍历目录时同时读取的 tree 数
+    private static final int TREE_CONCURRENCY = 4;
+    private static final boolean VIRTUAL_THREADS = Boolean.getBoolean("githuboss.virtualThreads");
+    private static volatile Scheduler virtualThreadScheduler;
+
+    /**
+     * 上传结果：内容 sha 用于后续删除，commitSha 用于生成固定到提交的 CDN 永久链接。
+     */
+    public record UploadResult(String sha, String commitSha) {}
+
+    /**
+     * 历史压缩结果：原 head、新的无父提交、两者共同的 tree 与备份分支（未备份时为空）。
+     */
+    public record Compaction(String previousHead, String commit, String tree, String backupBranch) {}
+
     /**
-     * 上传文件到 GitHub 仓库，返回内容 sha。
+     * 递归读取的 tree：文件完整路径 → blob sha；truncated 表示条目过多，GitHub 只返回了部分结果。
+     */
+    public record TreeListing(Map<String, String> files, boolean truncated) {}
+
+    /**
+     * 仓库中的一个文件，path 为相对仓库根的完整路径。
+     */
+    public record RepoFile(String path, String sha, long size) {}
+
+    /**
+     * 上传文件到 GitHub 仓库，返回内容 sha 与本次提交的 commit sha。
+     * 支持 Git Data API 的平台（github.com、GHES）通过 ref 乐观更新提交，不依赖跨节点锁，多节点可并行；
+     * 其余平台或空仓库使用 Contents API 并按仓库加锁。
+     * 两种方式都不覆盖已有文件：路径已存在时以 PathConflictException 失败，由调用方换名。
      * @param spec 仓库配置 Spec
      * @param path 目标路径（相对仓库根），例如 attachments/20250101/1700000000000.png
      * @param data 文件二进制数据
      * @param message 提交信息（commit message）
-     * @return 上传后返回的内容 SHA
+     * @return 上传后返回的内容 SHA 与提交 SHA
      */
-    public Mono<String> uploadContent(GithubOssPolicySettings settings, String path, byte[] data, String message) {
-        return getProxyConfig().flatMap(cfg -> Mono.fromCallable(() -> {
-            var lock = lockFor(settings);
-            boolean locked = false;
-            try {
-                lock.lockInterruptibly();
-                locked = true;
-
-                String url = String.format("https://api.github.com/repos/%s/%s/contents/%s", settings.getOwner(), settings.getRepoName(), path);
-                String body = "{" +
-                        "\"message\":\"" + escapeJson(message) + "\"," +
-                        (settings.getBranch() != null ? "\"branch\":\"" + escapeJson(settings.getBranch()) + "\"," : "") +
-                        "\"content\":\"" + Base64.getEncoder().encodeToString(data) + "\"" +
-                        "}";
-                HttpClient client = buildBaseGitHubHttpClient(cfg);
+    public Mono<UploadResult> uploadContent(GithubOssPolicySettings settings, String path, byte[] data, String message) {
+        return tracked(settings, metrics.observe("contents_put", settings, stages -> getProxyConfig().flatMap(cfg -> {
+            ForgeBackend backend = ForgeBackends.of(settings);
+            HttpClient client = buildBaseGitHubHttpClient(cfg);
+            Mono<UploadResult> viaContents = REPO_LOCKS.withLock(lockKey(settings), stages, () -> {
+                long t0 = System.nanoTime();
+                URI uri = URI.create(backend.contentsUrl(settings, path));
+                HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofString(
+                        buildUploadBody(message, settings.getBranch(), data), StandardCharsets.UTF_8);
                 HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(url))
-                        .header("Authorization", "Bearer " + settings.getToken())
-                        .header("Accept", "application/vnd.github+json")
+                        .uri(uri)
+                        .header("Authorization", backend.authorization(settings.getToken()))
+                        .header("Accept", backend.accept())
                         .header("Content-Type", "application/json")
-                        .timeout(java.time.Duration.ofMillis(cfg.getTimeoutMs()))
-                        .PUT(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                        .timeout(timeout(cfg, backend.createMethod(), uri, body.contentLength()))
+                        .method(backend.createMethod(), body)
                         .build();
-                HttpResponse<String> resp = client.send(request, HttpResponse.BodyHandlers.ofString());
-                if (resp.statusCode() >= 200 && resp.statusCode() < 300) {
-                    String sha = extractByKey(resp.body(), "\"sha\":\"", "\"");
-                    return sha;
-                }
-                throw new RuntimeException("GitHub 上传失败，状态码=" + resp.statusCode() + ", 响应=" + resp.body());
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException(ie);
-            } finally {
-                if (locked) {
-                    lock.unlock();
-                }
+                stages.record("request_build", t0);
+                return exchange(stages, client, request).map(resp -> {
+                    if (resp.statusCode() >= 200 && resp.statusCode() < 300) {
+                        long t1 = System.nanoTime();
+                        UploadResult result = parseUploadResponse(resp.body());
+                        stages.record("response_parse", t1);
+                        return result;
+                    }
+                    if (resp.statusCode() == 422) {
+                        // 不带 sha 创建已存在的文件时 Contents API 返回 422，不会覆盖
+                        log.warn("GitHub 拒绝创建已存在的文件 path={}: {}", path, resp.body());
+                        throw new PathConflictException(path);
+                    }
+                    throw new RuntimeException("GitHub 上传失败，状态码=" + resp.statusCode() + ", 响应=" + resp.body());
+                });
+            });
+            if (!backend.supportsGitData()) {
+                return viaContents;
             }
-        }).subscribeOn(Schedulers.boundedElastic()));
+            return new GitRefCommitter(client, cfg, settings, backend, stages, REPO_LOCKS, lockKey(settings))
+                    .put(path, data, message)
+                    .switchIfEmpty(viaContents);
+        })));
     }
 
     /**
-     * 删除 GitHub 仓库中的文件，需要提供 sha 以保证幂等与正确性。
+     * 删除 GitHub 仓库中的文件，需要提供 sha 以保证幂等与正确性：两种 API 都只删除 sha 一致的文件，文件已不存在时视为成功。
      * @param spec 仓库配置 Spec
      * @param path 目标路径
      * @param sha 现有文件的内容 SHA（来自上传或查询）
      * @param message 提交信息
      */
     public Mono<Void> deleteContent(GithubOssPolicySettings settings, String path, String sha, String message) {
-        return getProxyConfig().flatMap(cfg -> reactor.core.publisher.Mono.fromCallable(() -> {
-            var lock = lockFor(settings);
-            boolean locked = false;
-            try {
-                lock.lockInterruptibly();
-                locked = true;
-
-                String url = String.format("https://api.github.com/repos/%s/%s/contents/%s", settings.getOwner(), settings.getRepoName(), path);
+        return tracked(settings, metrics.observe("contents_delete", settings, stages -> getProxyConfig().flatMap(cfg -> {
+            ForgeBackend backend = ForgeBackends.of(settings);
+            HttpClient client = buildBaseGitHubHttpClient(cfg);
+            Mono<Void> viaContents = REPO_LOCKS.withLock(lockKey(settings), stages, () -> {
+                long t0 = System.nanoTime();
+                URI uri = URI.create(backend.contentsUrl(settings, path));
                 String body = "{" +
                         "\"message\":\"" + escapeJson(message) + "\"," +
                         (settings.getBranch() != null ? "\"branch\":\"" + escapeJson(settings.getBranch()) + "\"," : "") +
                         "\"sha\":\"" + escapeJson(sha) + "\"" +
                         "}";
-                HttpClient client = buildBaseGitHubHttpClient(cfg);
                 HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(url))
-                        .header("Authorization", "Bearer " + settings.getToken())
-                        .header("Accept", "application/vnd.github+json")
+                        .uri(uri)
+                        .header("Authorization", backend.authorization(settings.getToken()))
+                        .header("Accept", backend.accept())
                         .header("Content-Type", "application/json")
-                        .timeout(java.time.Duration.ofMillis(cfg.getTimeoutMs()))
+                        .timeout(timeout(cfg, "DELETE", uri, 0))
                         .method("DELETE", HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
                         .build();
-                HttpResponse<String> resp = client.send(request, HttpResponse.BodyHandlers.ofString());
-                if (resp.statusCode() >= 200 && resp.statusCode() < 300) {
-                    return null;
-                }
-                if (resp.statusCode() == 404) {
-                    return null;
-                }
-                throw new RuntimeException("GitHub 删除失败，状态码=" + resp.statusCode() + ", 响应=" + resp.body());
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("GitHub 删除过程被中断", ie);
-            } finally {
-                if (locked) {
-                    lock.unlock();
-                }
+                stages.record("request_build", t0);
+                return exchange(stages, client, request).flatMap(resp -> {
+                    if (resp.statusCode() >= 200 && resp.statusCode() < 300) {
+                        return Mono.<Void>empty();
+                    }
+                    if (resp.statusCode() == 404) {
+                        return Mono.<Void>empty();
+                    }
+                    return Mono.<Void>error(new RuntimeException("GitHub 删除失败，状态码=" + resp.statusCode() + ", 响应=" + resp.body()));
+                });
+            });
+            if (!backend.supportsGitData()) {
+                return viaContents;
             }
-        }).subscribeOn(reactor.core.scheduler.Schedulers.boundedElastic()).then());
+            return new GitRefCommitter(client, cfg, settings, backend, stages, REPO_LOCKS, lockKey(settings))
+                    .delete(path, sha, message)
+                    .hasElement()
+                    .flatMap(done -> done ? Mono.<Void>empty() : viaContents);
+        })));
     }
 
     /**
-     * 生成 CDN URL，并支持降级域名列表（取第一个作为主域名）。
+     * 只上传 blob（Git Data API），返回 blob sha；不产生提交，配合 commitBlobs 批量提交。
+     */
+    public Mono<String> createBlob(GithubOssPolicySettings settings, byte[] data) {
+        return tracked(settings, metrics.observe("blob_create", settings, stages -> getProxyConfig().flatMap(cfg -> {
+            ForgeBackend backend = requireGitData(settings);
+            return new GitRefCommitter(buildBaseGitHubHttpClient(cfg), cfg, settings, backend, stages, REPO_LOCKS, lockKey(settings))
+                    .blob(data);
+        })));
+    }
+
+    /**
+     * 以一个提交写入多个已上传的 blob（路径 → blob sha），返回提交 sha。
+     * 仓库为空（分支尚无提交）时无法以已有 tree 为基础，返回错误。
+     */
+    public Mono<String> commitBlobs(GithubOssPolicySettings settings, Map<String, String> blobs, String message) {
+        return tracked(settings, metrics.observe("tree_commit", settings, stages -> getProxyConfig().flatMap(cfg -> {
+            ForgeBackend backend = requireGitData(settings);
+            return new GitRefCommitter(buildBaseGitHubHttpClient(cfg), cfg, settings, backend, stages, REPO_LOCKS, lockKey(settings))
+                    .putAll(blobs, message)
+                    .switchIfEmpty(Mono.error(() -> new IllegalStateException("仓库分支尚无提交，请先上传任意文件初始化仓库")));
+        })));
+    }
+
+    /**
+     * 以分支当前的 tree 生成一个无父提交并强制更新分支，丢弃之前的提交历史（Git Data API）。
+     * backupBranch 不为空时先以旧 head 创建该分支保存原历史。
+     */
+    public Mono<Compaction> squashHistory(GithubOssPolicySettings settings, String message, String backupBranch) {
+        return metrics.observe("history_squash", settings, stages -> getProxyConfig().flatMap(cfg -> {
+            ForgeBackend backend = requireGitData(settings);
+            return new GitRefCommitter(buildBaseGitHubHttpClient(cfg), cfg, settings, backend, stages, REPO_LOCKS, lockKey(settings))
+                    .squash(message, backupBranch);
+        }));
+    }
+
+    /**
+     * 分支 head 仍为 expected 时强制改回 target，用于撤销历史压缩。
+     */
+    public Mono<Void> resetBranch(GithubOssPolicySettings settings, String expected, String target) {
+        return metrics.observe("branch_reset", settings, stages -> getProxyConfig().flatMap(cfg -> {
+            ForgeBackend backend = requireGitData(settings);
+            return new GitRefCommitter(buildBaseGitHubHttpClient(cfg), cfg, settings, backend, stages, REPO_LOCKS, lockKey(settings))
+                    .reset(expected, target);
+        }));
+    }
+
+    /**
+     * 本节点对该仓库分支进行中的写入数。
+     */
+    public int writesInFlight(GithubOssPolicySettings settings) {
+        AtomicInteger count = WRITES.get(lockKey(settings));
+        return count == null ? 0 : count.get();
+    }
+
+    private static <T> Mono<T> tracked(GithubOssPolicySettings settings, Mono<T> write) {
+        return Mono.defer(() -> {
+            AtomicInteger count = WRITES.computeIfAbsent(lockKey(settings), k -> new AtomicInteger());
+            count.incrementAndGet();
+            return write.doFinally(signal -> count.decrementAndGet());
+        });
+    }
+
+    /**
+     * 按最近一次响应的速率限制余量，发出 reserve 个请求前需要等待的时长；余量充足或未知时为 0。
+     */
+    public Duration rateLimitDelay(GithubOssPolicySettings settings, int reserve) {
+        ForgeBackend backend = ForgeBackends.of(settings);
+        return RATE_LIMITS.delay(URI.create(backend.apiBase(settings)).getAuthority(), backend.authorization(settings.getToken()), reserve);
+    }
+
+    private static ForgeBackend requireGitData(GithubOssPolicySettings settings) {
+        ForgeBackend backend = ForgeBackends.of(settings);
+        if (!backend.supportsGitData()) {
+            throw new IllegalArgumentException("平台 " + backend.type() + " 不支持 Git Data API，无法批量提交");
+        }
+        return backend;
+    }
+
+    /**
+     * 生成 CDN URL：按策略配置的提供方顺序（cdnProviders）取第一个健康的提供方，全部不可用时取第一个。
      * jsDelivr GitHub 路由：/gh/{owner}/{repo}@{branch}/{path}
      * @param spec 仓库配置
      * @param path 相对路径
      * @return 可直接访问的 CDN URL
      */
     public Mono<String> buildCdnUrl(GithubOssPolicySettings settings, String path) {
+        return buildCdnUrl(settings, path, null);
+    }
+
+    /**
+     * 生成 CDN URL；策略开启 pinCommit 且附件记录了 commitSha 时生成 /gh/{owner}/{repo}@{commitSha}/{path}，
+     * jsDelivr 会将其视为不可变资源长期缓存；旧附件没有 commitSha 时仍按分支生成，保证原链接可用。
+     * @param commitSha 上传时记录的提交 SHA，可为空
+     */
+    public Mono<String> buildCdnUrl(GithubOssPolicySettings settings, String path, String commitSha) {
+        return buildCdnUrlPattern(settings).map(pattern -> pattern.format(path, commitSha));
+    }
+
+    /**
+     * 预先展开策略的访问地址（首选提供方），结果可缓存，之后每个附件只需拼接 ref 与 path。
+     * 缓存方应在 cdnHealth().version() 变化后重新获取。
+     */
+    public Mono<CdnUrlPattern> buildCdnUrlPattern(GithubOssPolicySettings settings) {
+        return cdnProviders(settings).map(providers -> providers.stream()
+                .filter(provider -> CDN_HEALTH.healthy(provider.host()))
+                .findFirst()
+                .orElse(providers.get(0))
+                .pattern());
+    }
+
+    /**
+     * 按优先级排列的全部提供方（不论健康状态），见 {@link CdnProviders}。
+     */
+    public Mono<List<CdnProviders.Provider>> cdnProviders(GithubOssPolicySettings settings) {
         return client.fetch(ConfigMap.class, Constant.PLUGIN_GITHUBOSS_CONFIGMAP)
                     .map(ConfigMap::getData)
                     .map(data -> {
                         String basicJson = data.get(GitHubThemeSettings.GitHub_BASIC);
-                        return JsonUtils.jsonToObject(basicJson, GitHubBasic.class).getJsdelivr();
+                        String jsdelivr = basicJson == null ? null : JsonUtils.jsonToObject(basicJson, GitHubBasic.class).getJsdelivr();
+                        return jsdelivr == null ? "" : jsdelivr;
                     })
-                    .defaultIfEmpty("gcore.jsdelivr.net")
-                    .map(jsdelivr -> {
-                        String branch = settings.getBranch() == null ? "main" : settings.getBranch();
-                        return String.format("https://%s/gh/%s/%s@%s/%s", jsdelivr, settings.getOwner(), settings.getRepoName(), branch, path); 
-                    });
+                    .defaultIfEmpty("")
+                    .map(jsdelivr -> CdnProviders.resolve(settings, jsdelivr));
+    }
+
+    /**
+     * 访问地址提供方的主机健康状态。
+     */
+    public CdnHealth cdnHealth() {
+        return CDN_HEALTH;
     }
 
     /**
@@ -196,6 +374,74 @@ public class GitHubService {
                 });
     }
 
+    /**
+     * 供接口返回的代理配置：已设置的代理密码以 {@link #PASSWORD_MASK} 代替，不返回明文。
+     */
+    public Mono<NetworkConfig> getProxyConfigMasked() {
+        return getProxyConfig().map(GitHubService::maskPassword);
+    }
+
+    /**
+     * 校验并保存代理配置到插件 ConfigMap，返回掩码后的配置。
+     * 超时未设置或不为正时使用默认值；代理密码为 {@link #PASSWORD_MASK} 时沿用已保存的密码。
+     */
+    public Mono<NetworkConfig> saveProxyConfig(NetworkConfig req) {
+        if (req == null) {
+            return Mono.error(new IllegalArgumentException("请求体不能为空"));
+        }
+        if (req.getTimeoutMs() == null || req.getTimeoutMs() <= 0) {
+            req.setTimeoutMs(10000);
+        }
+        if (req.getConnectTimeoutMs() != null && req.getConnectTimeoutMs() <= 0) {
+            req.setConnectTimeoutMs(null);
+        }
+        try {
+            ProxyRouter.validate(req);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+        return client.fetch(ConfigMap.class, Constant.PLUGIN_GITHUBOSS_CONFIGMAP)
+                .flatMap(cm -> {
+                    Map<String, String> data = cm.getData();
+                    if (data == null) data = new HashMap<>();
+                    if (PASSWORD_MASK.equals(req.getProxyPassword())) {
+                        String json = data.get(GitHubThemeSettings.GitHub_NETWORK);
+                        req.setProxyPassword(json == null || json.isBlank() ? null
+                                : JsonUtils.jsonToObject(json, NetworkConfig.class).getProxyPassword());
+                    }
+                    data.put(GitHubThemeSettings.GitHub_NETWORK, JsonUtils.objectToJson(req));
+                    cm.setData(data);
+                    return client.update(cm).then(Mono.fromSupplier(() -> maskPassword(req)));
+                });
+    }
+
+    private static NetworkConfig maskPassword(NetworkConfig cfg) {
+        if (cfg.getProxyPassword() != null && !cfg.getProxyPassword().isEmpty()) {
+            cfg.setProxyPassword(PASSWORD_MASK);
+        }
+        return cfg;
+    }
+
+    /**
+     * 构建 Contents API 上传请求体（Base64 编码内容）。包可见以便基准测试。
+     */
+    static String buildUploadBody(String message, String branch, byte[] data) {
+        return "{" +
+                "\"message\":\"" + escapeJson(message) + "\"," +
+                (branch != null ? "\"branch\":\"" + escapeJson(branch) + "\"," : "") +
+                "\"content\":\"" + Base64.getEncoder().encodeToString(data) + "\"" +
+                "}";
+    }
+
+    /**
+     * 解析上传响应，响应体结构为 {"content":{...,"sha":"..."},"commit":{"sha":"...",...}}。包可见以便基准测试。
+     */
+    static UploadResult parseUploadResponse(String body) {
+        String sha = extractByKey(body, "\"sha\":\"", "\"");
+        String commitSha = extractAfter(body, "\"commit\":", "\"sha\":\"", "\"");
+        return new UploadResult(sha, commitSha);
+    }
+
     /**
      * JSON 简易转义，避免字符串中包含特殊字符导致请求体无效。
      */
@@ -215,24 +461,36 @@ public class GitHubService {
         return src.substring(i + keyStart.length(), j);
     }
 
+    /**
+     * 先定位 anchor（如 "commit":），再从其后提取 key 对应的值，用于区分同名字段。
+     */
+    private static String extractAfter(String src, String anchor, String keyStart, String endToken) {
+        int a = src.indexOf(anchor);
+        if (a < 0) return null;
+        return extractByKey(src.substring(a + anchor.length()), keyStart, endToken);
+    }
+
     /**
      * 根据仓库路径获取文件的 SHA，用于删除操作。
      * 注意：GitHub Contents API 会返回 JSON，其中包含 sha 字段。
      */
     public Mono<String> fetchContentSha(GithubOssPolicySettings settings, String path) {
-        String url = String.format("https://api.github.com/repos/%s/%s/contents/%s?ref=%s",
-                settings.getOwner(), settings.getRepoName(), path, settings.getBranch() == null ? "main" : settings.getBranch());
-        return getProxyConfig()
-            .flatMap(cfg -> Mono.fromCallable(() -> {
+        ForgeBackend backend = ForgeBackends.of(settings);
+        String url = backend.contentsUrl(settings, path) + "?ref=" + (settings.getBranch() == null ? "main" : settings.getBranch());
+        return metrics.observe("contents_get_sha", settings, stages -> getProxyConfig()
+            .flatMap(cfg -> {
                 HttpClient client = buildBaseGitHubHttpClient(cfg);
+                URI uri = URI.create(url);
                 HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(url))
-                        .header("Authorization", "Bearer " + settings.getToken())
-                        .header("Accept", "application/vnd.github+json")
-                        .timeout(java.time.Duration.ofMillis(cfg.getTimeoutMs()))
+                        .uri(uri)
+                        .header("Authorization", backend.authorization(settings.getToken()))
+                        .header("Accept", backend.accept())
+                        .timeout(timeout(cfg, "GET", uri, 0))
                         .GET()
                         .build();
-                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                return exchange(stages, client, request);
+            })
+            .map(response -> {
                 if (response.statusCode() >= 200 && response.statusCode() < 300) {
                     String body = response.body();
                     int idx = body.indexOf("\"sha\":\"");
@@ -246,7 +504,7 @@ public class GitHubService {
                     throw new IllegalStateException("未从 GitHub API 响应中解析到 sha 字段");
                 }
                 throw new IllegalStateException("获取内容 SHA 失败，状态码：" + response.statusCode() + ", 响应：" + response.body());
-            }).subscribeOn(reactor.core.scheduler.Schedulers.boundedElastic()));
+            }));
     }
 
     /**
@@ -254,29 +512,343 @@ public class GitHubService {
      * 若 path 为空则查询仓库根目录。
      */
     public Mono<String> listDirectoryContents(GithubOssPolicySettings settings, String path) {
-        String p = (path == null || path.isBlank()) ? "" : path;
+        return listDirectory(settings, path, null, false);
+    }
+
+    /**
+     * 查询指定提交（ref 为空时为分支）上的目录内容；按 headCommit 得到的提交查询，结果与该版本一致。
+     */
+    public Mono<String> listDirectoryContents(GithubOssPolicySettings settings, String path, String ref) {
+        return listDirectory(settings, path, ref, false);
+    }
+
+    /**
+     * 分支 head 的提交 sha，作为目录内容的数据版本；分支不存在或平台不支持 Git Data API 时返回空。
+     */
+    public Mono<String> headCommit(GithubOssPolicySettings settings) {
+        ForgeBackend backend = ForgeBackends.of(settings);
+        if (!backend.supportsGitData()) {
+            return Mono.empty();
+        }
         String branch = settings.getBranch() == null ? "main" : settings.getBranch();
-        String url = String.format("https://api.github.com/repos/%s/%s/contents/%s?ref=%s",
-                settings.getOwner(), settings.getRepoName(), p, branch);
-        return getProxyConfig()
-            .flatMap(cfg -> Mono.fromCallable(() -> {
+        return metrics.observe("ref_read", settings, stages -> getProxyConfig()
+                .flatMap(cfg -> gitGet(stages, buildBaseGitHubHttpClient(cfg), cfg, backend, settings, "ref/heads/" + branch))
+                .flatMap(ref -> Mono.justOrEmpty(ref.path("object").path("sha").asText(null))));
+    }
+
+    /**
+     * 查询目录内容，目录不存在（404）时返回空。
+     */
+    public Mono<String> listDirectoryIfExists(GithubOssPolicySettings settings, String path) {
+        return listDirectory(settings, path, null, true);
+    }
+
+    /**
+     * 目录中的文件与子目录名，分支或目录不存在时返回空。
+     * 支持 Git Data API 的平台读取目录对应的 tree，不受 Contents API 单个目录最多返回 1000 项的限制；其余平台使用 Contents API。
+     */
+    public Mono<List<String>> listDirectoryNames(GithubOssPolicySettings settings, String path) {
+        if (ForgeBackends.of(settings).supportsGitData()) {
+            return resolveTreeSha(settings, path)
+                    .flatMap(sha -> readTree(settings, sha))
+                    .map(entries -> entries.stream().map(TreeEntry::name).toList());
+        }
+        return listDirectoryIfExists(settings, path).map(json -> {
+            List<String> names = new java.util.ArrayList<>();
+            JsonNode node = JsonUtils.jsonToObject(json, JsonNode.class);
+            if (node != null && node.isArray()) {
+                node.forEach(entry -> {
+                    JsonNode name = entry.get("name");
+                    if (name != null) names.add(name.asText());
+                });
+            }
+            return names;
+        });
+    }
+
+    private Mono<String> listDirectory(GithubOssPolicySettings settings, String path, String ref, boolean missingAsEmpty) {
+        String p = (path == null || path.isBlank()) ? "" : path;
+        String branch = ref != null ? ref : settings.getBranch() == null ? "main" : settings.getBranch();
+        ForgeBackend backend = ForgeBackends.of(settings);
+        String url = backend.contentsUrl(settings, p) + "?ref=" + branch;
+        return metrics.observe("contents_list", settings, stages -> getProxyConfig()
+            .flatMap(cfg -> {
                 HttpClient client = buildBaseGitHubHttpClient(cfg);
+                URI uri = URI.create(url);
                 HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(url))
-                        .header("Authorization", "Bearer " + settings.getToken())
-                        .header("Accept", "application/vnd.github+json")
-                        .timeout(java.time.Duration.ofMillis(cfg.getTimeoutMs()))
+                        .uri(uri)
+                        .header("Authorization", backend.authorization(settings.getToken()))
+                        .header("Accept", backend.accept())
+                        .timeout(timeout(cfg, "GET", uri, 0))
                         .GET()
                         .build();
-                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                return exchange(stages, client, request);
+            })
+            .flatMap(response -> {
                 if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                    return response.body();
+                    return Mono.just(response.body());
                 }
                 if (response.statusCode() == 404) {
-                    throw new IllegalStateException("指定仓库"+p+"目录不存在，github响应：" + response.body());
+                    if (missingAsEmpty) {
+                        return Mono.empty();
+                    }
+                    return Mono.error(new IllegalStateException("指定仓库"+p+"目录不存在，github响应：" + response.body()));
+                }
+                return Mono.error(new IllegalStateException("目录内容查询失败，状态码：" + response.statusCode() + ", 响应：" + response.body()));
+            }));
+    }
+
+    /**
+     * Git 树中的一项：type 为 blob（文件）或 tree（目录）。目录的 sha 即子树 sha，子树内任何文件变化都会改变它。
+     */
+    public record TreeEntry(String name, String type, String sha, long size) {}
+
+    /**
+     * 查询分支上目录对应的 tree sha，分支或目录不存在时返回空。
+     * 从 head 提交的根 tree 逐级向下查找，请求数为路径深度 + 2。仅支持 Git Data API 的平台可用。
+     */
+    public Mono<String> resolveTreeSha(GithubOssPolicySettings settings, String path) {
+        ForgeBackend backend = ForgeBackends.of(settings);
+        if (!backend.supportsGitData()) {
+            return Mono.error(new IllegalStateException("当前仓库平台不支持 Git Data API: " + backend.type()));
+        }
+        String branch = settings.getBranch() == null ? "main" : settings.getBranch();
+        return metrics.observe("tree_resolve", settings, stages -> getProxyConfig().flatMap(cfg -> {
+            HttpClient http = buildBaseGitHubHttpClient(cfg);
+            Mono<String> sha = gitGet(stages, http, cfg, backend, settings, "ref/heads/" + branch)
+                    .flatMap(ref -> Mono.justOrEmpty(ref.path("object").path("sha").asText(null)))
+                    .flatMap(commit -> gitGet(stages, http, cfg, backend, settings, "commits/" + commit))
+                    .flatMap(commit -> Mono.justOrEmpty(commit.path("tree").path("sha").asText(null)));
+            String p = path == null ? "" : path;
+            for (String segment : p.split("/")) {
+                if (segment.isBlank()) {
+                    continue;
                 }
-                throw new IllegalStateException("目录内容查询失败，状态码：" + response.statusCode() + ", 响应：" + response.body());
-            }).subscribeOn(reactor.core.scheduler.Schedulers.boundedElastic()));
+                sha = sha.flatMap(tree -> gitGet(stages, http, cfg, backend, settings, "trees/" + tree))
+                        .flatMap(tree -> Mono.justOrEmpty(childTreeSha(tree, segment)));
+            }
+            return sha;
+        }));
+    }
+
+    /**
+     * 读取一层 tree（非递归），返回其中的文件与子目录；子模块等其他类型的项被忽略。
+     */
+    public Mono<List<TreeEntry>> readTree(GithubOssPolicySettings settings, String treeSha) {
+        ForgeBackend backend = ForgeBackends.of(settings);
+        return metrics.observe("tree_read", settings, stages -> getProxyConfig()
+                .flatMap(cfg -> gitGet(stages, buildBaseGitHubHttpClient(cfg), cfg, backend, settings, "trees/" + treeSha))
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("tree 不存在: " + treeSha)))
+                .map(tree -> {
+                    List<TreeEntry> entries = new java.util.ArrayList<>();
+                    for (JsonNode node : tree.path("tree")) {
+                        String type = node.path("type").asText();
+                        if ("blob".equals(type) || "tree".equals(type)) {
+                            entries.add(new TreeEntry(node.path("path").asText(), type,
+                                    node.path("sha").asText(), node.path("size").asLong(0)));
+                        }
+                    }
+                    return entries;
+                }));
+    }
+
+    /**
+     * 递归读取整个 tree 的文件（?recursive=1，一次请求）；条目过多时 GitHub 截断结果并标记 truncated。
+     */
+    public Mono<TreeListing> readTreeRecursive(GithubOssPolicySettings settings, String treeSha) {
+        ForgeBackend backend = requireGitData(settings);
+        return metrics.observe("tree_read_recursive", settings, stages -> getProxyConfig()
+                .flatMap(cfg -> gitGet(stages, buildBaseGitHubHttpClient(cfg), cfg, backend, settings, "trees/" + treeSha + "?recursive=1"))
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("tree 不存在: " + treeSha)))
+                .map(tree -> {
+                    Map<String, String> files = new java.util.HashMap<>();
+                    for (JsonNode node : tree.path("tree")) {
+                        if ("blob".equals(node.path("type").asText())) {
+                            files.put(node.path("path").asText(), node.path("sha").asText());
+                        }
+                    }
+                    return new TreeListing(files, tree.path("truncated").asBoolean(false));
+                }));
+    }
+
+    /**
+     * 从 root 目录（tree sha 为 treeSha）开始按层遍历其下全部文件：读完一层后先输出本层文件，再进入下一层；
+     * 同一层内按目录与 tree 中的顺序输出。onDirectory 在每读完一个目录时调用，可为空。
+     */
+    public Flux<RepoFile> walkTree(GithubOssPolicySettings settings, String root, String treeSha, Runnable onDirectory) {
+        return walkLevel(settings, List.of(Map.entry(root, treeSha)), onDirectory);
+    }
+
+    private Flux<RepoFile> walkLevel(GithubOssPolicySettings settings, List<Map.Entry<String, String>> level, Runnable onDirectory) {
+        if (level.isEmpty()) {
+            return Flux.empty();
+        }
+        return Flux.fromIterable(level)
+                .flatMapSequential(dir -> readTree(settings, dir.getValue())
+                        .map(entries -> Map.entry(dir.getKey(), entries)), TREE_CONCURRENCY)
+                .collectList()
+                .flatMapMany(listings -> {
+                    List<RepoFile> files = new ArrayList<>();
+                    List<Map.Entry<String, String>> next = new ArrayList<>();
+                    for (var listing : listings) {
+                        if (onDirectory != null) {
+                            onDirectory.run();
+                        }
+                        for (TreeEntry entry : listing.getValue()) {
+                            String path = listing.getKey().isEmpty() ? entry.name() : listing.getKey() + "/" + entry.name();
+                            if ("tree".equals(entry.type())) {
+                                next.add(Map.entry(path, entry.sha()));
+                            } else {
+                                files.add(new RepoFile(path, entry.sha(), entry.size()));
+                            }
+                        }
+                    }
+                    return Flux.fromIterable(files).concatWith(Flux.defer(() -> walkLevel(settings, next, onDirectory)));
+                });
+    }
+
+    /**
+     * 分支上这些目录中直接包含的文件（完整路径）；不存在的目录视为空。
+     */
+    public Mono<Set<String>> filesIn(GithubOssPolicySettings settings, Collection<String> dirs) {
+        return filesIn(settings, null, dirs);
+    }
+
+    /**
+     * 同上，目录相对 rootTree 解析（例如某个旧提交的 tree）；rootTree 为空时相对分支 head。
+     */
+    public Mono<Set<String>> filesIn(GithubOssPolicySettings settings, String rootTree, Collection<String> dirs) {
+        Set<String> existing = ConcurrentHashMap.newKeySet();
+        return Flux.fromIterable(Set.copyOf(dirs))
+                .flatMap(dir -> (rootTree == null ? resolveTreeSha(settings, dir) : subtreeSha(settings, rootTree, dir))
+                        .flatMap(sha -> readTree(settings, sha))
+                        .doOnNext(entries -> entries.stream()
+                                .filter(entry -> "blob".equals(entry.type()))
+                                .forEach(entry -> existing.add(dir.isEmpty() ? entry.name() : dir + "/" + entry.name()))), TREE_CONCURRENCY)
+                .then(Mono.fromSupplier(() -> existing));
+    }
+
+    // 从 treeSha 开始逐级取子目录的 tree sha；目录不存在时返回空
+    private Mono<String> subtreeSha(GithubOssPolicySettings settings, String treeSha, String path) {
+        Mono<String> sha = Mono.just(treeSha);
+        for (String segment : path.split("/")) {
+            if (segment.isBlank()) {
+                continue;
+            }
+            sha = sha.flatMap(tree -> readTree(settings, tree))
+                    .flatMap(entries -> Mono.justOrEmpty(entries.stream()
+                            .filter(entry -> "tree".equals(entry.type()) && segment.equals(entry.name()))
+                            .map(TreeEntry::sha)
+                            .findFirst()));
+        }
+        return sha;
+    }
+
+    /**
+     * 以流的形式读取 blob 原始内容（Git Data API，Accept: application/vnd.github.raw）。
+     * 收到响应头即返回，内容随调用方读取从连接中拉取，不在内存中缓存整个文件；调用方负责关闭。
+     */
+    public Mono<InputStream> openBlob(GithubOssPolicySettings settings, String sha) {
+        ForgeBackend backend = ForgeBackends.of(settings);
+        return metrics.observe("blob_read", settings, stages -> getProxyConfig().flatMap(cfg -> {
+            URI uri = URI.create(backend.gitUrl(settings, "blobs/" + sha));
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(uri)
+                    .header("Authorization", backend.authorization(settings.getToken()))
+                    .header("Accept", "application/vnd.github.raw")
+                    .timeout(timeout(cfg, "GET", uri, 0))
+                    .GET()
+                    .build();
+            long start = System.nanoTime();
+            return Mono.fromFuture(() -> buildBaseGitHubHttpClient(cfg).sendAsync(request, HttpResponse.BodyHandlers.ofInputStream()))
+                    .doOnError(e -> stages.response(start, -1))
+                    .map(resp -> {
+                        stages.response(start, resp.statusCode());
+                        RATE_LIMITS.observe(request, resp);
+                        if (resp.statusCode() >= 200 && resp.statusCode() < 300) {
+                            return resp.body();
+                        }
+                        try (InputStream body = resp.body()) {
+                            String message = new String(body.readNBytes(1024), StandardCharsets.UTF_8);
+                            throw new RuntimeException("GitHub 读取 blob 失败，状态码=" + resp.statusCode() + ", 响应=" + message);
+                        } catch (java.io.IOException e) {
+                            throw new RuntimeException("GitHub 读取 blob 失败，状态码=" + resp.statusCode(), e);
+                        }
+                    });
+        }));
+    }
+
+    private static String childTreeSha(JsonNode tree, String name) {
+        for (JsonNode node : tree.path("tree")) {
+            if ("tree".equals(node.path("type").asText()) && name.equals(node.path("path").asText())) {
+                return node.path("sha").asText(null);
+            }
+        }
+        return null;
+    }
+
+    // GET git/{suffix}：2xx 返回 JSON，404/409（不存在、空仓库）返回空，其余状态码报错
+    private static Mono<JsonNode> gitGet(GitHubMetrics.StageRecorder stages, HttpClient http, NetworkConfig cfg,
+                                         ForgeBackend backend, GithubOssPolicySettings settings, String suffix) {
+        URI uri = URI.create(backend.gitUrl(settings, suffix));
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(uri)
+                .header("Authorization", backend.authorization(settings.getToken()))
+                .header("Accept", backend.accept())
+                .timeout(timeout(cfg, "GET", uri, 0))
+                .GET()
+                .build();
+        return exchange(stages, http, request).flatMap(response -> {
+            if (response.statusCode() >= 200 && response.statusCode() < 300) {
+                return Mono.just(JsonUtils.jsonToObject(response.body(), JsonNode.class));
+            }
+            if (response.statusCode() == 404 || response.statusCode() == 409) {
+                return Mono.empty();
+            }
+            return Mono.error(new IllegalStateException("读取 git/" + suffix + " 失败，状态码：" + response.statusCode() + ", 响应：" + response.body()));
+        });
+    }
+
+    /**
+     * 非阻塞发送请求并记录 GitHub 往返耗时与状态码；取消订阅时取消 sendAsync 返回的 future，从而中止 HTTP 交换。
+     * 耗时同时计入 RequestTimeouts，用于之后同类请求的时限。
+     */
+    static Mono<HttpResponse<String>> exchange(GitHubMetrics.StageRecorder stages, HttpClient http, HttpRequest request) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return Mono.fromFuture(() -> http.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)))
+                    .doOnNext(resp -> {
+                        stages.response(start, resp.statusCode());
+                        RATE_LIMITS.observe(request, resp);
+                        TIMEOUTS.observe(request, System.nanoTime() - start, false);
+                    })
+                    .doOnError(e -> {
+                        stages.response(start, -1);
+                        if (isRequestTimeout(e)) {
+                            TIMEOUTS.observe(request, System.nanoTime() - start, true);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * 按操作类型、目标主机与请求体大小计算请求时限（见 RequestTimeouts）。
+     */
+    static Duration timeout(NetworkConfig cfg, String method, URI uri, long bodyBytes) {
+        return TIMEOUTS.of(cfg, method, uri, bodyBytes);
+    }
+
+    /**
+     * 各 API 主机当前的耗时、吞吐量估计与按当前配置得出的时限。
+     */
+    public Mono<List<RequestTimeouts.Estimate>> requestTimeouts() {
+        return getProxyConfig().map(TIMEOUTS::estimates);
+    }
+
+    // 超过请求时限（连接超时单独计算，不影响请求时限的估计）
+    private static boolean isRequestTimeout(Throwable e) {
+        Throwable cause = e instanceof java.util.concurrent.CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof java.net.http.HttpTimeoutException && !(cause instanceof java.net.http.HttpConnectTimeoutException);
     }
 
     public Mono<Boolean> checkConnectivity() {
@@ -284,28 +856,192 @@ public class GitHubService {
             .map(com.xirizhi.plugingithuboss.service.GitHubService.NetworkTestItem::isSuccess)
             .onErrorReturn(false);
     }
+
+    /**
+     * 按策略所选平台的 API 地址检测连通性（github.com 即 api.github.com）。
+     */
+    public Mono<Boolean> checkConnectivity(GithubOssPolicySettings settings) {
+        return Mono.fromCallable(() -> ForgeBackends.of(settings).apiBase(settings))
+            .flatMap(apiBase -> probe(URI.create(apiBase).getHost(), apiBase + "/"))
+            .map(NetworkTestItem::isSuccess)
+            .onErrorReturn(false);
+    }
     /**
-     * 构建用于访问 GitHub API 的基础 HttpClient（应用代理与超时配置）
+     * 获取用于访问 GitHub API 的 HttpClient（应用代理配置），按代理配置复用同一实例
      *
      * 说明：
-     * - 从插件配置中读取网络设置（代理开关、代理地址、超时时间）
-     * - 代理地址支持 "http://host:port" 或 "socks://host:port" 两种格式
-     * - 若配置缺失或异常，则使用默认超时 10000ms 且不启用代理
+     * - 从插件配置中读取网络设置（代理开关、代理地址、类型、认证与按主机路由）与连接超时；请求时限在每个请求上按操作类型单独设置
+     * - 代理地址格式为 "host:port"，代理时由 ProxyRouter 按主机选择直连或代理
+     * - 开启虚拟线程时，HttpClient 的异步回调在虚拟线程上执行
      */
     public HttpClient buildBaseGitHubHttpClient(NetworkConfig cfg) {
-        HttpClient.Builder builder = HttpClient.newBuilder();
-        if (Boolean.TRUE.equals(cfg.getEnabled())) {
-            ProxySelector selector = buildProxySelector(cfg);
-            if (selector != null) builder.proxy(selector);
+        return sharedHttpClient(cfg, HttpClient.Redirect.NEVER);
+    }
+
+    /**
+     * 与 {@link #buildBaseGitHubHttpClient} 相同的代理路由与连接超时，但跟随重定向（NORMAL，不从 https 降级到 http），
+     * 用于下载附件等访问非 API 地址的场景。
+     */
+    public HttpClient buildRedirectingHttpClient(NetworkConfig cfg) {
+        return sharedHttpClient(cfg, HttpClient.Redirect.NORMAL);
+    }
+
+    private HttpClient sharedHttpClient(NetworkConfig cfg, HttpClient.Redirect redirect) {
+        boolean proxied = Boolean.TRUE.equals(cfg.getEnabled());
+        String baseKey = proxied ? routerKey(cfg) : "direct|" + RequestTimeouts.connect(cfg).toMillis();
+        String key = redirect == HttpClient.Redirect.NEVER ? baseKey : baseKey + REDIRECTING;
+        HttpClient cached = HTTP_CLIENTS.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (HTTP_CLIENTS.size() >= MAX_HTTP_CLIENTS) {
+            // 代理地址频繁变更时避免无限增长
+            HTTP_CLIENTS.keySet().stream().map(GitHubService::baseKey).distinct().toList().forEach(GitHubService::evictHttpClient);
+        }
+        if (proxied) {
+            // 代理配置变更后旧路由不再使用
+            ROUTERS.keySet().stream().filter(k -> !k.equals(baseKey)).toList().forEach(GitHubService::evictHttpClient);
+        }
+        return HTTP_CLIENTS.computeIfAbsent(key, k -> {
+            HttpClient.Builder builder = HttpClient.newBuilder().connectTimeout(RequestTimeouts.connect(cfg)).followRedirects(redirect);
+            if (VIRTUAL_THREADS) {
+                builder.executor(Executors.newVirtualThreadPerTaskExecutor());
+            }
+            if (!proxied) {
+                return builder.build();
+            }
+            // 两种客户端共用同一路由，后建的一方沿用已有路由，不关闭另一方正在使用的代理桥
+            ProxyRouter router = ROUTERS.computeIfAbsent(baseKey, rk -> new ProxyRouter(cfg));
+            return router.authorize(builder.proxy(router).build());
+        });
+    }
+
+    // 移除某一路由配置下的两种 HttpClient 并关闭其代理路由（代理桥与测速任务）；shutdown 不再接受新请求，已发出的请求照常完成后释放选择器线程
+    private static void evictHttpClient(String key) {
+        for (String clientKey : List.of(key, key + REDIRECTING)) {
+            HttpClient client = HTTP_CLIENTS.remove(clientKey);
+            if (client != null) {
+                client.shutdown();
+            }
+        }
+        ProxyRouter router = ROUTERS.remove(key);
+        if (router != null) {
+            router.close();
+        }
+    }
+
+    /**
+     * 预先建立到 url 所在主机的连接：经共享 HttpClient 发送 HEAD，完成 DNS、TCP、代理隧道与 TLS 握手，
+     * 连接留在连接池中，TLS 会话可供之后的握手复用。返回 HTTP 状态码，任何状态码都说明连接已建立。
+     */
+    public Mono<Integer> preconnect(String url) {
+        return getProxyConfig().flatMap(cfg -> {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(url))
+                    .timeout(Duration.ofMillis(cfg.getTimeoutMs() == null || cfg.getTimeoutMs() <= 0 ? 10000 : cfg.getTimeoutMs()))
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .build();
+            HttpClient http = buildBaseGitHubHttpClient(cfg);
+            return Mono.fromFuture(() -> http.sendAsync(request, HttpResponse.BodyHandlers.discarding()))
+                    .map(HttpResponse::statusCode);
+        });
+    }
+
+    /**
+     * 释放共享的 HttpClient（不再接受新请求，进行中的请求继续完成）、代理桥与虚拟线程调度器；之后的请求会重新创建。
+     */
+    public static void releaseConnections() {
+        HTTP_CLIENTS.values().forEach(HttpClient::shutdown);
+        HTTP_CLIENTS.clear();
+        ROUTERS.values().forEach(ProxyRouter::close);
+        ROUTERS.clear();
+        synchronized (GitHubService.class) {
+            Scheduler scheduler = virtualThreadScheduler;
+            virtualThreadScheduler = null;
+            if (scheduler != null) {
+                scheduler.dispose();
+            }
+        }
+    }
+
+    /**
+     * 仍需阻塞的少量操作（如 DNS 查询）使用的调度器：开启虚拟线程时为虚拟线程，否则为 boundedElastic。
+     */
+    static Scheduler blockingScheduler() {
+        if (!VIRTUAL_THREADS) {
+            return Schedulers.boundedElastic();
+        }
+        Scheduler scheduler = virtualThreadScheduler;
+        if (scheduler == null) {
+            synchronized (GitHubService.class) {
+                scheduler = virtualThreadScheduler;
+                if (scheduler == null) {
+                    scheduler = Schedulers.fromExecutorService(Executors.newVirtualThreadPerTaskExecutor(), "githuboss-vt");
+                    virtualThreadScheduler = scheduler;
+                }
+            }
         }
-        return builder.build();
+        return scheduler;
     }
 
-    // 解析代理配置，仅支持 HTTP 代理，返回可应用于 HttpClient 的 ProxySelector
-    private static ProxySelector buildProxySelector(NetworkConfig cfg) {
-        String[] path = cfg.getProxyPath().split(":");
-        log.info("构建 HTTP 代理 {}:{}", path[0].trim(), path[1].trim());
-        return ProxySelector.of(new InetSocketAddress(path[0], Integer.parseInt(path[1])));
+    private static String baseKey(String clientKey) {
+        return clientKey.endsWith(REDIRECTING) ? clientKey.substring(0, clientKey.length() - REDIRECTING.length()) : clientKey;
+    }
+
+    // 代理路由相关的配置项与连接超时，任一变化都重建 HttpClient 与 ProxyRouter（请求时限按请求设置，不参与）
+    private static String routerKey(NetworkConfig cfg) {
+        return String.join("|", "proxy", String.valueOf(RequestTimeouts.connect(cfg).toMillis()),
+                String.valueOf(cfg.getProxyPath()), String.valueOf(cfg.getProxyType()),
+                String.valueOf(cfg.getProxyUsername()), String.valueOf(cfg.getProxyPassword()), String.valueOf(cfg.getRouteMode()),
+                String.valueOf(cfg.getRouteRules()), String.valueOf(cfg.getProbeIntervalMinutes()));
+    }
+
+    /**
+     * 按当前代理配置访问 uri 时使用的代理（直连时为 Proxy.NO_PROXY）。
+     */
+    public Mono<Proxy> proxyFor(URI uri) {
+        return getProxyConfig().map(cfg -> {
+            if (!Boolean.TRUE.equals(cfg.getEnabled())) {
+                return Proxy.NO_PROXY;
+            }
+            buildBaseGitHubHttpClient(cfg);
+            ProxyRouter router = ROUTERS.get(routerKey(cfg));
+            return router == null ? Proxy.NO_PROXY : router.select(uri).get(0);
+        });
+    }
+
+    /**
+     * 按当前代理配置访问 uri 时经过的本机代理桥；直连、未经桥接的代理或未启用代理时为空。
+     */
+    Mono<Optional<ProxyBridge>> bridgeFor(URI uri) {
+        return getProxyConfig().map(cfg -> {
+            if (!Boolean.TRUE.equals(cfg.getEnabled())) {
+                return Optional.<ProxyBridge>empty();
+            }
+            buildBaseGitHubHttpClient(cfg);
+            ProxyRouter router = ROUTERS.get(routerKey(cfg));
+            if (router == null || router.select(uri).get(0).type() == Proxy.Type.DIRECT) {
+                return Optional.<ProxyBridge>empty();
+            }
+            return Optional.ofNullable(router.bridge());
+        });
+    }
+
+    /**
+     * 当前代理路由下各主机的路由与测速结果；未启用代理时为空。
+     */
+    public Mono<List<ProxyRouter.HostRoute>> proxyRoutes(boolean probeNow) {
+        return getProxyConfig().flatMap(cfg -> {
+            if (!Boolean.TRUE.equals(cfg.getEnabled())) {
+                return Mono.just(List.<ProxyRouter.HostRoute>of());
+            }
+            buildBaseGitHubHttpClient(cfg);
+            ProxyRouter router = ROUTERS.get(routerKey(cfg));
+            if (router == null) {
+                return Mono.just(List.<ProxyRouter.HostRoute>of());
+            }
+            return (probeNow ? router.probeAll() : Mono.<Void>empty()).then(Mono.fromSupplier(router::routes));
+        });
     }
 
     @Data
@@ -330,41 +1066,53 @@ public class GitHubService {
      * @return 包含每个主机的测试结果（IP 列表、DNS 错误、HTTP 状态码、延迟、是否成功、错误信息）
      */
     public Mono<NetworkTestItem> networkTest(String host) {
-        return getProxyConfig().flatMap(cfg -> Mono.fromCallable(() -> {
+        return probe(host, "https://" + host + "/");
+    }
+
+    // 对指定主机做 DNS 查询，并对 url 发送 HEAD 请求
+    private Mono<NetworkTestItem> probe(String host, String url) {
+        return metrics.observe("network_test", null, stages -> getProxyConfig().flatMap(cfg -> {
             NetworkTestItem item = new NetworkTestItem();
             item.setHost(host);
-            try {
-                InetAddress[] addrs = InetAddress.getAllByName(host);
-                List<String> ips = Arrays.stream(addrs).map(a -> a.getHostAddress()).distinct().toList();
-                item.setIps(ips);
-            } catch (Exception e) {
-                item.setIps(List.of());
-                item.setDnsError(e.getMessage());
-            }
-            long start = System.nanoTime();
-            int status = -1;
-            String error = null;
-            try {
+            // DNS 查询没有异步 API，放到阻塞调度器上执行
+            Mono<NetworkTestItem> dns = Mono.fromCallable(() -> {
+                try {
+                    InetAddress[] addrs = InetAddress.getAllByName(host);
+                    List<String> ips = Arrays.stream(addrs).map(a -> a.getHostAddress()).distinct().toList();
+                    item.setIps(ips);
+                } catch (Exception e) {
+                    item.setIps(List.of());
+                    item.setDnsError(e.getMessage());
+                }
+                return item;
+            }).subscribeOn(blockingScheduler());
+            return dns.flatMap(it -> Mono.defer(() -> {
+                long start = System.nanoTime();
                 HttpClient http = buildBaseGitHubHttpClient(cfg);
                 HttpRequest req = HttpRequest.newBuilder()
-                        .uri(URI.create("https://" + host + "/"))
+                        .uri(URI.create(url))
                         .timeout(Duration.ofMillis(cfg.getTimeoutMs()))
                         .method("HEAD", HttpRequest.BodyPublishers.noBody())
                         .build();
-                HttpResponse<Void> resp = http.send(req, HttpResponse.BodyHandlers.discarding());
-                long costMs = (System.nanoTime() - start) / 1_000_000;
-                log.info("测试 {} 连通性，HTTP 状态码 {}，耗时 {}ms resp {}", host, resp.statusCode(), costMs, resp.body());
-                status = resp.statusCode();
-            } catch (Exception ex) {
-                error = ex.getMessage();
-                log.error("测试 {} 连通性失败，耗时 {}ms，错误：{}", host, (System.nanoTime() - start) / 1_000_000, error,ex);
-            }
-            long costMs = (System.nanoTime() - start) / 1_000_000;
-            item.setHttpStatus(status);
-            item.setHttpLatencyMs(costMs);
-            item.setSuccess(status >= 200 && status < 400);
-            if (error != null) item.setError(error);
-            return item;
-        }).subscribeOn(Schedulers.boundedElastic()));
+                return Mono.fromFuture(() -> http.sendAsync(req, HttpResponse.BodyHandlers.discarding()))
+                        .map(resp -> {
+                            long costMs = (System.nanoTime() - start) / 1_000_000;
+                            log.info("测试 {} 连通性，HTTP 状态码 {}，耗时 {}ms resp {}", host, resp.statusCode(), costMs, resp.body());
+                            it.setHttpStatus(resp.statusCode());
+                            it.setHttpLatencyMs(costMs);
+                            it.setSuccess(resp.statusCode() >= 200 && resp.statusCode() < 400);
+                            return it;
+                        })
+                        .onErrorResume(ex -> {
+                            long costMs = (System.nanoTime() - start) / 1_000_000;
+                            log.error("测试 {} 连通性失败，耗时 {}ms，错误：{}", host, costMs, ex.getMessage(), ex);
+                            it.setHttpStatus(-1);
+                            it.setHttpLatencyMs(costMs);
+                            it.setSuccess(false);
+                            it.setError(ex.getMessage());
+                            return Mono.just(it);
+                        });
+            }));
+        }));
     }
 }
\ No newline at end of file
@@ -0,0 +1,335 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.xirizhi.plugingithuboss.exception.PathConflictException;
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.extension.theme.NetworkConfig;
+import com.xirizhi.plugingithuboss.service.forge.ForgeBackend;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import run.halo.app.infra.utils.JsonUtils;
+
+/**
+ * 基于 Git Data API 的乐观提交：blob → tree → commit → PATCH ref（force=false）。
+ * 说明：
+ * - 正确性不依赖任何锁：分支 ref 的比较并交换保证多副本部署时集群范围内不丢提交
+ * - blob 上传在锁外并行；读取 head 与 tree/commit/ref 阶段持有本节点的分支锁，只为避免同节点请求之间互相打回，
+ *   跨节点的竞争由非快进重试处理
+ * - ref 更新返回非快进时，以最新 head 的 tree 为基础重新生成 tree/commit 后重试（blob 无需重传）
+ * - 新建与删除单个文件时，每次尝试都先在该次的 base tree 中核对路径：新建不覆盖已有文件，删除只删除 sha 一致的文件，
+ *   与 Contents API 的语义一致
+ * - 仓库为空（分支尚无 head）时返回空，由调用方退回 Contents API
+ * - 多个文件可先各自上传 blob，再以一个 tree 一次提交（压缩包导入）
+ * - 历史压缩：以当前 tree 生成无父提交并强制更新分支，是唯一使用 force 的操作
+ * - 全程非阻塞，取消订阅会中止进行中的 HTTP 请求
+ */
+@Slf4j
+final class GitRefCommitter {
+
+    static final int MAX_ATTEMPTS = 10;
+    private static final long BASE_BACKOFF_MS = 50;
+    private static final long MAX_BACKOFF_MS = 2000;
+
+    private final HttpClient http;
+    private final NetworkConfig cfg;
+    private final GithubOssPolicySettings settings;
+    private final ForgeBackend backend;
+    private final GitHubMetrics.StageRecorder stages;
+    private final AsyncRepoLock localLock;
+    private final String lockKey;
+    private final String branch;
+
+    GitRefCommitter(HttpClient http, NetworkConfig cfg, GithubOssPolicySettings settings, ForgeBackend backend,
+                    GitHubMetrics.StageRecorder stages, AsyncRepoLock localLock, String lockKey) {
+        this.http = http;
+        this.cfg = cfg;
+        this.settings = settings;
+        this.backend = backend;
+        this.stages = stages;
+        this.localLock = localLock;
+        this.lockKey = lockKey;
+        this.branch = settings.getBranch() == null ? "main" : settings.getBranch();
+    }
+
+    /**
+     * 新建文件并提交，返回内容 sha 与提交 sha；仓库为空时返回空。
+     * 路径已存在且内容相同（如重试前的提交其实已成功）时不再提交，返回当前 head；内容不同时以 PathConflictException 失败。
+     */
+    Mono<GitHubService.UploadResult> put(String path, byte[] data, String message) {
+        return blobRequest(data)
+                // 空仓库不接受 blob（GitHub 返回 409）
+                .flatMap(resp -> resp.statusCode() == 409 ? Mono.<String>empty() : Mono.just(requireSha(resp, "上传 blob")))
+                .flatMap(blobSha -> commit(List.of(treeEntry(path, blobSha)), message, baseTree -> entrySha(baseTree, path)
+                                .map(existing -> {
+                                    if (!existing.equals(blobSha)) {
+                                        throw new PathConflictException(path);
+                                    }
+                                    return false;
+                                })
+                                .defaultIfEmpty(true))
+                        .map(commitSha -> new GitHubService.UploadResult(blobSha, commitSha)));
+    }
+
+    /**
+     * 以已上传的 blob 一次提交多个文件（路径 → blob sha），返回提交 sha；仓库为空时返回空。
+     */
+    Mono<String> putAll(Map<String, String> blobs, String message) {
+        List<Map<String, Object>> entries = blobs.entrySet().stream()
+                .map(e -> treeEntry(e.getKey(), e.getValue()))
+                .toList();
+        return commit(entries, message, baseTree -> Mono.just(true));
+    }
+
+    /**
+     * 只上传 blob，返回 blob sha；不持有分支锁，可并行调用。
+     */
+    Mono<String> blob(byte[] data) {
+        long t0 = System.nanoTime();
+        return createBlob(data).doOnNext(sha -> stages.record("blob_create", t0));
+    }
+
+    /**
+     * 删除文件并提交（tree 项 sha 为 null 表示删除），返回提交 sha；仓库为空时返回空。
+     * 文件已不存在时不提交，返回当前 head；文件 sha 与 expectedSha 不一致时失败，不删除被他人替换过的文件。
+     */
+    Mono<String> delete(String path, String expectedSha, String message) {
+        return commit(List.of(treeEntry(path, null)), message, baseTree -> entrySha(baseTree, path)
+                .map(existing -> {
+                    if (!existing.equals(expectedSha)) {
+                        throw new IllegalStateException("仓库中的文件 " + path + " 与附件记录的 sha 不一致，已拒绝删除");
+                    }
+                    return true;
+                })
+                .defaultIfEmpty(false));
+    }
+
+    /**
+     * 以 head 的 tree 创建无父提交并强制更新分支，丢弃之前的历史；backupBranch 不为空时先以旧 head 创建该分支。
+     * 全程持有本节点的分支锁；强制更新前再次读取 head，已被其他客户端更新时放弃（跨节点仍有极小的竞争窗口）。
+     */
+    Mono<GitHubService.Compaction> squash(String message, String backupBranch) {
+        return localLock.withLock(lockKey, stages, () -> readHead()
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("分支 " + branch + " 尚无提交，无需压缩")))
+                .flatMap(head -> readCommitTree(head).flatMap(tree -> {
+                    Mono<Void> backup = backupBranch == null ? Mono.empty() : createBranch(backupBranch, head);
+                    return backup.then(createCommit(message, tree, List.of()))
+                            .flatMap(commit -> readHead()
+                                    .filter(head::equals)
+                                    .switchIfEmpty(Mono.error(() -> new IllegalStateException(
+                                            "分支 " + branch + " 在压缩过程中被其他客户端更新，已放弃本次压缩")))
+                                    .flatMap(current -> updateRef(commit, true))
+                                    .thenReturn(new GitHubService.Compaction(head, commit, tree, backupBranch)));
+                })));
+    }
+
+    /**
+     * 分支 head 仍为 expected 时强制改回 target（压缩校验失败时回滚）。
+     */
+    Mono<Void> reset(String expected, String target) {
+        return localLock.withLock(lockKey, stages, () -> readHead()
+                .filter(expected::equals)
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("分支 " + branch + " 已被更新，无法回滚到 " + target)))
+                .flatMap(head -> updateRef(target, true))
+                .then());
+    }
+
+    // head 在取得分支锁之后读取：排队等锁的请求拿到的是前一个持有者提交后的 head，不会因过期的 head 被打回。
+    // precondition 以本次尝试的 base tree 核对前提：返回 false 表示无需提交（直接返回 head），出错表示放弃
+    private Mono<String> commit(List<Map<String, Object>> entries, String message,
+                                Function<String, Mono<Boolean>> precondition) {
+        return localLock.withLock(lockKey, stages,
+                () -> readHead().flatMap(head -> attempt(head, entries, message, precondition, 1)));
+    }
+
+    private Mono<String> attempt(String head, List<Map<String, Object>> entries, String message,
+                                 Function<String, Mono<Boolean>> precondition, int attempt) {
+        return readCommitTree(head).flatMap(baseTree -> precondition.apply(baseTree).flatMap(proceed -> proceed
+                ? commitOnto(head, baseTree, entries, message, precondition, attempt)
+                : Mono.just(head)));
+    }
+
+    private Mono<String> commitOnto(String head, String baseTree, List<Map<String, Object>> entries, String message,
+                                    Function<String, Mono<Boolean>> precondition, int attempt) {
+        return createTree(baseTree, entries).flatMap(tree -> {
+            if (tree.equals(baseTree)) {
+                // 无变更（如删除已不存在的文件），无需提交
+                return Mono.just(head);
+            }
+            return createCommit(message, tree, List.of(head)).flatMap(commit -> {
+                long t0 = System.nanoTime();
+                return updateRef(commit, false).flatMap(updated -> {
+                    if (updated) {
+                        stages.record("ref_update", t0);
+                        return Mono.just(commit);
+                    }
+                    stages.record("ref_update", t0, "conflict");
+                    if (attempt >= MAX_ATTEMPTS) {
+                        return Mono.error(new IllegalStateException("分支 " + branch + " 并发更新冲突过多（" + attempt + " 次非快进），请稍后重试"));
+                    }
+                    log.debug("分支 {} 非快进，基于最新 head 重试，第 {} 次", branch, attempt);
+                    return Mono.delay(backoff(attempt))
+                            .then(readHead())
+                            .switchIfEmpty(Mono.error(() -> new IllegalStateException("分支 " + branch + " 在提交过程中被删除")))
+                            .flatMap(newHead -> attempt(newHead, entries, message, precondition, attempt + 1));
+                });
+            });
+        });
+    }
+
+    // 当前分支 head 的提交 sha；仓库为空或分支不存在时返回空
+    private Mono<String> readHead() {
+        return send("GET", backend.gitUrl(settings, "ref/heads/" + branch), null)
+                .flatMap(resp -> resp.statusCode() == 404 || resp.statusCode() == 409
+                        ? Mono.empty()
+                        : Mono.just(requireSha(resp, "读取分支", "object")));
+    }
+
+    private Mono<String> readCommitTree(String commitSha) {
+        return send("GET", backend.gitUrl(settings, "commits/" + commitSha), null)
+                .map(resp -> requireSha(resp, "读取提交", "tree"));
+    }
+
+    // 从 tree 开始逐级查找路径对应条目的 sha（文件为 blob sha，目录为 tree sha）；路径不存在时返回空
+    private Mono<String> entrySha(String treeSha, String path) {
+        int slash = path.indexOf('/');
+        String name = slash < 0 ? path : path.substring(0, slash);
+        return send("GET", backend.gitUrl(settings, "trees/" + treeSha), null).flatMap(resp -> {
+            if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
+                return Mono.error(new RuntimeException("GitHub 读取 tree 失败，状态码=" + resp.statusCode() + ", 响应=" + resp.body()));
+            }
+            JsonNode items = JsonUtils.jsonToObject(resp.body(), JsonNode.class).path("tree");
+            for (JsonNode item : items) {
+                if (name.equals(item.path("path").asText())) {
+                    String sha = item.path("sha").asText();
+                    return slash < 0 ? Mono.just(sha) : entrySha(sha, path.substring(slash + 1));
+                }
+            }
+            return Mono.empty();
+        });
+    }
+
+    private Mono<String> createBlob(byte[] data) {
+        return blobRequest(data).map(resp -> requireSha(resp, "上传 blob"));
+    }
+
+    private Mono<HttpResponse<String>> blobRequest(byte[] data) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("content", Base64.getEncoder().encodeToString(data));
+        body.put("encoding", "base64");
+        return send("POST", backend.gitUrl(settings, "blobs"), body);
+    }
+
+    private Mono<String> createTree(String baseTree, List<Map<String, Object>> entries) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("base_tree", baseTree);
+        body.put("tree", entries);
+        return send("POST", backend.gitUrl(settings, "trees"), body)
+                .map(resp -> requireSha(resp, "创建 tree"));
+    }
+
+    private Mono<String> createCommit(String message, String tree, List<String> parents) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("message", message);
+        body.put("tree", tree);
+        body.put("parents", parents);
+        return send("POST", backend.gitUrl(settings, "commits"), body)
+                .map(resp -> requireSha(resp, "创建提交"));
+    }
+
+    // 非快进（GitHub 返回 422 "Update is not a fast forward"）时返回 false
+    private Mono<Boolean> updateRef(String commitSha, boolean force) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("sha", commitSha);
+        body.put("force", force);
+        return send("PATCH", backend.gitUrl(settings, "refs/heads/" + branch), body).map(resp -> {
+            if (resp.statusCode() >= 200 && resp.statusCode() < 300) {
+                return true;
+            }
+            if (!force && (resp.statusCode() == 409 || (resp.statusCode() == 422 && resp.body().contains("fast forward")))) {
+                return false;
+            }
+            throw new RuntimeException("GitHub 更新分支失败，状态码=" + resp.statusCode() + ", 响应=" + resp.body());
+        });
+    }
+
+    // 新建分支；同名分支已存在时 GitHub 返回 422
+    private Mono<Void> createBranch(String name, String commitSha) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("ref", "refs/heads/" + name);
+        body.put("sha", commitSha);
+        return send("POST", backend.gitUrl(settings, "refs"), body).flatMap(resp -> {
+            if (resp.statusCode() >= 200 && resp.statusCode() < 300) {
+                return Mono.<Void>empty();
+            }
+            if (resp.statusCode() == 422) {
+                return Mono.<Void>error(new IllegalStateException("分支 " + name + " 已存在"));
+            }
+            return Mono.<Void>error(new RuntimeException("GitHub 创建分支失败，状态码=" + resp.statusCode() + ", 响应=" + resp.body()));
+        });
+    }
+
+    private Mono<HttpResponse<String>> send(String method, String url, Object body) {
+        URI uri = URI.create(url);
+        HttpRequest.BodyPublisher publisher = body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(JsonUtils.objectToJson(body), StandardCharsets.UTF_8);
+        // blob 请求体含整个文件的 Base64，时限按大小与观测吞吐量计算
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(uri)
+                .header("Authorization", backend.authorization(settings.getToken()))
+                .header("Accept", backend.accept())
+                .timeout(GitHubService.timeout(cfg, method, uri, publisher.contentLength()))
+                .method(method, publisher);
+        if (body != null) {
+            builder.header("Content-Type", "application/json");
+        }
+        return GitHubService.exchange(stages, http, builder.build());
+    }
+
+    private static Map<String, Object> treeEntry(String path, String blobSha) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("path", path);
+        entry.put("mode", "100644");
+        entry.put("type", "blob");
+        // 删除时 sha 需显式输出为 JSON null（JsonUtils 会忽略 Java null），GitHub 以此表示删除该路径
+        entry.put("sha", blobSha == null ? NullNode.getInstance() : blobSha);
+        return entry;
+    }
+
+    // 校验状态码并取出响应中（可选嵌套字段下）的 sha，例如 {"object":{"sha":...}}
+    private static String requireSha(HttpResponse<String> resp, String action, String... fields) {
+        if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
+            throw new RuntimeException("GitHub " + action + "失败，状态码=" + resp.statusCode() + ", 响应=" + resp.body());
+        }
+        JsonNode node = JsonUtils.jsonToObject(resp.body(), JsonNode.class);
+        for (String field : fields) {
+            node = node == null ? null : node.get(field);
+        }
+        JsonNode sha = node == null ? null : node.get("sha");
+        if (sha == null || sha.asText().isBlank()) {
+            throw new IllegalStateException("未从 GitHub API 响应中解析到 sha 字段（" + action + "）");
+        }
+        return sha.asText();
+    }
+
+    // 指数退避加随机抖动，避免多个节点同时重试再次冲突
+    private static Duration backoff(int attempt) {
+        long cap = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempt, 6));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(BASE_BACKOFF_MS / 2, cap + 1));
+    }
+}
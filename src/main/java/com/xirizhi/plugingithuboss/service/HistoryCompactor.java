@@ -0,0 +1,314 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import com.xirizhi.plugingithuboss.config.Constant;
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.service.forge.ForgeBackend;
+import com.xirizhi.plugingithuboss.service.forge.ForgeBackends;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import run.halo.app.core.extension.attachment.Policy;
+import run.halo.app.extension.ListOptions;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.app.infra.utils.JsonUtils;
+
+/**
+ * 附件仓库的历史压缩：把分支历史替换为当前 tree 的单个快照提交，减少提交数量与历史中已删除文件占用的体积。
+ * 说明：
+ * - 通过 Git Data API 以 head 的 tree 创建无父提交并强制更新分支；文件内容与路径不变，按分支生成的链接不受影响
+ * - 可选先以旧 head 创建备份分支 {branch}-history-{yyyyMMddHHmmss}；附件链接固定到提交（commitSha）时必须备份，
+ *   否则旧提交被 GitHub 回收后这些链接失效。保留备份分支时旧对象仍被引用，删除备份分支后体积才会减小
+ * - 仅在本节点没有进行中的写入、异步队列中没有该策略待推送的任务时执行，否则跳过（定时任务下个周期重试）；
+ *   执行期间持有分支锁，本节点的上传会在压缩完成后基于新 head 提交
+ * - 完成后读取新 head 的 tree，确认原 head 中存在的已关联附件路径仍然存在；有丢失时将分支改回原 head 并报告。
+ *   压缩前就已不在仓库中的附件单独列出（alreadyMissing），不触发回滚，可交给仓库对账处理
+ * - 策略配置 compactIntervalDays 大于 0 时按间隔定时执行，也可通过接口手动触发
+ * - 最近一次报告保存在插件状态目录 compact 下（见 {@link PluginState}，可用 -Dgithuboss.compact.dir 指定）
+ */
+@Slf4j
+@Component
+public class HistoryCompactor implements InitializingBean, DisposableBean {
+
+    public static final String STATE_COMPACTED = "COMPACTED";
+    public static final String STATE_SKIPPED = "SKIPPED";
+    public static final String STATE_ROLLED_BACK = "ROLLED_BACK";
+    public static final String STATE_FAILED = "FAILED";
+
+    private static final String DIR_PROPERTY = "githuboss.compact.dir";
+    private static final String POLICY_TEMPLATE = "githuboss-policy-template";
+    private static final Duration TICK = Duration.ofMinutes(10);
+    private static final int MAX_REPORT_ITEMS = 500;
+    private static final DateTimeFormatter BACKUP_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneId.systemDefault());
+
+    @Data
+    public static class CompactionReport {
+        private String policyName;
+        private String branch;
+        private String state;
+        private long startedAt;
+        private long finishedAt;
+        private String previousHead;
+        private String commit;
+        private String tree;
+        private String backupBranch;
+        private int linked;
+        private int pinned;
+        // 原 head 中存在、压缩后丢失的路径
+        private int missingCount;
+        // 压缩前原 head 中就不存在的路径
+        private int alreadyMissingCount;
+        // 明细最多保留 MAX_REPORT_ITEMS 条，计数为完整数量
+        private List<String> missing = new ArrayList<>();
+        private List<String> alreadyMissing = new ArrayList<>();
+        private String error;
+    }
+
+    private final ReactiveExtensionClient client;
+    private final GitHubService gitHubService;
+    private final UploadOutbox outbox;
+    private final Path dir;
+
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    private final Map<String, CompactionReport> lastReports = new ConcurrentHashMap<>();
+    private volatile Disposable ticker;
+
+    public HistoryCompactor(ReactiveExtensionClient client, GitHubService gitHubService, UploadOutbox outbox, PluginState state) {
+        this(client, gitHubService, outbox, state.dir("compact", DIR_PROPERTY));
+    }
+
+    HistoryCompactor(ReactiveExtensionClient client, GitHubService gitHubService, UploadOutbox outbox, Path dir) {
+        this.client = client;
+        this.gitHubService = gitHubService;
+        this.outbox = outbox;
+        this.dir = dir;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        Files.createDirectories(dir);
+        ticker = Flux.interval(TICK, TICK)
+                .onBackpressureDrop()
+                .concatMap(tick -> runScheduled().onErrorResume(e -> {
+                    log.error("定时历史压缩失败", e);
+                    return Mono.empty();
+                }))
+                .subscribe();
+    }
+
+    @Override
+    public void destroy() {
+        Disposable t = ticker;
+        if (t != null) {
+            t.dispose();
+        }
+    }
+
+    /**
+     * 最近一次压缩报告（含插件重启前保存的报告）。
+     */
+    public Mono<CompactionReport> lastReport(String policyName) {
+        CompactionReport cached = lastReports.get(policyName);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return Mono.fromCallable(() -> {
+                    Path file = reportFile(policyName);
+                    return Files.exists(file)
+                            ? JsonUtils.jsonToObject(Files.readString(file, StandardCharsets.UTF_8), CompactionReport.class)
+                            : null;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 立即压缩一次。backup 为空时使用策略配置；同一策略已有压缩进行中时报错。
+     */
+    public Mono<CompactionReport> compact(String policyName, Boolean backup) {
+        return Mono.defer(() -> {
+            if (!running.add(policyName)) {
+                return Mono.error(new IllegalStateException("存储策略 " + policyName + " 正在压缩历史，请稍后再试"));
+            }
+            return client.fetch(Policy.class, policyName)
+                    .switchIfEmpty(Mono.error(() -> new IllegalStateException("存储策略不存在: " + policyName)))
+                    .flatMap(policy -> PluginState.settingsOf(client, policy).flatMap(settings -> run(policyName, settings,
+                            backup != null ? backup : !Boolean.FALSE.equals(settings.getCompactBackup()))))
+                    .doFinally(signal -> running.remove(policyName));
+        });
+    }
+
+    // 到期的策略依次压缩
+    private Mono<Void> runScheduled() {
+        return client.listAll(Policy.class, new ListOptions(), Sort.unsorted())
+                .filter(policy -> policy.getSpec() != null && POLICY_TEMPLATE.equals(policy.getSpec().getTemplateName()))
+                .concatMap(policy -> PluginState.settingsOf(client, policy)
+                        .filter(settings -> settings.getCompactIntervalDays() != null && settings.getCompactIntervalDays() > 0)
+                        .filterWhen(settings -> due(policy.getMetadata().getName(), settings.getCompactIntervalDays()))
+                        .flatMap(settings -> compact(policy.getMetadata().getName(), null))
+                        .onErrorResume(e -> {
+                            log.warn("存储策略 {} 定时历史压缩失败: {}", policy.getMetadata().getName(), e.getMessage());
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    // 上次因写入进行中而跳过时，下个周期立即重试
+    private Mono<Boolean> due(String policyName, int intervalDays) {
+        return lastReport(policyName)
+                .map(report -> STATE_SKIPPED.equals(report.getState())
+                        || System.currentTimeMillis() - report.getStartedAt() >= Duration.ofDays(intervalDays).toMillis())
+                .defaultIfEmpty(true);
+    }
+
+    private Mono<CompactionReport> run(String policyName, GithubOssPolicySettings settings, boolean backup) {
+        CompactionReport report = new CompactionReport();
+        report.setPolicyName(policyName);
+        report.setBranch(settings.getBranch() == null ? "main" : settings.getBranch());
+        report.setStartedAt(System.currentTimeMillis());
+
+        return Mono.defer(() -> {
+                    ForgeBackend backend = ForgeBackends.of(settings);
+                    if (!backend.supportsGitData()) {
+                        return Mono.error(new IllegalArgumentException("平台 " + backend.type() + " 不支持 Git Data API，无法压缩历史"));
+                    }
+                    String busy = busy(policyName, settings);
+                    if (busy != null) {
+                        report.setState(STATE_SKIPPED);
+                        report.setError(busy);
+                        return Mono.just(report);
+                    }
+                    return linkedPaths(policyName, report).flatMap(paths -> {
+                        if (!backup && report.getPinned() > 0) {
+                            return Mono.error(new IllegalStateException("有 " + report.getPinned()
+                                    + " 个附件的链接固定到提交，压缩历史前必须备份原历史"));
+                        }
+                        String backupBranch = backup ? report.getBranch() + "-history-" + BACKUP_SUFFIX.format(Instant.now()) : null;
+                        String message = "githuboss: 压缩历史为当前文件快照" + (backupBranch == null ? "" : "，原历史见分支 " + backupBranch);
+                        return gitHubService.squashHistory(settings, message, backupBranch)
+                                .flatMap(compaction -> {
+                                    report.setPreviousHead(compaction.previousHead());
+                                    report.setCommit(compaction.commit());
+                                    report.setTree(compaction.tree());
+                                    report.setBackupBranch(compaction.backupBranch());
+                                    return verify(settings, paths, compaction.tree(), report).flatMap(ok -> ok
+                                            ? Mono.<Void>fromRunnable(() -> report.setState(STATE_COMPACTED))
+                                            : gitHubService.resetBranch(settings, compaction.commit(), compaction.previousHead())
+                                                    .then(Mono.<Void>fromRunnable(() -> {
+                                                        report.setState(STATE_ROLLED_BACK);
+                                                        report.setError("压缩后有 " + report.getMissingCount() + " 个已关联附件的路径不存在，已回滚到原 head");
+                                                    })));
+                                })
+                                .thenReturn(report);
+                    });
+                })
+                .onErrorResume(e -> {
+                    log.error("存储策略 {} 历史压缩失败", policyName, e);
+                    report.setState(STATE_FAILED);
+                    report.setError(String.valueOf(e.getMessage()));
+                    return Mono.just(report);
+                })
+                .flatMap(r -> {
+                    r.setFinishedAt(System.currentTimeMillis());
+                    lastReports.put(policyName, r);
+                    log.info("存储策略 {} 历史压缩结束：{}，原 head {}，新提交 {}，备份分支 {}，已关联 {}，丢失 {}，压缩前已缺失 {}",
+                            policyName, r.getState(), r.getPreviousHead(), r.getCommit(), r.getBackupBranch(),
+                            r.getLinked(), r.getMissingCount(), r.getAlreadyMissingCount());
+                    return PluginState.writeJson(reportFile(policyName), r).thenReturn(r);
+                });
+    }
+
+    // 有进行中的写入或待推送任务时返回原因
+    private String busy(String policyName, GithubOssPolicySettings settings) {
+        int writes = gitHubService.writesInFlight(settings);
+        if (writes > 0) {
+            return "仓库有 " + writes + " 个上传/删除正在进行，跳过本次压缩";
+        }
+        long queued = outbox == null ? 0 : outbox.pending().stream().filter(e -> policyName.equals(e.getPolicyName())).count();
+        if (queued > 0) {
+            return "异步队列中有 " + queued + " 个任务待推送，跳过本次压缩";
+        }
+        return null;
+    }
+
+    // 已推送到仓库的附件路径；release 附件与尚未推送的附件不在仓库 tree 中，不参与校验
+    private Mono<Set<String>> linkedPaths(String policyName, CompactionReport report) {
+        return AttachmentIndex.listByPolicy(client, policyName)
+                .filter(a -> a.getMetadata().getDeletionTimestamp() == null && a.getMetadata().getAnnotations() != null)
+                .map(a -> a.getMetadata().getAnnotations())
+                .filter(annotations -> annotations.get("path") != null && !annotations.containsKey(Constant.ANNOTATION_PENDING))
+                .collectList()
+                .map(list -> {
+                    report.setLinked(list.size());
+                    report.setPinned((int) list.stream().filter(a -> a.get(Constant.ANNOTATION_COMMIT_SHA) != null).count());
+                    return list.stream().map(a -> a.get("path")).collect(Collectors.toCollection(HashSet::new));
+                });
+    }
+
+    // 比较原 head 的 tree（previousTree）与新 head 的 tree：只有原来存在、压缩后不存在的路径才算丢失
+    private Mono<Boolean> verify(GithubOssPolicySettings settings, Set<String> paths, String previousTree, CompactionReport report) {
+        if (paths.isEmpty()) {
+            return Mono.just(true);
+        }
+        return gitHubService.resolveTreeSha(settings, "")
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("压缩后无法读取分支 " + report.getBranch())))
+                .flatMap(current -> existing(settings, previousTree, paths).flatMap(before -> current.equals(previousTree)
+                        ? Mono.just(List.of(before, before))
+                        : existing(settings, current, paths).map(after -> List.of(before, after))))
+                .map(sets -> {
+                    Set<String> before = sets.get(0);
+                    Set<String> after = sets.get(1);
+                    List<String> missing = paths.stream().filter(p -> before.contains(p) && !after.contains(p)).sorted().toList();
+                    List<String> alreadyMissing = paths.stream().filter(p -> !before.contains(p)).sorted().toList();
+                    report.setMissingCount(missing.size());
+                    report.setMissing(cap(missing));
+                    report.setAlreadyMissingCount(alreadyMissing.size());
+                    report.setAlreadyMissing(cap(alreadyMissing));
+                    return missing.isEmpty();
+                });
+    }
+
+    // tree 中存在的文件路径；递归结果被截断时按附件所在目录逐个读取
+    private Mono<Set<String>> existing(GithubOssPolicySettings settings, String tree, Set<String> paths) {
+        return gitHubService.readTreeRecursive(settings, tree)
+                .flatMap(listing -> listing.truncated()
+                        ? gitHubService.filesIn(settings, tree, paths.stream().map(HistoryCompactor::parent).toList())
+                        : Mono.just(listing.files().keySet()));
+    }
+
+    private static List<String> cap(List<String> items) {
+        return items.size() <= MAX_REPORT_ITEMS ? items : new ArrayList<>(items.subList(0, MAX_REPORT_ITEMS));
+    }
+
+    private static String parent(String path) {
+        int i = path.lastIndexOf('/');
+        return i < 0 ? "" : path.substring(0, i);
+    }
+
+    private Path reportFile(String policyName) {
+        return dir.resolve(policyName + ".report.json");
+    }
+}
@@ -0,0 +1,354 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import com.xirizhi.plugingithuboss.extension.theme.NetworkConfig;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 后台网络延迟监控：定期对配置的主机分阶段测量 DNS、TCP 连接、代理隧道、TLS 握手与首字节时间。
+ * 说明：
+ * - 按当前代理配置（含按主机路由）选择直连或代理；走代理时 DNS 由代理解析，本地 DNS 不在链路上记为 -1，
+ *   connect 为连到代理的耗时，proxy 为 CONNECT 隧道建立耗时（含代理到目标的解析与连接）
+ * - 经本机代理桥转接的代理（SOCKS5、需认证的 HTTP 代理）不测本机桥，直接连上游代理并按代理桥相同的方式握手，
+ *   connect 与 proxy 同样是到上游代理的耗时
+ * - 每个主机保留最近 HISTORY 次采样，p50/p95/p99 按保留的采样计算；同时写入 githuboss.network.phase 指标
+ * - 默认不在后台采样：配置了 monitorIntervalSeconds（大于 0）时按该间隔持续采样；
+ *   未配置时只在网络诊断页面查看期间（最近一次查看后 VIEW_WINDOW 内）每 VIEW_INTERVAL 采样一次
+ */
+@Slf4j
+@Component
+public class LatencyMonitor implements InitializingBean, DisposableBean {
+
+    public static final List<String> DEFAULT_HOSTS = List.of("github.com", "api.github.com", "raw.githubusercontent.com", "cdn.jsdelivr.net");
+    public static final List<String> PHASES = List.of("dns", "connect", "proxy", "tls", "ttfb", "total");
+
+    private static final Duration TICK = Duration.ofSeconds(10);
+    private static final Duration VIEW_WINDOW = Duration.ofMinutes(5);
+    private static final Duration VIEW_INTERVAL = Duration.ofSeconds(60);
+    private static final int HISTORY = 240;
+    private static final int CONCURRENCY = 4;
+    private static final int MAX_HOSTS = 32;
+
+    /**
+     * 一次采样；各阶段耗时单位毫秒，未经过或失败后未执行的阶段为 -1。
+     */
+    public record Sample(long at, String route, long dnsMs, long connectMs, long proxyMs, long tlsMs, long ttfbMs,
+                         long totalMs, int status, String error) {}
+
+    public record Percentiles(long p50, long p95, long p99) {}
+
+    /**
+     * 主机汇总：各阶段分位数只统计成功经过该阶段的采样。
+     */
+    public record HostLatency(String host, String route, int samples, int failures, Map<String, Percentiles> phases, Sample last) {}
+
+    private final GitHubService gitHubService;
+    private final GitHubMetrics metrics;
+    private final Map<String, Deque<Sample>> history = new ConcurrentHashMap<>();
+    private volatile long lastRun;
+    private volatile long lastViewed;
+    private volatile Disposable ticker;
+
+    public LatencyMonitor(GitHubService gitHubService, GitHubMetrics metrics) {
+        this.gitHubService = gitHubService;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        ticker = Flux.interval(TICK, TICK)
+                .onBackpressureDrop()
+                .concatMap(tick -> runScheduled().onErrorResume(e -> {
+                    log.warn("网络延迟监控失败: {}", e.getMessage());
+                    return Mono.empty();
+                }))
+                .subscribe();
+    }
+
+    @Override
+    public void destroy() {
+        Disposable t = ticker;
+        if (t != null) {
+            t.dispose();
+        }
+    }
+
+    private Mono<Void> runScheduled() {
+        long now = System.currentTimeMillis();
+        boolean viewing = now - lastViewed < VIEW_WINDOW.toMillis();
+        return gitHubService.getProxyConfig().flatMap(cfg -> {
+            long interval = cfg.getMonitorIntervalSeconds() != null && cfg.getMonitorIntervalSeconds() > 0
+                    ? cfg.getMonitorIntervalSeconds() * 1000L
+                    : viewing ? VIEW_INTERVAL.toMillis() : -1;
+            if (interval < 0 || now - lastRun < interval) {
+                return Mono.empty();
+            }
+            return runOnce(cfg);
+        });
+    }
+
+    /**
+     * 网络诊断页面查看汇总时调用：未配置后台采样间隔时，在之后的 VIEW_WINDOW 内按 VIEW_INTERVAL 采样。
+     */
+    public List<HostLatency> view() {
+        lastViewed = System.currentTimeMillis();
+        return summary();
+    }
+
+    /**
+     * 立即对全部监控主机采样一次。
+     */
+    public Mono<List<HostLatency>> runNow() {
+        return gitHubService.getProxyConfig().flatMap(this::runOnce).then(Mono.fromSupplier(this::summary));
+    }
+
+    private Mono<Void> runOnce(NetworkConfig cfg) {
+        lastRun = System.currentTimeMillis();
+        List<String> hosts = hosts(cfg.getMonitorHosts());
+        // 已从配置中移除的主机不再保留历史
+        history.keySet().retainAll(hosts);
+        int timeoutMs = cfg.getTimeoutMs() == null || cfg.getTimeoutMs() <= 0 ? 10000 : cfg.getTimeoutMs();
+        return Flux.fromIterable(hosts)
+                .flatMap(host -> {
+                    URI uri = URI.create("https://" + host + "/");
+                    return Mono.zip(gitHubService.proxyFor(uri), gitHubService.bridgeFor(uri))
+                            .flatMap(t -> Mono.fromCallable(() -> measure(host, t.getT1(), t.getT2().orElse(null), timeoutMs))
+                                    .subscribeOn(GitHubService.blockingScheduler()))
+                            .doOnNext(sample -> record(host, sample));
+                }, CONCURRENCY)
+                .then();
+    }
+
+    /**
+     * 所有监控主机的汇总。
+     */
+    public List<HostLatency> summary() {
+        List<HostLatency> list = new ArrayList<>();
+        history.forEach((host, deque) -> {
+            List<Sample> samples;
+            synchronized (deque) {
+                samples = new ArrayList<>(deque);
+            }
+            if (!samples.isEmpty()) {
+                list.add(summarize(host, samples));
+            }
+        });
+        list.sort((a, b) -> a.host().compareTo(b.host()));
+        return list;
+    }
+
+    /**
+     * 主机最近 limit 次采样，按时间先后排列。
+     */
+    public List<Sample> history(String host, int limit) {
+        Deque<Sample> deque = history.get(host == null ? "" : host.toLowerCase(Locale.ROOT));
+        if (deque == null) {
+            return List.of();
+        }
+        synchronized (deque) {
+            List<Sample> all = new ArrayList<>(deque);
+            return all.subList(Math.max(0, all.size() - Math.max(1, limit)), all.size());
+        }
+    }
+
+    void record(String host, Sample sample) {
+        Deque<Sample> deque = history.computeIfAbsent(host, h -> new ArrayDeque<>());
+        synchronized (deque) {
+            deque.addLast(sample);
+            while (deque.size() > HISTORY) {
+                deque.removeFirst();
+            }
+        }
+        // 失败采样只记录已完成的阶段，总耗时不计入
+        long total = sample.error() == null ? sample.totalMs() : -1;
+        long[] values = {sample.dnsMs(), sample.connectMs(), sample.proxyMs(), sample.tlsMs(), sample.ttfbMs(), total};
+        for (int i = 0; i < PHASES.size(); i++) {
+            if (values[i] >= 0) {
+                metrics.networkPhase(host, sample.route(), PHASES.get(i), values[i]);
+            }
+        }
+        if (sample.error() != null) {
+            log.debug("网络延迟监控 {} 失败（{}）: {}", host, sample.route(), sample.error());
+        }
+    }
+
+    static HostLatency summarize(String host, List<Sample> samples) {
+        // 失败的采样总耗时不代表链路速度，不计入
+        List<Sample> succeeded = samples.stream().filter(s -> s.error() == null).toList();
+        List<ToLongFunction<Sample>> getters = List.<ToLongFunction<Sample>>of(Sample::dnsMs, Sample::connectMs, Sample::proxyMs, Sample::tlsMs,
+                Sample::ttfbMs, Sample::totalMs);
+        Map<String, Percentiles> phases = new LinkedHashMap<>();
+        for (int i = 0; i < PHASES.size(); i++) {
+            Percentiles p = percentiles(i == PHASES.size() - 1 ? succeeded : samples, getters.get(i));
+            if (p != null) {
+                phases.put(PHASES.get(i), p);
+            }
+        }
+        int failures = (int) samples.stream().filter(s -> s.error() != null).count();
+        Sample last = samples.get(samples.size() - 1);
+        return new HostLatency(host, last.route(), samples.size(), failures, phases, last);
+    }
+
+    // 最近邻取分位数，没有有效值时返回 null
+    static Percentiles percentiles(List<Sample> samples, ToLongFunction<Sample> phase) {
+        long[] values = samples.stream().mapToLong(phase).filter(v -> v >= 0).sorted().toArray();
+        if (values.length == 0) {
+            return null;
+        }
+        return new Percentiles(at(values, 0.50), at(values, 0.95), at(values, 0.99));
+    }
+
+    private static long at(long[] sorted, double q) {
+        int index = (int) Math.ceil(q * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    static List<String> hosts(String text) {
+        if (text == null || text.isBlank()) {
+            return DEFAULT_HOSTS;
+        }
+        return Arrays.stream(text.split("[,\\s]+"))
+                .map(h -> h.trim().toLowerCase(Locale.ROOT))
+                .filter(h -> !h.isEmpty())
+                .distinct()
+                .limit(MAX_HOSTS)
+                .toList();
+    }
+
+    /**
+     * 分阶段测量一次（阻塞），失败时记录出错阶段与原因，后续阶段为 -1。
+     */
+    static Sample measure(String host, Proxy proxy, int timeoutMs) {
+        return measure(host, proxy, null, timeoutMs);
+    }
+
+    /**
+     * 同上；bridge 不为空时经该代理桥的上游代理测量，proxy 只用于判断是否直连。
+     */
+    static Sample measure(String host, Proxy proxy, ProxyBridge bridge, int timeoutMs) {
+        boolean direct = proxy == null || proxy.type() == Proxy.Type.DIRECT;
+        String route = direct ? ProxyRouter.DIRECT : ProxyRouter.PROXY;
+        long start = System.nanoTime();
+        long dns = -1, connect = -1, tunnel = -1, tls = -1, ttfb = -1;
+        int status = -1;
+        String phase = "dns";
+        try (Socket socket = new Socket()) {
+            InetSocketAddress target = null;
+            if (direct) {
+                long t = System.nanoTime();
+                InetAddress address = InetAddress.getAllByName(host)[0];
+                dns = elapsedMs(t);
+                target = new InetSocketAddress(address, 443);
+            } else if (bridge == null) {
+                InetSocketAddress p = (InetSocketAddress) proxy.address();
+                target = p.isUnresolved() ? new InetSocketAddress(p.getHostString(), p.getPort()) : p;
+            }
+
+            phase = "connect";
+            long t = System.nanoTime();
+            if (target != null) {
+                socket.connect(target, timeoutMs);
+            } else {
+                bridge.connectUpstream(socket);
+            }
+            socket.setSoTimeout(timeoutMs);
+            connect = elapsedMs(t);
+
+            if (!direct) {
+                phase = "proxy";
+                t = System.nanoTime();
+                if (bridge != null) {
+                    bridge.handshake(socket, host, 443);
+                } else {
+                    OutputStream out = socket.getOutputStream();
+                    out.write(("CONNECT " + host + ":443 HTTP/1.1\r\nHost: " + host + ":443\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                    out.flush();
+                    String head = ProxyBridge.readHead(socket.getInputStream());
+                    String[] statusLine = head.split(" ", 3);
+                    if (statusLine.length < 2 || !statusLine[1].startsWith("2")) {
+                        throw new IOException("代理拒绝 CONNECT: " + head.lines().findFirst().orElse(""));
+                    }
+                }
+                tunnel = elapsedMs(t);
+            }
+
+            phase = "tls";
+            t = System.nanoTime();
+            try (SSLSocket ssl = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(socket, host, 443, true)) {
+                SSLParameters params = ssl.getSSLParameters();
+                params.setEndpointIdentificationAlgorithm("HTTPS");
+                ssl.setSSLParameters(params);
+                ssl.setSoTimeout(timeoutMs);
+                ssl.startHandshake();
+                tls = elapsedMs(t);
+
+                phase = "ttfb";
+                t = System.nanoTime();
+                OutputStream out = ssl.getOutputStream();
+                out.write(("HEAD / HTTP/1.1\r\nHost: " + host + "\r\nUser-Agent: githuboss-latency-monitor\r\nConnection: close\r\n\r\n")
+                        .getBytes(StandardCharsets.ISO_8859_1));
+                out.flush();
+                InputStream in = ssl.getInputStream();
+                int first = in.read();
+                if (first < 0) {
+                    throw new IOException("连接在响应前关闭");
+                }
+                ttfb = elapsedMs(t);
+                String line = (char) first + readLine(in);
+                String[] parts = line.split(" ", 3);
+                status = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : -1;
+            }
+            return new Sample(System.currentTimeMillis(), route, dns, connect, tunnel, tls, ttfb, elapsedMs(start), status, null);
+        } catch (Exception e) {
+            return new Sample(System.currentTimeMillis(), route, dns, connect, tunnel, tls, ttfb, elapsedMs(start), status,
+                    phase + ": " + e.getMessage());
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n' && sb.length() < 1024) {
+            if (b != '\r') {
+                sb.append((char) b);
+            }
+        }
+        return sb.toString();
+    }
+}
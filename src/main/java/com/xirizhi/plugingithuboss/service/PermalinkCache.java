@@ -0,0 +1,105 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+import com.xirizhi.plugingithuboss.config.Constant;
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.extension.ConfigMap;
+import run.halo.app.extension.controller.Controller;
+import run.halo.app.extension.controller.ControllerBuilder;
+import run.halo.app.extension.controller.Reconciler;
+import run.halo.app.infra.utils.JsonUtils;
+
+/**
+ * 按策略缓存解析后的配置与预先展开的访问地址，永久链接/共享链接的生成只做字符串拼接。
+ * 说明：
+ * - Halo 在附件列表、主题渲染中对每个附件都会调用 getPermalink，未缓存时每次都要解析策略 JSON 并读取插件 ConfigMap
+ * - 缓存以策略 ConfigMap 名为 key，并比较 data["default"] 原文：策略配置修改后原文变化即重新解析，无需额外失效
+ * - 插件 ConfigMap（jsDelivr 节点等全局设置）变化时通过 ConfigMap 的 Reconciler 清空全部缓存；其他 ConfigMap 变化或删除时移除同名项
+ * - 访问地址提供方的健康状态变化后（CdnHealth 版本变化）重新选择首选提供方
+ * - 异步上传尚未推送的附件指向插件的待推送文件接口：此时仓库中还没有该文件，CDN 地址会 404 且可能被缓存
+ */
+@Slf4j
+@Component
+public class PermalinkCache implements Reconciler<Reconciler.Request> {
+
+    private record Entry(String json, long generation, long health, CdnUrlPattern pattern) {}
+
+    private final GitHubService gitHubService;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // 插件 ConfigMap 每变化一次加一，早于当前代的缓存项视为失效
+    private final AtomicLong generation = new AtomicLong();
+
+    public PermalinkCache(GitHubService gitHubService) {
+        this.gitHubService = gitHubService;
+    }
+
+    /**
+     * 附件的访问地址（permalink 与 sharedURL 相同）；release 附件直接使用其下载地址。
+     */
+    public Mono<URI> permalink(Attachment attachment, ConfigMap policyConfig) {
+        Map<String, String> annotations = attachment.getMetadata().getAnnotations();
+        if (annotations != null && annotations.containsKey(Constant.ANNOTATION_PENDING)) {
+            return Mono.just(URI.create(Constant.PENDING_PERMALINK_PREFIX + attachment.getMetadata().getName()));
+        }
+        String assetUrl = annotations == null ? null : annotations.get(Constant.ANNOTATION_ASSET_URL);
+        if (assetUrl != null) {
+            return Mono.just(URI.create(assetUrl));
+        }
+        String path = annotations == null ? null : annotations.get("path");
+        String commitSha = annotations == null ? null : annotations.get(Constant.ANNOTATION_COMMIT_SHA);
+        return pattern(policyConfig).map(pattern -> URI.create(pattern.format(path, commitSha)));
+    }
+
+    /**
+     * 策略 ConfigMap 对应的访问地址模式，命中缓存时不解析 JSON、不读取插件 ConfigMap。
+     */
+    public Mono<CdnUrlPattern> pattern(ConfigMap policyConfig) {
+        String name = policyConfig.getMetadata() == null ? null : policyConfig.getMetadata().getName();
+        String json = policyConfig.getData() == null ? "{}" : policyConfig.getData().getOrDefault("default", "{}");
+        long gen = generation.get();
+        long health = gitHubService.cdnHealth().version();
+        Entry cached = name == null ? null : entries.get(name);
+        if (cached != null && cached.generation() == gen && cached.health() == health && cached.json().equals(json)) {
+            return Mono.just(cached.pattern());
+        }
+        return gitHubService.buildCdnUrlPattern(JsonUtils.jsonToObject(json, GithubOssPolicySettings.class)).doOnNext(pattern -> {
+            if (name != null) {
+                entries.put(name, new Entry(json, gen, health, pattern));
+            }
+        });
+    }
+
+    /**
+     * 清空缓存。
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    @Override
+    public Result reconcile(Request request) {
+        if (Constant.PLUGIN_GITHUBOSS_CONFIGMAP.equals(request.name())) {
+            log.debug("插件配置变化，清空永久链接缓存");
+            invalidateAll();
+        } else {
+            entries.remove(request.name());
+        }
+        return Result.doNotRetry();
+    }
+
+    @Override
+    public Controller setupWith(ControllerBuilder builder) {
+        return builder.extension(new ConfigMap()).build();
+    }
+}
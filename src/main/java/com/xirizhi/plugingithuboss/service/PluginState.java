@@ -0,0 +1,119 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import run.halo.app.core.extension.attachment.Policy;
+import run.halo.app.extension.ConfigMap;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.app.infra.utils.JsonUtils;
+import run.halo.app.plugin.PluginContext;
+
+/**
+ * 后台任务共用的策略配置读取与本地状态文件。
+ * 说明：
+ * - 状态目录为 Halo 工作目录（halo.work-dir，未取到时为 Halo 默认的 ~/.halo2）下的 plugins-data/{插件名}/{area}，
+ *   各任务仍可用自己的 -Dgithuboss.*.dir 指定
+ * - 旧版本使用的 ~/.halo2/githuboss-{area} 目录在首次解析时移动到新位置；移动失败时继续使用旧目录，避免丢失待上传文件
+ * - JSON 状态文件先写临时文件再原子替换，进程中断不会留下半个文件
+ */
+@Slf4j
+@Component
+public class PluginState {
+
+    private static final String WORK_DIR_PROPERTY = "halo.work-dir";
+
+    private final Path root;
+    private final Path legacyRoot;
+
+    public PluginState(PluginContext pluginContext, Environment environment) {
+        this(Paths.get(environment.getProperty(WORK_DIR_PROPERTY, defaultWorkDir().toString()))
+                .resolve("plugins-data").resolve(pluginContext.getName()), defaultWorkDir());
+    }
+
+    PluginState(Path root, Path legacyRoot) {
+        this.root = root;
+        this.legacyRoot = legacyRoot;
+    }
+
+    /**
+     * 某个任务的状态目录；property 为该任务覆盖目录用的系统属性。
+     */
+    public Path dir(String area, String property) {
+        String configured = System.getProperty(property);
+        if (configured != null && !configured.isBlank()) {
+            return Paths.get(configured);
+        }
+        Path target = root.resolve(area);
+        Path legacy = legacyRoot.resolve("githuboss-" + area);
+        if (Files.isDirectory(legacy) && !Files.exists(target)) {
+            try {
+                Files.createDirectories(target.getParent());
+                Files.move(legacy, target);
+                log.info("状态目录已从 {} 移动到 {}", legacy, target);
+            } catch (IOException e) {
+                log.warn("状态目录 {} 移动到 {} 失败，继续使用旧目录: {}", legacy, target, e.getMessage());
+                return legacy;
+            }
+        }
+        return target;
+    }
+
+    /**
+     * 读取存储策略 ConfigMap 中的策略配置；未配置或找不到 ConfigMap 时报错。
+     */
+    public static Mono<GithubOssPolicySettings> settingsOf(ReactiveExtensionClient client, Policy policy) {
+        String policyName = policy.getMetadata().getName();
+        String configMapName = policy.getSpec() == null ? null : policy.getSpec().getConfigMapName();
+        if (configMapName == null || configMapName.isBlank()) {
+            return Mono.error(new IllegalStateException("存储策略 " + policyName + " 未配置 ConfigMap"));
+        }
+        return client.fetch(ConfigMap.class, configMapName)
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("存储策略 " + policyName + " 的 ConfigMap 不存在: " + configMapName)))
+                .map(cm -> JsonUtils.jsonToObject(cm.getData() == null ? "{}" : cm.getData().getOrDefault("default", "{}"),
+                        GithubOssPolicySettings.class));
+    }
+
+    public static Mono<GithubOssPolicySettings> settingsOf(ReactiveExtensionClient client, String policyName) {
+        return client.fetch(Policy.class, policyName)
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("存储策略不存在: " + policyName)))
+                .flatMap(policy -> settingsOf(client, policy));
+    }
+
+    /**
+     * 以 JSON 原子写入文件。
+     */
+    public static Mono<Void> writeJson(Path target, Object value) {
+        return Mono.fromCallable(() -> {
+                    writeJsonNow(target, value);
+                    return target;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    /**
+     * 同步版本，供已在阻塞线程上的调用方使用。
+     */
+    public static void writeJsonNow(Path target, Object value) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(tmp, JsonUtils.objectToJson(value).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Path defaultWorkDir() {
+        return Paths.get(System.getProperty("user.home"), ".halo2");
+    }
+}
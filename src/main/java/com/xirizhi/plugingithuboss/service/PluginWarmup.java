@@ -0,0 +1,202 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.handler.UploadPathGenerator;
+import com.xirizhi.plugingithuboss.service.forge.ForgeBackends;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import run.halo.app.core.extension.attachment.Policy;
+import run.halo.app.extension.ConfigMap;
+import run.halo.app.extension.ListOptions;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.app.infra.utils.JsonUtils;
+
+/**
+ * 插件启动预热：在后台完成首次上传、首次打开控制台列表时才会发生的准备工作，不阻塞插件启动。
+ * 说明：
+ * - 读取网络配置并创建共享 HttpClient（含代理路由）
+ * - 对每个本插件的存储策略：解析配置、展开访问地址（PermalinkCache）、加载已关联附件索引（AttachmentIndex）、加载当前上传目录的已有文件名
+ * - 对各策略的 API 地址与 CDN 镜像地址（去重后）各发送一次 HEAD，完成 DNS、TCP、TLS 握手
+ * - 每一步单独计时并记录结果，单步失败不影响其他步骤；全部成功为 READY，有失败为 DEGRADED
+ * - 插件停止时取消未完成的预热，并释放缓存、HttpClient 与代理桥
+ */
+@Slf4j
+@Component
+public class PluginWarmup {
+
+    public static final String STATE_PENDING = "PENDING";
+    public static final String STATE_WARMING = "WARMING";
+    public static final String STATE_READY = "READY";
+    public static final String STATE_DEGRADED = "DEGRADED";
+    public static final String STATE_STOPPED = "STOPPED";
+
+    private static final String POLICY_TEMPLATE = "githuboss-policy-template";
+    private static final int CONCURRENCY = 4;
+    private static final Duration STEP_TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * 预热步骤结果；detail 为成功时的摘要或失败原因。
+     */
+    public record Step(String name, boolean ok, long costMs, String detail) {}
+
+    @Data
+    public static class Readiness {
+        private String state = STATE_PENDING;
+        private long startedAt;
+        private long finishedAt;
+        private int policies;
+        private List<Step> steps = new CopyOnWriteArrayList<>();
+    }
+
+    // 单个策略的预热结果：摘要与需要预连接的地址
+    private record PolicyWarm(String detail, List<String> origins) {}
+
+    private final ReactiveExtensionClient client;
+    private final GitHubService gitHubService;
+    private final PermalinkCache permalinkCache;
+    private final AttachmentIndex attachmentIndex;
+    private final UploadPathGenerator pathGenerator;
+    private volatile Readiness readiness = new Readiness();
+    private volatile Disposable running;
+
+    public PluginWarmup(ReactiveExtensionClient client, GitHubService gitHubService, PermalinkCache permalinkCache,
+                        AttachmentIndex attachmentIndex, UploadPathGenerator pathGenerator) {
+        this.client = client;
+        this.gitHubService = gitHubService;
+        this.permalinkCache = permalinkCache;
+        this.attachmentIndex = attachmentIndex;
+        this.pathGenerator = pathGenerator;
+    }
+
+    /**
+     * 在后台开始预热，立即返回。
+     */
+    public void start() {
+        cancel();
+        running = warmUp().subscribe(
+                r -> log.info("githubOss 预热完成：{}，策略 {} 个，耗时 {}ms", r.getState(), r.getPolicies(), r.getFinishedAt() - r.getStartedAt()),
+                e -> log.error("githubOss 预热失败", e));
+    }
+
+    /**
+     * 取消未完成的预热并释放预热与运行中建立的缓存、连接。
+     */
+    public void stop() {
+        cancel();
+        attachmentIndex.clear();
+        permalinkCache.invalidateAll();
+        GitHubService.releaseConnections();
+        readiness.setState(STATE_STOPPED);
+    }
+
+    /**
+     * 当前就绪状态。
+     */
+    public Readiness readiness() {
+        return readiness;
+    }
+
+    Mono<Readiness> warmUp() {
+        Readiness r = new Readiness();
+        r.setState(STATE_WARMING);
+        r.setStartedAt(System.currentTimeMillis());
+        readiness = r;
+        Mono<String> network = gitHubService.getProxyConfig().map(cfg -> {
+            gitHubService.buildBaseGitHubHttpClient(cfg);
+            return Boolean.TRUE.equals(cfg.getEnabled()) ? "代理 " + cfg.getProxyPath() : "直连";
+        });
+        Mono<List<Policy>> policies = client.listAll(Policy.class, new ListOptions(), Sort.unsorted())
+                .filter(policy -> policy.getSpec() != null && POLICY_TEMPLATE.equals(policy.getSpec().getTemplateName()))
+                .collectList();
+        return step(r, "network", network, Function.identity())
+                .then(step(r, "policies", policies, list -> list.size() + " 个"))
+                .flatMapMany(list -> {
+                    r.setPolicies(list.size());
+                    return Flux.fromIterable(list);
+                })
+                .flatMap(policy -> step(r, "policy:" + policy.getMetadata().getName(), warmPolicy(policy), PolicyWarm::detail), CONCURRENCY)
+                .flatMapIterable(PolicyWarm::origins)
+                .collect(Collectors.toCollection(LinkedHashSet::new))
+                .flatMapMany(Flux::fromIterable)
+                .flatMap(origin -> step(r, "connect:" + origin, gitHubService.preconnect(origin + "/"), status -> "HTTP " + status), CONCURRENCY)
+                .then(Mono.fromSupplier(() -> {
+                    boolean ok = r.getSteps().stream().allMatch(Step::ok);
+                    r.setFinishedAt(System.currentTimeMillis());
+                    r.setState(ok ? STATE_READY : STATE_DEGRADED);
+                    return r;
+                }));
+    }
+
+    private Mono<PolicyWarm> warmPolicy(Policy policy) {
+        String policyName = policy.getMetadata().getName();
+        String configMapName = policy.getSpec().getConfigMapName();
+        if (configMapName == null || configMapName.isBlank()) {
+            return Mono.error(new IllegalStateException("未配置 ConfigMap"));
+        }
+        return client.fetch(ConfigMap.class, configMapName)
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("ConfigMap 不存在: " + configMapName)))
+                .flatMap(cm -> {
+                    GithubOssPolicySettings settings = JsonUtils.jsonToObject(
+                            cm.getData() == null ? "{}" : cm.getData().getOrDefault("default", "{}"), GithubOssPolicySettings.class);
+                    return Mono.zip(permalinkCache.pattern(cm), attachmentIndex.preload(policyName), pathGenerator.preload(settings))
+                            .map(t -> {
+                                List<String> origins = new ArrayList<>();
+                                addOrigin(origins, ForgeBackends.of(settings).apiBase(settings));
+                                addOrigin(origins, t.getT1().format("", null));
+                                return new PolicyWarm("已关联附件 " + t.getT2() + "，上传目录文件 " + t.getT3(), origins);
+                            });
+                });
+    }
+
+    private <T> Mono<T> step(Readiness r, String name, Mono<T> work, Function<T, String> detail) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return work.timeout(STEP_TIMEOUT)
+                    .doOnNext(value -> r.getSteps().add(new Step(name, true, elapsedMs(start), detail.apply(value))))
+                    .onErrorResume(e -> {
+                        log.warn("githubOss 预热步骤 {} 失败: {}", name, e.getMessage());
+                        r.getSteps().add(new Step(name, false, elapsedMs(start), String.valueOf(e.getMessage())));
+                        return Mono.empty();
+                    });
+        });
+    }
+
+    private void cancel() {
+        Disposable d = running;
+        if (d != null) {
+            d.dispose();
+        }
+    }
+
+    // 协议+主机+端口；模板地址无法解析时忽略
+    private static void addOrigin(List<String> origins, String url) {
+        try {
+            URI uri = URI.create(url);
+            if (uri.getScheme() != null && uri.getRawAuthority() != null) {
+                origins.add(uri.getScheme() + "://" + uri.getRawAuthority());
+            }
+        } catch (IllegalArgumentException e) {
+            log.debug("忽略无法解析的地址 {}", url);
+        }
+    }
+
+    private static long elapsedMs(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
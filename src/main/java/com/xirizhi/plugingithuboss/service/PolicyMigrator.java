@@ -0,0 +1,585 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import com.xirizhi.plugingithuboss.config.Constant;
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.handler.GithubAttachmentHandler;
+import com.xirizhi.plugingithuboss.handler.ImageProbe;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.core.extension.attachment.Policy;
+import run.halo.app.core.extension.service.AttachmentService;
+import run.halo.app.extension.ConfigMap;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.app.infra.ExternalUrlSupplier;
+import run.halo.app.infra.utils.JsonUtils;
+
+/**
+ * 存储策略迁移：把其他存储策略（本地、S3 兼容等）的附件搬到 GitHub 策略，附件名不变。
+ * 说明：
+ * - 通过 Halo 的 AttachmentService 取得源附件的共享地址并下载内容，不依赖源存储的实现细节；相对地址按站点外部地址补全
+ * - 按批处理：每批最多 batchSize 个文件且不超过 MAX_BATCH_BYTES，批内并行下载并上传 blob，以一个提交写入；批与批之间串行
+ * - 每批开始前按 API 最近返回的速率限制余量判断，余量不足时等待到额度重置；上传 blob 或提交时仍被限流则整批重试
+ * - 规划路径前读取批次涉及的目标目录，不占用仓库中已有的文件名
+ * - 提交后改写附件的 policyName、路径/sha/提交 sha 注解与永久链接；源存储中的文件保留，确认无误后可自行清理
+ * - 任务状态在每批结束后落盘，插件重启后未完成的任务自动继续；已迁移的附件已不属于源策略，继续时自然跳过
+ * - 同一目标策略同时只允许一个迁移任务
+ */
+@Slf4j
+@Component
+public class PolicyMigrator implements InitializingBean, DisposableBean {
+
+    public static final String STATE_RUNNING = "RUNNING";
+    public static final String STATE_SUCCEEDED = "SUCCEEDED";
+    public static final String STATE_FAILED = "FAILED";
+    public static final String STATE_CANCELLED = "CANCELLED";
+
+    private static final String DIR_PROPERTY = "githuboss.migrate.dir";
+    private static final int DEFAULT_BATCH_SIZE = 20;
+    private static final int MAX_BATCH_SIZE = 100;
+    static final long MAX_BATCH_BYTES = 50L * 1024 * 1024;
+    // GitHub 拒绝超过 100MB 的 blob
+    private static final long MAX_FILE_BYTES = 100L * 1024 * 1024;
+    private static final int TRANSFER_CONCURRENCY = 4;
+    private static final int UPDATE_CONCURRENCY = 8;
+    private static final int RATE_LIMIT_RETRIES = 3;
+    private static final int MAX_ERRORS = 50;
+    private static final int MAX_FINISHED_JOBS = 20;
+    private static final Duration SHARED_URL_TTL = Duration.ofMinutes(30);
+    private static final Duration RESUME_DELAY = Duration.ofSeconds(10);
+
+    /**
+     * 迁移请求：path 为仓库内目标目录（为空时使用目标策略上传目录），batchSize 为每次提交的文件数，
+     * baseUrl 为源附件相对地址的补全前缀（为空时使用站点外部地址）。
+     */
+    public record MigrationRequest(String sourcePolicy, String targetPolicy, String path, Integer batchSize, String baseUrl) {}
+
+    @Data
+    public static class MigrationJob {
+        private String id;
+        private String sourcePolicy;
+        private String targetPolicy;
+        private String rootPath;
+        private int batchSize;
+        private String baseUrl;
+        private volatile String state;
+        private long startedAt;
+        private volatile long finishedAt;
+        private int total;
+        private int migrated;
+        private int failed;
+        private int batches;
+        private String lastCommitSha;
+        // 因速率限制等待到的时间点，未等待时为 0
+        private volatile long waitingUntil;
+        // 失败明细最多保留 MAX_ERRORS 条
+        private List<String> errors = new CopyOnWriteArrayList<>();
+        private volatile String error;
+    }
+
+    // 已上传 blob、等待提交的文件
+    private record Moved(String attachmentName, String path, String sha, long size, ImageProbe.ImageInfo image) {}
+
+    private record Target(Policy policy, ConfigMap configMap, GithubOssPolicySettings settings) {}
+
+    // 速率限制余量耗尽时上传 blob 失败：整批等待额度重置后重试
+    private static final class RateLimitedException extends IllegalStateException {
+        RateLimitedException(Throwable cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    private final ReactiveExtensionClient client;
+    private final GitHubService gitHubService;
+    private final GithubAttachmentHandler attachmentHandler;
+    private final PermalinkCache permalinkCache;
+    private final AttachmentService attachmentService;
+    private final ExternalUrlSupplier externalUrlSupplier;
+    private final Path dir;
+
+    private final Map<String, MigrationJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Disposable> runningJobs = new ConcurrentHashMap<>();
+    private final Set<String> busyPolicies = ConcurrentHashMap.newKeySet();
+
+    public PolicyMigrator(ReactiveExtensionClient client, GitHubService gitHubService, GithubAttachmentHandler attachmentHandler,
+                          PermalinkCache permalinkCache, AttachmentService attachmentService, ExternalUrlSupplier externalUrlSupplier,
+                          PluginState state) {
+        this(client, gitHubService, attachmentHandler, permalinkCache, attachmentService, externalUrlSupplier,
+                state.dir("migrate", DIR_PROPERTY));
+    }
+
+    PolicyMigrator(ReactiveExtensionClient client, GitHubService gitHubService, GithubAttachmentHandler attachmentHandler,
+                   PermalinkCache permalinkCache, AttachmentService attachmentService, ExternalUrlSupplier externalUrlSupplier, Path dir) {
+        this.client = client;
+        this.gitHubService = gitHubService;
+        this.attachmentHandler = attachmentHandler;
+        this.permalinkCache = permalinkCache;
+        this.attachmentService = attachmentService;
+        this.externalUrlSupplier = externalUrlSupplier;
+        this.dir = dir;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        Files.createDirectories(dir);
+        List<MigrationJob> unfinished = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.json")) {
+            for (Path file : files) {
+                try {
+                    MigrationJob job = JsonUtils.jsonToObject(Files.readString(file, StandardCharsets.UTF_8), MigrationJob.class);
+                    jobs.put(job.getId(), job);
+                    if (STATE_RUNNING.equals(job.getState())) {
+                        unfinished.add(job);
+                    }
+                } catch (Exception e) {
+                    log.warn("迁移任务记录读取失败，已忽略 {}: {}", file, e.getMessage());
+                }
+            }
+        }
+        // 等 Halo 完成启动后再继续未完成的任务
+        for (MigrationJob job : unfinished) {
+            if (busyPolicies.add(job.getTargetPolicy())) {
+                log.info("继续未完成的迁移任务 id={}, {} -> {}", job.getId(), job.getSourcePolicy(), job.getTargetPolicy());
+                launch(job, RESUME_DELAY);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // 只停止执行，任务保持 RUNNING 落盘状态，重启后继续
+        runningJobs.values().forEach(Disposable::dispose);
+        runningJobs.clear();
+    }
+
+    /**
+     * 发起迁移并立即返回任务，进度通过任务 id 轮询。
+     */
+    public Mono<MigrationJob> start(MigrationRequest request) {
+        if (request == null || isBlank(request.sourcePolicy()) || isBlank(request.targetPolicy())) {
+            return Mono.error(new IllegalArgumentException("sourcePolicy 与 targetPolicy 不能为空"));
+        }
+        if (request.sourcePolicy().equals(request.targetPolicy())) {
+            return Mono.error(new IllegalArgumentException("源策略与目标策略不能相同"));
+        }
+        String targetPolicy = request.targetPolicy();
+        if (!busyPolicies.add(targetPolicy)) {
+            return Mono.error(new IllegalStateException("存储策略 " + targetPolicy + " 已有迁移任务在进行"));
+        }
+        return client.fetch(Policy.class, request.sourcePolicy())
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("源存储策略不存在: " + request.sourcePolicy())))
+                .then(target(targetPolicy))
+                .map(target -> {
+                    int batchSize = request.batchSize() == null || request.batchSize() <= 0
+                            ? DEFAULT_BATCH_SIZE : Math.min(MAX_BATCH_SIZE, request.batchSize());
+                    MigrationJob job = new MigrationJob();
+                    job.setId(UUID.randomUUID().toString());
+                    job.setSourcePolicy(request.sourcePolicy());
+                    job.setTargetPolicy(targetPolicy);
+                    job.setRootPath(RepoReconciler.normalizeRoot(isBlank(request.path()) ? target.settings().getPath() : request.path()));
+                    job.setBatchSize(batchSize);
+                    job.setBaseUrl(isBlank(request.baseUrl()) ? null : request.baseUrl().trim());
+                    job.setState(STATE_RUNNING);
+                    job.setStartedAt(System.currentTimeMillis());
+                    jobs.put(job.getId(), job);
+                    evictFinished();
+                    launch(job, Duration.ZERO);
+                    return job;
+                })
+                .doOnError(e -> busyPolicies.remove(targetPolicy));
+    }
+
+    public Mono<MigrationJob> get(String jobId) {
+        return Mono.justOrEmpty(jobs.get(jobId));
+    }
+
+    /**
+     * 最近的任务，按开始时间倒序。
+     */
+    public List<MigrationJob> list() {
+        return jobs.values().stream().sorted(Comparator.comparingLong(MigrationJob::getStartedAt).reversed()).toList();
+    }
+
+    /**
+     * 取消进行中的任务：当前批次中止（未提交的 blob 不产生提交），已迁移的附件保留；取消后重启不会继续。
+     */
+    public Mono<MigrationJob> cancel(String jobId) {
+        return get(jobId).flatMap(job -> {
+            Disposable running = runningJobs.remove(jobId);
+            if (!STATE_RUNNING.equals(job.getState())) {
+                return Mono.just(job);
+            }
+            job.setState(STATE_CANCELLED);
+            job.setFinishedAt(System.currentTimeMillis());
+            if (running != null) {
+                running.dispose();
+            }
+            busyPolicies.remove(job.getTargetPolicy());
+            log.info("迁移任务已取消 id={}, 已迁移 {}", jobId, job.getMigrated());
+            return checkpoint(job).thenReturn(job);
+        });
+    }
+
+    private void launch(MigrationJob job, Duration delay) {
+        Disposable running = Mono.delay(delay)
+                .then(Mono.defer(() -> run(job)))
+                .doFinally(signal -> {
+                    // 插件停止时 dispose 也会走到这里，此时任务仍为 RUNNING，保留占用直到进程退出
+                    if (!STATE_RUNNING.equals(job.getState())) {
+                        runningJobs.remove(job.getId());
+                        busyPolicies.remove(job.getTargetPolicy());
+                    }
+                })
+                .subscribe();
+        runningJobs.put(job.getId(), running);
+        if (running.isDisposed()) {
+            runningJobs.remove(job.getId());
+        }
+    }
+
+    private Mono<Void> run(MigrationJob job) {
+        // 继续执行时失败项仍在源策略中，会被重新尝试
+        job.setFailed(0);
+        job.setErrors(new CopyOnWriteArrayList<>());
+        return checkpoint(job)
+                .then(target(job.getTargetPolicy()))
+                .flatMap(target -> Mono.zip(sourceAttachments(job.getSourcePolicy()), AttachmentIndex.linkedPaths(client, job.getTargetPolicy()))
+                        .flatMap(t -> {
+                            List<Attachment> sources = t.getT1();
+                            Set<String> taken = t.getT2();
+                            job.setTotal(job.getMigrated() + sources.size());
+                            log.info("迁移任务开始 id={}, {} -> {}, 待迁移 {}", job.getId(), job.getSourcePolicy(), job.getTargetPolicy(), sources.size());
+                            return Flux.fromIterable(batches(sources, job.getBatchSize(), MAX_BATCH_BYTES))
+                                    .concatMap(batch -> existingFiles(target.settings(), batch, job.getRootPath())
+                                            .flatMap(existing -> {
+                                                // 目标目录中已有的文件（不一定有对应附件）同样不可占用
+                                                taken.addAll(existing);
+                                                Map<Attachment, String> plan = plan(batch, job.getRootPath(), taken);
+                                                // 上传 blob 或提交时触发限流（如其他任务共用额度），等额度重置后整批重试
+                                                return Mono.defer(() -> pace(job, target.settings(), batch.size())
+                                                                .then(migrateBatch(job, target, plan)))
+                                                        .retryWhen(Retry.max(RATE_LIMIT_RETRIES)
+                                                                .filter(e -> e instanceof RateLimitedException
+                                                                        || !gitHubService.rateLimitDelay(target.settings(), 1).isZero()));
+                                            })
+                                            .then(Mono.defer(() -> checkpoint(job))))
+                                    .then();
+                        }))
+                .then(Mono.defer(() -> {
+                    job.setState(STATE_SUCCEEDED);
+                    job.setFinishedAt(System.currentTimeMillis());
+                    log.info("迁移任务完成 id={}, 迁移 {}, 失败 {}, 批次 {}", job.getId(), job.getMigrated(), job.getFailed(), job.getBatches());
+                    return checkpoint(job);
+                }))
+                .onErrorResume(e -> {
+                    log.error("迁移任务失败 id={}", job.getId(), e);
+                    job.setState(STATE_FAILED);
+                    job.setError(String.valueOf(e.getMessage()));
+                    job.setFinishedAt(System.currentTimeMillis());
+                    return checkpoint(job);
+                });
+    }
+
+    // 余量不足以完成一批（每个文件一个 blob 请求，另加读 ref/tree、建 tree/commit、更新 ref）时等待额度重置
+    private Mono<Void> pace(MigrationJob job, GithubOssPolicySettings settings, int files) {
+        Duration delay = gitHubService.rateLimitDelay(settings, files + 5);
+        if (delay.isZero()) {
+            return Mono.empty();
+        }
+        log.info("迁移任务 id={} 接近 API 速率限制，等待 {} 秒", job.getId(), delay.toSeconds());
+        job.setWaitingUntil(System.currentTimeMillis() + delay.toMillis());
+        return Mono.delay(delay).doFinally(signal -> job.setWaitingUntil(0)).then();
+    }
+
+    private Mono<Void> migrateBatch(MigrationJob job, Target target, Map<Attachment, String> plan) {
+        List<String> errors = new CopyOnWriteArrayList<>();
+        return Flux.fromIterable(plan.entrySet())
+                .flatMap(e -> transfer(job, target.settings(), e.getKey(), e.getValue())
+                        // 限流导致的 blob 失败交给批次重试，不计为单个文件失败
+                        .onErrorResume(err -> !(err instanceof RateLimitedException), err -> {
+                            errors.add(e.getKey().getMetadata().getName() + ": " + err.getMessage());
+                            return Mono.empty();
+                        }), TRANSFER_CONCURRENCY)
+                .collectList()
+                .flatMap(moved -> {
+                    if (moved.isEmpty()) {
+                        return Mono.just(List.<Moved>of());
+                    }
+                    Map<String, String> tree = new LinkedHashMap<>();
+                    moved.forEach(m -> tree.put(m.path(), m.sha()));
+                    String message = "Migrate " + moved.size() + " attachments from " + job.getSourcePolicy() + " via Halo";
+                    return gitHubService.commitBlobs(target.settings(), tree, message)
+                            .flatMap(commitSha -> {
+                                job.setLastCommitSha(commitSha);
+                                return Flux.fromIterable(moved)
+                                        .flatMap(m -> rewrite(target, m, commitSha)
+                                                .thenReturn(m)
+                                                .onErrorResume(err -> {
+                                                    errors.add(m.attachmentName() + ": 文件已提交，改写附件失败: " + err.getMessage());
+                                                    return Mono.empty();
+                                                }), UPDATE_CONCURRENCY)
+                                        .collectList();
+                            });
+                })
+                .doOnNext(done -> {
+                    job.setBatches(job.getBatches() + 1);
+                    job.setMigrated(job.getMigrated() + done.size());
+                    job.setFailed(job.getFailed() + plan.size() - done.size());
+                    for (String error : errors) {
+                        if (job.getErrors().size() < MAX_ERRORS) {
+                            job.getErrors().add(error);
+                        }
+                    }
+                })
+                .then();
+    }
+
+    // 下载源附件内容并上传 blob
+    private Mono<Moved> transfer(MigrationJob job, GithubOssPolicySettings settings, Attachment attachment, String path) {
+        Long size = attachment.getSpec().getSize();
+        if (size != null && size > MAX_FILE_BYTES) {
+            return Mono.error(tooLarge());
+        }
+        return attachmentService.getSharedURL(attachment, SHARED_URL_TTL)
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("无法获取附件地址")))
+                .flatMap(uri -> download(absolute(uri, job.getBaseUrl())))
+                .flatMap(bytes -> gitHubService.createBlob(settings, bytes)
+                        .onErrorMap(err -> !gitHubService.rateLimitDelay(settings, 1).isZero(), RateLimitedException::new)
+                        .map(sha -> new Moved(attachment.getMetadata().getName(), path, sha, bytes.length, ImageProbe.probe(bytes))));
+    }
+
+    // 经插件的代理配置下载；附件记录的大小可能不准，读取时超过 MAX_FILE_BYTES 即中止，不把超大文件读入内存
+    private Mono<byte[]> download(URI uri) {
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofMinutes(5)).GET().build();
+        return gitHubService.getProxyConfig()
+                .flatMap(cfg -> Mono.fromFuture(() -> gitHubService.buildRedirectingHttpClient(cfg)
+                        .sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())))
+                .publishOn(GitHubService.blockingScheduler())
+                .map(resp -> {
+                    try (InputStream body = resp.body()) {
+                        if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
+                            throw new IllegalStateException("下载失败，状态码=" + resp.statusCode() + ", 地址=" + uri);
+                        }
+                        if (resp.headers().firstValueAsLong("Content-Length").orElse(0) > MAX_FILE_BYTES) {
+                            throw tooLarge();
+                        }
+                        byte[] bytes = body.readNBytes((int) MAX_FILE_BYTES + 1);
+                        if (bytes.length > MAX_FILE_BYTES) {
+                            throw tooLarge();
+                        }
+                        return bytes;
+                    } catch (IOException e) {
+                        throw new IllegalStateException("下载失败: " + e.getMessage() + ", 地址=" + uri, e);
+                    }
+                });
+    }
+
+    // 批次涉及的目标目录中已有的文件
+    private Mono<Set<String>> existingFiles(GithubOssPolicySettings settings, List<Attachment> batch, String root) {
+        List<String> dirs = batch.stream()
+                .map(attachment -> targetPath(attachment, root))
+                .map(path -> path.lastIndexOf('/') < 0 ? "" : path.substring(0, path.lastIndexOf('/')))
+                .toList();
+        return gitHubService.filesIn(settings, dirs);
+    }
+
+    private static IllegalStateException tooLarge() {
+        return new IllegalStateException("文件超过 " + (MAX_FILE_BYTES / 1024 / 1024) + "MB，GitHub 无法存储");
+    }
+
+    // 相对地址（本地存储的 /upload/...）以 baseUrl 或站点外部地址补全
+    URI absolute(URI uri, String baseUrl) {
+        if (uri.isAbsolute()) {
+            return uri;
+        }
+        String base = baseUrl;
+        if (base == null) {
+            URL raw = externalUrlSupplier.getRaw();
+            if (raw == null) {
+                throw new IllegalStateException("附件地址为相对地址，请在迁移请求中指定 baseUrl 或配置站点外部访问地址");
+            }
+            base = raw.toString();
+        }
+        return URI.create(base.endsWith("/") ? base : base + "/").resolve(uri.toString().replaceFirst("^/+", ""));
+    }
+
+    // 改写附件：策略、路径/sha/提交 sha 与图片注解、大小与永久链接；附件名不变，引用它的内容无需修改
+    private Mono<Attachment> rewrite(Target target, Moved moved, String commitSha) {
+        Attachment fresh = attachmentHandler.buildAttachment(moved.path(), moved.sha(), commitSha, moved.size(), moved.image(), target.policy());
+        return Mono.defer(() -> client.fetch(Attachment.class, moved.attachmentName()))
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("附件已不存在")))
+                .flatMap(latest -> {
+                    Map<String, String> annotations = latest.getMetadata().getAnnotations() == null
+                            ? new HashMap<>() : new HashMap<>(latest.getMetadata().getAnnotations());
+                    annotations.remove(Constant.ANNOTATION_WIDTH);
+                    annotations.remove(Constant.ANNOTATION_HEIGHT);
+                    annotations.remove(Constant.ANNOTATION_PLACEHOLDER);
+                    annotations.putAll(fresh.getMetadata().getAnnotations());
+                    latest.getMetadata().setAnnotations(annotations);
+                    latest.getSpec().setPolicyName(target.policy().getMetadata().getName());
+                    latest.getSpec().setSize(moved.size());
+                    return permalinkCache.permalink(latest, target.configMap()).map(uri -> {
+                        if (latest.getStatus() == null) {
+                            latest.setStatus(new Attachment.AttachmentStatus());
+                        }
+                        latest.getStatus().setPermalink(uri.toString());
+                        return latest;
+                    });
+                })
+                .flatMap(client::update)
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(100))
+                        .filter(OptimisticLockingFailureException.class::isInstance));
+    }
+
+    /**
+     * 按文件数与累计大小切分批次；单个超过 maxBytes 的文件单独成批。
+     */
+    static List<List<Attachment>> batches(List<Attachment> attachments, int batchSize, long maxBytes) {
+        List<List<Attachment>> result = new ArrayList<>();
+        List<Attachment> current = new ArrayList<>();
+        long bytes = 0;
+        for (Attachment attachment : attachments) {
+            long size = attachment.getSpec().getSize() == null ? 0 : attachment.getSpec().getSize();
+            if (!current.isEmpty() && (current.size() >= batchSize || bytes + size > maxBytes)) {
+                result.add(current);
+                current = new ArrayList<>();
+                bytes = 0;
+            }
+            current.add(attachment);
+            bytes += size;
+        }
+        if (!current.isEmpty()) {
+            result.add(current);
+        }
+        return result;
+    }
+
+    /**
+     * 规划仓库路径：沿用源地址的路径（去掉本地存储的 upload/ 前缀），取不到时用显示名；
+     * 与 taken 中的路径（目标目录已有的文件、已有附件或本次其他文件）冲突时在文件名前加附件名前缀，
+     * 仍冲突时改用完整附件名并追加序号，直到得到未被占用的路径。
+     */
+    static Map<Attachment, String> plan(List<Attachment> batch, String root, Set<String> taken) {
+        Map<Attachment, String> plan = new LinkedHashMap<>();
+        for (Attachment attachment : batch) {
+            String path = targetPath(attachment, root);
+            int slash = path.lastIndexOf('/');
+            String dir = path.substring(0, slash + 1);
+            String file = path.substring(slash + 1);
+            String name = attachment.getMetadata().getName();
+            for (int n = 1; !taken.add(path); n++) {
+                String prefix = n == 1 ? name.substring(0, Math.min(8, name.length())) : n == 2 ? name : name + "-" + (n - 2);
+                path = dir + prefix + "-" + file;
+            }
+            plan.put(attachment, path);
+        }
+        return plan;
+    }
+
+    private static String targetPath(Attachment attachment, String root) {
+        String relative = relativePath(attachment);
+        return root.isEmpty() ? relative : root + "/" + relative;
+    }
+
+    private static String relativePath(Attachment attachment) {
+        String permalink = attachment.getStatus() == null ? null : attachment.getStatus().getPermalink();
+        String candidate = null;
+        if (permalink != null && !permalink.isBlank()) {
+            try {
+                String p = URI.create(permalink).getPath();
+                candidate = p == null ? null : ArchiveImporter.entryPath(p.replaceFirst("^/+(upload/)?", ""));
+            } catch (IllegalArgumentException e) {
+                candidate = null;
+            }
+        }
+        if (candidate == null) {
+            String displayName = attachment.getSpec().getDisplayName();
+            candidate = isBlank(displayName) ? attachment.getMetadata().getName() : displayName.replace('/', '_');
+        }
+        return candidate;
+    }
+
+    private Mono<List<Attachment>> sourceAttachments(String policyName) {
+        return AttachmentIndex.listByPolicy(client, policyName, Sort.by("metadata.creationTimestamp"))
+                .filter(a -> a.getMetadata().getDeletionTimestamp() == null)
+                .collectList();
+    }
+
+    private Mono<Target> target(String policyName) {
+        return client.fetch(Policy.class, policyName)
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("目标存储策略不存在: " + policyName)))
+                .flatMap(policy -> {
+                    if (policy.getSpec() == null || !"githuboss-policy-template".equals(policy.getSpec().getTemplateName())) {
+                        return Mono.error(new IllegalArgumentException("目标策略 " + policyName + " 不是 GitHub 存储策略"));
+                    }
+                    if (isBlank(policy.getSpec().getConfigMapName())) {
+                        return Mono.error(new IllegalStateException("存储策略 " + policyName + " 未配置 ConfigMap"));
+                    }
+                    return client.fetch(ConfigMap.class, policy.getSpec().getConfigMapName())
+                            .map(cm -> new Target(policy, cm,
+                                    JsonUtils.jsonToObject(cm.getData().getOrDefault("default", "{}"), GithubOssPolicySettings.class)));
+                });
+    }
+
+    private Mono<Void> checkpoint(MigrationJob job) {
+        Path target = dir.resolve(job.getId() + ".json");
+        return PluginState.writeJson(target, job)
+                .onErrorResume(e -> {
+                    log.warn("迁移任务进度保存失败 id={}: {}", job.getId(), e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    // 只保留最近 MAX_FINISHED_JOBS 个已结束的任务及其记录文件
+    private void evictFinished() {
+        List<MigrationJob> finished = jobs.values().stream()
+                .filter(job -> !STATE_RUNNING.equals(job.getState()))
+                .sorted(Comparator.comparingLong(MigrationJob::getStartedAt).reversed())
+                .toList();
+        finished.stream().skip(MAX_FINISHED_JOBS).forEach(job -> {
+            jobs.remove(job.getId());
+            try {
+                Files.deleteIfExists(dir.resolve(job.getId() + ".json"));
+            } catch (IOException e) {
+                log.debug("删除迁移任务记录失败 id={}: {}", job.getId(), e.getMessage());
+            }
+        });
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.isBlank();
+    }
+}
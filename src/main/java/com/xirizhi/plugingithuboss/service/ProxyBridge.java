@@ -0,0 +1,308 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 本机 HTTP CONNECT 桥：JDK HttpClient 只支持无认证（HTTPS 隧道不发送 Basic 认证）的 HTTP 代理，
+ * SOCKS5 代理与需要认证的 HTTP 代理经由本桥转接。
+ * 说明：
+ * - 仅监听 127.0.0.1 的随机端口，只接受 CONNECT（HTTPS 隧道）请求
+ * - 每个桥启动时生成随机令牌，CONNECT 须带 Proxy-Authorization: Bearer {令牌}，否则返回 407 并断开，
+ *   本机其他进程无法借桥使用上游代理与其凭据；令牌由 {@link BridgedHttpClient} 附加到插件自己的请求上
+ * - 对上游 SOCKS5 使用用户名/密码认证（RFC 1929），对上游 HTTP 代理附加 Proxy-Authorization 头
+ * - 隧道建立后双向转发字节，每个方向一个守护线程
+ */
+@Slf4j
+final class ProxyBridge implements Closeable {
+
+    // 请求头最大长度，超出视为异常请求
+    private static final int MAX_HEAD = 8192;
+    private static final String PROXY_AUTHORIZATION = "Proxy-Authorization";
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final boolean socks;
+    private final InetSocketAddress upstream;
+    private final String username;
+    private final String password;
+    private final int connectTimeoutMs;
+    private final String authorization;
+    private final ServerSocket server;
+    private final ExecutorService workers;
+
+    ProxyBridge(boolean socks, InetSocketAddress upstream, String username, String password, int connectTimeoutMs) throws IOException {
+        this.socks = socks;
+        this.upstream = upstream;
+        this.username = username;
+        this.password = password;
+        this.connectTimeoutMs = connectTimeoutMs;
+        byte[] token = new byte[32];
+        RANDOM.nextBytes(token);
+        this.authorization = "Bearer " + Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+        this.server = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        AtomicInteger seq = new AtomicInteger();
+        this.workers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "githuboss-proxy-bridge-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        workers.execute(this::acceptLoop);
+        log.info("代理桥已启动 127.0.0.1:{} -> {} {}", server.getLocalPort(), socks ? "socks5" : "http", upstream);
+    }
+
+    InetSocketAddress address() {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+    }
+
+    /**
+     * 经本桥发出的请求须携带的 Proxy-Authorization 头的值。
+     */
+    String authorization() {
+        return authorization;
+    }
+
+    @Override
+    public void close() {
+        try {
+            server.close();
+        } catch (IOException ignored) {
+            // 关闭时忽略
+        }
+        workers.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket client = server.accept();
+                workers.execute(() -> handle(client));
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    log.warn("代理桥接受连接失败: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handle(Socket client) {
+        Socket remote = null;
+        try {
+            client.setSoTimeout(connectTimeoutMs);
+            String head = readHead(client.getInputStream());
+            if (!authorized(head)) {
+                log.debug("代理桥拒绝未携带令牌的连接: {}", client.getRemoteSocketAddress());
+                reply(client, "HTTP/1.1 407 Proxy Authentication Required\r\nProxy-Authenticate: Bearer\r\n"
+                        + "Content-Length: 0\r\nConnection: close\r\n\r\n");
+                client.close();
+                return;
+            }
+            String[] line = head.substring(0, Math.max(0, head.indexOf("\r\n"))).split(" ");
+            if (line.length < 2 || !"CONNECT".equalsIgnoreCase(line[0])) {
+                reply(client, "HTTP/1.1 405 Method Not Allowed\r\nContent-Length: 0\r\n\r\n");
+                client.close();
+                return;
+            }
+            int colon = line[1].lastIndexOf(':');
+            String host = line[1].substring(0, colon);
+            int port = Integer.parseInt(line[1].substring(colon + 1));
+            remote = new Socket();
+            connectUpstream(remote);
+            handshake(remote, host, port);
+            reply(client, "HTTP/1.1 200 Connection Established\r\n\r\n");
+            client.setSoTimeout(0);
+            remote.setSoTimeout(0);
+            Socket upstreamSocket = remote;
+            AtomicInteger finished = new AtomicInteger();
+            workers.execute(() -> pipe(upstreamSocket, client, finished));
+            pipe(client, remote, finished);
+        } catch (Exception e) {
+            log.debug("代理桥建立隧道失败: {}", e.getMessage());
+            try {
+                reply(client, "HTTP/1.1 502 Bad Gateway\r\nContent-Length: 0\r\n\r\n");
+            } catch (IOException ignored) {
+                // 客户端已断开
+            }
+            closeQuietly(client);
+            closeQuietly(remote);
+        }
+    }
+
+    // 请求头中的 Proxy-Authorization 与本桥令牌一致（定长比较）
+    private boolean authorized(String head) {
+        for (String header : head.split("\r\n")) {
+            int colon = header.indexOf(':');
+            if (colon > 0 && PROXY_AUTHORIZATION.equalsIgnoreCase(header.substring(0, colon).trim())) {
+                return MessageDigest.isEqual(header.substring(colon + 1).trim().getBytes(StandardCharsets.ISO_8859_1),
+                        authorization.getBytes(StandardCharsets.ISO_8859_1));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 在已连到上游代理的套接字上建立到 host:port 的隧道（SOCKS5 握手或 HTTP CONNECT）。
+     */
+    void handshake(Socket s, String host, int port) throws IOException {
+        if (socks) {
+            socksConnect(s, host, port);
+        } else {
+            httpConnect(s, host, port);
+        }
+    }
+
+    // SOCKS5：协商认证方式，必要时用户名/密码认证，再以域名方式请求连接（由代理端解析 DNS）
+    private void socksConnect(Socket s, String host, int port) throws IOException {
+        InputStream in = s.getInputStream();
+        OutputStream out = s.getOutputStream();
+        boolean auth = username != null && !username.isEmpty();
+        out.write(auth ? new byte[] {5, 2, 0, 2} : new byte[] {5, 1, 0});
+        out.flush();
+        byte[] choice = readFully(in, 2);
+        if (choice[1] == 2) {
+            byte[] user = username.getBytes(StandardCharsets.UTF_8);
+            byte[] pass = (password == null ? "" : password).getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream req = new ByteArrayOutputStream();
+            req.write(1);
+            req.write(user.length);
+            req.write(user);
+            req.write(pass.length);
+            req.write(pass);
+            out.write(req.toByteArray());
+            out.flush();
+            if (readFully(in, 2)[1] != 0) {
+                throw new IOException("SOCKS5 认证失败");
+            }
+        } else if (choice[1] != 0) {
+            throw new IOException("SOCKS5 代理不接受的认证方式");
+        }
+        byte[] hostBytes = host.getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream req = new ByteArrayOutputStream();
+        req.write(new byte[] {5, 1, 0, 3, (byte) hostBytes.length});
+        req.write(hostBytes);
+        req.write(port >> 8);
+        req.write(port & 0xFF);
+        out.write(req.toByteArray());
+        out.flush();
+        byte[] resp = readFully(in, 4);
+        if (resp[1] != 0) {
+            throw new IOException("SOCKS5 连接失败，代码 " + resp[1]);
+        }
+        // 丢弃绑定地址与端口
+        int addrLen = switch (resp[3]) {
+            case 1 -> 4;
+            case 4 -> 16;
+            case 3 -> readFully(in, 1)[0] & 0xFF;
+            default -> throw new IOException("SOCKS5 响应地址类型未知");
+        };
+        readFully(in, addrLen + 2);
+    }
+
+    // 上游 HTTP 代理：转发 CONNECT 并附加 Basic 认证
+    private void httpConnect(Socket s, String host, int port) throws IOException {
+        StringBuilder req = new StringBuilder("CONNECT ").append(host).append(':').append(port).append(" HTTP/1.1\r\n")
+                .append("Host: ").append(host).append(':').append(port).append("\r\n");
+        if (username != null && !username.isEmpty()) {
+            String token = Base64.getEncoder().encodeToString(
+                    (username + ":" + (password == null ? "" : password)).getBytes(StandardCharsets.UTF_8));
+            req.append("Proxy-Authorization: Basic ").append(token).append("\r\n");
+        }
+        req.append("\r\n");
+        s.getOutputStream().write(req.toString().getBytes(StandardCharsets.ISO_8859_1));
+        s.getOutputStream().flush();
+        String head = readHead(s.getInputStream());
+        String[] status = head.split(" ", 3);
+        if (status.length < 2 || !status[1].startsWith("2")) {
+            throw new IOException("HTTP 代理拒绝 CONNECT: " + head.substring(0, Math.max(0, head.indexOf("\r\n"))));
+        }
+    }
+
+    /**
+     * 连接上游代理。
+     */
+    void connectUpstream(Socket s) throws IOException {
+        // 每次连接重新解析代理主机名
+        s.connect(new InetSocketAddress(upstream.getHostString(), upstream.getPort()), connectTimeoutMs);
+        s.setSoTimeout(connectTimeoutMs);
+    }
+
+    // 单向转发；读到 EOF 时半关闭对端输出，两个方向都结束后关闭两端
+    private static void pipe(Socket from, Socket to, AtomicInteger finished) {
+        byte[] buf = new byte[16 * 1024];
+        try {
+            InputStream in = from.getInputStream();
+            OutputStream out = to.getOutputStream();
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                out.write(buf, 0, n);
+                out.flush();
+            }
+            to.shutdownOutput();
+            if (finished.incrementAndGet() < 2) {
+                return;
+            }
+        } catch (IOException e) {
+            // 任一方向出错即结束整个隧道
+        }
+        closeQuietly(from);
+        closeQuietly(to);
+    }
+
+    // 读取到空行为止的报文头（按 ISO-8859-1 解码）
+    static String readHead(InputStream in) throws IOException {
+        // 逐字节读取，不多读隧道建立后的数据
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        int tail = 0;
+        while (tail != 0x0D0A0D0A) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("连接在报文头结束前关闭");
+            }
+            buf.write(b);
+            if (buf.size() > MAX_HEAD) {
+                throw new IOException("报文头过长");
+            }
+            tail = (tail << 8) | b;
+        }
+        return buf.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] readFully(InputStream in, int n) throws IOException {
+        byte[] b = in.readNBytes(n);
+        if (b.length < n) {
+            throw new IOException("代理连接意外关闭");
+        }
+        return b;
+    }
+
+    private static void reply(Socket client, String response) throws IOException {
+        client.getOutputStream().write(response.getBytes(StandardCharsets.ISO_8859_1));
+        client.getOutputStream().flush();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // 关闭时忽略
+        }
+    }
+}
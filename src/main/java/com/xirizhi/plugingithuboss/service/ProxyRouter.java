@@ -0,0 +1,345 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.xirizhi.plugingithuboss.extension.theme.NetworkConfig;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 按主机选择直连或代理的 ProxySelector。
+ * 说明：
+ * - 规则（routeRules）按顺序匹配主机：精确主机名、*.后缀 或 *，动作为 direct / proxy / auto
+ * - 未命中规则的主机按 routeMode 处理：proxy 全部走代理；auto 定期分别经直连与代理对主机发 HEAD 测速，选择可用且更快的路径
+ * - auto 主机在首次测速完成前走代理；测速结果按指数滑动平均平滑，减少路径来回切换
+ * - SOCKS5 与需要认证的代理经由本机 ProxyBridge 转为 HttpClient 可用的 HTTP 代理；HttpClient 只对 https 走 CONNECT 隧道，
+ *   经桥接的代理下 http:// 主机改为直连；使用本路由的 HttpClient 须经 {@link #authorize} 包装，才能带上代理桥令牌
+ */
+@Slf4j
+public final class ProxyRouter extends ProxySelector implements Closeable {
+
+    public static final String DIRECT = "direct";
+    public static final String PROXY = "proxy";
+    public static final String AUTO = "auto";
+
+    // auto 模式最多跟踪的主机数，超出后新主机直接走代理
+    private static final int MAX_AUTO_HOSTS = 64;
+    private static final int PROBE_CONCURRENCY = 4;
+    // 新测速值的权重
+    private static final double EWMA_ALPHA = 0.3;
+
+    /**
+     * 主机当前路由与测速结果（供网络页面展示）；延迟为 -1 表示该路径不可用或尚未测速。
+     */
+    public record HostRoute(String host, String route, long directMs, long proxyMs, long checkedAt) {}
+
+    record Rule(String pattern, String action) {
+        boolean matches(String host) {
+            if ("*".equals(pattern)) {
+                return true;
+            }
+            if (pattern.startsWith("*.")) {
+                return host.endsWith(pattern.substring(1)) || host.equals(pattern.substring(2));
+            }
+            return host.equals(pattern);
+        }
+    }
+
+    // auto 主机的测速状态
+    private static final class Probe {
+        volatile String route = PROXY;
+        volatile double directMs = -1;
+        volatile double proxyMs = -1;
+        volatile long checkedAt;
+    }
+
+    private final List<Rule> rules;
+    private final boolean autoDefault;
+    private final Proxy proxy;
+    private final boolean bridged;
+    private final ProxyBridge bridge;
+    private final Duration timeout;
+    private final Map<String, Probe> probes = new ConcurrentHashMap<>();
+    private final HttpClient directProbeClient;
+    private final HttpClient proxyProbeClient;
+    private final Disposable probeTask;
+
+    public ProxyRouter(NetworkConfig cfg) {
+        this.rules = parseRules(cfg.getRouteRules());
+        this.autoDefault = AUTO.equalsIgnoreCase(trim(cfg.getRouteMode()));
+        this.timeout = Duration.ofMillis(cfg.getTimeoutMs() == null || cfg.getTimeoutMs() <= 0 ? 10000 : cfg.getTimeoutMs());
+        InetSocketAddress upstream = parseAddress(cfg.getProxyPath());
+        boolean socks = "socks".equalsIgnoreCase(trim(cfg.getProxyType())) || "socks5".equalsIgnoreCase(trim(cfg.getProxyType()));
+        String username = trim(cfg.getProxyUsername());
+        this.bridged = socks || (username != null && !username.isEmpty());
+        if (bridged) {
+            try {
+                this.bridge = new ProxyBridge(socks, upstream, username, cfg.getProxyPassword(), (int) RequestTimeouts.connect(cfg).toMillis());
+            } catch (IOException e) {
+                throw new IllegalStateException("启动本机代理桥失败: " + e.getMessage(), e);
+            }
+            this.proxy = new Proxy(Proxy.Type.HTTP, bridge.address());
+        } else {
+            this.bridge = null;
+            this.proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress(upstream.getHostString(), upstream.getPort()));
+        }
+        boolean needsProbe = autoDefault || rules.stream().anyMatch(rule -> AUTO.equals(rule.action()));
+        if (needsProbe) {
+            this.directProbeClient = HttpClient.newBuilder().proxy(HttpClient.Builder.NO_PROXY).build();
+            this.proxyProbeClient = authorize(HttpClient.newBuilder().proxy(ProxySelector.of((InetSocketAddress) proxy.address())).build());
+            int minutes = cfg.getProbeIntervalMinutes() == null || cfg.getProbeIntervalMinutes() <= 0 ? 10 : cfg.getProbeIntervalMinutes();
+            this.probeTask = Flux.interval(Duration.ofMinutes(minutes))
+                    .onBackpressureDrop()
+                    .concatMap(tick -> probeAll())
+                    .subscribe();
+        } else {
+            this.directProbeClient = null;
+            this.proxyProbeClient = null;
+            this.probeTask = null;
+        }
+        log.info("代理路由已构建，代理 {}（{}），默认 {}，规则 {} 条", upstream, bridged ? "经本机桥接" : "http",
+                autoDefault ? AUTO : PROXY, rules.size());
+    }
+
+    @Override
+    public List<Proxy> select(URI uri) {
+        String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+        if (bridged && !"https".equalsIgnoreCase(uri.getScheme())) {
+            return List.of(Proxy.NO_PROXY);
+        }
+        return List.of(DIRECT.equals(route(host)) ? Proxy.NO_PROXY : proxy);
+    }
+
+    @Override
+    public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
+        // 代理连接失败时，auto 主机立即改为直连，等待下一轮测速再修正
+        Probe probe = uri.getHost() == null ? null : probes.get(uri.getHost().toLowerCase(Locale.ROOT));
+        if (probe != null && proxy.address().equals(sa)) {
+            probe.proxyMs = -1;
+            probe.route = DIRECT;
+        }
+    }
+
+    /**
+     * 主机当前路由：direct 或 proxy。
+     */
+    String route(String host) {
+        String action = autoDefault ? AUTO : PROXY;
+        for (Rule rule : rules) {
+            if (rule.matches(host)) {
+                action = rule.action();
+                break;
+            }
+        }
+        if (!AUTO.equals(action)) {
+            return action;
+        }
+        Probe probe = probes.get(host);
+        if (probe == null) {
+            if (probes.size() >= MAX_AUTO_HOSTS) {
+                return PROXY;
+            }
+            probe = new Probe();
+            if (probes.putIfAbsent(host, probe) == null) {
+                // 首次访问的主机立即测速一次
+                probe(host, probe).subscribe();
+            }
+            probe = probes.get(host);
+        }
+        return probe.route;
+    }
+
+    /**
+     * 立即对所有 auto 主机测速。
+     */
+    public Mono<Void> probeAll() {
+        return Flux.fromIterable(probes.entrySet())
+                .flatMap(e -> probe(e.getKey(), e.getValue()), PROBE_CONCURRENCY)
+                .then();
+    }
+
+    /**
+     * 已访问过的 auto 主机的当前路由与测速结果；固定为 direct / proxy 的主机不列出。
+     */
+    public List<HostRoute> routes() {
+        List<HostRoute> list = new ArrayList<>();
+        probes.forEach((host, p) -> list.add(new HostRoute(host, p.route,
+                Math.round(p.directMs), Math.round(p.proxyMs), p.checkedAt)));
+        list.sort(Comparator.comparing(HostRoute::host));
+        return list;
+    }
+
+    // 经本机代理桥转接时的代理桥，否则为空
+    ProxyBridge bridge() {
+        return bridge;
+    }
+
+    /**
+     * 经本机代理桥转接时，返回为每个请求附加代理桥令牌的客户端；否则原样返回。
+     */
+    public HttpClient authorize(HttpClient client) {
+        return bridge == null ? client : new BridgedHttpClient(client, bridge.authorization());
+    }
+
+    @Override
+    public void close() {
+        if (probeTask != null) {
+            probeTask.dispose();
+        }
+        if (directProbeClient != null) {
+            directProbeClient.shutdown();
+            proxyProbeClient.shutdown();
+        }
+        if (bridge != null) {
+            bridge.close();
+        }
+    }
+
+    private Mono<Void> probe(String host, Probe probe) {
+        if (directProbeClient == null) {
+            return Mono.empty();
+        }
+        return Mono.zip(measure(directProbeClient, host), measure(proxyProbeClient, host))
+                .doOnNext(t -> {
+                    probe.directMs = smooth(probe.directMs, t.getT1());
+                    probe.proxyMs = smooth(probe.proxyMs, t.getT2());
+                    probe.checkedAt = System.currentTimeMillis();
+                    String next = decide(probe.route, probe.directMs, probe.proxyMs);
+                    if (!next.equals(probe.route)) {
+                        log.info("主机 {} 路由切换为 {}（直连 {}ms，代理 {}ms）", host, next,
+                                Math.round(probe.directMs), Math.round(probe.proxyMs));
+                        probe.route = next;
+                    }
+                })
+                .then();
+    }
+
+    // 发送 HEAD 请求测延迟；任何 HTTP 响应都说明该路径可用，异常或超时返回 -1
+    private Mono<Long> measure(HttpClient http, String host) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            HttpRequest req = HttpRequest.newBuilder(URI.create("https://" + host + "/"))
+                    .timeout(timeout)
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .build();
+            return Mono.fromFuture(() -> http.sendAsync(req, HttpResponse.BodyHandlers.discarding()))
+                    .map(resp -> (System.nanoTime() - start) / 1_000_000);
+        }).onErrorReturn(-1L);
+    }
+
+    static double smooth(double previous, long sample) {
+        if (sample < 0) {
+            return -1;
+        }
+        return previous < 0 ? sample : previous * (1 - EWMA_ALPHA) + sample * EWMA_ALPHA;
+    }
+
+    // 只有一条路径可用时选它；都可用时选更快的，差距不足 10% 时保持当前路由；都不可用时保持不变
+    static String decide(String current, double directMs, double proxyMs) {
+        if (directMs < 0 && proxyMs < 0) {
+            return current;
+        }
+        if (directMs < 0) {
+            return PROXY;
+        }
+        if (proxyMs < 0) {
+            return DIRECT;
+        }
+        if (DIRECT.equals(current)) {
+            return proxyMs < directMs * 0.9 ? PROXY : DIRECT;
+        }
+        return directMs < proxyMs * 0.9 ? DIRECT : PROXY;
+    }
+
+    /**
+     * 校验网络配置（代理地址、类型、路由模式与规则），不合法时抛出 IllegalArgumentException。
+     */
+    public static void validate(NetworkConfig cfg) {
+        String type = trim(cfg.getProxyType());
+        if (type != null && !type.isEmpty() && !"http".equalsIgnoreCase(type)
+                && !"socks".equalsIgnoreCase(type) && !"socks5".equalsIgnoreCase(type)) {
+            throw new IllegalArgumentException("代理类型只支持 http / socks: " + type);
+        }
+        String mode = trim(cfg.getRouteMode());
+        if (mode != null && !mode.isEmpty() && !PROXY.equalsIgnoreCase(mode) && !AUTO.equalsIgnoreCase(mode)) {
+            throw new IllegalArgumentException("路由模式只支持 proxy / auto: " + mode);
+        }
+        parseRules(cfg.getRouteRules());
+        if (Boolean.TRUE.equals(cfg.getEnabled())) {
+            parseAddress(cfg.getProxyPath());
+        }
+    }
+
+    // 解析路由规则，格式错误时抛出 IllegalArgumentException
+    static List<Rule> parseRules(String text) {
+        List<Rule> list = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return list;
+        }
+        for (String item : text.split("[,\\n]")) {
+            String entry = item.trim();
+            if (entry.isEmpty() || entry.startsWith("#")) {
+                continue;
+            }
+            int eq = entry.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("路由规则格式应为 主机=direct|proxy|auto: " + entry);
+            }
+            String pattern = entry.substring(0, eq).trim().toLowerCase(Locale.ROOT);
+            String action = entry.substring(eq + 1).trim().toLowerCase(Locale.ROOT);
+            if (!DIRECT.equals(action) && !PROXY.equals(action) && !AUTO.equals(action)) {
+                throw new IllegalArgumentException("未知的路由动作 " + action + "，可选 direct / proxy / auto");
+            }
+            list.add(new Rule(pattern, action));
+        }
+        return list;
+    }
+
+    // 解析 host:port 形式的代理地址（可带 http:// 或 socks5:// 前缀），不做 DNS 解析；格式错误时抛出 IllegalArgumentException
+    static InetSocketAddress parseAddress(String proxyPath) {
+        String path = trim(proxyPath);
+        if (path == null || path.isEmpty()) {
+            throw new IllegalArgumentException("代理地址不能为空");
+        }
+        int scheme = path.indexOf("://");
+        if (scheme >= 0) {
+            path = path.substring(scheme + 3);
+        }
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        int colon = path.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("代理地址格式应为 host:port: " + proxyPath);
+        }
+        try {
+            int port = Integer.parseInt(path.substring(colon + 1));
+            return InetSocketAddress.createUnresolved(path.substring(0, colon), port);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("代理端口无效: " + proxyPath);
+        }
+    }
+
+    private static String trim(String s) {
+        return s == null ? null : s.trim();
+    }
+}
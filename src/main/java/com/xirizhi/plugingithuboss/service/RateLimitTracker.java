@@ -0,0 +1,53 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 记录 API 响应中的速率限制余量（X-RateLimit-Remaining / X-RateLimit-Reset），供批量任务在余量不足时主动等待。
+ * 说明：
+ * - 按 API 地址（主机与端口）与凭据区分（同一 token 的多个策略共用额度）；凭据只保存哈希
+ * - 次级限流返回 Retry-After 时，在指定秒数内视为余量为 0
+ * - 未返回限流头的平台（如部分 Gitea）不记录，不会产生等待
+ */
+final class RateLimitTracker {
+
+    record Budget(int remaining, long resetAtMillis) {}
+
+    private final Map<String, Budget> budgets = new ConcurrentHashMap<>();
+
+    void observe(HttpRequest request, HttpResponse<?> response) {
+        String key = key(request.uri().getAuthority(), request.headers().firstValue("Authorization").orElse(""));
+        OptionalLong retryAfter = response.headers().firstValueAsLong("Retry-After");
+        if (retryAfter.isPresent()) {
+            budgets.put(key, new Budget(0, System.currentTimeMillis() + retryAfter.getAsLong() * 1000));
+            return;
+        }
+        OptionalLong remaining = response.headers().firstValueAsLong("X-RateLimit-Remaining");
+        OptionalLong reset = response.headers().firstValueAsLong("X-RateLimit-Reset");
+        if (remaining.isPresent() && reset.isPresent()) {
+            budgets.put(key, new Budget((int) remaining.getAsLong(), reset.getAsLong() * 1000));
+        }
+    }
+
+    /**
+     * 余量少于 reserve 时需要等待的时长（到重置时间），否则为 0。
+     */
+    Duration delay(String authority, String authorization, int reserve) {
+        Budget budget = budgets.get(key(authority, authorization));
+        long now = System.currentTimeMillis();
+        if (budget == null || budget.resetAtMillis() <= now || budget.remaining() >= reserve) {
+            return Duration.ZERO;
+        }
+        // 多等 1 秒，避免本机时钟略快时在重置前发出请求
+        return Duration.ofMillis(budget.resetAtMillis() - now + 1000);
+    }
+
+    private static String key(String authority, String authorization) {
+        return authority + "|" + Integer.toHexString(authorization.hashCode());
+    }
+}
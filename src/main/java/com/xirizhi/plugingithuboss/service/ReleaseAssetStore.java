@@ -0,0 +1,349 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.xirizhi.plugingithuboss.exception.PathConflictException;
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.extension.theme.NetworkConfig;
+import com.xirizhi.plugingithuboss.service.forge.ForgeBackend;
+import com.xirizhi.plugingithuboss.service.forge.ForgeBackends;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.adapter.JdkFlowAdapter;
+import reactor.core.publisher.Mono;
+import run.halo.app.infra.utils.JsonUtils;
+
+/**
+ * Release 附件存储：超过策略阈值的大文件作为 release 附件保存，绕开 Contents API 的 Base64 JSON 与约 100MB 的限制。
+ * 说明：
+ * - 上传到 release 的 upload_url，请求体为原始字节（application/octet-stream），不做 Base64 编码
+ * - 上传接口要求 Content-Length：multipart 分片带长度时直接转发输入流；否则先在内存中读取至多阈值字节判断大小，
+ *   超过阈值的文件写入临时文件得到长度后从文件流式发送，上传结束即删除
+ * - release 按标签查找，不存在时基于策略分支创建（不标记为 latest）；按仓库+标签缓存 id 与 upload_url
+ * - 仅支持 GitHub 与 GitHub Enterprise；单个附件最大 2GB，同一 release 内附件名不能重复
+ * - 附件名由仓库路径转换而来，不同路径可能得到同一附件名，且 release 附件不在仓库目录中、上传路径占位看不到它们；
+ *   因此发送内容前先读取 release 已有的附件名，重名时抛出 {@link PathConflictException}（尚未消费请求体），由调用方换名重试
+ */
+@Slf4j
+@Component
+public class ReleaseAssetStore {
+
+    public static final String DEFAULT_TAG = "githuboss-assets";
+    public static final long MAX_ASSET_BYTES = 2L * 1024 * 1024 * 1024 - 1;
+    // 读取已有附件名的分页大小与页数上限（GitHub 单个 release 最多 1000 个附件）
+    private static final int ASSET_PAGE_SIZE = 100;
+    private static final int MAX_ASSET_PAGES = 10;
+
+    /**
+     * 已上传的附件；url 为 browser_download_url，作为附件永久链接。
+     */
+    public record Asset(long releaseId, long assetId, String name, String url, long size) {}
+
+    /**
+     * 读取后的上传内容：未超过阈值时 bytes 为完整内容，否则 large 提供原始字节流。
+     */
+    public record Content(byte[] bytes, LargeBody large) {}
+
+    /**
+     * 超过阈值的内容：size 为总字节数；cleanup 删除临时文件（直接转发时为空操作）。
+     */
+    public record LargeBody(HttpRequest.BodyPublisher publisher, long size, Runnable cleanup) {}
+
+    private record Release(long id, String uploadUrl) {}
+
+    private final GitHubService gitHubService;
+    private final GitHubMetrics metrics;
+    private final Map<String, Mono<Release>> releases = new ConcurrentHashMap<>();
+
+    public ReleaseAssetStore(GitHubService gitHubService, GitHubMetrics metrics) {
+        this.gitHubService = gitHubService;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 策略是否开启 release 附件模式（设置了阈值且平台支持）。
+     */
+    public static boolean enabled(GithubOssPolicySettings settings) {
+        return settings.getReleaseThresholdMB() != null && settings.getReleaseThresholdMB() > 0
+                && ForgeBackends.of(settings).supportsReleaseAssets();
+    }
+
+    public static long thresholdBytes(GithubOssPolicySettings settings) {
+        return settings.getReleaseThresholdMB() * 1024L * 1024L;
+    }
+
+    /**
+     * 仓库路径对应的附件名：release 内没有目录，以 - 连接各级目录；不同路径可能重名，上传前检查（见 {@link #upload}）。
+     */
+    public static String assetName(String path) {
+        return path.replace('/', '-');
+    }
+
+    /**
+     * 读取上传内容，超过 threshold 字节时不在内存中保留整个文件。
+     */
+    public static Mono<Content> read(FilePart part, long threshold) {
+        long declared = part.headers().getContentLength();
+        if (declared > threshold) {
+            if (declared > MAX_ASSET_BYTES) {
+                return Mono.error(new IllegalArgumentException("文件大小超过 release 附件上限 2GB"));
+            }
+            var body = JdkFlowAdapter.publisherToFlowPublisher(part.content().map(ReleaseAssetStore::toByteBuffer));
+            return Mono.just(new Content(null, new LargeBody(HttpRequest.BodyPublishers.fromPublisher(body, declared), declared, () -> {})));
+        }
+        return Mono.fromCallable(() -> {
+            try (InputStream in = DataBufferUtils.subscriberInputStream(part.content(), 4)) {
+                byte[] head = in.readNBytes((int) Math.min(threshold + 1, Integer.MAX_VALUE - 8));
+                if (head.length <= threshold) {
+                    return new Content(head, null);
+                }
+                Path tmp = Files.createTempFile("githuboss-asset-", ".part");
+                try {
+                    long size;
+                    try (OutputStream out = Files.newOutputStream(tmp)) {
+                        out.write(head);
+                        size = head.length + copy(in, out, MAX_ASSET_BYTES - head.length);
+                    }
+                    return new Content(null, new LargeBody(HttpRequest.BodyPublishers.ofFile(tmp), size, () -> deleteQuietly(tmp)));
+                } catch (IOException | RuntimeException e) {
+                    deleteQuietly(tmp);
+                    throw e;
+                }
+            }
+        }).subscribeOn(GitHubService.blockingScheduler());
+    }
+
+    /**
+     * 上传为 release 附件；release 不存在时创建。release 中已有同名附件时抛出 {@link PathConflictException}，此时请求体尚未发送。
+     */
+    public Mono<Asset> upload(GithubOssPolicySettings settings, String name, LargeBody body) {
+        if (body.size() > MAX_ASSET_BYTES) {
+            return Mono.error(new IllegalArgumentException("文件大小超过 release 附件上限 2GB"));
+        }
+        ForgeBackend backend = requireReleases(settings);
+        return metrics.observe("asset_upload", settings, stages -> gitHubService.getProxyConfig().flatMap(cfg -> {
+            HttpClient http = gitHubService.buildBaseGitHubHttpClient(cfg);
+            return release(stages, http, cfg, backend, settings)
+                    .flatMap(release -> assetNames(stages, http, cfg, backend, settings, release)
+                            .flatMap(names -> names.contains(name)
+                                    ? Mono.<Release>error(new PathConflictException(name))
+                                    : Mono.just(release)))
+                    .flatMap(release -> {
+                        URI uri = URI.create(release.uploadUrl() + "?name=" + URLEncoder.encode(name, StandardCharsets.UTF_8));
+                        HttpRequest request = HttpRequest.newBuilder()
+                                .uri(uri)
+                                .header("Authorization", backend.authorization(settings.getToken()))
+                                .header("Accept", backend.accept())
+                                .header("Content-Type", "application/octet-stream")
+                                .timeout(GitHubService.timeout(cfg, "POST", uri, body.size()))
+                                .POST(body.publisher())
+                                .build();
+                        return GitHubService.exchange(stages, http, request).map(resp -> {
+                            if (resp.statusCode() >= 200 && resp.statusCode() < 300) {
+                                JsonNode node = JsonUtils.jsonToObject(resp.body(), JsonNode.class);
+                                return new Asset(release.id(), node.path("id").asLong(), node.path("name").asText(name),
+                                        node.path("browser_download_url").asText(), node.path("size").asLong(body.size()));
+                            }
+                            if (resp.statusCode() == 404) {
+                                // release 可能已被手动删除，下次上传重新查找或创建
+                                releases.remove(releaseKey(backend, settings));
+                            }
+                            if (resp.statusCode() == 422) {
+                                throw new IllegalStateException("release 附件上传失败（同名附件已存在或附件数已达上限）: " + resp.body());
+                            }
+                            throw new RuntimeException("release 附件上传失败，状态码=" + resp.statusCode() + ", 响应=" + resp.body());
+                        });
+                    });
+        }));
+    }
+
+    /**
+     * 删除 release 附件；附件已不存在时视为成功。
+     */
+    public Mono<Void> delete(GithubOssPolicySettings settings, String assetId) {
+        ForgeBackend backend = requireReleases(settings);
+        return metrics.observe("asset_delete", settings, stages -> gitHubService.getProxyConfig().flatMap(cfg -> {
+            URI uri = URI.create(backend.releasesUrl(settings, "assets/" + assetId));
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(uri)
+                    .header("Authorization", backend.authorization(settings.getToken()))
+                    .header("Accept", backend.accept())
+                    .timeout(GitHubService.timeout(cfg, "DELETE", uri, 0))
+                    .DELETE()
+                    .build();
+            return GitHubService.exchange(stages, gitHubService.buildBaseGitHubHttpClient(cfg), request).flatMap(resp -> {
+                if ((resp.statusCode() >= 200 && resp.statusCode() < 300) || resp.statusCode() == 404) {
+                    return Mono.<Void>empty();
+                }
+                return Mono.<Void>error(new RuntimeException("release 附件删除失败，状态码=" + resp.statusCode() + ", 响应=" + resp.body()));
+            });
+        }));
+    }
+
+    // 按仓库+标签缓存，并发上传共享同一次查找/创建；失败不缓存
+    private Mono<Release> release(GitHubMetrics.StageRecorder stages, HttpClient http, NetworkConfig cfg,
+                                  ForgeBackend backend, GithubOssPolicySettings settings) {
+        String key = releaseKey(backend, settings);
+        return releases.computeIfAbsent(key, k -> findRelease(stages, http, cfg, backend, settings)
+                .switchIfEmpty(Mono.defer(() -> createRelease(stages, http, cfg, backend, settings)))
+                .doOnError(e -> releases.remove(k))
+                .cache());
+    }
+
+    // release 中已有的附件名，逐页读取直到不足一页
+    private Mono<Set<String>> assetNames(GitHubMetrics.StageRecorder stages, HttpClient http, NetworkConfig cfg,
+                                         ForgeBackend backend, GithubOssPolicySettings settings, Release release) {
+        Set<String> names = ConcurrentHashMap.newKeySet();
+        return assetPage(stages, http, cfg, backend, settings, release, 1, names).thenReturn(names);
+    }
+
+    private Mono<Void> assetPage(GitHubMetrics.StageRecorder stages, HttpClient http, NetworkConfig cfg, ForgeBackend backend,
+                                 GithubOssPolicySettings settings, Release release, int page, Set<String> names) {
+        URI uri = URI.create(backend.releasesUrl(settings, release.id() + "/assets?per_page=" + ASSET_PAGE_SIZE + "&page=" + page));
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(uri)
+                .header("Authorization", backend.authorization(settings.getToken()))
+                .header("Accept", backend.accept())
+                .timeout(GitHubService.timeout(cfg, "GET", uri, 0))
+                .GET()
+                .build();
+        return GitHubService.exchange(stages, http, request).flatMap(resp -> {
+            if (resp.statusCode() == 404) {
+                // release 可能已被手动删除，下次上传重新查找或创建
+                releases.remove(releaseKey(backend, settings));
+            }
+            if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
+                return Mono.error(new RuntimeException("读取 release 附件列表失败，状态码=" + resp.statusCode() + ", 响应=" + resp.body()));
+            }
+            JsonNode list = JsonUtils.jsonToObject(resp.body(), JsonNode.class);
+            list.forEach(asset -> names.add(asset.path("name").asText()));
+            if (list.size() < ASSET_PAGE_SIZE || page >= MAX_ASSET_PAGES) {
+                return Mono.<Void>empty();
+            }
+            return assetPage(stages, http, cfg, backend, settings, release, page + 1, names);
+        });
+    }
+
+    private Mono<Release> findRelease(GitHubMetrics.StageRecorder stages, HttpClient http, NetworkConfig cfg,
+                                      ForgeBackend backend, GithubOssPolicySettings settings) {
+        URI uri = URI.create(backend.releasesUrl(settings, "tags/" + URLEncoder.encode(tag(settings), StandardCharsets.UTF_8)));
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(uri)
+                .header("Authorization", backend.authorization(settings.getToken()))
+                .header("Accept", backend.accept())
+                .timeout(GitHubService.timeout(cfg, "GET", uri, 0))
+                .GET()
+                .build();
+        return GitHubService.exchange(stages, http, request).flatMap(resp -> {
+            if (resp.statusCode() >= 200 && resp.statusCode() < 300) {
+                return Mono.just(parseRelease(resp.body()));
+            }
+            if (resp.statusCode() == 404) {
+                return Mono.empty();
+            }
+            return Mono.error(new RuntimeException("查询 release 失败，状态码=" + resp.statusCode() + ", 响应=" + resp.body()));
+        });
+    }
+
+    private Mono<Release> createRelease(GitHubMetrics.StageRecorder stages, HttpClient http, NetworkConfig cfg,
+                                        ForgeBackend backend, GithubOssPolicySettings settings) {
+        String tag = tag(settings);
+        String body = JsonUtils.objectToJson(Map.of(
+                "tag_name", tag,
+                "target_commitish", settings.getBranch() == null ? "main" : settings.getBranch(),
+                "name", tag,
+                "body", "Halo 附件存储（githuboss）的大文件，请勿删除",
+                "make_latest", "false"));
+        URI uri = URI.create(backend.releasesUrl(settings, ""));
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(uri)
+                .header("Authorization", backend.authorization(settings.getToken()))
+                .header("Accept", backend.accept())
+                .header("Content-Type", "application/json")
+                .timeout(GitHubService.timeout(cfg, "POST", uri, body.length()))
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                .build();
+        return GitHubService.exchange(stages, http, request).flatMap(resp -> {
+            if (resp.statusCode() >= 200 && resp.statusCode() < 300) {
+                log.info("已创建 release {}/{}@{} 用于存放大文件", settings.getOwner(), settings.getRepoName(), tag);
+                return Mono.just(parseRelease(resp.body()));
+            }
+            if (resp.statusCode() == 422) {
+                // 其他节点同时创建了同名 release
+                return findRelease(stages, http, cfg, backend, settings);
+            }
+            return Mono.error(new RuntimeException("创建 release 失败，状态码=" + resp.statusCode() + ", 响应=" + resp.body()));
+        });
+    }
+
+    private static Release parseRelease(String json) {
+        JsonNode node = JsonUtils.jsonToObject(json, JsonNode.class);
+        // upload_url 形如 .../assets{?name,label}
+        String uploadUrl = node.path("upload_url").asText().replaceFirst("\\{.*}$", "");
+        return new Release(node.path("id").asLong(), uploadUrl);
+    }
+
+    private static String releaseKey(ForgeBackend backend, GithubOssPolicySettings settings) {
+        return backend.apiBase(settings) + "/" + settings.getOwner() + "/" + settings.getRepoName() + "@" + tag(settings);
+    }
+
+    private static String tag(GithubOssPolicySettings settings) {
+        return settings.getReleaseTag() == null || settings.getReleaseTag().isBlank() ? DEFAULT_TAG : settings.getReleaseTag().trim();
+    }
+
+    private static ForgeBackend requireReleases(GithubOssPolicySettings settings) {
+        ForgeBackend backend = ForgeBackends.of(settings);
+        if (!backend.supportsReleaseAssets()) {
+            throw new IllegalArgumentException("平台 " + backend.type() + " 不支持 release 附件");
+        }
+        return backend;
+    }
+
+    private static long copy(InputStream in, OutputStream out, long limit) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            total += n;
+            if (total > limit) {
+                throw new IllegalArgumentException("文件大小超过 release 附件上限 2GB");
+            }
+            out.write(buffer, 0, n);
+        }
+        return total;
+    }
+
+    private static ByteBuffer toByteBuffer(DataBuffer buffer) {
+        byte[] bytes = new byte[buffer.readableByteCount()];
+        buffer.read(bytes);
+        DataBufferUtils.release(buffer);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除临时文件失败 {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,644 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import com.xirizhi.plugingithuboss.config.Constant;
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.handler.GithubAttachmentHandler;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.core.extension.attachment.Policy;
+import run.halo.app.extension.ListOptions;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.app.infra.utils.JsonUtils;
+
+/**
+ * 仓库与 Halo 附件的增量对账：找出仓库中已删除（missing）、内容已变化（changed）的附件，以及未被任何附件引用的仓库文件（orphaned）。
+ * 说明：
+ * - 通过 Git Data API 逐层读取策略上传目录的 tree，并与上次保存的快照（目录 → tree sha）比较；
+ *   子树 sha 未变的目录直接复用快照，不再向下请求，只有变化的目录才会被读取
+ * - 只比较 path 注解位于上传目录之下的附件；异步上传尚未推送（pending）的附件和对账开始后新建的附件不计入
+ * - 修复模式：none 只出报告；sha 更新 changed 附件的 sha/大小注解；full 另外解除 missing 附件的关联（不删除远程文件）并为 orphaned 文件创建附件
+ * - 通过 /attachments/unlink 解除关联、文件仍留在仓库中的路径记录在忽略列表（路径 → sha）中，不计入 orphaned，也不会被重新关联；
+ *   文件内容变化或被删除后该记录失效并在下次对账时清理
+ * - 分支或上传目录读取不到时，若仍有附件关联在该目录下则按错误结束（多半是分支改名或配置写错），不会当作空仓库；
+ *   missing 为全部附件或超过 MAX_MISSING_RATIO 时 full 模式也不执行任何修复，只出报告
+ * - 策略配置 reconcileIntervalHours 大于 0 时按间隔定时执行，也可通过接口手动触发
+ * - 快照、忽略列表与最近一次报告保存在插件状态目录 reconcile 下（见 {@link PluginState}，可用 -Dgithuboss.reconcile.dir 指定），不含凭据
+ */
+@Slf4j
+@Component
+public class RepoReconciler implements InitializingBean, DisposableBean {
+
+    public static final String REPAIR_NONE = "none";
+    public static final String REPAIR_SHA = "sha";
+    public static final String REPAIR_FULL = "full";
+
+    private static final String DIR_PROPERTY = "githuboss.reconcile.dir";
+    private static final String POLICY_TEMPLATE = "githuboss-policy-template";
+    private static final Duration TICK = Duration.ofMinutes(1);
+    private static final int TREE_CONCURRENCY = 4;
+    private static final int REPAIR_CONCURRENCY = 4;
+    private static final int MAX_REPORT_ITEMS = 500;
+    private static final double MAX_MISSING_RATIO = 0.5;
+
+    /**
+     * 一个目录的快照：tree sha 与其下一层的文件、子目录。
+     */
+    @Data
+    public static class DirSnapshot {
+        private String sha;
+        private Map<String, FileState> files = new HashMap<>();
+        private Map<String, String> dirs = new HashMap<>();
+    }
+
+    @Data
+    public static class FileState {
+        private String sha;
+        private long size;
+    }
+
+    /**
+     * 策略上传目录的快照，dirs 的 key 为相对上传目录的路径（根目录为空串）。
+     */
+    @Data
+    public static class Snapshot {
+        private String rootPath;
+        private String rootSha;
+        private long takenAt;
+        private Map<String, DirSnapshot> dirs = new HashMap<>();
+    }
+
+    /**
+     * 已解除关联、不再重新关联的仓库文件：完整路径 → 解除关联时的 sha。
+     */
+    @Data
+    public static class UnlinkedFiles {
+        private Map<String, String> files = new HashMap<>();
+    }
+
+    @Data
+    public static class DriftItem {
+        private String path;
+        private String attachmentName;
+        private String repoSha;
+        private String haloSha;
+        private Long size;
+    }
+
+    @Data
+    public static class DriftReport {
+        private String policyName;
+        private String rootPath;
+        private String rootSha;
+        private String repair;
+        private long startedAt;
+        private long finishedAt;
+        private boolean repoUnchanged;
+        private int dirsRead;
+        private int dirsReused;
+        private int repoFiles;
+        private int attachments;
+        private int missingCount;
+        private int changedCount;
+        private int orphanedCount;
+        // 在忽略列表中、未计入 orphaned 的仓库文件数
+        private int ignoredCount;
+        private int repaired;
+        private int repairFailed;
+        // 拒绝执行修复的原因
+        private String repairSkipped;
+        // 明细最多保留 MAX_REPORT_ITEMS 条，计数为完整数量
+        private List<DriftItem> missing = new ArrayList<>();
+        private List<DriftItem> changed = new ArrayList<>();
+        private List<DriftItem> orphaned = new ArrayList<>();
+        private String error;
+    }
+
+    private final ReactiveExtensionClient client;
+    private final GitHubService gitHubService;
+    private final GithubAttachmentHandler attachmentHandler;
+    private final Path dir;
+
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    private final Map<String, DriftReport> lastReports = new ConcurrentHashMap<>();
+    private final Map<String, Object> unlinkedLocks = new ConcurrentHashMap<>();
+    private volatile Disposable ticker;
+
+    public RepoReconciler(ReactiveExtensionClient client, GitHubService gitHubService, GithubAttachmentHandler attachmentHandler,
+                          PluginState state) {
+        this(client, gitHubService, attachmentHandler, state.dir("reconcile", DIR_PROPERTY));
+    }
+
+    RepoReconciler(ReactiveExtensionClient client, GitHubService gitHubService, GithubAttachmentHandler attachmentHandler, Path dir) {
+        this.client = client;
+        this.gitHubService = gitHubService;
+        this.attachmentHandler = attachmentHandler;
+        this.dir = dir;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        Files.createDirectories(dir);
+        ticker = Flux.interval(TICK, TICK)
+                .onBackpressureDrop()
+                .concatMap(tick -> runScheduled().onErrorResume(e -> {
+                    log.error("定时对账失败", e);
+                    return Mono.empty();
+                }))
+                .subscribe();
+    }
+
+    @Override
+    public void destroy() {
+        Disposable t = ticker;
+        if (t != null) {
+            t.dispose();
+        }
+    }
+
+    /**
+     * 最近一次对账报告（含插件重启前保存的报告）。
+     */
+    public Mono<DriftReport> lastReport(String policyName) {
+        DriftReport cached = lastReports.get(policyName);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return Mono.fromCallable(() -> {
+                    Path file = reportFile(policyName);
+                    return Files.exists(file)
+                            ? JsonUtils.jsonToObject(Files.readString(file, StandardCharsets.UTF_8), DriftReport.class)
+                            : null;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 记录解除关联后仍留在仓库中的文件（完整路径 → sha），之后的对账不再把它们当作 orphaned 重新关联。
+     */
+    public Mono<Void> recordUnlinked(String policyName, Map<String, String> files) {
+        if (files.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.fromRunnable(() -> updateUnlinked(policyName, unlinked -> unlinked.putAll(files)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    /**
+     * 立即对账一次。repair 为空时使用策略配置的修复模式；同一策略已有对账进行中时报错。
+     */
+    public Mono<DriftReport> reconcile(String policyName, String repair) {
+        return Mono.defer(() -> {
+            if (!running.add(policyName)) {
+                return Mono.error(new IllegalStateException("存储策略 " + policyName + " 正在对账，请稍后再试"));
+            }
+            return client.fetch(Policy.class, policyName)
+                    .switchIfEmpty(Mono.error(() -> new IllegalStateException("存储策略不存在: " + policyName)))
+                    .flatMap(policy -> PluginState.settingsOf(client, policy).flatMap(settings -> run(policy, settings,
+                            repair == null || repair.isBlank() ? repairMode(settings) : repair)))
+                    .doFinally(signal -> running.remove(policyName));
+        });
+    }
+
+    // 到期的策略依次对账
+    private Mono<Void> runScheduled() {
+        return client.listAll(Policy.class, new ListOptions(), Sort.unsorted())
+                .filter(policy -> policy.getSpec() != null && POLICY_TEMPLATE.equals(policy.getSpec().getTemplateName()))
+                .concatMap(policy -> PluginState.settingsOf(client, policy)
+                        .filter(settings -> settings.getReconcileIntervalHours() != null && settings.getReconcileIntervalHours() > 0)
+                        .filterWhen(settings -> due(policy.getMetadata().getName(), settings.getReconcileIntervalHours()))
+                        .flatMap(settings -> reconcile(policy.getMetadata().getName(), null))
+                        .onErrorResume(e -> {
+                            log.warn("存储策略 {} 定时对账失败: {}", policy.getMetadata().getName(), e.getMessage());
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    private Mono<Boolean> due(String policyName, int intervalHours) {
+        return lastReport(policyName)
+                .map(report -> System.currentTimeMillis() - report.getStartedAt() >= Duration.ofHours(intervalHours).toMillis())
+                .defaultIfEmpty(true);
+    }
+
+    private Mono<DriftReport> run(Policy policy, GithubOssPolicySettings settings, String repair) {
+        String policyName = policy.getMetadata().getName();
+        String root = normalizeRoot(settings.getPath());
+        DriftReport report = new DriftReport();
+        report.setPolicyName(policyName);
+        report.setRootPath(root);
+        report.setRepair(repair);
+        report.setStartedAt(System.currentTimeMillis());
+
+        return loadSnapshot(policyName, root)
+                .flatMap(old -> gitHubService.resolveTreeSha(settings, root)
+                        .flatMap(rootSha -> scan(settings, rootSha, old, report))
+                        .switchIfEmpty(Mono.defer(() -> unresolvedRoot(policyName, root, settings))))
+                .flatMap(snapshot -> Mono.zip(AttachmentIndex.listByPolicy(client, policyName).collectList(), loadUnlinked(policyName)).flatMap(t -> {
+                    List<Attachment> attachments = t.getT1();
+                    Map<String, FileState> repoFiles = flatten(root, snapshot);
+                    Drift drift = diff(root, repoFiles, attachments, t.getT2(), report.getStartedAt());
+                    report.setRootSha(snapshot.getRootSha());
+                    report.setRepoFiles(repoFiles.size());
+                    report.setAttachments(drift.attachments);
+                    report.setMissingCount(drift.missing.size());
+                    report.setChangedCount(drift.changed.size());
+                    report.setOrphanedCount(drift.orphaned.size());
+                    report.setIgnoredCount(drift.ignored);
+                    report.setMissing(cap(drift.missing));
+                    report.setChanged(cap(drift.changed));
+                    report.setOrphaned(cap(drift.orphaned));
+                    return repair(policy, repair, drift, report)
+                            .then(pruneUnlinked(policyName, repoFiles))
+                            .then(saveSnapshot(policyName, snapshot));
+                }))
+                .then(Mono.fromSupplier(() -> report))
+                .onErrorResume(e -> {
+                    log.error("存储策略 {} 对账失败", policyName, e);
+                    report.setError(String.valueOf(e.getMessage()));
+                    return Mono.just(report);
+                })
+                .flatMap(r -> {
+                    r.setFinishedAt(System.currentTimeMillis());
+                    lastReports.put(policyName, r);
+                    log.info("存储策略 {} 对账完成：读取目录 {}，复用目录 {}，missing={}, changed={}, orphaned={}, 修复 {}",
+                            policyName, r.getDirsRead(), r.getDirsReused(), r.getMissingCount(), r.getChangedCount(),
+                            r.getOrphanedCount(), r.getRepaired());
+                    return PluginState.writeJson(reportFile(policyName), r).thenReturn(r);
+                });
+    }
+
+    // 分支或目录不存在：没有附件关联在该目录下时视为空仓库（尚未上传过），否则报错，避免把全部附件判为 missing
+    private Mono<Snapshot> unresolvedRoot(String policyName, String root, GithubOssPolicySettings settings) {
+        String prefix = root.isEmpty() ? "" : root + "/";
+        return AttachmentIndex.listByPolicy(client, policyName)
+                .filter(attachment -> linkedUnder(attachment, prefix))
+                .count()
+                .flatMap(linked -> linked == 0
+                        ? Mono.fromSupplier(() -> emptySnapshot(root))
+                        : Mono.error(new IllegalStateException("无法读取分支 " + (settings.getBranch() == null ? "main" : settings.getBranch())
+                                + " 下的目录 " + (root.isEmpty() ? "/" : root) + "，但仍有 " + linked
+                                + " 个附件关联在该目录下，已停止对账；请检查分支与上传目录配置")));
+    }
+
+    // 按层读取变化的目录，同层最多 TREE_CONCURRENCY 个并发；未变化的子树整体从旧快照复制
+    private Mono<Snapshot> scan(GithubOssPolicySettings settings, String rootSha, Snapshot old, DriftReport report) {
+        Snapshot fresh = emptySnapshot(old.getRootPath());
+        fresh.setRootSha(rootSha);
+        fresh.setTakenAt(System.currentTimeMillis());
+        report.setRepoUnchanged(rootSha.equals(old.getRootSha()));
+        Map<String, DirSnapshot> dirs = new ConcurrentHashMap<>();
+        AtomicInteger read = new AtomicInteger();
+        AtomicInteger reused = new AtomicInteger();
+        return scanLevel(settings, List.of(Map.entry("", rootSha)), old, dirs, read, reused)
+                .then(Mono.fromSupplier(() -> {
+                    fresh.setDirs(new HashMap<>(dirs));
+                    report.setDirsRead(read.get());
+                    report.setDirsReused(reused.get());
+                    return fresh;
+                }));
+    }
+
+    private Mono<Void> scanLevel(GithubOssPolicySettings settings, List<Map.Entry<String, String>> level, Snapshot old,
+                                 Map<String, DirSnapshot> dirs, AtomicInteger read, AtomicInteger reused) {
+        if (level.isEmpty()) {
+            return Mono.empty();
+        }
+        return Flux.fromIterable(level)
+                .flatMap(ref -> {
+                    String key = ref.getKey();
+                    DirSnapshot previous = old.getDirs().get(key);
+                    if (previous != null && ref.getValue().equals(previous.getSha())) {
+                        copySubtree(old, key, dirs, reused);
+                        return Flux.<Map.Entry<String, String>>empty();
+                    }
+                    return gitHubService.readTree(settings, ref.getValue()).flatMapMany(entries -> {
+                        read.incrementAndGet();
+                        DirSnapshot snapshot = new DirSnapshot();
+                        snapshot.setSha(ref.getValue());
+                        List<Map.Entry<String, String>> children = new ArrayList<>();
+                        for (GitHubService.TreeEntry entry : entries) {
+                            if ("tree".equals(entry.type())) {
+                                snapshot.getDirs().put(entry.name(), entry.sha());
+                                children.add(Map.entry(join(key, entry.name()), entry.sha()));
+                            } else {
+                                FileState file = new FileState();
+                                file.setSha(entry.sha());
+                                file.setSize(entry.size());
+                                snapshot.getFiles().put(entry.name(), file);
+                            }
+                        }
+                        dirs.put(key, snapshot);
+                        return Flux.fromIterable(children);
+                    });
+                }, TREE_CONCURRENCY)
+                .collectList()
+                .flatMap(next -> scanLevel(settings, next, old, dirs, read, reused));
+    }
+
+    private static void copySubtree(Snapshot old, String key, Map<String, DirSnapshot> target, AtomicInteger reused) {
+        DirSnapshot dir = old.getDirs().get(key);
+        if (dir == null) {
+            return;
+        }
+        target.put(key, dir);
+        reused.incrementAndGet();
+        dir.getDirs().keySet().forEach(child -> copySubtree(old, join(key, child), target, reused));
+    }
+
+    // 快照展开为 仓库完整路径 → 文件状态
+    static Map<String, FileState> flatten(String root, Snapshot snapshot) {
+        Map<String, FileState> files = new HashMap<>();
+        snapshot.getDirs().forEach((key, dir) -> dir.getFiles()
+                .forEach((name, file) -> files.put(join(join(root, key), name), file)));
+        return files;
+    }
+
+    static final class Drift {
+        final List<DriftItem> missing = new ArrayList<>();
+        final List<DriftItem> changed = new ArrayList<>();
+        final List<DriftItem> orphaned = new ArrayList<>();
+        // 参与比较的附件，missing/changed 修复时使用
+        final Map<String, Attachment> byName = new HashMap<>();
+        int attachments;
+        int ignored;
+    }
+
+    static Drift diff(String root, Map<String, FileState> repoFiles, List<Attachment> attachments,
+                      Map<String, String> unlinked, long startedAt) {
+        Drift drift = new Drift();
+        String prefix = root.isEmpty() ? "" : root + "/";
+        Set<String> referenced = new HashSet<>();
+        for (Attachment attachment : attachments) {
+            if (!linkedUnder(attachment, prefix)) {
+                continue;
+            }
+            Map<String, String> annotations = attachment.getMetadata().getAnnotations();
+            String path = annotations.get("path");
+            referenced.add(path);
+            Instant created = attachment.getMetadata().getCreationTimestamp();
+            if (created != null && created.toEpochMilli() > startedAt) {
+                continue;
+            }
+            drift.attachments++;
+            FileState file = repoFiles.get(path);
+            String haloSha = annotations.get("sha");
+            if (file == null) {
+                drift.missing.add(item(path, attachment, null, haloSha, null));
+                drift.byName.put(attachment.getMetadata().getName(), attachment);
+            } else if (!file.getSha().equals(haloSha)) {
+                drift.changed.add(item(path, attachment, file.getSha(), haloSha, file.getSize()));
+                drift.byName.put(attachment.getMetadata().getName(), attachment);
+            }
+        }
+        repoFiles.entrySet().stream()
+                .filter(e -> !referenced.contains(e.getKey()))
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(e -> {
+                    if (e.getValue().getSha().equals(unlinked.get(e.getKey()))) {
+                        drift.ignored++;
+                    } else {
+                        drift.orphaned.add(item(e.getKey(), null, e.getValue().getSha(), null, e.getValue().getSize()));
+                    }
+                });
+        drift.missing.sort((a, b) -> a.getPath().compareTo(b.getPath()));
+        drift.changed.sort((a, b) -> a.getPath().compareTo(b.getPath()));
+        return drift;
+    }
+
+    // 已推送且路径位于上传目录之下的附件
+    private static boolean linkedUnder(Attachment attachment, String prefix) {
+        Map<String, String> annotations = attachment.getMetadata().getAnnotations();
+        String path = annotations == null ? null : annotations.get("path");
+        return path != null && path.startsWith(prefix) && !annotations.containsKey(Constant.ANNOTATION_PENDING);
+    }
+
+    /**
+     * full 模式下 missing 占比过高时拒绝修复的原因，null 表示可以修复。
+     */
+    static String refuseFullRepair(Drift drift) {
+        int missing = drift.missing.size();
+        if (missing == 0) {
+            return null;
+        }
+        if (missing >= drift.attachments) {
+            return "全部 " + missing + " 个附件在仓库中都不存在，疑似分支或目录配置错误，未执行修复";
+        }
+        if (missing > drift.attachments * MAX_MISSING_RATIO) {
+            return missing + "/" + drift.attachments + " 个附件在仓库中不存在，超过 " + (int) (MAX_MISSING_RATIO * 100)
+                    + "%，未执行修复，请确认后手动处理";
+        }
+        return null;
+    }
+
+    private Mono<Void> repair(Policy policy, String mode, Drift drift, DriftReport report) {
+        if (!REPAIR_SHA.equals(mode) && !REPAIR_FULL.equals(mode)) {
+            return Mono.empty();
+        }
+        String refused = REPAIR_FULL.equals(mode) ? refuseFullRepair(drift) : null;
+        if (refused != null) {
+            log.warn("存储策略 {} {}", policy.getMetadata().getName(), refused);
+            report.setRepairSkipped(refused);
+            return Mono.empty();
+        }
+        AtomicInteger repaired = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Flux<Mono<?>> actions = Flux.fromIterable(drift.changed)
+                .<Mono<?>>map(item -> updateSha(drift.byName.get(item.getAttachmentName()), item));
+        if (REPAIR_FULL.equals(mode)) {
+            actions = actions
+                    .concatWith(Flux.fromIterable(drift.missing).<Mono<?>>map(item -> unlink(drift.byName.get(item.getAttachmentName()))))
+                    .concatWith(relinkOrphans(policy, drift.orphaned));
+        }
+        return actions
+                .flatMap(action -> action
+                        .doOnSuccess(v -> repaired.incrementAndGet())
+                        .onErrorResume(e -> {
+                            failed.incrementAndGet();
+                            log.warn("对账修复失败: {}", e.getMessage());
+                            return Mono.empty();
+                        }), REPAIR_CONCURRENCY)
+                .then(Mono.fromRunnable(() -> {
+                    report.setRepaired(repaired.get());
+                    report.setRepairFailed(failed.get());
+                }));
+    }
+
+    // 内容已变化：sha/大小以仓库为准；固定到旧提交的链接指向的是旧内容，移除 commitSha 使链接回到分支
+    private Mono<Attachment> updateSha(Attachment attachment, DriftItem item) {
+        return Mono.defer(() -> client.fetch(Attachment.class, attachment.getMetadata().getName()))
+                .flatMap(latest -> {
+                    latest.getMetadata().getAnnotations().put("sha", item.getRepoSha());
+                    latest.getMetadata().getAnnotations().remove(Constant.ANNOTATION_COMMIT_SHA);
+                    if (item.getSize() != null) {
+                        latest.getSpec().setSize(item.getSize());
+                    }
+                    return client.update(latest);
+                })
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(100))
+                        .filter(OptimisticLockingFailureException.class::isInstance));
+    }
+
+    // 仓库文件已不存在：解除关联后删除附件，与 /attachments/unlink 一致，不会再去删除远程文件
+    private Mono<Attachment> unlink(Attachment attachment) {
+        attachment.getMetadata().getAnnotations().put(Constant.ANNOTATION_UNLINKED, Boolean.TRUE.toString());
+        return client.delete(attachment);
+    }
+
+    // 创建前重新查询一次已关联路径与忽略列表，避免把对账期间刚上传完成或刚解除关联的文件重新关联
+    private Flux<Mono<?>> relinkOrphans(Policy policy, List<DriftItem> orphaned) {
+        if (orphaned.isEmpty()) {
+            return Flux.empty();
+        }
+        String policyName = policy.getMetadata().getName();
+        return Mono.zip(AttachmentIndex.linkedPaths(client, policyName), loadUnlinked(policyName))
+                .flatMapMany(t -> Flux.fromIterable(orphaned)
+                        .filter(item -> !t.getT1().contains(item.getPath()))
+                        .filter(item -> !item.getRepoSha().equals(t.getT2().get(item.getPath())))
+                        .<Mono<?>>map(item -> client.create(attachmentHandler.buildAttachment(item.getPath(), item.getRepoSha(),
+                                item.getSize() == null ? 0L : item.getSize(), policy))));
+    }
+
+    private static String repairMode(GithubOssPolicySettings settings) {
+        return settings.getReconcileRepair() == null ? REPAIR_NONE : settings.getReconcileRepair();
+    }
+
+    // 上传目录变更后旧快照作废
+    private Mono<Snapshot> loadSnapshot(String policyName, String root) {
+        return Mono.fromCallable(() -> {
+                    Path file = snapshotFile(policyName);
+                    if (Files.exists(file)) {
+                        Snapshot snapshot = JsonUtils.jsonToObject(Files.readString(file, StandardCharsets.UTF_8), Snapshot.class);
+                        if (root.equals(snapshot.getRootPath())) {
+                            return snapshot;
+                        }
+                    }
+                    return emptySnapshot(root);
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<Map<String, String>> loadUnlinked(String policyName) {
+        return Mono.fromCallable(() -> readUnlinked(policyName).getFiles())
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // 仓库中已不存在或内容已变化的文件移出忽略列表
+    private Mono<Void> pruneUnlinked(String policyName, Map<String, FileState> repoFiles) {
+        return Mono.fromRunnable(() -> updateUnlinked(policyName, unlinked -> unlinked.entrySet().removeIf(e -> {
+                    FileState file = repoFiles.get(e.getKey());
+                    return file == null || !file.getSha().equals(e.getValue());
+                })))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    // 同一策略的忽略列表串行读改写；内容未变化时不写文件
+    private void updateUnlinked(String policyName, Consumer<Map<String, String>> change) {
+        synchronized (unlinkedLocks.computeIfAbsent(policyName, k -> new Object())) {
+            UnlinkedFiles unlinked = readUnlinked(policyName);
+            Map<String, String> before = new HashMap<>(unlinked.getFiles());
+            change.accept(unlinked.getFiles());
+            if (before.equals(unlinked.getFiles())) {
+                return;
+            }
+            try {
+                PluginState.writeJsonNow(unlinkedFile(policyName), unlinked);
+            } catch (IOException e) {
+                throw new IllegalStateException("忽略列表写入失败: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private UnlinkedFiles readUnlinked(String policyName) {
+        Path file = unlinkedFile(policyName);
+        try {
+            return Files.exists(file)
+                    ? JsonUtils.jsonToObject(Files.readString(file, StandardCharsets.UTF_8), UnlinkedFiles.class)
+                    : new UnlinkedFiles();
+        } catch (IOException e) {
+            throw new IllegalStateException("忽略列表读取失败: " + e.getMessage(), e);
+        }
+    }
+
+    private Mono<Void> saveSnapshot(String policyName, Snapshot snapshot) {
+        return PluginState.writeJson(snapshotFile(policyName), snapshot);
+    }
+
+    private static Snapshot emptySnapshot(String root) {
+        Snapshot snapshot = new Snapshot();
+        snapshot.setRootPath(root);
+        snapshot.setTakenAt(System.currentTimeMillis());
+        return snapshot;
+    }
+
+    private static DriftItem item(String path, Attachment attachment, String repoSha, String haloSha, Long size) {
+        DriftItem item = new DriftItem();
+        item.setPath(path);
+        item.setAttachmentName(attachment == null ? null : attachment.getMetadata().getName());
+        item.setRepoSha(repoSha);
+        item.setHaloSha(haloSha);
+        item.setSize(size);
+        return item;
+    }
+
+    private static List<DriftItem> cap(List<DriftItem> items) {
+        return items.size() <= MAX_REPORT_ITEMS ? items : new ArrayList<>(items.subList(0, MAX_REPORT_ITEMS));
+    }
+
+    static String normalizeRoot(String path) {
+        String p = path == null ? "" : path.trim();
+        while (p.startsWith("/")) {
+            p = p.substring(1);
+        }
+        while (p.endsWith("/")) {
+            p = p.substring(0, p.length() - 1);
+        }
+        return p;
+    }
+
+    private static String join(String parent, String name) {
+        return parent.isEmpty() ? name : parent + "/" + name;
+    }
+
+    private Path snapshotFile(String policyName) {
+        return dir.resolve(policyName + ".snapshot.json");
+    }
+
+    private Path unlinkedFile(String policyName) {
+        return dir.resolve(policyName + ".unlinked.json");
+    }
+
+    private Path reportFile(String policyName) {
+        return dir.resolve(policyName + ".report.json");
+    }
+}
@@ -0,0 +1,177 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.xirizhi.plugingithuboss.extension.theme.NetworkConfig;
+
+/**
+ * 按操作类型与目标主机计算请求时限，替代所有请求共用的 timeoutMs。
+ * 说明：
+ * - 连接超时（connectTimeoutMs，默认 min(timeoutMs, 5000)）在 HttpClient 上单独生效，与请求总时限分开
+ * - 查询（GET/HEAD）与小请求体写入：按主机平滑的响应耗时计算 srtt + 4·rttvar（同 TCP 重传超时），
+ *   不低于下限（查询 2s、写入 5s），不超过 timeoutMs；尚无样本时为 timeoutMs
+ * - 上传（请求体不小于 64KB）：写入时限 + 请求体大小 / 保守吞吐量，最长 2 小时；
+ *   保守吞吐量取该主机平滑吞吐量的一半且不低于 32KB/s，尚无样本时按 256KB/s
+ * - 请求超时后放宽对应估计（耗时按两倍时限计入、吞吐量减半），下一次请求得到更长的时限
+ */
+public final class RequestTimeouts {
+
+    static final int DEFAULT_TIMEOUT_MS = 10000;
+    static final int DEFAULT_CONNECT_TIMEOUT_MS = 5000;
+    static final long UPLOAD_MIN_BYTES = 64 * 1024;
+    private static final long LOOKUP_FLOOR_MS = 2000;
+    private static final long WRITE_FLOOR_MS = 5000;
+    private static final long DEFAULT_BYTES_PER_SECOND = 256 * 1024;
+    private static final long MIN_BYTES_PER_SECOND = 32 * 1024;
+    private static final long MAX_UPLOAD_MS = Duration.ofHours(2).toMillis();
+
+    /**
+     * 某个主机当前的估计：查询与写入的平滑耗时、上传吞吐量（字节/秒，0 表示尚无样本）与按当前配置得出的时限。
+     */
+    public record Estimate(String authority, long lookupSrttMs, long lookupTimeoutMs, long writeSrttMs, long writeTimeoutMs,
+                           long uploadBytesPerSecond, long samples) {}
+
+    // 平滑往返耗时：srtt 权重 1/8，rttvar 权重 1/4
+    private static final class Rtt {
+        double srtt = -1;
+        double rttvar;
+
+        synchronized void sample(double ms) {
+            if (srtt < 0) {
+                srtt = ms;
+                rttvar = ms / 2;
+                return;
+            }
+            rttvar = 0.75 * rttvar + 0.25 * Math.abs(srtt - ms);
+            srtt = 0.875 * srtt + 0.125 * ms;
+        }
+
+        synchronized long rto() {
+            return srtt < 0 ? -1 : (long) (srtt + 4 * rttvar);
+        }
+
+        synchronized long srtt() {
+            return srtt < 0 ? 0 : (long) srtt;
+        }
+    }
+
+    private static final class Host {
+        final Rtt lookup = new Rtt();
+        final Rtt write = new Rtt();
+        double bytesPerSecond;
+        long samples;
+
+        synchronized void throughput(double bps) {
+            bytesPerSecond = bytesPerSecond <= 0 ? bps : 0.75 * bytesPerSecond + 0.25 * bps;
+        }
+
+        synchronized void throttle() {
+            bytesPerSecond = Math.max(MIN_BYTES_PER_SECOND, (bytesPerSecond <= 0 ? DEFAULT_BYTES_PER_SECOND : bytesPerSecond) / 2);
+        }
+
+        synchronized long bytesPerSecond() {
+            return (long) bytesPerSecond;
+        }
+
+        synchronized void counted() {
+            samples++;
+        }
+
+        synchronized long samples() {
+            return samples;
+        }
+    }
+
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * 请求时限：GET/HEAD 按查询，其余方法按请求体大小分为写入或上传。
+     */
+    Duration of(NetworkConfig cfg, String method, URI uri, long bodyBytes) {
+        long cap = baseMs(cfg);
+        Host host = hosts.get(uri.getAuthority());
+        if (isLookup(method)) {
+            return Duration.ofMillis(bounded(host == null ? -1 : host.lookup.rto(), LOOKUP_FLOOR_MS, cap));
+        }
+        long write = bounded(host == null ? -1 : host.write.rto(), WRITE_FLOOR_MS, cap);
+        if (bodyBytes < UPLOAD_MIN_BYTES) {
+            return Duration.ofMillis(write);
+        }
+        long bps = host == null || host.bytesPerSecond() <= 0
+                ? DEFAULT_BYTES_PER_SECOND
+                : Math.max(MIN_BYTES_PER_SECOND, host.bytesPerSecond() / 2);
+        return Duration.ofMillis(Math.min(MAX_UPLOAD_MS, write + bodyBytes * 1000 / bps));
+    }
+
+    /**
+     * 记录一次请求的耗时；timedOut 表示超过了请求时限（连接超时不计入）。
+     */
+    void observe(HttpRequest request, long elapsedNanos, boolean timedOut) {
+        Host host = hosts.computeIfAbsent(request.uri().getAuthority(), k -> new Host());
+        long bodyBytes = request.bodyPublisher().map(HttpRequest.BodyPublisher::contentLength).orElse(0L);
+        double ms = elapsedNanos / 1_000_000.0;
+        if (timedOut) {
+            // 未得到真实耗时，按两倍时限计入，使下一次时限翻倍（不超过上限）
+            ms = 2.0 * request.timeout().map(Duration::toMillis).orElse((long) ms);
+        }
+        host.counted();
+        if (isLookup(request.method())) {
+            host.lookup.sample(ms);
+        } else if (bodyBytes < UPLOAD_MIN_BYTES) {
+            host.write.sample(ms);
+        } else if (timedOut) {
+            host.throttle();
+        } else if (ms > 0) {
+            host.throughput(bodyBytes * 1000.0 / ms);
+        }
+    }
+
+    /**
+     * 各主机的当前估计，按主机名排序。
+     */
+    List<Estimate> estimates(NetworkConfig cfg) {
+        long cap = baseMs(cfg);
+        return hosts.entrySet().stream()
+                .map(e -> {
+                    Host h = e.getValue();
+                    return new Estimate(e.getKey(), h.lookup.srtt(), bounded(h.lookup.rto(), LOOKUP_FLOOR_MS, cap),
+                            h.write.srtt(), bounded(h.write.rto(), WRITE_FLOOR_MS, cap), h.bytesPerSecond(), h.samples());
+                })
+                .sorted(Comparator.comparing(Estimate::authority))
+                .toList();
+    }
+
+    void clear() {
+        hosts.clear();
+    }
+
+    /**
+     * 建立连接（含代理连接）的时限。
+     */
+    static Duration connect(NetworkConfig cfg) {
+        Integer ms = cfg.getConnectTimeoutMs();
+        return Duration.ofMillis(ms == null || ms <= 0 ? Math.min(baseMs(cfg), DEFAULT_CONNECT_TIMEOUT_MS) : ms);
+    }
+
+    static long baseMs(NetworkConfig cfg) {
+        return cfg.getTimeoutMs() == null || cfg.getTimeoutMs() <= 0 ? DEFAULT_TIMEOUT_MS : cfg.getTimeoutMs();
+    }
+
+    private static boolean isLookup(String method) {
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+
+    // 尚无样本（estimate < 0）时取上限；下限本身不超过上限
+    private static long bounded(long estimate, long floor, long cap) {
+        if (estimate < 0) {
+            return cap;
+        }
+        return Math.min(cap, Math.max(Math.min(floor, cap), estimate));
+    }
+}
@@ -0,0 +1,437 @@
+package com.xirizhi.plugingithuboss.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import com.xirizhi.plugingithuboss.config.Constant;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.app.infra.utils.JsonUtils;
+
+/**
+ * 异步上传/删除的本地持久化队列（outbox）。
+ * 说明：
+ * - 入队时先写数据文件 {id}.bin，再原子替换写入描述文件 {id}.json；只有 .json 存在的条目才视为已入队，进程崩溃不会留下半条记录
+ * - 后台按 id（时间序）取到期条目，最多 WORKERS 个并发推送到 GitHub；失败按指数退避重试，超过 MAX_ATTEMPTS 后移入 failed 目录保留，
+ *   上传条目同时移除附件的 pending 标记并记录 uploadFailed，附件不再指向已不存在的队列数据
+ * - 插件重启后从目录重新加载未完成的条目继续推送
+ * - 条目只记录策略名，推送时重新读取策略配置，凭据不落盘
+ * - 上传成功后先把 sha/commitSha 写回条目文件（此后崩溃重启不会重复上传），再回写附件注解并移除 pending 标记，
+ *   Halo 会据此重新计算永久链接；推送完成前永久链接指向插件接口，由 {@link #pendingData} 返回队列中的文件内容
+ * - 轮询只在队列非空时运行：没有策略使用异步上传时不会启动，队列清空后停止，下次入队时再启动
+ */
+@Slf4j
+@Component
+public class UploadOutbox implements InitializingBean, DisposableBean {
+
+    public static final String OP_UPLOAD = "upload";
+    public static final String OP_DELETE = "delete";
+
+    // 队列目录默认为插件状态目录 outbox（见 PluginState），可通过 -Dgithuboss.outbox.dir 指定
+    private static final String DIR_PROPERTY = "githuboss.outbox.dir";
+    private static final int WORKERS = 4;
+    // 包可见以便测试
+    static final int MAX_ATTEMPTS = 30;
+    private static final Duration POLL_INTERVAL = Duration.ofSeconds(5);
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(10);
+    private static final Duration ATTACHMENT_WAIT = Duration.ofMinutes(5);
+
+    @Data
+    public static class OutboxEntry {
+        private String id;
+        private String operation;
+        private String policyName;
+        private String attachmentName;
+        private String path;
+        private String sha;
+        private String commitSha;
+        private String message;
+        private int attempts;
+        private long createdAt;
+        private long nextAttemptAt;
+        private String lastError;
+    }
+
+    private final ReactiveExtensionClient client;
+    private final GitHubService gitHubService;
+    private final Path pendingDir;
+    private final Path failedDir;
+
+    private final ConcurrentHashMap<String, OutboxEntry> entries = new ConcurrentHashMap<>();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private Disposable poller;
+
+    public UploadOutbox(ReactiveExtensionClient client, GitHubService gitHubService, PluginState state) {
+        this(client, gitHubService, state.dir("outbox", DIR_PROPERTY));
+    }
+
+    UploadOutbox(ReactiveExtensionClient client, GitHubService gitHubService, Path dir) {
+        this.client = client;
+        this.gitHubService = gitHubService;
+        this.pendingDir = dir.resolve("pending");
+        this.failedDir = dir.resolve("failed");
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        Files.createDirectories(pendingDir);
+        Files.createDirectories(failedDir);
+        recover();
+        if (!entries.isEmpty()) {
+            startPolling();
+            drain();
+        }
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (poller != null) {
+            poller.dispose();
+            poller = null;
+        }
+    }
+
+    /**
+     * 上传入队：数据写入本地队列后立即返回，后台推送成功后回写附件。
+     */
+    public Mono<OutboxEntry> enqueueUpload(String policyName, String attachmentName, String path, byte[] data, String message) {
+        OutboxEntry entry = newEntry(OP_UPLOAD, policyName, path, message);
+        entry.setAttachmentName(attachmentName);
+        return persist(entry, data);
+    }
+
+    /**
+     * 删除入队。
+     */
+    public Mono<OutboxEntry> enqueueDelete(String policyName, String path, String sha, String message) {
+        OutboxEntry entry = newEntry(OP_DELETE, policyName, path, message);
+        entry.setSha(sha);
+        return persist(entry, null);
+    }
+
+    /**
+     * 取消附件尚未开始推送的上传，返回是否取消成功；已在推送中或已完成的返回 false。
+     */
+    public Mono<Boolean> cancelUpload(String attachmentName) {
+        return Mono.fromCallable(() -> {
+            for (OutboxEntry entry : entries.values()) {
+                if (OP_UPLOAD.equals(entry.getOperation()) && attachmentName.equals(entry.getAttachmentName())
+                        && inFlight.add(entry.getId())) {
+                    try {
+                        remove(entry);
+                        log.info("取消待推送的上传 path={}", entry.getPath());
+                        return true;
+                    } finally {
+                        inFlight.remove(entry.getId());
+                    }
+                }
+            }
+            return false;
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 附件尚未推送完成的上传内容；没有对应的上传条目（未使用异步上传或已推送完成）时为空。
+     */
+    public Mono<byte[]> pendingData(String attachmentName) {
+        return Mono.fromCallable(() -> {
+            for (OutboxEntry entry : entries.values()) {
+                if (OP_UPLOAD.equals(entry.getOperation()) && attachmentName.equals(entry.getAttachmentName())) {
+                    try {
+                        return Files.readAllBytes(dataFile(entry));
+                    } catch (NoSuchFileException e) {
+                        // 读取时刚好推送完成并被移除
+                        return null;
+                    }
+                }
+            }
+            return null;
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 队列中的条目（含待重试），按入队顺序排列。
+     */
+    public List<OutboxEntry> pending() {
+        return entries.values().stream().sorted(Comparator.comparing(OutboxEntry::getId)).toList();
+    }
+
+    /**
+     * 立即处理到期条目；已有一轮在进行时直接返回。
+     */
+    public void drain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Flux.fromIterable(pending())
+                .filter(entry -> entry.getNextAttemptAt() <= now)
+                .filter(entry -> inFlight.add(entry.getId()))
+                .flatMap(entry -> process(entry).doFinally(signal -> inFlight.remove(entry.getId())), WORKERS)
+                .doFinally(signal -> {
+                    draining.set(false);
+                    stopPollingIfIdle();
+                })
+                .subscribe(null, e -> log.error("outbox 推送异常", e));
+    }
+
+    private Mono<Void> process(OutboxEntry entry) {
+        Mono<Void> work = OP_UPLOAD.equals(entry.getOperation()) ? processUpload(entry) : processDelete(entry);
+        return work
+                .then(Mono.fromRunnable(() -> remove(entry)).subscribeOn(Schedulers.boundedElastic()))
+                .then()
+                .onErrorResume(e -> Mono.fromCallable(() -> reschedule(entry, e))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .filter(Boolean::booleanValue)
+                        .flatMap(gaveUp -> markFailed(entry)));
+    }
+
+    private Mono<Void> processUpload(OutboxEntry entry) {
+        // 已推送成功、只差回写附件的条目不再重复上传
+        if (entry.getSha() != null) {
+            return markUploaded(entry, new GitHubService.UploadResult(entry.getSha(), entry.getCommitSha()));
+        }
+        return PluginState.settingsOf(client, entry.getPolicyName())
+                .flatMap(settings -> Mono.fromCallable(() -> Files.readAllBytes(dataFile(entry)))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMap(data -> gitHubService.uploadContent(settings, entry.getPath(), data, entry.getMessage())))
+                .flatMap(result -> Mono.fromCallable(() -> {
+                    log.info("outbox 上传成功 path={}, sha={}, commitSha={}", entry.getPath(), result.sha(), result.commitSha());
+                    entry.setSha(result.sha());
+                    entry.setCommitSha(result.commitSha());
+                    try {
+                        writeEntry(entry);
+                    } catch (IOException e) {
+                        log.warn("outbox 条目 sha 写入失败 id={}: {}", entry.getId(), e.getMessage());
+                    }
+                    return result;
+                }).subscribeOn(Schedulers.boundedElastic()))
+                .flatMap(result -> markUploaded(entry, result));
+    }
+
+    private Mono<Void> processDelete(OutboxEntry entry) {
+        // 同路径的上传仍在队列中时先等待上传完成，避免删除先于上传执行而留下孤儿文件
+        boolean uploadPending = entries.values().stream()
+                .anyMatch(e -> OP_UPLOAD.equals(e.getOperation()) && e.getPath().equals(entry.getPath()));
+        if (uploadPending) {
+            return Mono.error(new IllegalStateException("同路径上传尚未完成，稍后重试删除"));
+        }
+        return PluginState.settingsOf(client, entry.getPolicyName())
+                .flatMap(settings -> Mono.justOrEmpty(entry.getSha())
+                        .switchIfEmpty(gitHubService.fetchContentSha(settings, entry.getPath()).onErrorResume(e -> Mono.just("")))
+                        .flatMap(sha -> gitHubService.deleteContent(settings, entry.getPath(), sha, entry.getMessage())))
+                .doOnSuccess(v -> log.info("outbox 删除成功 path={}", entry.getPath()));
+    }
+
+    // 回写附件：记录 sha/commitSha 并移除 pending 标记。
+    // 推送可能早于 Halo 保存附件完成，入队不久时找不到附件按失败重试（文件已在仓库，重试时为幂等覆盖）；较早的条目视为附件已删除
+    private Mono<Void> markUploaded(OutboxEntry entry, GitHubService.UploadResult result) {
+        String attachmentName = entry.getAttachmentName();
+        if (attachmentName == null) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> client.fetch(Attachment.class, attachmentName)
+                        .flatMap(attachment -> {
+                            var annotations = attachment.getMetadata().getAnnotations();
+                            annotations.put("sha", result.sha());
+                            if (result.commitSha() != null && !result.commitSha().isBlank()) {
+                                annotations.put(Constant.ANNOTATION_COMMIT_SHA, result.commitSha());
+                            }
+                            annotations.remove(Constant.ANNOTATION_PENDING);
+                            return client.update(attachment);
+                        }))
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(100))
+                        .filter(OptimisticLockingFailureException.class::isInstance))
+                .switchIfEmpty(Mono.defer(() -> {
+                    if (System.currentTimeMillis() - entry.getCreatedAt() < ATTACHMENT_WAIT.toMillis()) {
+                        return Mono.error(new IllegalStateException("附件尚未保存: " + attachmentName));
+                    }
+                    log.warn("outbox 上传完成但附件已不存在 attachment={}", attachmentName);
+                    return Mono.empty();
+                }))
+                .then();
+    }
+
+    // 放弃推送的上传：移除 pending 标记并记录失败原因，Halo 据此重新计算永久链接；附件已不存在时忽略
+    private Mono<Void> markFailed(OutboxEntry entry) {
+        String attachmentName = entry.getAttachmentName();
+        if (!OP_UPLOAD.equals(entry.getOperation()) || attachmentName == null) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> client.fetch(Attachment.class, attachmentName)
+                        .flatMap(attachment -> {
+                            var annotations = attachment.getMetadata().getAnnotations();
+                            annotations.remove(Constant.ANNOTATION_PENDING);
+                            annotations.put(Constant.ANNOTATION_UPLOAD_FAILED, entry.getLastError());
+                            return client.update(attachment);
+                        }))
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(100))
+                        .filter(OptimisticLockingFailureException.class::isInstance))
+                .doOnNext(attachment -> log.warn("outbox 放弃上传，已标记附件推送失败 attachment={}, path={}",
+                        attachmentName, entry.getPath()))
+                .onErrorResume(e -> {
+                    log.error("outbox 标记附件推送失败时出错 attachment={}", attachmentName, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private OutboxEntry newEntry(String operation, String policyName, String path, String message) {
+        long now = System.currentTimeMillis();
+        OutboxEntry entry = new OutboxEntry();
+        // id 以时间开头，目录排序即入队顺序
+        entry.setId(String.format("%013d-%s", now, UUID.randomUUID().toString().substring(0, 8)));
+        entry.setOperation(operation);
+        entry.setPolicyName(policyName);
+        entry.setPath(path);
+        entry.setMessage(message);
+        entry.setCreatedAt(now);
+        entry.setNextAttemptAt(now);
+        return entry;
+    }
+
+    private Mono<OutboxEntry> persist(OutboxEntry entry, byte[] data) {
+        return Mono.fromCallable(() -> {
+                    if (data != null) {
+                        writeAtomically(dataFile(entry), data);
+                    }
+                    writeEntry(entry);
+                    entries.put(entry.getId(), entry);
+                    return entry;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnSuccess(e -> {
+                    startPolling();
+                    drain();
+                });
+    }
+
+    // 入队后调用：在 entries.put 之后启动，与 stopPollingIfIdle 的空队列检查不会错过新条目
+    private synchronized void startPolling() {
+        if (poller == null) {
+            poller = Flux.interval(POLL_INTERVAL, POLL_INTERVAL)
+                    .subscribe(tick -> drain(), e -> log.error("outbox 轮询异常终止", e));
+        }
+    }
+
+    private synchronized void stopPollingIfIdle() {
+        if (poller != null && entries.isEmpty()) {
+            poller.dispose();
+            poller = null;
+        }
+    }
+
+    // 包可见以便测试
+    synchronized boolean polling() {
+        return poller != null;
+    }
+
+    // 返回是否已放弃该条目（移入 failed 目录）
+    private boolean reschedule(OutboxEntry entry, Throwable error) {
+        entry.setAttempts(entry.getAttempts() + 1);
+        entry.setLastError(String.valueOf(error.getMessage()));
+        try {
+            if (entry.getAttempts() >= MAX_ATTEMPTS) {
+                log.error("outbox 条目重试 {} 次仍失败，移入 failed 目录 id={}, op={}, path={}",
+                        entry.getAttempts(), entry.getId(), entry.getOperation(), entry.getPath(), error);
+                writeEntry(entry);
+                move(entryFile(entry), failedDir);
+                move(dataFile(entry), failedDir);
+                entries.remove(entry.getId());
+                return true;
+            }
+            long backoff = Math.min(MAX_BACKOFF.toMillis(), 1000L << Math.min(entry.getAttempts(), 20));
+            entry.setNextAttemptAt(System.currentTimeMillis() + backoff);
+            writeEntry(entry);
+            log.warn("outbox 推送失败，{}ms 后第 {} 次重试 op={}, path={}: {}",
+                    backoff, entry.getAttempts() + 1, entry.getOperation(), entry.getPath(), error.getMessage());
+        } catch (IOException e) {
+            log.error("outbox 条目状态写入失败 id={}", entry.getId(), e);
+        }
+        return false;
+    }
+
+    private void remove(OutboxEntry entry) {
+        try {
+            // 先删描述文件：即使随后崩溃，残留的数据文件也不会被当作条目重放
+            Files.deleteIfExists(entryFile(entry));
+            Files.deleteIfExists(dataFile(entry));
+            entries.remove(entry.getId());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 启动时加载未完成的条目，并清理没有描述文件的残留数据文件
+    private void recover() throws IOException {
+        try (Stream<Path> files = Files.list(pendingDir)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".json")) {
+                    OutboxEntry entry = JsonUtils.jsonToObject(Files.readString(file, StandardCharsets.UTF_8), OutboxEntry.class);
+                    entry.setNextAttemptAt(0);
+                    entries.put(entry.getId(), entry);
+                } else if (name.endsWith(".bin")
+                        && !Files.exists(pendingDir.resolve(name.substring(0, name.length() - 4) + ".json"))) {
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        if (!entries.isEmpty()) {
+            log.info("outbox 恢复 {} 个未完成条目", entries.size());
+        }
+    }
+
+    private void writeEntry(OutboxEntry entry) throws IOException {
+        PluginState.writeJsonNow(entryFile(entry), entry);
+    }
+
+    private static void writeAtomically(Path target, byte[] bytes) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(tmp, bytes);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void move(Path file, Path dir) throws IOException {
+        if (Files.exists(file)) {
+            Files.move(file, dir.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Path entryFile(OutboxEntry entry) {
+        return pendingDir.resolve(entry.getId() + ".json");
+    }
+
+    private Path dataFile(OutboxEntry entry) {
+        return pendingDir.resolve(entry.getId() + ".bin");
+    }
+}
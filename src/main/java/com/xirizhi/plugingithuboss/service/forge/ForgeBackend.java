@@ -0,0 +1,107 @@
+package com.xirizhi.plugingithuboss.service.forge;
+
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+
+/**
+ * Git 托管平台后端：屏蔽各平台 API 地址、鉴权头、Contents API 细节与原始文件地址的差异。
+ * 各平台的 Contents API 请求/响应结构基本一致（content/commit 中的 sha），差异集中在这里。
+ */
+public interface ForgeBackend {
+
+    /**
+     * 后端类型，对应策略配置 forgeType 的取值。
+     */
+    String type();
+
+    /**
+     * API 根地址（不含末尾斜杠），例如 https://api.github.com、https://ghe.example.com/api/v3。
+     */
+    String apiBase(GithubOssPolicySettings settings);
+
+    /**
+     * Contents API 地址：{apiBase}/repos/{owner}/{repo}/contents/{path}
+     */
+    default String contentsUrl(GithubOssPolicySettings settings, String path) {
+        return apiBase(settings) + String.format("/repos/%s/%s/contents/%s",
+                settings.getOwner(), settings.getRepoName(), path == null ? "" : path);
+    }
+
+    /**
+     * Git Data API 地址：{apiBase}/repos/{owner}/{repo}/git/{suffix}，例如 git/blobs、git/refs/heads/main。
+     */
+    default String gitUrl(GithubOssPolicySettings settings, String suffix) {
+        return apiBase(settings) + String.format("/repos/%s/%s/git/%s",
+                settings.getOwner(), settings.getRepoName(), suffix);
+    }
+
+    /**
+     * 是否支持 Git Data API（blob/tree/commit/ref）。支持时写操作通过 ref 的乐观更新提交，无需加锁。
+     */
+    default boolean supportsGitData() {
+        return false;
+    }
+
+    /**
+     * Releases API 地址：{apiBase}/repos/{owner}/{repo}/releases/{suffix}，suffix 为空时为 release 列表。
+     */
+    default String releasesUrl(GithubOssPolicySettings settings, String suffix) {
+        return apiBase(settings) + String.format("/repos/%s/%s/releases", settings.getOwner(), settings.getRepoName())
+                + (suffix == null || suffix.isEmpty() ? "" : "/" + suffix);
+    }
+
+    /**
+     * 是否支持以原始字节上传 release 附件（upload_url + application/octet-stream）。
+     */
+    default boolean supportsReleaseAssets() {
+        return false;
+    }
+
+    /**
+     * Authorization 请求头的值。
+     */
+    String authorization(String token);
+
+    /**
+     * Accept 请求头的值。
+     */
+    String accept();
+
+    /**
+     * 新建文件使用的 HTTP 方法（GitHub 为 PUT，Gitea/Forgejo 为 POST）。
+     */
+    String createMethod();
+
+    /**
+     * 是否可通过 jsDelivr 的 /gh/ 路由访问（仅 github.com 公开仓库）。
+     */
+    boolean supportsJsdelivr();
+
+    /**
+     * 平台自身的原始文件地址，未配置 CDN 模板且不支持 jsDelivr 时使用。
+     * @param ref 分支名或提交 SHA
+     * @param commit ref 是否为提交 SHA
+     */
+    String rawUrl(GithubOssPolicySettings settings, String path, String ref, boolean commit);
+
+    /**
+     * 由 API 地址推导 Web 根地址：去掉末尾的 /api/v3、/api/v1 等前缀。
+     */
+    static String webBase(String apiBase) {
+        int i = apiBase.indexOf("/api/");
+        return i > 0 ? apiBase.substring(0, i) : apiBase;
+    }
+
+    /**
+     * 规范化配置的地址：为空时返回默认值，去除首尾空白与末尾斜杠。
+     */
+    static String normalize(String url, String defaultUrl) {
+        if (url == null || url.isBlank()) {
+            return defaultUrl;
+        }
+        String base = url.trim();
+        while (base.endsWith("/")) {
+            base = base.substring(0, base.length() - 1);
+        }
+        return base;
+    }
+}
@@ -0,0 +1,46 @@
+package com.xirizhi.plugingithuboss.service.forge;
+
+import java.util.Map;
+
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+
+/**
+ * 按策略配置 forgeType 选择后端，未配置时为 github.com。
+ */
+public final class ForgeBackends {
+
+    private static final ForgeBackend GITHUB = new GitHubBackend();
+    private static final Map<String, ForgeBackend> BACKENDS = Map.of(
+            GitHubBackend.TYPE, GITHUB,
+            GitHubEnterpriseBackend.TYPE, new GitHubEnterpriseBackend(),
+            GiteaBackend.TYPE, new GiteaBackend(),
+            // Forgejo 与 Gitea API 兼容
+            "forgejo", new GiteaBackend());
+
+    private ForgeBackends() {
+    }
+
+    public static ForgeBackend of(GithubOssPolicySettings settings) {
+        String type = settings == null ? null : settings.getForgeType();
+        if (type == null || type.isBlank()) {
+            return GITHUB;
+        }
+        ForgeBackend backend = BACKENDS.get(type.trim().toLowerCase());
+        if (backend == null) {
+            throw new IllegalStateException("不支持的仓库平台类型：" + type);
+        }
+        return backend;
+    }
+
+    /**
+     * 填充 CDN/原始地址模板，支持 {owner} {repo} {branch} {ref} {path} 占位符。
+     */
+    public static String fillTemplate(String template, GithubOssPolicySettings settings, String branch, String ref, String path) {
+        return template.trim()
+                .replace("{owner}", settings.getOwner())
+                .replace("{repo}", settings.getRepoName())
+                .replace("{branch}", branch)
+                .replace("{ref}", ref)
+                .replace("{path}", path);
+    }
+}
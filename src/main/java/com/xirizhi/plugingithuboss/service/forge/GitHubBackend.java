@@ -0,0 +1,58 @@
+package com.xirizhi.plugingithuboss.service.forge;
+
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+
+/**
+ * github.com：默认后端，公开仓库可走 jsDelivr。
+ */
+public class GitHubBackend implements ForgeBackend {
+
+    public static final String TYPE = "github";
+    public static final String DEFAULT_API_BASE = "https://api.github.com";
+
+    @Override
+    public String type() {
+        return TYPE;
+    }
+
+    @Override
+    public String apiBase(GithubOssPolicySettings settings) {
+        return ForgeBackend.normalize(settings.getApiBaseUrl(), DEFAULT_API_BASE);
+    }
+
+    @Override
+    public String authorization(String token) {
+        return "Bearer " + token;
+    }
+
+    @Override
+    public String accept() {
+        return "application/vnd.github+json";
+    }
+
+    @Override
+    public String createMethod() {
+        return "PUT";
+    }
+
+    @Override
+    public boolean supportsGitData() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsReleaseAssets() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsJsdelivr() {
+        return true;
+    }
+
+    @Override
+    public String rawUrl(GithubOssPolicySettings settings, String path, String ref, boolean commit) {
+        return String.format("https://raw.githubusercontent.com/%s/%s/%s/%s",
+                settings.getOwner(), settings.getRepoName(), ref, path);
+    }
+}
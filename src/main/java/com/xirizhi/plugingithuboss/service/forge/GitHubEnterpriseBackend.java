@@ -0,0 +1,36 @@
+package com.xirizhi.plugingithuboss.service.forge;
+
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+
+/**
+ * GitHub Enterprise Server：API 与 github.com 一致，地址为 https://{host}/api/v3，原始文件走 /{owner}/{repo}/raw/{ref}/{path}。
+ */
+public class GitHubEnterpriseBackend extends GitHubBackend {
+
+    public static final String TYPE = "ghes";
+
+    @Override
+    public String type() {
+        return TYPE;
+    }
+
+    @Override
+    public String apiBase(GithubOssPolicySettings settings) {
+        String base = ForgeBackend.normalize(settings.getApiBaseUrl(), null);
+        if (base == null) {
+            throw new IllegalStateException("GitHub Enterprise 存储策略需配置 API 地址，例如 https://ghe.example.com/api/v3");
+        }
+        return base;
+    }
+
+    @Override
+    public boolean supportsJsdelivr() {
+        return false;
+    }
+
+    @Override
+    public String rawUrl(GithubOssPolicySettings settings, String path, String ref, boolean commit) {
+        return String.format("%s/%s/%s/raw/%s/%s",
+                ForgeBackend.webBase(apiBase(settings)), settings.getOwner(), settings.getRepoName(), ref, path);
+    }
+}
@@ -0,0 +1,53 @@
+package com.xirizhi.plugingithuboss.service.forge;
+
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+
+/**
+ * Gitea / Forgejo：API 地址为 https://{host}/api/v1，鉴权头为 "token {PAT}"，新建文件使用 POST，
+ * 原始文件地址区分分支与提交：/{owner}/{repo}/raw/branch/{branch}/{path}、/raw/commit/{sha}/{path}。
+ */
+public class GiteaBackend implements ForgeBackend {
+
+    public static final String TYPE = "gitea";
+
+    @Override
+    public String type() {
+        return TYPE;
+    }
+
+    @Override
+    public String apiBase(GithubOssPolicySettings settings) {
+        String base = ForgeBackend.normalize(settings.getApiBaseUrl(), null);
+        if (base == null) {
+            throw new IllegalStateException("Gitea/Forgejo 存储策略需配置 API 地址，例如 https://git.example.com/api/v1");
+        }
+        return base;
+    }
+
+    @Override
+    public String authorization(String token) {
+        return "token " + token;
+    }
+
+    @Override
+    public String accept() {
+        return "application/json";
+    }
+
+    @Override
+    public String createMethod() {
+        return "POST";
+    }
+
+    @Override
+    public boolean supportsJsdelivr() {
+        return false;
+    }
+
+    @Override
+    public String rawUrl(GithubOssPolicySettings settings, String path, String ref, boolean commit) {
+        return String.format("%s/%s/%s/raw/%s/%s/%s",
+                ForgeBackend.webBase(apiBase(settings)), settings.getOwner(), settings.getRepoName(),
+                commit ? "commit" : "branch", ref, path);
+    }
+}
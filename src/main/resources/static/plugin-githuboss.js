@@ -10,6 +10,9 @@
         "https://originfastly.jsdelivr.net",
         "https://quantil.jsdelivr.net",
     ];
+    // 服务端注入的配置：optimize 是否选择最快的 jsdelivr 节点，policies 为各策略按优先级排列的访问地址提供方
+    const cdnConfig = window.githubossCdn || {optimize: true, policies: []};
+    const triedKey = "githubossTried";
 
     // 获取本地缓存的值
     const getLocalValue = () => localStorage.getItem(githubFastHttpsKey);
@@ -61,14 +64,105 @@
         return imgSrc.replace(imgRegex, domain);
     };
 
+    // 把提供方模板编译为正则：{ref} 匹配一段路径，{path} 匹配剩余部分；jsdelivr 节点可能被替换，任意节点都能匹配
+    const compileProvider = (provider) => {
+        let source = provider.template.replace(/[.*+?^${}()|[\]\\]/g, "\\$&");
+        source = source.replace(/^https:\/\/[^/]*jsdelivr\\\.net/, "https://[^/]*jsdelivr\\.net");
+        const refAt = source.indexOf("\\{ref\\}");
+        const pathAt = source.indexOf("\\{path\\}");
+        source = source.replace("\\{ref\\}", "([^/]+)").replace("\\{path\\}", "(.+)");
+        return {
+            ...provider,
+            hasRef: refAt >= 0,
+            refFirst: refAt >= 0 && refAt < pathAt,
+            regex: new RegExp("^" + source + "$"),
+        };
+    };
+
+    const policies = (cdnConfig.policies || []).map((policy) => ({
+        branch: policy.branch,
+        providers: policy.providers.map(compileProvider),
+    }));
+
+    // 解析图片地址属于哪个策略的哪个提供方，得到 ref 与 path
+    const parseCdnUrl = (url) => {
+        for (const policy of policies) {
+            for (let i = 0; i < policy.providers.length; i++) {
+                const provider = policy.providers[i];
+                const m = url.match(provider.regex);
+                if (!m) continue;
+                if (!provider.hasRef) return {policy, index: i, ref: policy.branch, path: m[1]};
+                return provider.refFirst
+                    ? {policy, index: i, ref: m[1], path: m[2]}
+                    : {policy, index: i, ref: m[2], path: m[1]};
+            }
+        }
+        return null;
+    };
+
+    // 用提供方生成地址；不支持固定提交的提供方只能生成分支上的地址
+    const buildCdnUrl = (provider, policy, ref, path) => {
+        if (!provider.hasRef && ref !== policy.branch) return null;
+        return provider.template.replace("{ref}", ref).replace("{path}", path);
+    };
+
+    // 从 start 开始找下一个可用的提供方，onlyHealthy 为 true 时跳过服务端标记为不可用的提供方
+    const nextCdnUrl = (parsed, start, onlyHealthy) => {
+        const providers = parsed.policy.providers;
+        for (let i = start; i < providers.length; i++) {
+            if (onlyHealthy && !providers[i].healthy) continue;
+            const url = buildCdnUrl(providers[i], parsed.policy, parsed.ref, parsed.path);
+            if (url) return {url, index: i};
+        }
+        return null;
+    };
+
+    // 页面加载时：图片所在提供方被服务端标记为不可用时换到第一个可用的提供方
+    const failoverUnhealthy = (imgElement, attribute) => {
+        const src = getImageSrc(imgElement, attribute);
+        const parsed = src && parseCdnUrl(src);
+        if (!parsed || parsed.policy.providers[parsed.index].healthy) return;
+        const next = nextCdnUrl(parsed, 0, true);
+        if (next) {
+            imgElement.setAttribute(attribute, next.url);
+        }
+    };
+
+    // 图片加载失败时依次尝试后面的提供方，每个提供方最多尝试一次
+    const onImageError = (event) => {
+        const imgElement = event.target;
+        if (!imgElement || imgElement.tagName !== "IMG") return;
+        const src = imgElement.currentSrc || imgElement.getAttribute("src");
+        const parsed = src && parseCdnUrl(src);
+        if (!parsed) return;
+        const tried = Number(imgElement.dataset[triedKey] || parsed.index);
+        const next = nextCdnUrl(parsed, Math.max(tried, parsed.index) + 1, false);
+        if (!next) return;
+        imgElement.dataset[triedKey] = String(next.index);
+        imgElement.setAttribute("src", next.url);
+    };
+
+    // 图片的 error 事件不冒泡，在捕获阶段监听，之后插入的图片同样生效
+    if (policies.length > 0) {
+        document.addEventListener("error", onImageError, true);
+    }
+
     // 初始化操作
     const init = () => {
+        let imgList = document.getElementsByTagName('img');
+        // 第零步，图片所在提供方不可用时换到下一个
+        if (policies.length > 0) {
+            for (let i = 0; i < imgList.length; i++) {
+                failoverUnhealthy(imgList[i], "src");
+                failoverUnhealthy(imgList[i], "data-src");
+            }
+        }
+        if (!cdnConfig.optimize) return;
         // 第一步，从本地缓存中获取 githubFastHttps 的值，如果不存在，则根据用户所在地区设置不同的值，并将其设置到本地缓存中
         let githubFastHttps = getLocalValue();
         let domain = domains.indexOf(githubFastHttps) !== -1 ? githubFastHttps : isInChina()? "https://gcore.jsdelivr.net":"https://cdn.jsdelivr.net";
 
         // 第二步，替换页面中所有http.*jsdelivr.net的图片路径
-        let imgList = document.getElementsByTagName('img');
         for (let i = 0; i < imgList.length; i++) {
             replaceImageSrc(imgList[i],"src",domain);
             replaceImageSrc(imgList[i],"data-src",domain);
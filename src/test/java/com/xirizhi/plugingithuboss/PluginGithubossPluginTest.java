@@ -1,5 +1,8 @@
 package com.xirizhi.plugingithuboss;
 
+import static org.mockito.Mockito.verify;
+
+import com.xirizhi.plugingithuboss.service.PluginWarmup;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -17,13 +20,18 @@ class PluginGithubossPluginTest {
     @Mock
     SchemeManager schemeManager;
 
+    @Mock
+    PluginWarmup warmup;
+
     @InjectMocks
     PluginGithubossPlugin plugin;
 
     @Test
     void contextLoads() {
-        // 验证插件生命周期方法可调用，不抛出异常
+        // 验证插件生命周期方法可调用，不抛出异常，并把预热的启停交给 PluginWarmup
         plugin.start();
+        verify(warmup).start();
         plugin.stop();
+        verify(warmup).stop();
     }
 }
@@ -0,0 +1,67 @@
+package com.xirizhi.plugingithuboss.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import reactor.core.publisher.Mono;
+
+class ConditionalGetTest {
+
+    @Test
+    void etagFollowsVersionsAndIsUnknownWithoutOne() {
+        String tag = ConditionalGet.etag("list", "cm", 3L, "attachments", "abc");
+        assertThat(tag).startsWith("\"").endsWith("\"").hasSize(34);
+        assertThat(ConditionalGet.etag("list", "cm", 3L, "attachments", "abc")).isEqualTo(tag);
+        assertThat(ConditionalGet.etag("list", "cm", 4L, "attachments", "abc")).isNotEqualTo(tag);
+        assertThat(ConditionalGet.etag("list", "cm", 3L, "attachments", null)).isNull();
+    }
+
+    @Test
+    void matchesIfNoneMatchWithWeakComparison() {
+        String tag = ConditionalGet.etag("haloList", "v1");
+        assertThat(ConditionalGet.matches(List.of(tag), tag)).isTrue();
+        assertThat(ConditionalGet.matches(List.of("\"other\", W/" + tag), tag)).isTrue();
+        assertThat(ConditionalGet.matches(List.of("*"), tag)).isTrue();
+        assertThat(ConditionalGet.matches(List.of("\"other\""), tag)).isFalse();
+        assertThat(ConditionalGet.matches(null, tag)).isFalse();
+        assertThat(ConditionalGet.matches(List.of("*"), null)).isFalse();
+    }
+
+    @Test
+    void notModifiedSkipsBody() {
+        String tag = ConditionalGet.etag("proxy", 7L);
+        AtomicInteger built = new AtomicInteger();
+
+        var fresh = ConditionalGet.respond(exchange(null), tag, () -> Mono.fromSupplier(() -> "body-" + built.incrementAndGet())).block();
+        assertThat(fresh.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(fresh.getBody()).isEqualTo("body-1");
+        assertThat(fresh.getHeaders().getETag()).isEqualTo(tag);
+        assertThat(fresh.getHeaders().getCacheControl()).contains("private").contains("no-cache");
+
+        var cached = ConditionalGet.respond(exchange(tag), tag, () -> Mono.fromSupplier(() -> "body-" + built.incrementAndGet())).block();
+        assertThat(cached.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(cached.getBody()).isNull();
+        assertThat(cached.getHeaders().getETag()).isEqualTo(tag);
+        assertThat(built).hasValue(1);
+
+        // 版本未知时不带 ETag，总是返回内容
+        var untagged = ConditionalGet.respond(exchange("*"), null, () -> Mono.just("body")).block();
+        assertThat(untagged.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(untagged.getHeaders().getETag()).isNull();
+    }
+
+    private static MockServerWebExchange exchange(String ifNoneMatch) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/attachments/list");
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return MockServerWebExchange.from(request);
+    }
+}
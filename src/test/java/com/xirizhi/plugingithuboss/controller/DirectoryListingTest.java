@@ -0,0 +1,85 @@
+package com.xirizhi.plugingithuboss.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class DirectoryListingTest {
+
+    private static final String RAW = """
+            [
+              {"name":"b.PNG","path":"att/b.PNG","sha":"s2","size":300,"type":"file","url":"x","_links":{},
+               "download_url":"https://raw.example.com/att/b.PNG"},
+              {"name":"sub","path":"att/sub","sha":"d1","size":0,"type":"dir","download_url":null},
+              {"name":"a.jpg","path":"att/a.jpg","sha":"s1","size":100,"type":"file"},
+              {"name":"c.txt","path":"att/c.txt","sha":"s3","size":200,"type":"file"}
+            ]
+            """;
+
+    private static DirectoryListing.Filter none() {
+        return new DirectoryListing.Filter(null, null, null, null, null, null, null, null);
+    }
+
+    private static List<String> names(DirectoryListing.Page page) {
+        return page.items().stream().map(DirectoryListing.Entry::name).toList();
+    }
+
+    @Test
+    void sortsDirsFirstAndJoinsLinkStatus() {
+        var page = DirectoryListing.page(RAW, Set.of("s1att/a.jpg"), none(), null, null);
+        assertThat(names(page)).containsExactly("sub", "a.jpg", "b.PNG", "c.txt");
+        assertThat(page.items().get(1).linked()).isTrue();
+        assertThat(page.items().get(2).linked()).isFalse();
+        assertThat(page.items().get(2).downloadUrl()).isEqualTo("https://raw.example.com/att/b.PNG");
+        assertThat(page.items().get(0).downloadUrl()).isNull();
+        assertThat(page.total()).isEqualTo(4);
+        assertThat(page.nextCursor()).isNull();
+    }
+
+    @Test
+    void filtersByExtensionSizeAndName() {
+        var byExt = new DirectoryListing.Filter(null, "png,.JPG", null, null, null, null, null, null);
+        assertThat(names(DirectoryListing.page(RAW, Set.of(), byExt, null, null))).containsExactly("a.jpg", "b.PNG");
+
+        var bySize = new DirectoryListing.Filter(null, null, 150L, 300L, null, null, "size", true);
+        assertThat(names(DirectoryListing.page(RAW, Set.of(), bySize, null, null))).containsExactly("b.PNG", "c.txt");
+
+        var byName = new DirectoryListing.Filter("B.p", null, null, null, null, null, null, null);
+        assertThat(names(DirectoryListing.page(RAW, Set.of(), byName, null, null))).containsExactly("b.PNG");
+
+        var unlinked = new DirectoryListing.Filter(null, null, null, null, false, true, null, null);
+        assertThat(names(DirectoryListing.page(RAW, Set.of("s1att/a.jpg"), unlinked, null, null)))
+                .containsExactly("b.PNG", "c.txt");
+    }
+
+    @Test
+    void cursorWalksAllPagesWithoutDuplicates() {
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            var page = DirectoryListing.page(RAW, Set.of(), none(), cursor, 3);
+            seen.addAll(names(page));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        assertThat(seen).containsExactly("sub", "a.jpg", "b.PNG", "c.txt");
+    }
+
+    @Test
+    void cursorStaysStableWhenEarlierEntriesAreRemoved() {
+        var first = DirectoryListing.page(RAW, Set.of(), none(), null, 2);
+        String shrunk = RAW.replace("{\"name\":\"a.jpg\",\"path\":\"att/a.jpg\",\"sha\":\"s1\",\"size\":100,\"type\":\"file\"},", "");
+        var second = DirectoryListing.page(shrunk, Set.of(), none(), first.nextCursor(), 2);
+        assertThat(names(second)).containsExactly("b.PNG", "c.txt");
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        assertThatThrownBy(() -> DirectoryListing.page(RAW, Set.of(), none(), "not-a-cursor", 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,143 @@
+package com.xirizhi.plugingithuboss.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.service.GitHubMetrics;
+import com.xirizhi.plugingithuboss.service.GitHubService;
+import com.xirizhi.plugingithuboss.service.PermalinkCache;
+import com.xirizhi.plugingithuboss.service.ReleaseAssetStore;
+import com.xirizhi.plugingithuboss.support.BytesFilePart;
+import com.xirizhi.plugingithuboss.support.FakeGitHubApi;
+import com.xirizhi.plugingithuboss.support.TestWiring;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.core.extension.attachment.Policy;
+import run.halo.app.extension.ConfigMap;
+
+/**
+ * 压测：通过 GithubAttachmentHandler 并发执行 N 次 upload() 与 delete()，
+ * 输出吞吐、p50/p99 延迟与线程数，用于离线发现加锁与批量提交路径上的回退。
+ * 运行：./gradlew loadTest -PloadN=500 -PloadConcurrency=32 -PloadLatencyMs=20
+ */
+@Slf4j
+@Tag("load")
+class GithubAttachmentHandlerLoadTest {
+
+    final int n = Integer.getInteger("githuboss.load.n", 100);
+    final int concurrency = Integer.getInteger("githuboss.load.concurrency", 16);
+    final long latencyMs = Long.getLong("githuboss.load.latencyMs", 10);
+
+    FakeGitHubApi api;
+    GithubAttachmentHandler handler;
+    GithubOssPolicySettings settings;
+    Policy policy;
+    ConfigMap policyConfig;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        api = FakeGitHubApi.start().latencyMs(latencyMs);
+        var client = TestWiring.extensionClient();
+        GitHubMetrics metrics = TestWiring.metrics();
+        GitHubService gitHubService = new GitHubService(client, metrics);
+        handler = new GithubAttachmentHandler(client, gitHubService, metrics, new UploadPathGenerator(gitHubService), null,
+                new PermalinkCache(gitHubService), new ReleaseAssetStore(gitHubService, metrics));
+        settings = TestWiring.settings(api);
+        policy = TestWiring.policy();
+        policyConfig = TestWiring.policyConfig(settings);
+    }
+
+    @AfterEach
+    void tearDown() {
+        api.close();
+    }
+
+    @Test
+    void concurrentUploadsAndDeletes() {
+        byte[] data = new byte[32 * 1024];
+        new Random(7).nextBytes(data);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        int threadsBefore = threads.getThreadCount();
+
+        List<Long> uploadLatencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger uploadErrors = new AtomicInteger();
+        long start = System.nanoTime();
+        List<Attachment> attachments = Flux.range(0, n)
+                .flatMap(i -> timed(handler.upload(TestWiring.uploadContext(
+                                new BytesFilePart("photo-" + i + ".png", data), policy, policyConfig)), uploadLatencies)
+                        .onErrorResume(e -> {
+                            uploadErrors.incrementAndGet();
+                            return Mono.empty();
+                        }), concurrency)
+                .collectList()
+                .block(Duration.ofMinutes(10));
+        long uploadNanos = System.nanoTime() - start;
+        report("upload", n, uploadLatencies, uploadNanos, uploadErrors.get(), threads, threadsBefore);
+
+        threads.resetPeakThreadCount();
+        List<Long> deleteLatencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger deleteErrors = new AtomicInteger();
+        start = System.nanoTime();
+        Flux.fromIterable(attachments)
+                .flatMap(att -> timed(handler.delete(TestWiring.deleteContext(att, policy, policyConfig)), deleteLatencies)
+                        .onErrorResume(e -> {
+                            deleteErrors.incrementAndGet();
+                            return Mono.empty();
+                        }), concurrency)
+                .blockLast(Duration.ofMinutes(10));
+        long deleteNanos = System.nanoTime() - start;
+        report("delete", attachments.size(), deleteLatencies, deleteNanos, deleteErrors.get(), threads, threadsBefore);
+
+        log.info("fake api: requests={}, 409={}, nonFastForward={}, maxConcurrentWrites={}",
+                api.requests(), api.conflicts(), api.refRejections(), api.maxWritesInFlight());
+        assertThat(uploadErrors.get()).isZero();
+        assertThat(deleteErrors.get()).isZero();
+        assertThat(api.files()).isEmpty();
+        // 单节点：同节点的提交由分支锁串行，且 head 在锁内读取，不应出现非快进
+        assertThat(api.refRejections()).isZero();
+    }
+
+    private static <T> Mono<T> timed(Mono<T> mono, List<Long> latencies) {
+        return Mono.defer(() -> {
+            long t0 = System.nanoTime();
+            return mono.doOnSuccess(v -> latencies.add(System.nanoTime() - t0));
+        });
+    }
+
+    private void report(String op, int attempted, List<Long> latencies, long totalNanos, int errors,
+                        ThreadMXBean threads, int threadsBefore) {
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        double seconds = totalNanos / 1_000_000_000.0;
+        // 每个成功的操作都记录了一次耗时
+        assertThat(sorted).hasSize(attempted - errors);
+        log.info("{}: n={}, concurrency={}, errors={}, throughput={} ops/s, p50={}ms, p99={}ms, threads(before={}, peak={}, now={})",
+                op, attempted, concurrency, errors, String.format("%.1f", sorted.size() / seconds),
+                String.format("%.1f", percentile(sorted, 0.50)), String.format("%.1f", percentile(sorted, 0.99)),
+                threadsBefore, threads.getPeakThreadCount(), threads.getThreadCount());
+    }
+
+    private static double percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) return 0;
+        int idx = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(idx, sorted.size() - 1))) / 1_000_000.0;
+    }
+}
@@ -0,0 +1,105 @@
+package com.xirizhi.plugingithuboss.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import com.xirizhi.plugingithuboss.config.Constant;
+
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.extension.Metadata;
+
+class ImageProbeTest {
+
+    @Test
+    void readsSizeFromHeaderForCommonFormats() throws IOException {
+        for (String format : new String[] {"png", "jpg", "gif", "bmp"}) {
+            var info = ImageProbe.probe(encode(solid(320, 180, Color.RED), format));
+            assertThat(info).as(format).isNotNull();
+            assertThat(info.width()).as(format).isEqualTo(320);
+            assertThat(info.height()).as(format).isEqualTo(180);
+        }
+        assertThat(ImageProbe.probe("not an image at all".getBytes(StandardCharsets.UTF_8))).isNull();
+    }
+
+    @Test
+    void readsWebpCanvasAndTruncatedHeadersSafely() {
+        byte[] webp = new byte[30];
+        System.arraycopy("RIFF\0\0\0\0WEBPVP8X".getBytes(StandardCharsets.US_ASCII), 0, webp, 0, 16);
+        // 画布 1024x768，存储为宽高减一
+        webp[24] = (byte) 0xFF;
+        webp[25] = 0x03;
+        webp[27] = (byte) 0xFF;
+        webp[28] = 0x02;
+        assertThat(ImageProbe.readSize(webp)).containsExactly(1024, 768);
+
+        byte[] png = Arrays.copyOf(new byte[] {(byte) 0x89, 'P', 'N', 'G'}, 18);
+        assertThat(ImageProbe.probe(png)).isNull();
+    }
+
+    @Test
+    void placeholderIsAverageColor() throws IOException {
+        // 左半红、右半蓝，按 16x16 采样后红蓝各占一半
+        BufferedImage image = solid(160, 160, Color.BLUE);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 80, 160);
+        g.dispose();
+        assertThat(ImageProbe.probe(encode(image, "png")).placeholder()).isEqualTo("#7f007f");
+    }
+
+    @Test
+    void contentHandlerAddsSizeToIndexedImages() {
+        ImageMetaIndex index = new ImageMetaIndex(null);
+        index.index("att", attachment("https://gcore.jsdelivr.net/gh/owner/repo@master/a.png"));
+        ImageSizeContentHandler handler = new ImageSizeContentHandler(null, index);
+
+        String html = "<p><img src=\"https://cdn.jsdelivr.net/gh/owner/repo@master/a.png\" alt=\"a\"/>"
+                + "<img src='https://example.com/b.png'><img width=\"10\" data-src=\"https://gcore.jsdelivr.net/gh/owner/repo@master/a.png\"></p>";
+        assertThat(handler.rewrite(html)).isEqualTo("<p><img src=\"https://cdn.jsdelivr.net/gh/owner/repo@master/a.png\" alt=\"a\""
+                + " width=\"640\" height=\"480\" style=\"background-color:#336699\" loading=\"lazy\" decoding=\"async\"/>"
+                + "<img src='https://example.com/b.png'><img width=\"10\" data-src=\"https://gcore.jsdelivr.net/gh/owner/repo@master/a.png\"></p>");
+
+        index.index("att", null);
+        assertThat(index.isEmpty()).isTrue();
+    }
+
+    private static Attachment attachment(String permalink) {
+        Metadata metadata = new Metadata();
+        metadata.setName("att");
+        metadata.setAnnotations(Map.of(Constant.ANNOTATION_WIDTH, "640", Constant.ANNOTATION_HEIGHT, "480",
+                Constant.ANNOTATION_PLACEHOLDER, "#336699"));
+        Attachment attachment = new Attachment();
+        attachment.setMetadata(metadata);
+        Attachment.AttachmentStatus status = new Attachment.AttachmentStatus();
+        status.setPermalink(permalink);
+        attachment.setStatus(status);
+        return attachment;
+    }
+
+    private static BufferedImage solid(int width, int height, Color color) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+}
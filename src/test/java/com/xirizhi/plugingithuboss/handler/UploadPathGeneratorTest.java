@@ -0,0 +1,115 @@
+package com.xirizhi.plugingithuboss.handler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.service.GitHubService;
+import com.xirizhi.plugingithuboss.support.FakeGitHubApi;
+import com.xirizhi.plugingithuboss.support.TestWiring;
+
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+class UploadPathGeneratorTest {
+
+    private final ZonedDateTime now = ZonedDateTime.of(2025, 3, 9, 10, 20, 30, 0, ZoneId.systemDefault());
+
+    private static GithubOssPolicySettings settings(String namePrefix) {
+        GithubOssPolicySettings settings = new GithubOssPolicySettings();
+        settings.setOwner("owner");
+        settings.setRepoName("repo");
+        settings.setBranch("master");
+        settings.setPath("/attachments");
+        settings.setNamePrefix(namePrefix);
+        return settings;
+    }
+
+    @Test
+    void keepsOriginalFormatWithoutCollision() {
+        var generator = new UploadPathGenerator(null);
+        var result = generator.reserve(settings("yyyyMM"), "photo.png", now, Set.of());
+        assertThat(result.filePath()).isEqualTo("attachments/202503/photo-09102030.png");
+        assertThat(result.ext()).isEqualTo("png");
+    }
+
+    @Test
+    void appendsCounterInsteadOfBumpingTime() {
+        var generator = new UploadPathGenerator(null);
+        var s = settings("");
+        var first = generator.reserve(s, "photo.png", now, Set.of());
+        var second = generator.reserve(s, "photo.png", now, Set.of());
+        assertThat(first.filename()).isEqualTo("photo-20250309102030.png");
+        assertThat(second.filename()).isEqualTo("photo-20250309102030-1.png");
+
+        generator.release(first.filePath());
+        assertThat(generator.reserve(s, "photo.png", now, Set.of()).filename()).isEqualTo("photo-20250309102030.png");
+    }
+
+    @Test
+    void skipsNamesAlreadyInRepository() {
+        var generator = new UploadPathGenerator(null);
+        var existing = Set.of("photo-20250309102030.png", "photo-20250309102030-1.png");
+        var result = generator.reserve(settings(""), "photo.png", now, existing);
+        assertThat(result.filename()).isEqualTo("photo-20250309102030-2.png");
+    }
+
+    @Test
+    void seesEveryNameInDirectoriesBeyondContentsListingLimit() throws Exception {
+        try (FakeGitHubApi api = FakeGitHubApi.start()) {
+            var s = TestWiring.settings(api);
+            var service = new GitHubService(TestWiring.extensionClient(), TestWiring.metrics());
+            Map<String, byte[]> batch = new HashMap<>();
+            for (int i = 0; i < 1200; i++) {
+                batch.put("attachments/a" + i + ".png", new byte[] {(byte) i});
+            }
+            batch.put("attachments/zz.png", new byte[] {1});
+            api.pushExternal(batch);
+            // Contents API 只返回按名称排序的前 1000 项
+            assertThat(service.listDirectoryIfExists(s, "attachments").block()).doesNotContain("zz.png");
+
+            assertThat(service.listDirectoryNames(s, "attachments").block()).hasSize(1201).contains("zz.png");
+            assertThat(new UploadPathGenerator(service).preload(s).block()).isEqualTo(1201);
+        }
+    }
+
+    @Test
+    void failedListingFailsReservationInsteadOfAssumingEmptyDirectory() throws Exception {
+        try (FakeGitHubApi api = FakeGitHubApi.start()) {
+            var s = TestWiring.settings(api);
+            var generator = new UploadPathGenerator(new GitHubService(TestWiring.extensionClient(), TestWiring.metrics()));
+            api.pushExternal("attachments/photo.png", new byte[] {1});
+
+            api.serverErrorRate(1.0);
+            assertThatThrownBy(() -> generator.reserve(s, "photo.png").block()).hasMessageContaining("502");
+
+            // 失败的查询不缓存，恢复后重新读取目录
+            api.serverErrorRate(0);
+            assertThat(generator.preload(s).block()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void concurrentSameNameReservationsAreUnique() {
+        var generator = new UploadPathGenerator(null);
+        var s = settings("yyyy");
+        Set<String> paths = ConcurrentHashMap.newKeySet();
+        Flux.range(0, 500)
+                .parallel(8)
+                .runOn(Schedulers.parallel())
+                .map(i -> generator.reserve(s, "photo.png", now, Set.of()).filePath())
+                .doOnNext(paths::add)
+                .sequential()
+                .blockLast();
+        assertThat(paths).hasSize(500);
+    }
+}
@@ -0,0 +1,163 @@
+package com.xirizhi.plugingithuboss.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.domain.Sort;
+
+import com.xirizhi.plugingithuboss.support.FakeGitHubApi;
+import com.xirizhi.plugingithuboss.support.TestWiring;
+
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.extension.ListOptions;
+import run.halo.app.extension.Metadata;
+import run.halo.app.extension.ReactiveExtensionClient;
+
+class ArchiveExporterTest {
+
+    FakeGitHubApi api;
+    ReactiveExtensionClient client;
+    ArchiveExporter exporter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        api = FakeGitHubApi.start();
+        client = TestWiring.extensionClient();
+        TestWiring.registerPolicy(client, TestWiring.settings(api));
+        exporter = new ArchiveExporter(client, new GitHubService(client, TestWiring.metrics()));
+
+        api.pushExternal("attachments/a.png", bytes("aaa"));
+        api.pushExternal("attachments/2024/b.txt", bytes("bb"));
+        api.pushExternal("other/c.txt", bytes("c"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        api.close();
+    }
+
+    @Test
+    void exportsPolicyFolderRelativeToRoot() throws Exception {
+        var export = exporter.export(TestWiring.POLICY_NAME, null, false).block();
+
+        assertThat(export.files()).isEqualTo(2);
+        assertThat(export.bytes()).isEqualTo(5);
+        assertThat(export.filename()).endsWith("-attachments.zip");
+        Map<String, byte[]> entries = unzip(export.content());
+        assertThat(entries).containsOnlyKeys("a.png", "2024/b.txt");
+        assertThat(entries.get("2024/b.txt")).isEqualTo(bytes("bb"));
+
+        var whole = exporter.export(TestWiring.POLICY_NAME, "/", false).block();
+        assertThat(unzip(whole.content())).containsOnlyKeys("attachments/a.png", "attachments/2024/b.txt", "other/c.txt");
+    }
+
+    @Test
+    void linkedOnlySkipsUnreferencedFiles() throws Exception {
+        Attachment linked = new Attachment();
+        linked.setMetadata(new Metadata());
+        linked.getMetadata().setName("b");
+        linked.getMetadata().setAnnotations(new HashMap<>(Map.of("path", "attachments/2024/b.txt")));
+        when(client.listAll(eq(Attachment.class), any(ListOptions.class), any(Sort.class))).thenReturn(Flux.just(linked));
+
+        var export = exporter.export(TestWiring.POLICY_NAME, "attachments", true).block();
+
+        assertThat(export.files()).isEqualTo(1);
+        assertThat(unzip(export.content())).containsOnlyKeys("2024/b.txt");
+
+        assertThatThrownBy(() -> exporter.export(TestWiring.POLICY_NAME, "missing", false).block())
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> exporter.export(TestWiring.POLICY_NAME, "other", true).block())
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void readsSourceOnlyAsFastAsConsumerRequests() throws Exception {
+        Random random = new Random(7);
+        Map<String, byte[]> blobs = new LinkedHashMap<>();
+        for (int i = 0; i < 20; i++) {
+            byte[] data = new byte[256 * 1024];
+            random.nextBytes(data);
+            blobs.put("sha" + i, data);
+        }
+        List<ArchiveExporter.FileRef> files = blobs.keySet().stream()
+                .map(sha -> new ArchiveExporter.FileRef("x/" + sha, sha + ".bin", sha, 256 * 1024)).toList();
+        AtomicInteger opened = new AtomicInteger();
+        ArchiveExporter.BlobOpener opener = sha -> {
+            opened.incrementAndGet();
+            return new ByteArrayInputStream(blobs.get(sha));
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            AtomicInteger received = new AtomicInteger();
+            var subscriber = new BaseSubscriber<DataBuffer>() {
+                @Override
+                protected void hookOnSubscribe(Subscription subscription) {
+                    request(2);
+                }
+
+                @Override
+                protected void hookOnNext(DataBuffer buffer) {
+                    received.incrementAndGet();
+                    DataBufferUtils.release(buffer);
+                }
+            };
+            ArchiveExporter.zip(files, opener, executor).subscribe(subscriber);
+            Thread.sleep(300);
+
+            // 只请求了 2 个 64KB 分块，写入方阻塞在第一个文件附近
+            assertThat(received.get()).isEqualTo(2);
+            assertThat(opened.get()).isLessThanOrEqualTo(2);
+            subscriber.dispose();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Map<String, byte[]> unzip(Flux<DataBuffer> content) throws Exception {
+        byte[] zip = DataBufferUtils.join(content).map(buffer -> {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            DataBufferUtils.release(buffer);
+            return bytes;
+        }).block();
+        Map<String, byte[]> entries = new HashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                in.transferTo(out);
+                entries.put(entry.getName(), out.toByteArray());
+            }
+        }
+        return entries;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
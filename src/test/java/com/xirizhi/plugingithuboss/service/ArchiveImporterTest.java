@@ -0,0 +1,158 @@
+package com.xirizhi.plugingithuboss.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import com.xirizhi.plugingithuboss.handler.GithubAttachmentHandler;
+import com.xirizhi.plugingithuboss.handler.UploadPathGenerator;
+import com.xirizhi.plugingithuboss.support.BytesFilePart;
+import com.xirizhi.plugingithuboss.support.FakeGitHubApi;
+import com.xirizhi.plugingithuboss.support.TestWiring;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.extension.ListOptions;
+import run.halo.app.extension.Metadata;
+import run.halo.app.extension.ReactiveExtensionClient;
+
+class ArchiveImporterTest {
+
+    FakeGitHubApi api;
+    ReactiveExtensionClient client;
+    ArchiveImporter importer;
+    List<Attachment> created = new CopyOnWriteArrayList<>();
+    List<Attachment> updated = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        api = FakeGitHubApi.start();
+        client = TestWiring.extensionClient();
+        TestWiring.registerPolicy(client, TestWiring.settings(api));
+        GitHubService service = new GitHubService(client, TestWiring.metrics());
+        importer = new ArchiveImporter(client, service,
+                new GithubAttachmentHandler(client, service, TestWiring.metrics(), null, null, null, null), new UploadPathGenerator(service));
+
+        Metadata metadata = new Metadata();
+        metadata.setName("existing");
+        Map<String, String> annotations = new HashMap<>();
+        annotations.put("path", "attachments/gallery/a.png");
+        annotations.put("sha", "old-sha");
+        annotations.put("width", "10");
+        metadata.setAnnotations(annotations);
+        Attachment existing = new Attachment();
+        existing.setMetadata(metadata);
+        when(client.listAll(eq(Attachment.class), any(ListOptions.class), any(Sort.class))).thenReturn(Flux.just(existing));
+        when(client.create(any(Attachment.class))).thenAnswer(inv -> {
+            created.add(inv.getArgument(0));
+            return Mono.just(inv.getArgument(0));
+        });
+        when(client.update(any(Attachment.class))).thenAnswer(inv -> {
+            updated.add(inv.getArgument(0));
+            return Mono.just(inv.getArgument(0));
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        api.close();
+    }
+
+    @Test
+    void commitsAllEntriesAsOneTree() throws Exception {
+        api.pushExternal("attachments/keep.txt", bytes("keep"));
+        byte[] zip = zip(Map.of(
+                "a.png", bytes("new-a"),
+                "./sub//b.txt", bytes("bb"),
+                "sub/.DS_Store", bytes("x"),
+                "__MACOSX/sub/._b.txt", bytes("x")));
+
+        var result = importer.importArchive(TestWiring.POLICY_NAME, "attachments/gallery", "gallery.zip",
+                new BytesFilePart("gallery.zip", zip).content()).block();
+
+        assertThat(result.files()).isEqualTo(2);
+        assertThat(result.commitSha()).isEqualTo(api.head());
+        assertThat(api.files()).containsOnlyKeys("attachments/keep.txt", "attachments/gallery/a.png", "attachments/gallery/sub/b.txt");
+        assertThat(api.files().get("attachments/gallery/sub/b.txt").data()).isEqualTo(bytes("bb"));
+        assertThat(result.created()).isEqualTo(1);
+        assertThat(created.get(0).getMetadata().getAnnotations()).containsEntry("path", "attachments/gallery/sub/b.txt")
+                .containsEntry("commitSha", result.commitSha());
+        // 已有附件的路径被覆盖：更新 sha，清除旧图片尺寸
+        assertThat(result.updated()).isEqualTo(1);
+        assertThat(updated.get(0).getMetadata().getAnnotations())
+                .containsEntry("sha", FakeGitHubApi.blobSha(bytes("new-a")))
+                .doesNotContainKey("width");
+    }
+
+    @Test
+    void rejectsUnsafeArchiveWithoutCommitting() throws Exception {
+        assertThat(ArchiveImporter.entryPath("./a//b.png")).isEqualTo("a/b.png");
+        assertThat(ArchiveImporter.entryPath("a\\b.png")).isEqualTo("a/b.png");
+        assertThat(ArchiveImporter.entryPath("__MACOSX/._a.png")).isNull();
+        assertThatThrownBy(() -> ArchiveImporter.entryPath("/etc/passwd")).isInstanceOf(IllegalArgumentException.class);
+
+        String head = api.head();
+        byte[] zip = zip(Map.of("ok.png", bytes("1"), "../escape.png", bytes("2")));
+        assertThatThrownBy(() -> importer.importArchive(TestWiring.POLICY_NAME, null, "bad.zip",
+                new BytesFilePart("bad.zip", zip).content()).block())
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(api.head()).isEqualTo(head);
+        assertThat(created).isEmpty();
+    }
+
+    @Test
+    void decompressesOnDemandWithoutReadingWholeArchive() throws Exception {
+        Map<String, byte[]> files = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 40; i++) {
+            byte[] data = new byte[64 * 1024];
+            random.nextBytes(data);
+            files.put("f" + i + ".bin", data);
+        }
+        byte[] zip = zip(files);
+        AtomicInteger emitted = new AtomicInteger();
+        var content = new BytesFilePart("big.zip", zip).content().doOnNext(b -> emitted.incrementAndGet());
+
+        var first = ArchiveImporter.entries(content, "attachments", Long.MAX_VALUE).take(1).collectList().block();
+
+        assertThat(first).hasSize(1);
+        assertThat(first.get(0).data()).hasSize(64 * 1024);
+        // 8KB 分片共 300+ 个，只读取了第一个文件附近的数据
+        assertThat(emitted.get()).isLessThan(zip.length / 8192 / 4);
+    }
+
+    private static byte[] zip(Map<String, byte[]> entries) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (var entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue());
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
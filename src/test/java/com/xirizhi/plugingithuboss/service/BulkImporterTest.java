@@ -0,0 +1,113 @@
+package com.xirizhi.plugingithuboss.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import com.xirizhi.plugingithuboss.handler.GithubAttachmentHandler;
+import com.xirizhi.plugingithuboss.support.FakeGitHubApi;
+import com.xirizhi.plugingithuboss.support.TestWiring;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.extension.ListOptions;
+import run.halo.app.extension.Metadata;
+import run.halo.app.extension.ReactiveExtensionClient;
+
+class BulkImporterTest {
+
+    FakeGitHubApi api;
+    ReactiveExtensionClient client;
+    BulkImporter importer;
+    List<Attachment> created = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        api = FakeGitHubApi.start();
+        client = TestWiring.extensionClient();
+        TestWiring.registerPolicy(client, TestWiring.settings(api));
+        GitHubService service = new GitHubService(client, TestWiring.metrics());
+        importer = new BulkImporter(client, service, new GithubAttachmentHandler(client, service, TestWiring.metrics(), null, null, null, null));
+
+        Metadata metadata = new Metadata();
+        metadata.setName("existing");
+        Map<String, String> annotations = new HashMap<>();
+        annotations.put("path", "attachments/2025/linked.png");
+        annotations.put("sha", "old-sha");
+        metadata.setAnnotations(annotations);
+        Attachment existing = new Attachment();
+        existing.setMetadata(metadata);
+        when(client.listAll(eq(Attachment.class), any(ListOptions.class), any(Sort.class))).thenReturn(Flux.just(existing));
+        when(client.create(any(Attachment.class))).thenAnswer(inv -> {
+            created.add(inv.getArgument(0));
+            return Mono.just(inv.getArgument(0));
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        api.close();
+    }
+
+    @Test
+    void importsUnlinkedFilesMatchingFilters() throws Exception {
+        api.pushExternal("attachments/2025/linked.png", bytes("1"));
+        api.pushExternal("attachments/2025/a.png", bytes("22"));
+        api.pushExternal("attachments/2025/notes.txt", bytes("333"));
+        api.pushExternal("attachments/2026/03/b.JPG", bytes("4444"));
+        api.pushExternal("attachments/2026/03/huge.png", bytes("x".repeat(100)));
+        api.pushExternal("other/c.png", bytes("5"));
+
+        var job = importer.start(new BulkImporter.ImportRequest(TestWiring.POLICY_NAME, null, "png,jpg", null, 50L)).block();
+        await(() -> !BulkImporter.STATE_RUNNING.equals(job.getState()));
+
+        assertThat(job.getState()).isEqualTo(BulkImporter.STATE_SUCCEEDED);
+        assertThat(job.getDirsScanned().get()).isEqualTo(4);
+        assertThat(job.getFilesFound().get()).isEqualTo(5);
+        assertThat(job.getSkippedLinked().get()).isEqualTo(1);
+        assertThat(job.getCreated().get()).isEqualTo(2);
+        assertThat(created).extracting(a -> a.getMetadata().getAnnotations().get("path"))
+                .containsExactlyInAnyOrder("attachments/2025/a.png", "attachments/2026/03/b.JPG");
+        assertThat(importer.get(job.getId()).block()).isSameAs(job);
+    }
+
+    @Test
+    void rejectsSecondJobForSamePolicyWhileRunning() {
+        api.pushExternal("attachments/a.png", bytes("1"));
+        api.latencyMs(300);
+        var job = importer.start(new BulkImporter.ImportRequest(TestWiring.POLICY_NAME, null, null, null, null)).block();
+
+        assertThatThrownBy(() -> importer.start(new BulkImporter.ImportRequest(TestWiring.POLICY_NAME, null, null, null, null)).block())
+                .isInstanceOf(IllegalStateException.class);
+
+        importer.cancel(job.getId()).block();
+        assertThat(job.getState()).isEqualTo(BulkImporter.STATE_CANCELLED);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("等待条件超时").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.xirizhi.plugingithuboss.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.support.TestWiring;
+
+import run.halo.app.extension.ConfigMap;
+import run.halo.app.infra.utils.JsonUtils;
+
+class CdnProvidersTest {
+
+    private final GitHubService service = new GitHubService(TestWiring.extensionClient(), TestWiring.metrics());
+
+    @AfterEach
+    void tearDown() {
+        service.cdnHealth().clear();
+    }
+
+    private static GithubOssPolicySettings settings(String providers) {
+        GithubOssPolicySettings settings = new GithubOssPolicySettings();
+        settings.setOwner("owner");
+        settings.setRepoName("repo");
+        settings.setBranch("master");
+        settings.setPinCommit(true);
+        settings.setCdnProviders(providers);
+        return settings;
+    }
+
+    @Test
+    void expandsProvidersInConfiguredOrder() {
+        // 未知名称与缺少 cdnProxyUrl 的 proxy 被忽略，重复的只保留第一次
+        var providers = CdnProviders.resolve(settings("statically, pages ,JSDELIVR,raw,bogus,proxy,pages"), "fastly.jsdelivr.net");
+
+        assertThat(providers).extracting(CdnProviders.Provider::id).containsExactly("statically", "pages", "jsdelivr", "raw");
+        assertThat(providers).extracting(CdnProviders.Provider::host)
+                .containsExactly("cdn.statically.io", "owner.github.io", "fastly.jsdelivr.net", "raw.githubusercontent.com");
+        assertThat(providers.get(0).pattern().format("a.png", "abc")).isEqualTo("https://cdn.statically.io/gh/owner/repo/abc/a.png");
+        assertThat(providers.get(0).pattern().template()).isEqualTo("https://cdn.statically.io/gh/owner/repo/{ref}/{path}");
+        // Pages 只发布分支内容，提交链接与分支链接相同
+        assertThat(providers.get(1).pattern().format("a.png", "abc")).isEqualTo("https://owner.github.io/repo/a.png");
+        assertThat(providers.get(1).pattern().template()).isEqualTo("https://owner.github.io/repo/{path}");
+        assertThat(providers.get(2).pattern().format("a.png", null)).isEqualTo("https://fastly.jsdelivr.net/gh/owner/repo@master/a.png");
+
+        GithubOssPolicySettings custom = settings("pages,proxy");
+        custom.setCdnDomain("https://img.example.com/");
+        custom.setCdnProxyUrl("https://proxy.example.com/");
+        assertThat(CdnProviders.resolve(custom, null)).extracting(p -> p.pattern().format("a.png", null))
+                .containsExactly("https://img.example.com/a.png", "https://proxy.example.com/owner/repo/master/a.png");
+    }
+
+    @Test
+    void fallsBackToPreviousDefaultAndSkipsGithubOnlyProvidersElsewhere() {
+        assertThat(CdnProviders.resolve(settings(null), "")).singleElement()
+                .satisfies(p -> assertThat(p.pattern().format("a.png", null)).isEqualTo("https://gcore.jsdelivr.net/gh/owner/repo@master/a.png"));
+
+        GithubOssPolicySettings gitea = settings("jsdelivr,statically,proxy,raw");
+        gitea.setForgeType("gitea");
+        gitea.setApiBaseUrl("https://git.example.com/api/v1");
+        gitea.setCdnProxyUrl("https://proxy.example.com");
+        assertThat(CdnProviders.resolve(gitea, null)).extracting(CdnProviders.Provider::id).containsExactly("proxy", "raw");
+
+        gitea.setCdnProviders("pages");
+        gitea.setCdnUrlTemplate("https://cdn.example.com/{path}");
+        assertThat(CdnProviders.resolve(gitea, null)).extracting(CdnProviders.Provider::id).containsExactly("custom");
+    }
+
+    @Test
+    void permalinksMoveToNextHealthyProvider() {
+        PermalinkCache cache = new PermalinkCache(service);
+        ConfigMap config = TestWiring.configMap("policy-config", Map.of("default", JsonUtils.objectToJson(settings("jsdelivr,statically,raw"))));
+        CdnHealth health = service.cdnHealth();
+
+        assertThat(cache.pattern(config).block().format("a.png", null)).startsWith("https://gcore.jsdelivr.net/");
+
+        // 一次失败不切换，连续两次后切到下一个
+        health.record("gcore.jsdelivr.net", 10000, "connect: timed out");
+        assertThat(cache.pattern(config).block().format("a.png", null)).startsWith("https://gcore.jsdelivr.net/");
+        health.record("gcore.jsdelivr.net", 10000, "connect: timed out");
+        assertThat(cache.pattern(config).block().format("a.png", null)).startsWith("https://cdn.statically.io/");
+
+        // 全部不可用时仍使用第一个
+        for (String host : new String[] {"cdn.statically.io", "raw.githubusercontent.com"}) {
+            health.record(host, 10000, "HTTP 503");
+            health.record(host, 10000, "HTTP 503");
+        }
+        assertThat(cache.pattern(config).block().format("a.png", null)).startsWith("https://gcore.jsdelivr.net/");
+
+        health.record("raw.githubusercontent.com", 120, null);
+        assertThat(cache.pattern(config).block().format("a.png", null)).startsWith("https://raw.githubusercontent.com/");
+        assertThat(health.snapshot()).filteredOn(h -> !h.healthy()).extracting(CdnHealth.HostHealth::host)
+                .containsExactly("cdn.statically.io", "gcore.jsdelivr.net");
+    }
+}
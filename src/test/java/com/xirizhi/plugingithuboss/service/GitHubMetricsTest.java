@@ -0,0 +1,55 @@
+package com.xirizhi.plugingithuboss.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.support.TestWiring;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import reactor.core.publisher.Mono;
+
+class GitHubMetricsTest {
+
+    @Test
+    void observationsAndTimersKeepConsistentTagKeysPerName() {
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        ObservationRegistry observations = ObservationRegistry.create();
+        // 与 Spring Boot 一致：Observation 结束时生成以其名称命名的 Timer
+        observations.observationConfig().observationHandler(new DefaultMeterObservationHandler(meters));
+        GitHubMetrics metrics = TestWiring.metrics(meters, observations);
+        GithubOssPolicySettings settings = new GithubOssPolicySettings();
+        settings.setOwner("owner");
+        settings.setRepoName("repo");
+
+        metrics.observe("upload", settings, stages -> metrics.stage("multipart_read", "upload", settings, Mono.just(1))).block();
+        metrics.observe("upload", settings, stages -> Mono.error(new IllegalStateException("boom")))
+                .onErrorResume(e -> Mono.empty()).block();
+        metrics.observe("upload", settings, stages -> metrics.stage("multipart_read", "upload", settings, Mono.never()))
+                .subscribe().dispose();
+
+        // Prometheus 要求同名指标的标签键一致
+        Map<String, Set<Set<String>>> tagKeys = new HashMap<>();
+        for (Meter meter : meters.getMeters()) {
+            Set<String> keys = meter.getId().getTags().stream().map(Tag::getKey).collect(Collectors.toSet());
+            tagKeys.computeIfAbsent(meter.getId().getName(), k -> new HashSet<>()).add(keys);
+        }
+        assertThat(tagKeys).allSatisfy((name, keys) -> assertThat(keys).as(name).hasSize(1));
+
+        // 取消同时记入 Timer 与 span
+        assertThat(meters.find(GitHubMetrics.OPERATION_TIMER).tag("status", "cancelled").timer().count()).isEqualTo(1);
+        assertThat(meters.find(GitHubMetrics.OPERATION_SPAN).tag("status", "cancelled").timer().count()).isEqualTo(1);
+        assertThat(meters.find(GitHubMetrics.STAGE_SPAN).tag("status", "cancelled").timer().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,196 @@
+package com.xirizhi.plugingithuboss.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.xirizhi.plugingithuboss.exception.PathConflictException;
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.extension.theme.NetworkConfig;
+import com.xirizhi.plugingithuboss.support.FakeGitHubApi;
+import com.xirizhi.plugingithuboss.support.TestWiring;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import run.halo.app.extension.ConfigMap;
+import run.halo.app.extension.ReactiveExtensionClient;
+
+class GitHubServiceFakeApiTest {
+
+    FakeGitHubApi api;
+    GitHubService service;
+    GithubOssPolicySettings settings;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        api = FakeGitHubApi.start();
+        service = new GitHubService(TestWiring.extensionClient(), TestWiring.metrics());
+        settings = TestWiring.settings(api);
+    }
+
+    @AfterEach
+    void tearDown() {
+        api.close();
+    }
+
+    @Test
+    void uploadListAndDeleteRoundTrip() {
+        byte[] data = "hello".getBytes(StandardCharsets.UTF_8);
+        var result = service.uploadContent(settings, "attachments/a.txt", data, "upload").block();
+
+        assertThat(result).isNotNull();
+        assertThat(result.sha()).isEqualTo(FakeGitHubApi.blobSha(data));
+        assertThat(result.commitSha()).hasSize(40);
+        assertThat(service.fetchContentSha(settings, "attachments/a.txt").block()).isEqualTo(result.sha());
+        assertThat(service.listDirectoryContents(settings, "attachments").block()).contains("\"a.txt\"");
+
+        service.deleteContent(settings, "attachments/a.txt", result.sha(), "delete").block();
+        assertThat(api.files()).isEmpty();
+    }
+
+    @Test
+    void commitsRebaseOntoMovedHead() {
+        api.pushExternal("other/x.txt", new byte[] {1});
+        String before = api.head();
+
+        var result = service.uploadContent(settings, "attachments/c.txt", new byte[] {2}, "upload").block();
+
+        assertThat(result.commitSha()).isEqualTo(api.head()).isNotEqualTo(before);
+        assertThat(api.files()).containsKeys("other/x.txt", "attachments/c.txt");
+    }
+
+    @Test
+    void uploadNeverOverwritesExistingFile() {
+        api.pushExternal("attachments/d.txt", new byte[] {1});
+        String before = api.head();
+
+        assertThatThrownBy(() -> service.uploadContent(settings, "attachments/d.txt", new byte[] {2}, "upload").block())
+                .isInstanceOf(PathConflictException.class);
+        assertThat(api.head()).isEqualTo(before);
+        assertThat(api.files().get("attachments/d.txt").data()).containsExactly(1);
+
+        // 内容相同视为此前已提交成功（如推送后重试），不再产生提交
+        var result = service.uploadContent(settings, "attachments/d.txt", new byte[] {1}, "upload").block();
+        assertThat(result.sha()).isEqualTo(FakeGitHubApi.blobSha(new byte[] {1}));
+        assertThat(api.head()).isEqualTo(before);
+    }
+
+    @Test
+    void deleteOnlyRemovesFileWithMatchingSha() {
+        api.pushExternal("attachments/e.txt", new byte[] {1});
+
+        assertThatThrownBy(() -> service.deleteContent(settings, "attachments/e.txt", FakeGitHubApi.blobSha(new byte[] {2}), "delete").block())
+                .hasMessageContaining("sha 不一致");
+        assertThat(api.files()).containsKey("attachments/e.txt");
+
+        service.deleteContent(settings, "attachments/e.txt", FakeGitHubApi.blobSha(new byte[] {1}), "delete").block();
+        assertThat(api.files()).doesNotContainKey("attachments/e.txt");
+
+        // 文件已不存在时视为成功，不产生提交
+        String head = api.head();
+        service.deleteContent(settings, "attachments/e.txt", FakeGitHubApi.blobSha(new byte[] {1}), "delete").block();
+        assertThat(api.head()).isEqualTo(head);
+    }
+
+    @Test
+    void parallelCommitsSurviveConcurrentPushesFromOtherNodes() throws Exception {
+        api.latencyMs(2);
+        // 另一个节点持续推送提交，使本节点的 ref 更新不断遇到非快进
+        Thread otherNode = new Thread(() -> {
+            for (int i = 0; i < 20 && !Thread.currentThread().isInterrupted(); i++) {
+                api.pushExternal("other/n-" + i + ".txt", new byte[] {(byte) i});
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        otherNode.start();
+        Flux.range(0, 16)
+                .flatMap(i -> service.uploadContent(settings, "attachments/p-" + i + ".txt", new byte[] {(byte) i}, "upload"), 8)
+                .blockLast(Duration.ofMinutes(1));
+        otherNode.join();
+
+        assertThat(api.files().keySet()).filteredOn(p -> p.startsWith("attachments/")).hasSize(16);
+        assertThat(api.files().keySet()).filteredOn(p -> p.startsWith("other/")).hasSize(20);
+        assertThat(api.conflicts()).isZero();
+    }
+
+    @Test
+    void cancellingUploadStopsFurtherRequests() throws Exception {
+        CountDownLatch arrived = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        api.holdBlobUploads(arrived, release);
+        String head = api.head();
+
+        var subscription = service.uploadContent(settings, "attachments/x.txt", new byte[] {1}, "upload").subscribe();
+        assertThat(arrived.await(10, TimeUnit.SECONDS)).isTrue();
+        subscription.dispose();
+        release.countDown();
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!api.idle()) {
+            assertThat(System.nanoTime()).as("等待 blob 请求处理完成").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+        // 再完成一次请求往返，取消前的 blob 响应若仍触发后续步骤，其请求会先于此到达
+        service.checkConnectivity(settings).block();
+
+        // 只有取消前已发出的 blob 请求与上面的连通性请求到达服务端，分支未变化
+        assertThat(api.requests()).isEqualTo(2);
+        assertThat(api.head()).isEqualTo(head);
+        assertThat(api.files()).doesNotContainKey("attachments/x.txt");
+    }
+
+    @Test
+    void connectivityUsesConfiguredApiBase() {
+        assertThat(service.checkConnectivity(settings).block()).isTrue();
+    }
+
+    @Test
+    void serverErrorsAndRateLimitSurfaceAsErrors() {
+        api.serverErrorRate(1.0);
+        assertThatThrownBy(() -> service.uploadContent(settings, "attachments/b.txt", new byte[] {1}, "upload").block())
+                .hasMessageContaining("502");
+
+        api.serverErrorRate(0).rateLimit(0);
+        assertThatThrownBy(() -> service.uploadContent(settings, "attachments/b.txt", new byte[] {1}, "upload").block())
+                .hasMessageContaining("403");
+    }
+
+    @Test
+    void proxyPasswordIsMaskedOnReadAndKeptWhenMaskIsSavedBack() {
+        ReactiveExtensionClient client = TestWiring.extensionClient();
+        when(client.update(any(ConfigMap.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+        GitHubService proxyService = new GitHubService(client, TestWiring.metrics());
+
+        NetworkConfig cfg = new NetworkConfig();
+        cfg.setEnabled(false);
+        cfg.setProxyPath("127.0.0.1:7890");
+        cfg.setProxyUsername("user");
+        cfg.setProxyPassword("secret");
+        cfg.setConnectTimeoutMs(0);
+        assertThat(proxyService.saveProxyConfig(cfg).block().getProxyPassword()).isEqualTo(GitHubService.PASSWORD_MASK);
+
+        NetworkConfig read = proxyService.getProxyConfigMasked().block();
+        assertThat(read.getProxyPassword()).isEqualTo(GitHubService.PASSWORD_MASK);
+        assertThat(read.getConnectTimeoutMs()).isNull();
+
+        // 前端把读到的掩码原样提交回来时沿用已保存的密码
+        read.setTimeoutMs(20000);
+        proxyService.saveProxyConfig(read).block();
+        NetworkConfig stored = proxyService.getProxyConfig().block();
+        assertThat(stored.getProxyPassword()).isEqualTo("secret");
+        assertThat(stored.getTimeoutMs()).isEqualTo(20000);
+    }
+}
@@ -0,0 +1,146 @@
+package com.xirizhi.plugingithuboss.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Sort;
+
+import com.xirizhi.plugingithuboss.config.Constant;
+import com.xirizhi.plugingithuboss.support.FakeGitHubApi;
+import com.xirizhi.plugingithuboss.support.TestWiring;
+
+import reactor.core.publisher.Flux;
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.extension.ListOptions;
+import run.halo.app.extension.Metadata;
+import run.halo.app.extension.ReactiveExtensionClient;
+
+class HistoryCompactorTest {
+
+    @TempDir
+    Path dir;
+
+    FakeGitHubApi api;
+    HistoryCompactor compactor;
+    List<Attachment> attachments = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        api = FakeGitHubApi.start();
+        ReactiveExtensionClient client = TestWiring.extensionClient();
+        TestWiring.registerPolicy(client, TestWiring.settings(api));
+        compactor = new HistoryCompactor(client, new GitHubService(client, TestWiring.metrics()), null, dir);
+
+        api.pushExternal("attachments/a.png", bytes("a1"));
+        api.pushExternal("attachments/a.png", bytes("a2"));
+        api.pushExternal("attachments/2025/b.png", bytes("b"));
+        api.pushExternal("attachments/old.png", bytes("old"));
+        when(client.listAll(eq(Attachment.class), any(ListOptions.class), any(Sort.class)))
+                .thenAnswer(inv -> Flux.fromIterable(attachments));
+    }
+
+    @AfterEach
+    void tearDown() {
+        api.close();
+    }
+
+    @Test
+    void replacesHistoryWithSnapshotAndKeepsBackup() throws Exception {
+        attachments.add(attachment("att-a", "attachments/a.png", null));
+        attachments.add(attachment("att-b", "attachments/2025/b.png", "pinned"));
+        String previousHead = api.head();
+        Map<String, byte[]> files = Map.copyOf(api.files());
+        assertThat(api.historyLength(previousHead)).isGreaterThan(1);
+
+        var report = compactor.compact(TestWiring.POLICY_NAME, null).block();
+
+        assertThat(report.getState()).isEqualTo(HistoryCompactor.STATE_COMPACTED);
+        assertThat(report.getPreviousHead()).isEqualTo(previousHead);
+        assertThat(report.getLinked()).isEqualTo(2);
+        assertThat(report.getPinned()).isEqualTo(1);
+        assertThat(report.getMissingCount()).isZero();
+        assertThat(api.head()).isEqualTo(report.getCommit());
+        assertThat(api.historyLength(api.head())).isEqualTo(1);
+        assertThat(api.files()).containsOnlyKeys(files.keySet());
+        assertThat(report.getBackupBranch()).startsWith("master-history-");
+        assertThat(api.branches()).containsEntry(report.getBackupBranch(), previousHead);
+
+        // 报告落盘，重启后仍可查询
+        assertThat(Files.exists(dir.resolve(TestWiring.POLICY_NAME + ".report.json"))).isTrue();
+        assertThat(compactor.lastReport(TestWiring.POLICY_NAME).block().getCommit()).isEqualTo(report.getCommit());
+    }
+
+    @Test
+    void refusesToDropHistoryWhenLinksArePinned() {
+        attachments.add(attachment("att-b", "attachments/2025/b.png", "pinned"));
+        String previousHead = api.head();
+
+        var report = compactor.compact(TestWiring.POLICY_NAME, false).block();
+
+        assertThat(report.getState()).isEqualTo(HistoryCompactor.STATE_FAILED);
+        assertThat(report.getError()).contains("必须备份");
+        assertThat(api.head()).isEqualTo(previousHead);
+        assertThat(api.branches()).isEmpty();
+    }
+
+    @Test
+    void rollsBackWhenLinkedPathIsLost() {
+        attachments.add(attachment("att-a", "attachments/a.png", null));
+        attachments.add(attachment("att-b", "attachments/2025/b.png", null));
+        api.dropFromRootCommits("attachments/2025/b.png");
+        String previousHead = api.head();
+
+        var report = compactor.compact(TestWiring.POLICY_NAME, false).block();
+
+        assertThat(report.getState()).isEqualTo(HistoryCompactor.STATE_ROLLED_BACK);
+        assertThat(report.getMissing()).containsExactly("attachments/2025/b.png");
+        assertThat(api.head()).isEqualTo(previousHead);
+        assertThat(api.historyLength(api.head())).isGreaterThan(1);
+    }
+
+    @Test
+    void reportsPathsMissingBeforeCompactionWithoutRollingBack() {
+        attachments.add(attachment("att-a", "attachments/a.png", null));
+        attachments.add(attachment("att-x", "attachments/gone.png", null));
+
+        var report = compactor.compact(TestWiring.POLICY_NAME, false).block();
+
+        assertThat(report.getState()).isEqualTo(HistoryCompactor.STATE_COMPACTED);
+        assertThat(report.getMissingCount()).isZero();
+        assertThat(report.getAlreadyMissing()).containsExactly("attachments/gone.png");
+        assertThat(api.head()).isEqualTo(report.getCommit());
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Attachment attachment(String name, String path, String commitSha) {
+        Metadata metadata = new Metadata();
+        metadata.setName(name);
+        Map<String, String> annotations = new HashMap<>();
+        annotations.put("path", path);
+        if (commitSha != null) {
+            annotations.put(Constant.ANNOTATION_COMMIT_SHA, commitSha);
+        }
+        metadata.setAnnotations(annotations);
+        Attachment attachment = new Attachment();
+        attachment.setMetadata(metadata);
+        attachment.setSpec(new Attachment.AttachmentSpec());
+        return attachment;
+    }
+}
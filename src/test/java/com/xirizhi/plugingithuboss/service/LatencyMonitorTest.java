@@ -0,0 +1,109 @@
+package com.xirizhi.plugingithuboss.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import com.xirizhi.plugingithuboss.support.TestWiring;
+
+class LatencyMonitorTest {
+
+    private static LatencyMonitor.Sample ok(long dns, long total) {
+        return new LatencyMonitor.Sample(0, ProxyRouter.DIRECT, dns, 5, -1, 20, 30, total, 200, null);
+    }
+
+    @Test
+    void summarizesPercentilesPerPhase() {
+        List<LatencyMonitor.Sample> samples = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            samples.add(ok(i, 100 + i));
+        }
+        samples.add(new LatencyMonitor.Sample(0, ProxyRouter.DIRECT, 1, -1, -1, -1, -1, 10_000, -1, "connect: timed out"));
+
+        var summary = LatencyMonitor.summarize("github.com", samples);
+
+        assertThat(summary.samples()).isEqualTo(101);
+        assertThat(summary.failures()).isEqualTo(1);
+        assertThat(summary.phases()).containsOnlyKeys("dns", "connect", "tls", "ttfb", "total");
+        assertThat(summary.phases().get("dns")).isEqualTo(new LatencyMonitor.Percentiles(50, 95, 99));
+        // 失败采样的总耗时不计入
+        assertThat(summary.phases().get("total").p99()).isEqualTo(199);
+        assertThat(summary.last().error()).startsWith("connect");
+    }
+
+    @Test
+    void keepsBoundedHistoryPerConfiguredHost() {
+        LatencyMonitor monitor = new LatencyMonitor(null, TestWiring.metrics());
+        for (int i = 0; i < 300; i++) {
+            monitor.record("github.com", ok(i, 100));
+        }
+        assertThat(monitor.history("GitHub.com", 1000)).hasSize(240);
+        assertThat(monitor.history("github.com", 2)).extracting(LatencyMonitor.Sample::dnsMs).containsExactly(298L, 299L);
+        assertThat(LatencyMonitor.hosts(" a.com, B.com\na.com ")).containsExactly("a.com", "b.com");
+        assertThat(LatencyMonitor.hosts(null)).isEqualTo(LatencyMonitor.DEFAULT_HOSTS);
+    }
+
+    @Test
+    void attributesFailureToPhase() throws Exception {
+        var dnsFailure = LatencyMonitor.measure("githuboss-monitor.invalid", Proxy.NO_PROXY, 1000);
+        assertThat(dnsFailure.error()).startsWith("dns");
+        assertThat(dnsFailure.connectMs()).isEqualTo(-1);
+
+        // 代理接受连接但拒绝 CONNECT：connect 阶段有耗时，失败归到 proxy 阶段，本地 DNS 不在链路上
+        try (ServerSocket proxy = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread t = new Thread(() -> {
+                try (Socket s = proxy.accept()) {
+                    s.getInputStream().read(new byte[1024]);
+                    s.getOutputStream().write("HTTP/1.1 403 Forbidden\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                } catch (Exception ignored) {
+                    // 测试结束
+                }
+            });
+            t.setDaemon(true);
+            t.start();
+            var refused = LatencyMonitor.measure("github.com",
+                    new Proxy(Proxy.Type.HTTP, new InetSocketAddress(InetAddress.getLoopbackAddress(), proxy.getLocalPort())), 2000);
+            assertThat(refused.route()).isEqualTo(ProxyRouter.PROXY);
+            assertThat(refused.dnsMs()).isEqualTo(-1);
+            assertThat(refused.connectMs()).isGreaterThanOrEqualTo(0);
+            assertThat(refused.error()).startsWith("proxy").contains("403");
+        }
+    }
+
+    @Test
+    void measuresBridgedProxyAgainstUpstream() throws Exception {
+        // 上游 HTTP 代理要求认证：测量应直连上游并带上认证头，而不是只测到本机代理桥
+        AtomicReference<String> request = new AtomicReference<>();
+        try (ServerSocket upstream = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             ProxyBridge bridge = new ProxyBridge(false, new InetSocketAddress(InetAddress.getLoopbackAddress(), upstream.getLocalPort()),
+                     "user", "secret", 2000)) {
+            Thread t = new Thread(() -> {
+                try (Socket s = upstream.accept()) {
+                    request.set(ProxyBridge.readHead(s.getInputStream()));
+                    s.getOutputStream().write("HTTP/1.1 403 Forbidden\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                } catch (Exception ignored) {
+                    // 测试结束
+                }
+            });
+            t.setDaemon(true);
+            t.start();
+
+            var sample = LatencyMonitor.measure("github.com", new Proxy(Proxy.Type.HTTP, bridge.address()), bridge, 2000);
+
+            assertThat(sample.route()).isEqualTo(ProxyRouter.PROXY);
+            assertThat(sample.connectMs()).isGreaterThanOrEqualTo(0);
+            assertThat(sample.error()).startsWith("proxy").contains("403");
+            assertThat(request.get()).startsWith("CONNECT github.com:443").contains("Proxy-Authorization: Basic ");
+        }
+    }
+}
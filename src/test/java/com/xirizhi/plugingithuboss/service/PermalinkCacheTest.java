@@ -0,0 +1,117 @@
+package com.xirizhi.plugingithuboss.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.xirizhi.plugingithuboss.config.Constant;
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.service.forge.ForgeBackends;
+import com.xirizhi.plugingithuboss.support.TestWiring;
+
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.extension.ConfigMap;
+import run.halo.app.extension.Metadata;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.app.extension.controller.Reconciler;
+import run.halo.app.infra.utils.JsonUtils;
+
+class PermalinkCacheTest {
+
+    private final ReactiveExtensionClient client = TestWiring.extensionClient();
+    private final GitHubService service = new GitHubService(client, TestWiring.metrics());
+    private final PermalinkCache cache = new PermalinkCache(service);
+
+    private static GithubOssPolicySettings settings() {
+        GithubOssPolicySettings settings = new GithubOssPolicySettings();
+        settings.setOwner("owner");
+        settings.setRepoName("repo");
+        settings.setBranch("master");
+        settings.setPinCommit(true);
+        return settings;
+    }
+
+    private static ConfigMap policyConfig(GithubOssPolicySettings settings) {
+        return TestWiring.configMap("policy-config", Map.of("default", JsonUtils.objectToJson(settings)));
+    }
+
+    private static Attachment attachment(String path, String commitSha) {
+        Metadata metadata = new Metadata();
+        metadata.setName("att");
+        Map<String, String> annotations = new HashMap<>();
+        annotations.put("path", path);
+        if (commitSha != null) {
+            annotations.put(Constant.ANNOTATION_COMMIT_SHA, commitSha);
+        }
+        metadata.setAnnotations(annotations);
+        Attachment attachment = new Attachment();
+        attachment.setMetadata(metadata);
+        return attachment;
+    }
+
+    @Test
+    void matchesUncachedUrlsForEveryBackend() {
+        for (String forge : new String[] {"github", "ghes", "gitea"}) {
+            for (String template : new String[] {null, "https://cdn.example.com/{owner}/{repo}/{ref}/{path}?b={branch}"}) {
+                GithubOssPolicySettings s = settings();
+                s.setForgeType(forge);
+                s.setApiBaseUrl("gitea".equals(forge) ? "https://git.example.com/api/v1" : "https://ghe.example.com/api/v3");
+                s.setCdnUrlTemplate(template);
+                CdnUrlPattern pattern = cache.pattern(policyConfig(s)).block();
+                for (String commit : new String[] {null, "abc123"}) {
+                    String expected = "github".equals(forge) && template == null
+                            ? "https://gcore.jsdelivr.net/gh/owner/repo@" + (commit == null ? "master" : commit) + "/a/b.png"
+                            : legacyUrl(s, "a/b.png", commit);
+                    assertThat(pattern.format("a/b.png", commit)).isEqualTo(expected);
+                }
+            }
+        }
+    }
+
+    @Test
+    void reusesPatternUntilPolicyOrPluginConfigChanges() {
+        ConfigMap config = policyConfig(settings());
+        assertThat(cache.permalink(attachment("a.png", null), config).block())
+                .hasToString("https://gcore.jsdelivr.net/gh/owner/repo@master/a.png");
+        assertThat(cache.permalink(attachment("b.png", "c0ffee"), config).block())
+                .hasToString("https://gcore.jsdelivr.net/gh/owner/repo@c0ffee/b.png");
+        verify(client, times(1)).fetch(ConfigMap.class, Constant.PLUGIN_GITHUBOSS_CONFIGMAP);
+
+        GithubOssPolicySettings changed = settings();
+        changed.setBranch("gh-pages");
+        assertThat(cache.permalink(attachment("a.png", null), policyConfig(changed)).block())
+                .hasToString("https://gcore.jsdelivr.net/gh/owner/repo@gh-pages/a.png");
+        verify(client, times(2)).fetch(ConfigMap.class, Constant.PLUGIN_GITHUBOSS_CONFIGMAP);
+
+        cache.reconcile(new Reconciler.Request(Constant.PLUGIN_GITHUBOSS_CONFIGMAP));
+        cache.permalink(attachment("a.png", null), policyConfig(changed)).block();
+        verify(client, times(3)).fetch(ConfigMap.class, Constant.PLUGIN_GITHUBOSS_CONFIGMAP);
+    }
+
+    @Test
+    void pendingUploadsPointAtOutboxUntilPushed() {
+        ConfigMap config = policyConfig(settings());
+        Attachment pending = attachment("a.png", null);
+        pending.getMetadata().getAnnotations().put(Constant.ANNOTATION_PENDING, "entry");
+        assertThat(cache.permalink(pending, config).block()).hasToString("/apis/githubOs.halo.run/v1alpha1/outbox/att");
+
+        pending.getMetadata().getAnnotations().remove(Constant.ANNOTATION_PENDING);
+        pending.getMetadata().getAnnotations().put(Constant.ANNOTATION_COMMIT_SHA, "c0ffee");
+        assertThat(cache.permalink(pending, config).block()).hasToString("https://gcore.jsdelivr.net/gh/owner/repo@c0ffee/a.png");
+    }
+
+    // 引入缓存前 buildCdnUrl 的拼接方式，用于核对预展开结果一致
+    private static String legacyUrl(GithubOssPolicySettings s, String path, String commitSha) {
+        boolean pinned = commitSha != null;
+        String ref = pinned ? commitSha : s.getBranch();
+        if (s.getCdnUrlTemplate() != null) {
+            return ForgeBackends.fillTemplate(s.getCdnUrlTemplate(), s, s.getBranch(), ref, path);
+        }
+        return ForgeBackends.of(s).rawUrl(s, path, ref, pinned);
+    }
+}
@@ -0,0 +1,72 @@
+package com.xirizhi.plugingithuboss.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.xirizhi.plugingithuboss.support.TestWiring;
+
+import reactor.core.publisher.Mono;
+import run.halo.app.extension.ConfigMap;
+import run.halo.app.extension.ReactiveExtensionClient;
+
+class PluginStateTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void movesLegacyDirectoryIntoWorkDir() throws Exception {
+        Path legacy = Files.createDirectories(dir.resolve("home").resolve("githuboss-outbox").resolve("pending"));
+        Files.writeString(legacy.resolve("1.json"), "{}");
+        PluginState state = new PluginState(dir.resolve("work").resolve("plugins-data").resolve("PluginGitHubOSS"), dir.resolve("home"));
+
+        Path outbox = state.dir("outbox", "githuboss.test.outbox.dir");
+
+        assertThat(outbox).isEqualTo(dir.resolve("work/plugins-data/PluginGitHubOSS/outbox"));
+        assertThat(outbox.resolve("pending").resolve("1.json")).exists();
+        assertThat(legacy).doesNotExist();
+        // 已迁移后再次解析不受影响
+        assertThat(state.dir("outbox", "githuboss.test.outbox.dir")).isEqualTo(outbox);
+        assertThat(state.dir("compact", "githuboss.test.compact.dir")).isEqualTo(dir.resolve("work/plugins-data/PluginGitHubOSS/compact"));
+
+        System.setProperty("githuboss.test.outbox.dir", dir.resolve("custom").toString());
+        try {
+            assertThat(state.dir("outbox", "githuboss.test.outbox.dir")).isEqualTo(dir.resolve("custom"));
+        } finally {
+            System.clearProperty("githuboss.test.outbox.dir");
+        }
+    }
+
+    @Test
+    void writesJsonAtomically() throws Exception {
+        Path file = dir.resolve("report.json");
+        PluginState.writeJson(file, Map.of("state", "DONE")).block();
+
+        assertThat(Files.readString(file, StandardCharsets.UTF_8)).contains("\"state\":\"DONE\"");
+        assertThat(dir.resolve("report.json.tmp")).doesNotExist();
+    }
+
+    @Test
+    void settingsRequireConfigMap() {
+        ReactiveExtensionClient client = TestWiring.extensionClient();
+        var policy = TestWiring.policy();
+        when(client.fetch(ConfigMap.class, policy.getSpec().getConfigMapName())).thenReturn(Mono.empty());
+
+        assertThatThrownBy(() -> PluginState.settingsOf(client, policy).block())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("ConfigMap 不存在");
+
+        var config = TestWiring.configMap(policy.getSpec().getConfigMapName(), Map.of("default", "{\"branch\":\"dev\"}"));
+        when(client.fetch(ConfigMap.class, policy.getSpec().getConfigMapName())).thenReturn(Mono.just(config));
+        assertThat(PluginState.settingsOf(client, policy).block().getBranch()).isEqualTo("dev");
+    }
+}
@@ -0,0 +1,133 @@
+package com.xirizhi.plugingithuboss.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import com.xirizhi.plugingithuboss.handler.UploadPathGenerator;
+import com.xirizhi.plugingithuboss.support.FakeGitHubApi;
+import com.xirizhi.plugingithuboss.support.TestWiring;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.core.extension.attachment.Policy;
+import run.halo.app.extension.ConfigMap;
+import run.halo.app.extension.ListOptions;
+import run.halo.app.extension.Metadata;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.app.extension.controller.Reconciler;
+
+class PluginWarmupTest {
+
+    FakeGitHubApi api;
+    ReactiveExtensionClient client;
+    AttachmentIndex index;
+    PluginWarmup warmup;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        api = FakeGitHubApi.start();
+        client = TestWiring.extensionClient();
+        var settings = TestWiring.settings(api);
+        // CDN 地址与 API 同源，预连接按源去重后只有一次
+        settings.setCdnUrlTemplate(api.baseUrl() + "/raw/{owner}/{repo}/{ref}/{path}");
+        TestWiring.registerPolicy(client, settings);
+        when(client.listAll(eq(Policy.class), any(ListOptions.class), any(Sort.class))).thenReturn(Flux.just(TestWiring.policy()));
+        when(client.listAll(eq(Attachment.class), any(ListOptions.class), any(Sort.class)))
+                .thenReturn(Flux.just(attachment("a", "sha-a", "attachments/a.png"), attachment("b", "sha-b", "attachments/b.png")));
+        api.pushExternal("attachments/old.png", "x".getBytes(StandardCharsets.UTF_8));
+
+        GitHubService service = new GitHubService(client, TestWiring.metrics());
+        index = new AttachmentIndex(client);
+        warmup = new PluginWarmup(client, service, new PermalinkCache(service), index, new UploadPathGenerator(service));
+    }
+
+    @AfterEach
+    void tearDown() {
+        api.close();
+    }
+
+    @Test
+    void warmsPolicyCachesAndConnections() {
+        int before = api.requests();
+
+        var readiness = warmup.warmUp().block();
+
+        assertThat(readiness.getState()).isEqualTo(PluginWarmup.STATE_READY);
+        assertThat(readiness.getPolicies()).isEqualTo(1);
+        assertThat(readiness.getSteps()).extracting(PluginWarmup.Step::name)
+                .containsExactlyInAnyOrder("network", "policies", "policy:" + TestWiring.POLICY_NAME, "connect:" + api.baseUrl());
+        assertThat(readiness.getSteps()).allMatch(PluginWarmup.Step::ok);
+        // 上传目录列表 + 一次 HEAD
+        assertThat(api.requests() - before).isEqualTo(2);
+
+        // 之后的查询直接命中索引
+        assertThat(index.keys(TestWiring.POLICY_NAME).block()).containsExactlyInAnyOrder("sha-aattachments/a.png", "sha-battachments/b.png");
+        verify(client, times(1)).listAll(eq(Attachment.class), any(ListOptions.class), any(Sort.class));
+
+        warmup.stop();
+        assertThat(warmup.readiness().getState()).isEqualTo(PluginWarmup.STATE_STOPPED);
+    }
+
+    @Test
+    void reportsDegradedWhenPolicyCannotBeWarmed() {
+        Policy broken = TestWiring.policy();
+        broken.getMetadata().setName("broken");
+        broken.getSpec().setConfigMapName("missing-config");
+        when(client.listAll(eq(Policy.class), any(ListOptions.class), any(Sort.class)))
+                .thenReturn(Flux.just(TestWiring.policy(), broken));
+        when(client.fetch(ConfigMap.class, "missing-config")).thenReturn(Mono.empty());
+
+        var readiness = warmup.warmUp().block();
+
+        assertThat(readiness.getState()).isEqualTo(PluginWarmup.STATE_DEGRADED);
+        assertThat(readiness.getSteps()).filteredOn(step -> !step.ok()).singleElement()
+                .satisfies(step -> assertThat(step.name()).isEqualTo("policy:broken"));
+    }
+
+    @Test
+    void indexFollowsAttachmentChanges() {
+        index.preload(TestWiring.POLICY_NAME).block();
+
+        Attachment moved = attachment("c", "sha-c", "attachments/c.png");
+        when(client.fetch(Attachment.class, "c")).thenReturn(Mono.just(moved));
+        index.reconcile(new Reconciler.Request("c"));
+        when(client.fetch(Attachment.class, "a")).thenReturn(Mono.empty());
+        index.reconcile(new Reconciler.Request("a"));
+        Attachment deleting = attachment("b", "sha-b", "attachments/b.png");
+        deleting.getMetadata().setDeletionTimestamp(Instant.now());
+        when(client.fetch(Attachment.class, "b")).thenReturn(Mono.just(deleting));
+        index.reconcile(new Reconciler.Request("b"));
+
+        assertThat(index.keys(TestWiring.POLICY_NAME).block()).containsExactly("sha-cattachments/c.png");
+    }
+
+    private static Attachment attachment(String name, String sha, String path) {
+        Attachment attachment = new Attachment();
+        Metadata metadata = new Metadata();
+        metadata.setName(name);
+        Map<String, String> annotations = new HashMap<>();
+        annotations.put("sha", sha);
+        annotations.put("path", path);
+        metadata.setAnnotations(annotations);
+        attachment.setMetadata(metadata);
+        Attachment.AttachmentSpec spec = new Attachment.AttachmentSpec();
+        spec.setPolicyName(TestWiring.POLICY_NAME);
+        attachment.setSpec(spec);
+        return attachment;
+    }
+}
@@ -0,0 +1,235 @@
+package com.xirizhi.plugingithuboss.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Sort;
+
+import com.sun.net.httpserver.HttpServer;
+import com.xirizhi.plugingithuboss.handler.GithubAttachmentHandler;
+import com.xirizhi.plugingithuboss.support.FakeGitHubApi;
+import com.xirizhi.plugingithuboss.support.TestWiring;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.core.extension.attachment.Policy;
+import run.halo.app.core.extension.service.AttachmentService;
+import run.halo.app.extension.ListOptions;
+import run.halo.app.extension.Metadata;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.app.infra.ExternalUrlSupplier;
+
+class PolicyMigratorTest {
+
+    private static final String SOURCE = "local-policy";
+
+    @TempDir
+    Path dir;
+
+    FakeGitHubApi api;
+    HttpServer source;
+    ReactiveExtensionClient client;
+    GitHubService service;
+    PolicyMigrator migrator;
+    Map<String, Attachment> updated = new ConcurrentHashMap<>();
+    Set<String> downloads = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        api = FakeGitHubApi.start();
+        source = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        source.createContext("/upload/", ex -> {
+            downloads.add(ex.getRequestURI().getPath());
+            byte[] body = ex.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8);
+            ex.sendResponseHeaders(ex.getRequestURI().getPath().contains("missing") ? 404 : 200, body.length);
+            ex.getResponseBody().write(body);
+            ex.close();
+        });
+        source.createContext("/moved/", ex -> {
+            ex.getResponseHeaders().add("Location", ex.getRequestURI().getPath().replaceFirst("^/moved/", "/upload/"));
+            ex.sendResponseHeaders(302, -1);
+            ex.close();
+        });
+        source.start();
+
+        client = TestWiring.extensionClient();
+        TestWiring.registerPolicy(client, TestWiring.settings(api));
+        Policy local = new Policy();
+        local.setMetadata(new Metadata());
+        local.getMetadata().setName(SOURCE);
+        when(client.fetch(Policy.class, SOURCE)).thenReturn(Mono.just(local));
+        when(client.update(any(Attachment.class))).thenAnswer(inv -> {
+            Attachment a = inv.getArgument(0);
+            updated.put(a.getMetadata().getName(), a);
+            return Mono.just(a);
+        });
+
+        AttachmentService attachmentService = mock(AttachmentService.class);
+        when(attachmentService.getSharedURL(any(Attachment.class), any(Duration.class)))
+                .thenAnswer(inv -> Mono.just(URI.create(((Attachment) inv.getArgument(0)).getStatus().getPermalink())));
+        service = new GitHubService(client, TestWiring.metrics());
+        migrator = new PolicyMigrator(client, service, new GithubAttachmentHandler(client, service, TestWiring.metrics(), null, null, null, null),
+                new PermalinkCache(service), attachmentService, mock(ExternalUrlSupplier.class), dir);
+        migrator.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        migrator.destroy();
+        source.stop(0);
+        api.close();
+    }
+
+    @Test
+    void migratesInBatchedCommitsAndRewritesAttachments() throws Exception {
+        List<Attachment> sources = List.of(
+                attachment("a", "/upload/2024/a.png", 10),
+                attachment("b", "/upload/2024/b.png", 10),
+                attachment("c", "/upload/missing.png", 10),
+                attachment("d", "/upload/2025/d.txt", 10));
+        sources.forEach(a -> when(client.fetch(Attachment.class, a.getMetadata().getName())).thenReturn(Mono.just(a)));
+        // 第一次列出源策略附件，第二次列出目标策略已有附件
+        when(client.listAll(eq(Attachment.class), any(ListOptions.class), any(Sort.class)))
+                .thenReturn(Flux.fromIterable(sources), Flux.empty());
+
+        var job = migrator.start(new PolicyMigrator.MigrationRequest(SOURCE, TestWiring.POLICY_NAME, "migrated", 2,
+                "http://127.0.0.1:" + source.getAddress().getPort())).block();
+        await(() -> !PolicyMigrator.STATE_RUNNING.equals(job.getState()));
+
+        assertThat(job.getState()).isEqualTo(PolicyMigrator.STATE_SUCCEEDED);
+        assertThat(job.getTotal()).isEqualTo(4);
+        assertThat(job.getMigrated()).isEqualTo(3);
+        assertThat(job.getFailed()).isEqualTo(1);
+        assertThat(job.getBatches()).isEqualTo(2);
+        assertThat(job.getErrors()).singleElement().asString().startsWith("c:").contains("404");
+        assertThat(api.files()).containsKeys("migrated/2024/a.png", "migrated/2024/b.png", "migrated/2025/d.txt");
+        assertThat(api.files().get("migrated/2024/a.png").data()).isEqualTo("/upload/2024/a.png".getBytes(StandardCharsets.UTF_8));
+
+        Attachment a = updated.get("a");
+        assertThat(a.getSpec().getPolicyName()).isEqualTo(TestWiring.POLICY_NAME);
+        assertThat(a.getMetadata().getAnnotations()).containsEntry("path", "migrated/2024/a.png").containsKey("commitSha")
+                .containsEntry("storage.halo.run/local-relative-path", "2024/a.png");
+        assertThat(a.getStatus().getPermalink()).contains("migrated/2024/a.png");
+        assertThat(updated).doesNotContainKey("c");
+
+        String checkpoint = Files.readString(dir.resolve(job.getId() + ".json"));
+        assertThat(checkpoint).contains("\"state\":\"SUCCEEDED\"").contains("\"migrated\":3");
+    }
+
+    @Test
+    void followsRedirectsAndSkipsOversizedFilesWithoutDownloading() throws Exception {
+        List<Attachment> sources = List.of(
+                attachment("e", "/moved/2025/e.txt", 10),
+                attachment("f", "/upload/2025/f.bin", 200L * 1024 * 1024));
+        sources.forEach(a -> when(client.fetch(Attachment.class, a.getMetadata().getName())).thenReturn(Mono.just(a)));
+        when(client.listAll(eq(Attachment.class), any(ListOptions.class), any(Sort.class)))
+                .thenReturn(Flux.fromIterable(sources), Flux.empty());
+
+        var job = migrator.start(new PolicyMigrator.MigrationRequest(SOURCE, TestWiring.POLICY_NAME, "migrated", 2,
+                "http://127.0.0.1:" + source.getAddress().getPort())).block();
+        await(() -> !PolicyMigrator.STATE_RUNNING.equals(job.getState()));
+
+        assertThat(job.getMigrated()).isEqualTo(1);
+        assertThat(job.getErrors()).singleElement().asString().startsWith("f:").contains("100MB");
+        // 超过上限的文件按附件记录的大小直接跳过，不发起下载
+        assertThat(downloads).containsExactly("/upload/2025/e.txt");
+        assertThat(api.files().values()).singleElement()
+                .satisfies(file -> assertThat(file.data()).isEqualTo("/upload/2025/e.txt".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void plansBatchesAndConflictFreePaths() {
+        List<Attachment> list = List.of(
+                attachment("big-1", "/upload/x.bin", PolicyMigrator.MAX_BATCH_BYTES),
+                attachment("s1", "https://s3.example.com/bucket/img/a.png", 1),
+                attachment("s2", "https://s3.example.com/other/img/a.png", 1),
+                attachment("s3", "/upload/img/a.png", 1));
+        assertThat(PolicyMigrator.batches(list, 2, PolicyMigrator.MAX_BATCH_BYTES))
+                .extracting(List::size).containsExactly(1, 2, 1);
+
+        Set<String> taken = new HashSet<>(Set.of("m/img/a.png"));
+        var plan = PolicyMigrator.plan(list.subList(1, 4), "m", taken);
+        assertThat(plan.values()).containsExactly("m/bucket/img/a.png", "m/other/img/a.png", "m/img/s3-a.png");
+
+        // 加前缀后的路径仍被占用时继续换名
+        Set<String> crowded = new HashSet<>(Set.of("m/img/a.png", "m/img/s3-a.png"));
+        assertThat(PolicyMigrator.plan(list.subList(3, 4), "m", crowded).values()).containsExactly("m/img/s3-1-a.png");
+    }
+
+    @Test
+    void neverOverwritesFilesAlreadyInTargetDirectory() throws Exception {
+        // 仓库中已有同名文件，但目标策略没有对应附件
+        api.pushExternal("migrated/2024/g.png", "existing".getBytes(StandardCharsets.UTF_8));
+        List<Attachment> sources = List.of(attachment("g", "/upload/2024/g.png", 10));
+        sources.forEach(a -> when(client.fetch(Attachment.class, a.getMetadata().getName())).thenReturn(Mono.just(a)));
+        when(client.listAll(eq(Attachment.class), any(ListOptions.class), any(Sort.class)))
+                .thenReturn(Flux.fromIterable(sources), Flux.empty());
+
+        var job = migrator.start(new PolicyMigrator.MigrationRequest(SOURCE, TestWiring.POLICY_NAME, "migrated", 2,
+                "http://127.0.0.1:" + source.getAddress().getPort())).block();
+        await(() -> !PolicyMigrator.STATE_RUNNING.equals(job.getState()));
+
+        assertThat(job.getMigrated()).isEqualTo(1);
+        assertThat(api.files().get("migrated/2024/g.png").data()).isEqualTo("existing".getBytes(StandardCharsets.UTF_8));
+        assertThat(api.files()).containsKey("migrated/2024/g-g.png");
+        assertThat(updated.get("g").getMetadata().getAnnotations()).containsEntry("path", "migrated/2024/g-g.png");
+    }
+
+    @Test
+    void tracksRateLimitBudgetPerApi() {
+        var settings = TestWiring.settings(api);
+        api.rateLimit(3);
+        service.createBlob(settings, "x".getBytes(StandardCharsets.UTF_8)).block();
+
+        assertThat(service.rateLimitDelay(settings, 2)).isZero();
+        assertThat(service.rateLimitDelay(settings, 10)).isGreaterThan(Duration.ofSeconds(30));
+        settings.setToken("other-token");
+        assertThat(service.rateLimitDelay(settings, 10)).isZero();
+    }
+
+    private static Attachment attachment(String name, String permalink, long size) {
+        Attachment attachment = new Attachment();
+        Metadata metadata = new Metadata();
+        metadata.setName(name);
+        metadata.setAnnotations(new java.util.HashMap<>(Map.of("storage.halo.run/local-relative-path", permalink.replaceFirst(".*/upload/", ""))));
+        attachment.setMetadata(metadata);
+        Attachment.AttachmentSpec spec = new Attachment.AttachmentSpec();
+        spec.setPolicyName(SOURCE);
+        spec.setSize(size);
+        spec.setDisplayName(permalink.substring(permalink.lastIndexOf('/') + 1));
+        attachment.setSpec(spec);
+        Attachment.AttachmentStatus status = new Attachment.AttachmentStatus();
+        status.setPermalink(permalink);
+        attachment.setStatus(status);
+        return attachment;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("等待条件超时").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
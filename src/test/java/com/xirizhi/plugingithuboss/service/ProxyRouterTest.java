@@ -0,0 +1,199 @@
+package com.xirizhi.plugingithuboss.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Proxy;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import com.xirizhi.plugingithuboss.extension.theme.NetworkConfig;
+
+class ProxyRouterTest {
+
+    private static NetworkConfig config(String rules) {
+        NetworkConfig cfg = new NetworkConfig();
+        cfg.setEnabled(true);
+        cfg.setProxyPath("127.0.0.1:7890");
+        cfg.setRouteRules(rules);
+        return cfg;
+    }
+
+    @Test
+    void appliesFirstMatchingRuleAndDefaultsToProxy() {
+        try (ProxyRouter router = new ProxyRouter(config("*.jsdelivr.net=direct\napi.github.com=proxy, *.github.com=direct"))) {
+            assertThat(router.select(URI.create("https://gcore.jsdelivr.net/gh/a/b@master/c.png"))).containsExactly(Proxy.NO_PROXY);
+            assertThat(router.select(URI.create("https://api.github.com/repos"))).extracting(Proxy::type).containsExactly(Proxy.Type.HTTP);
+            assertThat(router.select(URI.create("https://raw.github.com/x"))).containsExactly(Proxy.NO_PROXY);
+            assertThat(router.select(URI.create("https://gitee.com/x"))).extracting(Proxy::type).containsExactly(Proxy.Type.HTTP);
+        }
+    }
+
+    @Test
+    void decidesByLatencyWithHysteresis() {
+        assertThat(ProxyRouter.decide(ProxyRouter.PROXY, 100, 200)).isEqualTo(ProxyRouter.DIRECT);
+        assertThat(ProxyRouter.decide(ProxyRouter.PROXY, 95, 100)).isEqualTo(ProxyRouter.PROXY);
+        assertThat(ProxyRouter.decide(ProxyRouter.DIRECT, -1, 300)).isEqualTo(ProxyRouter.PROXY);
+        assertThat(ProxyRouter.decide(ProxyRouter.DIRECT, -1, -1)).isEqualTo(ProxyRouter.DIRECT);
+        assertThat(ProxyRouter.smooth(100, 200)).isEqualTo(130.0);
+        assertThat(ProxyRouter.smooth(100, -1)).isEqualTo(-1.0);
+    }
+
+    @Test
+    void rejectsInvalidConfig() {
+        assertThatThrownBy(() -> ProxyRouter.validate(config("github.com=fast"))).isInstanceOf(IllegalArgumentException.class);
+        NetworkConfig badPort = config(null);
+        badPort.setProxyPath("127.0.0.1");
+        assertThatThrownBy(() -> ProxyRouter.validate(badPort)).isInstanceOf(IllegalArgumentException.class);
+        NetworkConfig socks = config(null);
+        socks.setProxyPath("socks5://127.0.0.1:1080");
+        socks.setProxyType("socks");
+        ProxyRouter.validate(socks);
+    }
+
+    @Test
+    void bridgesConnectThroughAuthenticatedSocks5() throws Exception {
+        try (ServerSocket echo = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             ServerSocket socks = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            daemon(() -> {
+                try (Socket s = echo.accept()) {
+                    s.getOutputStream().write(s.getInputStream().readNBytes(4));
+                }
+            });
+            daemon(() -> fakeSocks5(socks, echo.getLocalPort()));
+
+            NetworkConfig cfg = config(null);
+            cfg.setProxyPath("127.0.0.1:" + socks.getLocalPort());
+            cfg.setProxyType("socks");
+            cfg.setProxyUsername("user");
+            cfg.setProxyPassword("secret");
+            try (ProxyRouter router = new ProxyRouter(cfg);
+                 Socket client = new Socket()) {
+                Proxy bridge = router.select(URI.create("https://example.com/")).get(0);
+                assertThat(router.select(URI.create("http://example.com/"))).containsExactly(Proxy.NO_PROXY);
+                // 不带令牌的连接不会转发到上游
+                try (Socket stranger = new Socket()) {
+                    stranger.connect(bridge.address(), 2000);
+                    stranger.setSoTimeout(2000);
+                    stranger.getOutputStream().write("CONNECT example.com:443 HTTP/1.1\r\nHost: example.com:443\r\n\r\n"
+                            .getBytes(StandardCharsets.ISO_8859_1));
+                    assertThat(readLine(stranger.getInputStream())).startsWith("HTTP/1.1 407");
+                }
+                client.connect(bridge.address(), 2000);
+                client.setSoTimeout(2000);
+                OutputStream out = client.getOutputStream();
+                out.write(("CONNECT example.com:443 HTTP/1.1\r\nHost: example.com:443\r\nProxy-Authorization: "
+                        + router.bridge().authorization() + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                String status = readLine(client.getInputStream());
+                assertThat(status).startsWith("HTTP/1.1 200");
+                readLine(client.getInputStream());
+                out.write("ping".getBytes(StandardCharsets.US_ASCII));
+                assertThat(new String(client.getInputStream().readNBytes(4), StandardCharsets.US_ASCII)).isEqualTo("ping");
+            }
+        }
+    }
+
+    @Test
+    void onlyAuthorizedClientsReachUpstreamThroughBridge() throws Exception {
+        try (ServerSocket upstream = new ServerSocket(0, 4, InetAddress.getLoopbackAddress())) {
+            List<String> requests = new CopyOnWriteArrayList<>();
+            daemon(() -> {
+                while (true) {
+                    try (Socket s = upstream.accept()) {
+                        requests.add(ProxyBridge.readHead(s.getInputStream()));
+                        s.getOutputStream().write("HTTP/1.1 403 Forbidden\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                    }
+                }
+            });
+
+            NetworkConfig cfg = config(null);
+            cfg.setProxyPath("127.0.0.1:" + upstream.getLocalPort());
+            cfg.setProxyUsername("user");
+            cfg.setProxyPassword("secret");
+            try (ProxyRouter router = new ProxyRouter(cfg)) {
+                HttpClient plain = HttpClient.newBuilder().proxy(router).build();
+                HttpRequest request = HttpRequest.newBuilder(URI.create("https://example.com/"))
+                        .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                        .build();
+                try {
+                    assertThat(plain.send(request, HttpResponse.BodyHandlers.discarding()).statusCode()).isEqualTo(407);
+                } catch (IOException e) {
+                    // 隧道被拒绝，同样不会到达上游
+                }
+                assertThat(requests).isEmpty();
+
+                // 经 authorize 包装后带上令牌，上游只收到桥自己的 Basic 认证
+                assertThatThrownBy(() -> router.authorize(plain).send(request, HttpResponse.BodyHandlers.discarding()))
+                        .isInstanceOf(IOException.class);
+                assertThat(requests).singleElement().satisfies(head -> {
+                    assertThat(head).startsWith("CONNECT example.com:443").contains("Proxy-Authorization: Basic ");
+                    assertThat(head).doesNotContain(router.bridge().authorization());
+                });
+            }
+        }
+    }
+
+    // 只接受用户名/密码认证，CONNECT 到任意目标时实际转发到本机 echo 端口
+    private static void fakeSocks5(ServerSocket server, int echoPort) throws Exception {
+        try (Socket s = server.accept()) {
+            DataInputStream in = new DataInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+            in.readNBytes(in.readNBytes(2)[1]);
+            out.write(new byte[] {5, 2});
+            in.readByte();
+            String user = new String(in.readNBytes(in.readUnsignedByte()), StandardCharsets.UTF_8);
+            String pass = new String(in.readNBytes(in.readUnsignedByte()), StandardCharsets.UTF_8);
+            out.write(new byte[] {1, (byte) ("user".equals(user) && "secret".equals(pass) ? 0 : 1)});
+            in.readNBytes(4);
+            String host = new String(in.readNBytes(in.readUnsignedByte()), StandardCharsets.US_ASCII);
+            int port = in.readUnsignedShort();
+            assertThat(host + ":" + port).isEqualTo("example.com:443");
+            try (Socket target = new Socket(InetAddress.getLoopbackAddress(), echoPort)) {
+                out.write(new byte[] {5, 0, 0, 1, 127, 0, 0, 1, 0, 0});
+                target.getOutputStream().write(in.readNBytes(4));
+                out.write(target.getInputStream().readNBytes(4));
+            }
+        }
+    }
+
+    private static String readLine(InputStream in) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') {
+            if (b != '\r') {
+                sb.append((char) b);
+            }
+        }
+        return sb.toString();
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    private static void daemon(ThrowingRunnable body) {
+        Thread t = new Thread(() -> {
+            try {
+                body.run();
+            } catch (Exception ignored) {
+                // 测试结束时连接被关闭
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+    }
+}
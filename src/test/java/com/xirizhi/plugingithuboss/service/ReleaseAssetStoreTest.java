@@ -0,0 +1,118 @@
+package com.xirizhi.plugingithuboss.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import com.xirizhi.plugingithuboss.config.Constant;
+import com.xirizhi.plugingithuboss.exception.PathConflictException;
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.handler.GithubAttachmentHandler;
+import com.xirizhi.plugingithuboss.handler.UploadPathGenerator;
+import com.xirizhi.plugingithuboss.support.BytesFilePart;
+import com.xirizhi.plugingithuboss.support.FakeGitHubApi;
+import com.xirizhi.plugingithuboss.support.TestWiring;
+
+import run.halo.app.core.extension.attachment.Policy;
+import run.halo.app.extension.ConfigMap;
+
+class ReleaseAssetStoreTest {
+
+    FakeGitHubApi api;
+    GithubOssPolicySettings settings;
+    ReleaseAssetStore store;
+    GithubAttachmentHandler handler;
+    Policy policy;
+    ConfigMap policyConfig;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        api = FakeGitHubApi.start();
+        var client = TestWiring.extensionClient();
+        settings = TestWiring.settings(api);
+        settings.setReleaseThresholdMB(1);
+        GitHubService service = new GitHubService(client, TestWiring.metrics());
+        store = new ReleaseAssetStore(service, TestWiring.metrics());
+        handler = new GithubAttachmentHandler(client, service, TestWiring.metrics(), new UploadPathGenerator(service), null,
+                new PermalinkCache(service), store);
+        policy = TestWiring.policy();
+        policyConfig = TestWiring.policyConfig(settings);
+    }
+
+    @AfterEach
+    void tearDown() {
+        api.close();
+    }
+
+    @Test
+    void storesFilesOverThresholdAsReleaseAssets() {
+        byte[] video = random(3 * 1024 * 1024);
+        var attachment = handler.upload(TestWiring.uploadContext(new BytesFilePart("clip.mp4", video), policy, policyConfig)).block();
+
+        assertThat(api.assets()).hasSize(1);
+        var asset = api.assets().values().iterator().next();
+        assertThat(asset.data()).isEqualTo(video);
+        assertThat(asset.contentType()).isEqualTo("application/octet-stream");
+        assertThat(asset.name()).startsWith("attachments-clip-").endsWith(".mp4");
+        assertThat(api.files().keySet()).noneMatch(path -> path.endsWith(".mp4"));
+
+        var annotations = attachment.getMetadata().getAnnotations();
+        assertThat(annotations).doesNotContainKeys("path", "sha")
+                .containsEntry(Constant.ANNOTATION_ASSET_ID, String.valueOf(asset.id()))
+                .containsEntry(Constant.ANNOTATION_RELEASE_ID, String.valueOf(asset.releaseId()));
+        assertThat(attachment.getSpec().getSize()).isEqualTo(video.length);
+        assertThat(handler.getPermalink(attachment, policy, policyConfig).block())
+                .hasToString(annotations.get(Constant.ANNOTATION_ASSET_URL));
+
+        // 不超过阈值的文件仍写入仓库
+        var small = handler.upload(TestWiring.uploadContext(new BytesFilePart("a.png", random(1024)), policy, policyConfig)).block();
+        assertThat(api.files()).containsKey(small.getMetadata().getAnnotations().get("path"));
+        assertThat(api.assets()).hasSize(1);
+
+        handler.delete(TestWiring.deleteContext(attachment, policy, policyConfig)).block();
+        assertThat(api.assets()).isEmpty();
+    }
+
+    @Test
+    void forwardsPartWithKnownLengthWithoutBuffering() {
+        byte[] data = random(2 * 1024 * 1024);
+        var part = new BytesFilePart("big.zip", data) {
+            @Override
+            public HttpHeaders headers() {
+                HttpHeaders headers = new HttpHeaders();
+                headers.setContentLength(data.length);
+                return headers;
+            }
+        };
+
+        var content = ReleaseAssetStore.read(part, ReleaseAssetStore.thresholdBytes(settings)).block();
+        assertThat(content.bytes()).isNull();
+        assertThat(content.large().size()).isEqualTo(data.length);
+
+        var asset = store.upload(settings, "big.zip", content.large()).block();
+        assertThat(api.assets().get(asset.assetId()).data()).isEqualTo(data);
+
+        // 同一 release 复用，同名附件在发送内容前返回冲突，调用方可以换名后用同一份内容重试
+        var again = ReleaseAssetStore.read(new BytesFilePart("big.zip", data), ReleaseAssetStore.thresholdBytes(settings)).block();
+        int requests = api.requests();
+        assertThatThrownBy(() -> store.upload(settings, "big.zip", again.large()).block())
+                .isInstanceOf(PathConflictException.class);
+        assertThat(api.requests() - requests).as("只读取了附件列表").isEqualTo(1);
+        var renamed = store.upload(settings, "big-1.zip", again.large()).block();
+        again.large().cleanup().run();
+        assertThat(api.assets()).hasSize(2);
+        assertThat(api.assets().get(renamed.assetId()).data()).isEqualTo(data);
+    }
+
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,198 @@
+package com.xirizhi.plugingithuboss.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Sort;
+
+import com.xirizhi.plugingithuboss.config.Constant;
+import com.xirizhi.plugingithuboss.handler.GithubAttachmentHandler;
+import com.xirizhi.plugingithuboss.support.FakeGitHubApi;
+import com.xirizhi.plugingithuboss.support.TestWiring;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.extension.ListOptions;
+import run.halo.app.extension.Metadata;
+import run.halo.app.extension.ReactiveExtensionClient;
+
+class RepoReconcilerTest {
+
+    @TempDir
+    Path dir;
+
+    FakeGitHubApi api;
+    ReactiveExtensionClient client;
+    RepoReconciler reconciler;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        api = FakeGitHubApi.start();
+        client = TestWiring.extensionClient();
+        TestWiring.registerPolicy(client, TestWiring.settings(api));
+        GitHubService service = new GitHubService(client, TestWiring.metrics());
+        reconciler = new RepoReconciler(client, service,
+                new GithubAttachmentHandler(client, service, TestWiring.metrics(), null, null, null, null), dir);
+
+        api.pushExternal("attachments/2025/a.png", bytes("a"));
+        api.pushExternal("attachments/2025/b.png", bytes("b2"));
+        api.pushExternal("attachments/2026/c.png", bytes("c"));
+        api.pushExternal("other/x.png", bytes("x"));
+
+        List<Attachment> attachments = List.of(
+                attachment("att-a", "attachments/2025/a.png", FakeGitHubApi.blobSha(bytes("a"))),
+                attachment("att-b", "attachments/2025/b.png", FakeGitHubApi.blobSha(bytes("b1"))),
+                attachment("att-d", "attachments/2026/d.png", FakeGitHubApi.blobSha(bytes("d"))),
+                attachment("att-x", "other/y.png", "whatever"));
+        when(client.listAll(eq(Attachment.class), any(ListOptions.class), any(Sort.class)))
+                .thenAnswer(inv -> Flux.fromIterable(attachments));
+        attachments.forEach(a -> when(client.fetch(Attachment.class, a.getMetadata().getName())).thenReturn(Mono.just(a)));
+        when(client.update(any(Attachment.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+        when(client.delete(any(Attachment.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+        when(client.create(any(Attachment.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        api.close();
+    }
+
+    @Test
+    void reportsMissingChangedAndOrphanedEntries() {
+        var report = reconciler.reconcile(TestWiring.POLICY_NAME, RepoReconciler.REPAIR_NONE).block();
+
+        assertThat(report.getError()).isNull();
+        assertThat(report.getRepoFiles()).isEqualTo(3);
+        assertThat(report.getDirsRead()).isEqualTo(3);
+        assertThat(report.getMissing()).extracting(RepoReconciler.DriftItem::getAttachmentName).containsExactly("att-d");
+        assertThat(report.getChanged()).extracting(RepoReconciler.DriftItem::getPath).containsExactly("attachments/2025/b.png");
+        assertThat(report.getOrphaned()).extracting(RepoReconciler.DriftItem::getPath).containsExactly("attachments/2026/c.png");
+        assertThat(reconciler.lastReport(TestWiring.POLICY_NAME).block()).isSameAs(report);
+    }
+
+    @Test
+    void onlyChangedSubtreesAreReadAgain() {
+        reconciler.reconcile(TestWiring.POLICY_NAME, null).block();
+
+        var unchanged = reconciler.reconcile(TestWiring.POLICY_NAME, null).block();
+        assertThat(unchanged.isRepoUnchanged()).isTrue();
+        assertThat(unchanged.getDirsRead()).isZero();
+        assertThat(unchanged.getOrphanedCount()).isEqualTo(1);
+
+        api.pushExternal("attachments/2026/e.png", bytes("e"));
+        var partial = reconciler.reconcile(TestWiring.POLICY_NAME, null).block();
+        assertThat(partial.getDirsRead()).isEqualTo(2);
+        assertThat(partial.getDirsReused()).isEqualTo(1);
+        assertThat(partial.getOrphaned()).extracting(RepoReconciler.DriftItem::getPath)
+                .containsExactly("attachments/2026/c.png", "attachments/2026/e.png");
+
+        api.deleteExternal("attachments/2025/a.png");
+        var deleted = reconciler.reconcile(TestWiring.POLICY_NAME, null).block();
+        assertThat(deleted.getMissing()).extracting(RepoReconciler.DriftItem::getAttachmentName)
+                .containsExactlyInAnyOrder("att-a", "att-d");
+    }
+
+    @Test
+    void fullRepairUpdatesUnlinksAndRelinks() {
+        var report = reconciler.reconcile(TestWiring.POLICY_NAME, RepoReconciler.REPAIR_FULL).block();
+        assertThat(report.getRepaired()).isEqualTo(3);
+        assertThat(report.getRepairFailed()).isZero();
+
+        ArgumentCaptor<Attachment> updated = ArgumentCaptor.forClass(Attachment.class);
+        verify(client).update(updated.capture());
+        assertThat(updated.getValue().getMetadata().getAnnotations())
+                .containsEntry("sha", FakeGitHubApi.blobSha(bytes("b2")));
+
+        ArgumentCaptor<Attachment> deleted = ArgumentCaptor.forClass(Attachment.class);
+        verify(client).delete(deleted.capture());
+        assertThat(deleted.getValue().getMetadata().getName()).isEqualTo("att-d");
+        assertThat(deleted.getValue().getMetadata().getAnnotations()).containsEntry(Constant.ANNOTATION_UNLINKED, "true");
+
+        ArgumentCaptor<Attachment> created = ArgumentCaptor.forClass(Attachment.class);
+        verify(client).create(created.capture());
+        assertThat(created.getValue().getMetadata().getAnnotations())
+                .containsEntry("path", "attachments/2026/c.png")
+                .containsEntry("sha", FakeGitHubApi.blobSha(bytes("c")));
+    }
+
+    @Test
+    void unlinkedFilesAreNotRelinked() {
+        reconciler.recordUnlinked(TestWiring.POLICY_NAME, Map.of("attachments/2026/c.png", FakeGitHubApi.blobSha(bytes("c")))).block();
+
+        var report = reconciler.reconcile(TestWiring.POLICY_NAME, RepoReconciler.REPAIR_FULL).block();
+        assertThat(report.getOrphanedCount()).isZero();
+        assertThat(report.getIgnoredCount()).isEqualTo(1);
+        verify(client, never()).create(any(Attachment.class));
+
+        // 文件被替换为其他内容后不再忽略
+        api.pushExternal("attachments/2026/c.png", bytes("c2"));
+        var changed = reconciler.reconcile(TestWiring.POLICY_NAME, RepoReconciler.REPAIR_NONE).block();
+        assertThat(changed.getIgnoredCount()).isZero();
+        assertThat(changed.getOrphaned()).extracting(RepoReconciler.DriftItem::getPath).containsExactly("attachments/2026/c.png");
+    }
+
+    @Test
+    void missingBranchIsAnErrorAndRepairsNothing() {
+        api.mainBranch("master");
+        var settings = TestWiring.settings(api);
+        settings.setBranch("renamed");
+        TestWiring.registerPolicy(client, settings);
+
+        var report = reconciler.reconcile(TestWiring.POLICY_NAME, RepoReconciler.REPAIR_FULL).block();
+
+        assertThat(report.getError()).contains("renamed").contains("3 个附件");
+        assertThat(report.getMissingCount()).isZero();
+        assertThat(report.getRepaired()).isZero();
+        verify(client, never()).delete(any(Attachment.class));
+        verify(client, never()).create(any(Attachment.class));
+    }
+
+    @Test
+    void fullRepairIsRefusedWhenMostAttachmentsAreMissing() {
+        api.deleteExternal("attachments/2025/a.png");
+        api.deleteExternal("attachments/2025/b.png");
+
+        var report = reconciler.reconcile(TestWiring.POLICY_NAME, RepoReconciler.REPAIR_FULL).block();
+
+        assertThat(report.getError()).isNull();
+        assertThat(report.getMissing()).extracting(RepoReconciler.DriftItem::getAttachmentName)
+                .containsExactly("att-a", "att-b", "att-d");
+        assertThat(report.getRepairSkipped()).contains("全部 3 个附件");
+        assertThat(report.getRepaired()).isZero();
+        verify(client, never()).delete(any(Attachment.class));
+        verify(client, never()).update(any(Attachment.class));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Attachment attachment(String name, String path, String sha) {
+        Metadata metadata = new Metadata();
+        metadata.setName(name);
+        Map<String, String> annotations = new HashMap<>();
+        annotations.put("path", path);
+        annotations.put("sha", sha);
+        metadata.setAnnotations(annotations);
+        Attachment attachment = new Attachment();
+        attachment.setMetadata(metadata);
+        attachment.setSpec(new Attachment.AttachmentSpec());
+        return attachment;
+    }
+}
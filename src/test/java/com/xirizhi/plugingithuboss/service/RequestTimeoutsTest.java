@@ -0,0 +1,105 @@
+package com.xirizhi.plugingithuboss.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import com.xirizhi.plugingithuboss.extension.theme.NetworkConfig;
+import com.xirizhi.plugingithuboss.support.FakeGitHubApi;
+import com.xirizhi.plugingithuboss.support.TestWiring;
+
+class RequestTimeoutsTest {
+
+    static final URI API = URI.create("https://api.github.com/repos/owner/repo/contents/a.png");
+    static final long MB = 1024 * 1024;
+
+    @Test
+    void usesConfiguredTimeoutUntilObserved() {
+        RequestTimeouts timeouts = new RequestTimeouts();
+        NetworkConfig cfg = config(10000);
+
+        assertThat(timeouts.of(cfg, "GET", API, 0)).isEqualTo(Duration.ofSeconds(10));
+        assertThat(timeouts.of(cfg, "PUT", API, 1024)).isEqualTo(Duration.ofSeconds(10));
+        // 无吞吐量样本时按 256KB/s：4MB 追加 16 秒
+        assertThat(timeouts.of(cfg, "PUT", API, 4 * MB)).isEqualTo(Duration.ofSeconds(26));
+        assertThat(RequestTimeouts.connect(cfg)).isEqualTo(Duration.ofSeconds(5));
+        assertThat(RequestTimeouts.connect(config(3000))).isEqualTo(Duration.ofSeconds(3));
+    }
+
+    @Test
+    void smallRequestsFailFastOnceLatencyIsKnown() {
+        RequestTimeouts timeouts = new RequestTimeouts();
+        NetworkConfig cfg = config(10000);
+        for (int i = 0; i < 20; i++) {
+            timeouts.observe(request("GET", 0, 10000), Duration.ofMillis(200).toNanos(), false);
+            timeouts.observe(request("PATCH", 100, 10000), Duration.ofMillis(800).toNanos(), false);
+        }
+
+        assertThat(timeouts.of(cfg, "GET", API, 0)).isEqualTo(Duration.ofSeconds(2));
+        assertThat(timeouts.of(cfg, "PATCH", API, 100)).isEqualTo(Duration.ofSeconds(5));
+        // 其他主机不受影响
+        assertThat(timeouts.of(cfg, "GET", URI.create("https://uploads.github.com/x"), 0)).isEqualTo(Duration.ofSeconds(10));
+
+        // 一次超时后时限放宽，但不超过配置的上限
+        timeouts.observe(request("GET", 0, 2000), Duration.ofSeconds(2).toNanos(), true);
+        assertThat(timeouts.of(cfg, "GET", API, 0)).isGreaterThan(Duration.ofSeconds(2)).isLessThanOrEqualTo(Duration.ofSeconds(10));
+    }
+
+    @Test
+    void uploadDeadlineFollowsObservedThroughput() {
+        RequestTimeouts timeouts = new RequestTimeouts();
+        NetworkConfig cfg = config(10000);
+        // 4MB 用时 1 秒：约 4MB/s，按一半估计
+        timeouts.observe(request("PUT", 4 * MB, 60000), Duration.ofSeconds(1).toNanos(), false);
+        Duration fast = timeouts.of(cfg, "PUT", API, 40 * MB);
+        assertThat(fast).isEqualTo(Duration.ofSeconds(10 + 20));
+
+        // 上传超时后吞吐量估计减半，同样大小得到更长时限
+        timeouts.observe(request("PUT", 40 * MB, fast.toMillis()), fast.toNanos(), true);
+        assertThat(timeouts.of(cfg, "PUT", API, 40 * MB)).isEqualTo(Duration.ofSeconds(10 + 40));
+
+        // 极慢链路也不低于 32KB/s，且最长 2 小时
+        for (int i = 0; i < 50; i++) {
+            timeouts.observe(request("PUT", MB, 60000), Duration.ofMinutes(10).toNanos(), false);
+        }
+        assertThat(timeouts.of(cfg, "PUT", API, 64 * MB)).isEqualTo(Duration.ofSeconds(10 + 64 * 32));
+        assertThat(timeouts.of(cfg, "PUT", API, 1024 * MB)).isEqualTo(Duration.ofHours(2));
+    }
+
+    @Test
+    void exchangesFeedEstimates() throws Exception {
+        try (FakeGitHubApi api = FakeGitHubApi.start()) {
+            var client = TestWiring.extensionClient();
+            var settings = TestWiring.settings(api);
+            GitHubService service = new GitHubService(client, TestWiring.metrics());
+            service.uploadContent(settings, "attachments/a.bin", new byte[200 * 1024], "upload").block();
+            service.listDirectoryContents(settings, "attachments").block();
+
+            String authority = URI.create(api.baseUrl()).getAuthority();
+            assertThat(service.requestTimeouts().block()).filteredOn(e -> e.authority().equals(authority)).singleElement()
+                    .satisfies(e -> {
+                        assertThat(e.samples()).isGreaterThanOrEqualTo(2);
+                        assertThat(e.uploadBytesPerSecond()).isPositive();
+                        assertThat(e.lookupTimeoutMs()).isBetween(2000L, 10000L);
+                    });
+        }
+    }
+
+    private static NetworkConfig config(int timeoutMs) {
+        NetworkConfig cfg = new NetworkConfig();
+        cfg.setTimeoutMs(timeoutMs);
+        return cfg;
+    }
+
+    private static HttpRequest request(String method, long bodyBytes, long timeoutMs) {
+        // 只需要请求体长度，不必真的分配内容
+        HttpRequest.BodyPublisher body = bodyBytes == 0
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.noBody(), bodyBytes);
+        return HttpRequest.newBuilder(API).timeout(Duration.ofMillis(timeoutMs)).method(method, body).build();
+    }
+}
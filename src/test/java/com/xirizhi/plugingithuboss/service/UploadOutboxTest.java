@@ -0,0 +1,205 @@
+package com.xirizhi.plugingithuboss.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import com.xirizhi.plugingithuboss.config.Constant;
+import com.xirizhi.plugingithuboss.support.FakeGitHubApi;
+import com.xirizhi.plugingithuboss.support.TestWiring;
+
+import reactor.core.publisher.Mono;
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.extension.Metadata;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.app.infra.utils.JsonUtils;
+
+class UploadOutboxTest {
+
+    @TempDir
+    Path dir;
+
+    FakeGitHubApi api;
+    ReactiveExtensionClient client;
+    GitHubService service;
+    UploadOutbox outbox;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        api = FakeGitHubApi.start();
+        client = TestWiring.extensionClient();
+        TestWiring.registerPolicy(client, TestWiring.settings(api));
+        service = new GitHubService(client, TestWiring.metrics());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (outbox != null) {
+            outbox.destroy();
+        }
+        api.close();
+    }
+
+    @Test
+    void drainsUploadAndUpdatesAttachment() throws Exception {
+        Attachment attachment = attachment("att-1", "entry");
+        when(client.fetch(Attachment.class, "att-1")).thenReturn(Mono.just(attachment));
+        when(client.update(any(Attachment.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+        outbox = start();
+
+        outbox.enqueueUpload(TestWiring.POLICY_NAME, "att-1", "attachments/a.txt", new byte[] {1, 2}, "upload").block();
+
+        await(() -> outbox.pending().isEmpty());
+        assertThat(api.files()).containsKey("attachments/a.txt");
+        ArgumentCaptor<Attachment> updated = ArgumentCaptor.forClass(Attachment.class);
+        verify(client, atLeastOnce()).update(updated.capture());
+        var annotations = updated.getValue().getMetadata().getAnnotations();
+        assertThat(annotations).containsEntry("sha", FakeGitHubApi.blobSha(new byte[] {1, 2}))
+                .containsKey(Constant.ANNOTATION_COMMIT_SHA)
+                .doesNotContainKey(Constant.ANNOTATION_PENDING);
+        try (var files = Files.list(dir.resolve("pending"))) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void pendingEntriesSurviveRestart() throws Exception {
+        api.serverErrorRate(1.0);
+        outbox = start();
+        outbox.enqueueDelete(TestWiring.POLICY_NAME, "attachments/b.txt", null, "delete").block();
+        await(() -> outbox.pending().get(0).getAttempts() > 0);
+        outbox.destroy();
+
+        api.pushExternal("attachments/b.txt", new byte[] {3});
+        api.serverErrorRate(0);
+        outbox = start();
+
+        assertThat(outbox.pending()).hasSize(1);
+        await(() -> outbox.pending().isEmpty());
+        assertThat(api.files()).doesNotContainKey("attachments/b.txt");
+    }
+
+    @Test
+    void cancelRemovesUploadNotYetPushed() throws Exception {
+        api.serverErrorRate(1.0);
+        outbox = start();
+        outbox.enqueueUpload(TestWiring.POLICY_NAME, "att-2", "attachments/c.txt", new byte[] {4}, "upload").block();
+        await(() -> outbox.pending().get(0).getAttempts() > 0);
+
+        assertThat(outbox.cancelUpload("att-2").block()).isTrue();
+        assertThat(outbox.pending()).isEmpty();
+    }
+
+    @Test
+    void servesPendingDataAndPollsOnlyWhileQueued() throws Exception {
+        outbox = start();
+        assertThat(outbox.polling()).isFalse();
+
+        api.serverErrorRate(1.0);
+        outbox.enqueueUpload(TestWiring.POLICY_NAME, "att-3", "attachments/d.txt", new byte[] {5, 6}, "upload").block();
+        assertThat(outbox.polling()).isTrue();
+        assertThat(outbox.pendingData("att-3").block()).containsExactly(5, 6);
+        assertThat(outbox.pendingData("att-other").block()).isNull();
+
+        assertThat(outbox.cancelUpload("att-3").block()).isTrue();
+        outbox.drain();
+        await(() -> !outbox.polling());
+        assertThat(outbox.pendingData("att-3").block()).isNull();
+    }
+
+    @Test
+    void uploadedShaIsPersistedBeforeLinking() throws Exception {
+        // 附件尚未保存：上传成功但回写失败，条目留在队列
+        when(client.fetch(Attachment.class, "att-4")).thenReturn(Mono.empty());
+        outbox = start();
+        outbox.enqueueUpload(TestWiring.POLICY_NAME, "att-4", "attachments/e.txt", new byte[] {7}, "upload").block();
+        await(() -> outbox.pending().get(0).getAttempts() > 0);
+        outbox.destroy();
+
+        String sha = FakeGitHubApi.blobSha(new byte[] {7});
+        try (var files = Files.list(dir.resolve("pending"))) {
+            Path entry = files.filter(f -> f.toString().endsWith(".json")).findFirst().orElseThrow();
+            assertThat(Files.readString(entry)).contains(sha);
+        }
+
+        // 重启后直接回写附件，不再重复上传
+        Attachment attachment = attachment("att-4", "entry");
+        when(client.fetch(Attachment.class, "att-4")).thenReturn(Mono.just(attachment));
+        when(client.update(any(Attachment.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+        int requests = api.requests();
+        outbox = start();
+        await(() -> outbox.pending().isEmpty());
+        assertThat(api.requests()).isEqualTo(requests);
+        assertThat(attachment.getMetadata().getAnnotations()).containsEntry("sha", sha)
+                .doesNotContainKey(Constant.ANNOTATION_PENDING);
+    }
+
+    @Test
+    void givingUpClearsPendingAndMarksAttachmentFailed() throws Exception {
+        api.serverErrorRate(1.0);
+        Attachment attachment = attachment("att-5", "entry");
+        when(client.fetch(Attachment.class, "att-5")).thenReturn(Mono.just(attachment));
+        when(client.update(any(Attachment.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+        outbox = start();
+        outbox.enqueueUpload(TestWiring.POLICY_NAME, "att-5", "attachments/f.txt", new byte[] {8}, "upload").block();
+        await(() -> outbox.pending().get(0).getAttempts() > 0);
+        outbox.destroy();
+
+        // 模拟只剩最后一次重试机会
+        try (var files = Files.list(dir.resolve("pending"))) {
+            Path file = files.filter(f -> f.toString().endsWith(".json")).findFirst().orElseThrow();
+            UploadOutbox.OutboxEntry entry = JsonUtils.jsonToObject(Files.readString(file), UploadOutbox.OutboxEntry.class);
+            entry.setAttempts(UploadOutbox.MAX_ATTEMPTS - 1);
+            Files.writeString(file, JsonUtils.objectToJson(entry));
+        }
+        outbox = start();
+
+        await(() -> attachment.getMetadata().getAnnotations().containsKey(Constant.ANNOTATION_UPLOAD_FAILED));
+        assertThat(outbox.pending()).isEmpty();
+        assertThat(attachment.getMetadata().getAnnotations()).doesNotContainKey(Constant.ANNOTATION_PENDING);
+        assertThat(outbox.pendingData("att-5").block()).isNull();
+        try (var files = Files.list(dir.resolve("failed"))) {
+            assertThat(files).hasSize(2);
+        }
+    }
+
+    private UploadOutbox start() throws Exception {
+        UploadOutbox started = new UploadOutbox(client, service, dir);
+        started.afterPropertiesSet();
+        return started;
+    }
+
+    private static Attachment attachment(String name, String pendingId) {
+        Metadata metadata = new Metadata();
+        metadata.setName(name);
+        Map<String, String> annotations = new HashMap<>();
+        annotations.put("path", "attachments/a.txt");
+        annotations.put(Constant.ANNOTATION_PENDING, pendingId);
+        metadata.setAnnotations(annotations);
+        Attachment attachment = new Attachment();
+        attachment.setMetadata(metadata);
+        return attachment;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("等待条件超时").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.xirizhi.plugingithuboss.service.forge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+
+class ForgeBackendsTest {
+
+    private static GithubOssPolicySettings settings(String type, String apiBaseUrl) {
+        GithubOssPolicySettings settings = new GithubOssPolicySettings();
+        settings.setOwner("owner");
+        settings.setRepoName("repo");
+        settings.setBranch("master");
+        settings.setForgeType(type);
+        settings.setApiBaseUrl(apiBaseUrl);
+        return settings;
+    }
+
+    @Test
+    void defaultsToGitHub() {
+        var s = settings(null, null);
+        ForgeBackend backend = ForgeBackends.of(s);
+        assertThat(backend.contentsUrl(s, "a/b.png")).isEqualTo("https://api.github.com/repos/owner/repo/contents/a/b.png");
+        assertThat(backend.authorization("t")).isEqualTo("Bearer t");
+        assertThat(backend.supportsJsdelivr()).isTrue();
+    }
+
+    @Test
+    void enterpriseUsesConfiguredHost() {
+        var s = settings("ghes", "https://ghe.example.com/api/v3/");
+        ForgeBackend backend = ForgeBackends.of(s);
+        assertThat(backend.contentsUrl(s, "a.png")).isEqualTo("https://ghe.example.com/api/v3/repos/owner/repo/contents/a.png");
+        assertThat(backend.rawUrl(s, "a.png", "master", false)).isEqualTo("https://ghe.example.com/owner/repo/raw/master/a.png");
+    }
+
+    @Test
+    void giteaUsesTokenAuthAndPost() {
+        var s = settings("gitea", "https://git.example.com/api/v1");
+        ForgeBackend backend = ForgeBackends.of(s);
+        assertThat(backend.authorization("t")).isEqualTo("token t");
+        assertThat(backend.createMethod()).isEqualTo("POST");
+        assertThat(backend.rawUrl(s, "a.png", "abc123", true)).isEqualTo("https://git.example.com/owner/repo/raw/commit/abc123/a.png");
+        assertThat(backend.rawUrl(s, "a.png", "master", false)).isEqualTo("https://git.example.com/owner/repo/raw/branch/master/a.png");
+    }
+
+    @Test
+    void selfHostedRequiresApiBase() {
+        var s = settings("gitea", "");
+        assertThatThrownBy(() -> ForgeBackends.of(s).apiBase(s)).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,60 @@
+package com.xirizhi.plugingithuboss.support;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.codec.multipart.FilePart;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 测试用 FilePart：内容按 8KB 分片输出。
+ */
+public class BytesFilePart implements FilePart {
+
+    private final String filename;
+    private final byte[] data;
+
+    public BytesFilePart(String filename, byte[] data) {
+        this.filename = filename;
+        this.data = data;
+    }
+
+    @Override
+    public String filename() {
+        return filename;
+    }
+
+    @Override
+    public Mono<Void> transferTo(Path dest) {
+        return Mono.fromCallable(() -> java.nio.file.Files.write(dest, data)).then();
+    }
+
+    @Override
+    public String name() {
+        return "file";
+    }
+
+    @Override
+    public HttpHeaders headers() {
+        return HttpHeaders.EMPTY;
+    }
+
+    @Override
+    public Flux<DataBuffer> content() {
+        return Flux.defer(() -> {
+            List<DataBuffer> chunks = new ArrayList<>();
+            for (int offset = 0; offset < data.length; offset += 8192) {
+                int len = Math.min(8192, data.length - offset);
+                chunks.add(DefaultDataBufferFactory.sharedInstance.wrap(ByteBuffer.wrap(data, offset, len)));
+            }
+            return Flux.fromIterable(chunks);
+        });
+    }
+}
@@ -0,0 +1,747 @@
+package com.xirizhi.plugingithuboss.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import run.halo.app.infra.utils.JsonUtils;
+
+/**
+ * 进程内的 GitHub API 替身：实现插件用到的 Contents API、Git Data API（blob/tree/commit/ref）与 Releases API 子集，
+ * 用于离线测试与压测。release 附件上传地址为 {baseUrl}/uploads/...，与 GitHub 一样要求 Content-Length。分支 head 的更新与 GitHub 一致：PATCH ref 且 force=false 时，新提交的父提交不是当前 head 即返回 422。
+ * 可注入：
+ * - latencyMs：每个请求的固定延迟
+ * - rejectConcurrentWrites：同一分支并发写入时返回 409（与 GitHub 行为一致）
+ * - conflictRate / serverErrorRate：按比例随机返回 409 / 502
+ * - rateLimit：剩余请求数，耗尽后返回 403 并带 X-RateLimit-* 头
+ */
+public class FakeGitHubApi implements AutoCloseable {
+
+    public record StoredFile(String sha, byte[] data) {}
+
+    public record ReleaseAsset(long id, long releaseId, String name, String contentType, byte[] data) {}
+
+    private record Commit(String tree, String parent) {}
+
+    // Contents API 单个目录最多返回的项数
+    private static final int MAX_CONTENTS_LISTING = 1000;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, StoredFile> files = new ConcurrentHashMap<>();
+
+    // Git 对象：blob sha -> 数据，tree sha -> (路径 -> blob sha)，commit sha -> (tree, parent)
+    private final Map<String, byte[]> blobs = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> trees = new ConcurrentHashMap<>();
+    private final Map<String, Commit> commits = new ConcurrentHashMap<>();
+    private final Object refLock = new Object();
+    private volatile String head;
+    // 除主分支外的其他分支：分支名 -> commit sha
+    private final Map<String, String> branches = new ConcurrentHashMap<>();
+    // 主分支名；为空时任意分支名都解析到 head
+    private volatile String mainBranch;
+    private final AtomicInteger refRejections = new AtomicInteger();
+    // release：标签 -> id；附件 id -> 附件
+    private final Map<String, Long> releaseTags = new ConcurrentHashMap<>();
+    private final Map<Long, ReleaseAsset> assets = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong(100);
+
+    private final AtomicInteger writesInFlight = new AtomicInteger();
+    private final AtomicInteger maxWritesInFlight = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger conflicts = new AtomicInteger();
+    private final AtomicInteger rateRemaining = new AtomicInteger(-1);
+
+    private volatile long latencyMs;
+    private volatile boolean rejectConcurrentWrites = true;
+    private volatile double conflictRate;
+    private volatile double serverErrorRate;
+    private volatile CountDownLatch blobArrived;
+    private volatile CountDownLatch blobRelease;
+    private volatile String dropFromRootCommits;
+
+    private FakeGitHubApi() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.executor = Executors.newCachedThreadPool();
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+        synchronized (refLock) {
+            commitFiles(null);
+        }
+    }
+
+    public static FakeGitHubApi start() throws IOException {
+        FakeGitHubApi api = new FakeGitHubApi();
+        api.server.start();
+        return api;
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public FakeGitHubApi latencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+        return this;
+    }
+
+    public FakeGitHubApi rejectConcurrentWrites(boolean reject) {
+        this.rejectConcurrentWrites = reject;
+        return this;
+    }
+
+    public FakeGitHubApi conflictRate(double rate) {
+        this.conflictRate = rate;
+        return this;
+    }
+
+    public FakeGitHubApi serverErrorRate(double rate) {
+        this.serverErrorRate = rate;
+        return this;
+    }
+
+    /**
+     * 之后的 blob 上传请求到达时对 arrived 计数，并等到 release 打开后才处理，用于在请求进行中取消。
+     */
+    public FakeGitHubApi holdBlobUploads(CountDownLatch arrived, CountDownLatch release) {
+        this.blobArrived = arrived;
+        this.blobRelease = release;
+        return this;
+    }
+
+    /**
+     * 没有正在处理的请求。
+     */
+    public boolean idle() {
+        return active.get() == 0;
+    }
+
+    /**
+     * 只有该分支名解析到 head，其他（不在 branches 中的）分支读取时返回 404。
+     */
+    public FakeGitHubApi mainBranch(String name) {
+        this.mainBranch = name;
+        return this;
+    }
+
+    /**
+     * 之后创建的无父提交（历史压缩）丢失该路径的文件，模拟平台生成了与请求不一致的提交。
+     */
+    public FakeGitHubApi dropFromRootCommits(String path) {
+        this.dropFromRootCommits = path;
+        return this;
+    }
+
+    public FakeGitHubApi rateLimit(int remaining) {
+        this.rateRemaining.set(remaining);
+        return this;
+    }
+
+    public Map<String, StoredFile> files() {
+        return files;
+    }
+
+    public Map<Long, ReleaseAsset> assets() {
+        return assets;
+    }
+
+    public int requests() {
+        return requests.get();
+    }
+
+    public int conflicts() {
+        return conflicts.get();
+    }
+
+    public int maxWritesInFlight() {
+        return maxWritesInFlight.get();
+    }
+
+    public int refRejections() {
+        return refRejections.get();
+    }
+
+    public String head() {
+        return head;
+    }
+
+    public Map<String, String> branches() {
+        return branches;
+    }
+
+    /**
+     * 从 commit 沿父提交计数的历史长度。
+     */
+    public int historyLength(String commitSha) {
+        int n = 0;
+        for (String sha = commitSha; sha != null; sha = commits.get(sha).parent()) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * 模拟其他节点/客户端直接推送了一个提交（写入 path），使当前 head 前进。
+     */
+    public void pushExternal(String path, byte[] data) {
+        pushExternal(Map.of(path, data));
+    }
+
+    /**
+     * 同上，多个文件在一个提交中写入。
+     */
+    public void pushExternal(Map<String, byte[]> batch) {
+        synchronized (refLock) {
+            batch.forEach((path, data) -> {
+                files.put(path, new StoredFile(blobSha(data), data));
+                blobs.put(blobSha(data), data);
+            });
+            commitFiles(head);
+        }
+    }
+
+    /**
+     * 模拟仓库中的文件被其他客户端删除。
+     */
+    public void deleteExternal(String path) {
+        synchronized (refLock) {
+            files.remove(path);
+            commitFiles(head);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        active.incrementAndGet();
+        try (ex) {
+            requests.incrementAndGet();
+            sleep(latencyMs);
+            String method = ex.getRequestMethod();
+            String path = URLDecoder.decode(ex.getRequestURI().getRawPath(), StandardCharsets.UTF_8);
+
+            if ("HEAD".equals(method)) {
+                ex.sendResponseHeaders(200, -1);
+                return;
+            }
+            if (!consumeRateLimit(ex)) {
+                return;
+            }
+            if (ThreadLocalRandom.current().nextDouble() < serverErrorRate) {
+                send(ex, 502, Map.of("message", "Server Error"));
+                return;
+            }
+
+            if (path.startsWith("/uploads/")) {
+                uploadAsset(ex, method, path);
+                return;
+            }
+
+            // /repos/{owner}/{repo}/contents/{path}、/repos/{owner}/{repo}/git/{...} 或 /repos/{owner}/{repo}/releases/{...}
+            String[] parts = path.split("/", 6);
+            if (parts.length >= 5 && "repos".equals(parts[1]) && "releases".equals(parts[4])) {
+                releases(ex, method, parts.length == 6 ? parts[5] : "");
+                return;
+            }
+            if (parts.length == 6 && "repos".equals(parts[1]) && "git".equals(parts[4])) {
+                git(ex, method, parts[5]);
+                return;
+            }
+            if (parts.length < 5 || !"repos".equals(parts[1]) || !"contents".equals(parts[4])) {
+                send(ex, 404, Map.of("message", "Not Found"));
+                return;
+            }
+            String filePath = parts.length == 6 ? parts[5] : "";
+            switch (method) {
+                case "GET" -> getContents(ex, filePath);
+                case "PUT" -> write(ex, () -> putContents(ex, filePath));
+                case "DELETE" -> write(ex, () -> deleteContents(ex, filePath));
+                default -> send(ex, 405, Map.of("message", "Method Not Allowed"));
+            }
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    private interface Write {
+        void run() throws IOException;
+    }
+
+    // 写操作：模拟 GitHub 同一分支并发提交时的 409
+    private void write(HttpExchange ex, Write write) throws IOException {
+        int inFlight = writesInFlight.incrementAndGet();
+        maxWritesInFlight.accumulateAndGet(inFlight, Math::max);
+        try {
+            if ((rejectConcurrentWrites && inFlight > 1)
+                    || ThreadLocalRandom.current().nextDouble() < conflictRate) {
+                conflicts.incrementAndGet();
+                send(ex, 409, Map.of("message", "is at " + randomSha() + " but expected " + randomSha()));
+                return;
+            }
+            write.run();
+        } finally {
+            writesInFlight.decrementAndGet();
+        }
+    }
+
+    private void getContents(HttpExchange ex, String filePath) throws IOException {
+        StoredFile file = files.get(filePath);
+        if (file != null) {
+            send(ex, 200, entry(filePath, file));
+            return;
+        }
+        String prefix = filePath.isEmpty() ? "" : filePath + "/";
+        List<Map<String, Object>> listing = new ArrayList<>();
+        Map<String, Boolean> dirs = new LinkedHashMap<>();
+        files.forEach((p, f) -> {
+            if (!p.startsWith(prefix)) return;
+            String rest = p.substring(prefix.length());
+            int slash = rest.indexOf('/');
+            if (slash < 0) {
+                listing.add(entry(p, f));
+            } else {
+                dirs.putIfAbsent(prefix + rest.substring(0, slash), true);
+            }
+        });
+        dirs.keySet().forEach(d -> {
+            Map<String, Object> dir = new LinkedHashMap<>();
+            dir.put("name", d.substring(d.lastIndexOf('/') + 1));
+            dir.put("path", d);
+            dir.put("sha", randomSha());
+            dir.put("size", 0);
+            dir.put("type", "dir");
+            listing.add(dir);
+        });
+        if (listing.isEmpty() && !filePath.isEmpty()) {
+            send(ex, 404, Map.of("message", "Not Found"));
+            return;
+        }
+        // 与 GitHub 一致：目录列表按名称排序，最多返回 1000 项
+        listing.sort(Comparator.comparing(item -> String.valueOf(item.get("name"))));
+        send(ex, 200, listing.size() > MAX_CONTENTS_LISTING ? listing.subList(0, MAX_CONTENTS_LISTING) : listing);
+    }
+
+    private void putContents(HttpExchange ex, String filePath) throws IOException {
+        Map<?, ?> body = readJson(ex);
+        StoredFile existing = files.get(filePath);
+        if (existing != null && !existing.sha().equals(body.get("sha"))) {
+            send(ex, 422, Map.of("message", "Invalid request.\n\n\"sha\" wasn't supplied."));
+            return;
+        }
+        byte[] data = Base64.getDecoder().decode(String.valueOf(body.get("content")));
+        StoredFile file = new StoredFile(blobSha(data), data);
+        String commit;
+        synchronized (refLock) {
+            files.put(filePath, file);
+            blobs.put(file.sha(), data);
+            commit = commitFiles(head);
+        }
+        Map<String, Object> resp = new LinkedHashMap<>();
+        resp.put("content", entry(filePath, file));
+        resp.put("commit", Map.of("sha", commit, "message", String.valueOf(body.get("message"))));
+        send(ex, existing == null ? 201 : 200, resp);
+    }
+
+    private void deleteContents(HttpExchange ex, String filePath) throws IOException {
+        Map<?, ?> body = readJson(ex);
+        StoredFile existing = files.get(filePath);
+        if (existing == null) {
+            send(ex, 404, Map.of("message", "Not Found"));
+            return;
+        }
+        if (!existing.sha().equals(body.get("sha"))) {
+            send(ex, 409, Map.of("message", filePath + " does not match " + body.get("sha")));
+            return;
+        }
+        String commit;
+        synchronized (refLock) {
+            files.remove(filePath);
+            commit = commitFiles(head);
+        }
+        send(ex, 200, Map.of("commit", Map.of("sha", commit)));
+    }
+
+    // Git Data API：ref/heads/{b}、commits/{sha}、blobs、blobs/{sha}、trees、trees/{sha}[?recursive=1]、commits、refs、refs/heads/{b}
+    private void git(HttpExchange ex, String method, String rest) throws IOException {
+        if ("GET".equals(method) && rest.startsWith("ref/heads/")) {
+            String branch = rest.substring("ref/heads/".length());
+            if (mainBranch != null && !mainBranch.equals(branch) && !branches.containsKey(branch)) {
+                send(ex, 404, Map.of("message", "Not Found"));
+                return;
+            }
+            send(ex, 200, Map.of("ref", "refs/" + rest.substring("ref/".length()),
+                    "object", Map.of("sha", head, "type", "commit")));
+        } else if ("GET".equals(method) && rest.startsWith("commits/")) {
+            String sha = rest.substring("commits/".length());
+            Commit commit = commits.get(sha);
+            if (commit == null) {
+                send(ex, 404, Map.of("message", "Not Found"));
+                return;
+            }
+            send(ex, 200, Map.of("sha", sha, "tree", Map.of("sha", commit.tree())));
+        } else if ("GET".equals(method) && rest.startsWith("blobs/")) {
+            getBlob(ex, rest.substring("blobs/".length()));
+        } else if ("GET".equals(method) && rest.startsWith("trees/")) {
+            String query = ex.getRequestURI().getQuery();
+            getTree(ex, rest.substring("trees/".length()), query != null && query.contains("recursive=1"));
+        } else if ("POST".equals(method) && "blobs".equals(rest)) {
+            holdBlob();
+            Map<?, ?> body = readJson(ex);
+            byte[] data = Base64.getDecoder().decode(String.valueOf(body.get("content")));
+            String sha = blobSha(data);
+            blobs.put(sha, data);
+            send(ex, 201, Map.of("sha", sha));
+        } else if ("POST".equals(method) && "refs".equals(rest)) {
+            Map<?, ?> body = readJson(ex);
+            String name = String.valueOf(body.get("ref")).substring("refs/heads/".length());
+            String sha = String.valueOf(body.get("sha"));
+            if (!commits.containsKey(sha)) {
+                send(ex, 422, Map.of("message", "Object does not exist"));
+                return;
+            }
+            if (branches.putIfAbsent(name, sha) != null) {
+                send(ex, 422, Map.of("message", "Reference already exists"));
+                return;
+            }
+            send(ex, 201, Map.of("ref", "refs/heads/" + name, "object", Map.of("sha", sha, "type", "commit")));
+        } else if ("POST".equals(method) && "trees".equals(rest)) {
+            createTree(ex, readJson(ex));
+        } else if ("POST".equals(method) && "commits".equals(rest)) {
+            Map<?, ?> body = readJson(ex);
+            String tree = String.valueOf(body.get("tree"));
+            List<?> parents = (List<?>) body.get("parents");
+            if (!trees.containsKey(tree)) {
+                send(ex, 422, Map.of("message", "Tree SHA does not exist"));
+                return;
+            }
+            String sha = randomSha();
+            boolean root = parents == null || parents.isEmpty();
+            String stored = tree;
+            if (root && dropFromRootCommits != null) {
+                Map<String, String> entries = new java.util.HashMap<>(trees.get(tree));
+                entries.remove(dropFromRootCommits);
+                stored = storeTree(entries);
+            }
+            commits.put(sha, new Commit(stored, root ? null : String.valueOf(parents.get(0))));
+            send(ex, 201, Map.of("sha", sha, "tree", Map.of("sha", tree)));
+        } else if ("PATCH".equals(method) && rest.startsWith("refs/heads/")) {
+            Map<?, ?> body = readJson(ex);
+            String sha = String.valueOf(body.get("sha"));
+            Commit commit = commits.get(sha);
+            if (commit == null) {
+                send(ex, 422, Map.of("message", "Object does not exist"));
+                return;
+            }
+            synchronized (refLock) {
+                if (!Boolean.TRUE.equals(body.get("force")) && !head.equals(commit.parent())) {
+                    refRejections.incrementAndGet();
+                    send(ex, 422, Map.of("message", "Update is not a fast forward"));
+                    return;
+                }
+                head = sha;
+                files.clear();
+                trees.get(commit.tree()).forEach((p, blob) -> files.put(p, new StoredFile(blob, blobs.get(blob))));
+            }
+            send(ex, 200, Map.of("ref", "refs/" + rest.substring("refs/".length()), "object", Map.of("sha", sha, "type", "commit")));
+        } else {
+            send(ex, 404, Map.of("message", "Not Found"));
+        }
+    }
+
+    private void createTree(HttpExchange ex, Map<?, ?> body) throws IOException {
+        Object base = body.get("base_tree");
+        Map<String, String> entries = new LinkedHashMap<>();
+        if (base != null) {
+            Map<String, String> baseEntries = trees.get(String.valueOf(base));
+            if (baseEntries == null) {
+                send(ex, 422, Map.of("message", "base_tree does not exist"));
+                return;
+            }
+            entries.putAll(baseEntries);
+        }
+        for (Object item : (List<?>) body.get("tree")) {
+            Map<?, ?> entry = (Map<?, ?>) item;
+            String p = String.valueOf(entry.get("path"));
+            Object sha = entry.get("sha");
+            if (sha == null) {
+                entries.remove(p);
+            } else if (blobs.containsKey(String.valueOf(sha))) {
+                entries.put(p, String.valueOf(sha));
+            } else {
+                send(ex, 422, Map.of("message", "tree.sha " + sha + " is not a valid blob"));
+                return;
+            }
+        }
+        send(ex, 201, Map.of("sha", storeTree(entries)));
+    }
+
+    // Accept 为 application/vnd.github.raw 时返回原始内容，否则与 GitHub 一样返回 base64 JSON
+    private void getBlob(HttpExchange ex, String sha) throws IOException {
+        byte[] data = blobs.get(sha);
+        if (data == null) {
+            send(ex, 404, Map.of("message", "Not Found"));
+            return;
+        }
+        String accept = ex.getRequestHeaders().getFirst("Accept");
+        if (accept != null && accept.contains("raw")) {
+            ex.getResponseHeaders().set("Content-Type", "application/vnd.github.raw");
+            ex.sendResponseHeaders(200, data.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(data);
+            }
+            return;
+        }
+        send(ex, 200, Map.of("sha", sha, "size", data.length, "encoding", "base64",
+                "content", Base64.getEncoder().encodeToString(data)));
+    }
+
+    // 一层 tree：tree 按完整路径平铺存储，这里按首段分组，子目录同样以内容生成 sha 并登记，可继续向下读取；
+    // recursive 时直接返回全部文件（省略目录项）
+    private void getTree(HttpExchange ex, String sha, boolean recursive) throws IOException {
+        Map<String, String> entries = trees.get(sha);
+        if (entries == null) {
+            send(ex, 404, Map.of("message", "Not Found"));
+            return;
+        }
+        List<Map<String, Object>> items = new ArrayList<>();
+        if (recursive) {
+            entries.forEach((p, blob) -> items.add(Map.of("path", p, "mode", "100644", "type", "blob", "sha", blob,
+                    "size", blobs.getOrDefault(blob, new byte[0]).length)));
+            send(ex, 200, Map.of("sha", sha, "tree", items, "truncated", false));
+            return;
+        }
+        Map<String, Map<String, String>> dirs = new java.util.TreeMap<>();
+        entries.forEach((p, blob) -> {
+            int slash = p.indexOf('/');
+            if (slash < 0) {
+                items.add(Map.of("path", p, "mode", "100644", "type", "blob", "sha", blob,
+                        "size", blobs.getOrDefault(blob, new byte[0]).length));
+            } else {
+                dirs.computeIfAbsent(p.substring(0, slash), k -> new LinkedHashMap<>()).put(p.substring(slash + 1), blob);
+            }
+        });
+        dirs.forEach((name, sub) -> items.add(Map.of("path", name, "mode", "040000", "type", "tree", "sha", storeTree(sub))));
+        send(ex, 200, Map.of("sha", sha, "tree", items, "truncated", false));
+    }
+
+    // 与 git 一致：内容相同的 tree 得到相同的 sha
+    private String storeTree(Map<String, String> entries) {
+        Map<String, String> sorted = new java.util.TreeMap<>(entries);
+        String sha = blobSha(sorted.toString().getBytes(StandardCharsets.UTF_8));
+        trees.putIfAbsent(sha, sorted);
+        return sha;
+    }
+
+    // 以当前 files 生成 tree 与提交并移动 head，调用方需持有 refLock
+    private String commitFiles(String parent) {
+        Map<String, String> entries = new LinkedHashMap<>();
+        files.forEach((p, f) -> entries.put(p, f.sha()));
+        String sha = randomSha();
+        commits.put(sha, new Commit(storeTree(entries), parent));
+        head = sha;
+        return sha;
+    }
+
+    private boolean consumeRateLimit(HttpExchange ex) throws IOException {
+        int remaining = rateRemaining.get();
+        if (remaining < 0) {
+            return true;
+        }
+        remaining = rateRemaining.updateAndGet(r -> Math.max(r - 1, -2));
+        long reset = System.currentTimeMillis() / 1000 + 60;
+        ex.getResponseHeaders().set("X-RateLimit-Limit", "5000");
+        ex.getResponseHeaders().set("X-RateLimit-Remaining", String.valueOf(Math.max(remaining, 0)));
+        ex.getResponseHeaders().set("X-RateLimit-Reset", String.valueOf(reset));
+        if (remaining < 0) {
+            send(ex, 403, Map.of("message", "API rate limit exceeded"));
+            return false;
+        }
+        return true;
+    }
+
+    // releases/tags/{tag}、releases（创建）、releases/{id}/assets（列表）、releases/assets/{id}（删除）
+    private void releases(HttpExchange ex, String method, String rest) throws IOException {
+        if ("GET".equals(method) && rest.startsWith("tags/")) {
+            String tag = rest.substring("tags/".length());
+            Long id = releaseTags.get(tag);
+            if (id == null) {
+                send(ex, 404, Map.of("message", "Not Found"));
+                return;
+            }
+            send(ex, 200, release(id, tag));
+        } else if ("POST".equals(method) && rest.isEmpty()) {
+            String tag = String.valueOf(readJson(ex).get("tag_name"));
+            long id = ids.incrementAndGet();
+            if (releaseTags.putIfAbsent(tag, id) != null) {
+                send(ex, 422, Map.of("message", "Validation Failed", "errors", List.of(Map.of("code", "already_exists"))));
+                return;
+            }
+            send(ex, 201, release(id, tag));
+        } else if ("GET".equals(method) && rest.endsWith("/assets")) {
+            long releaseId = Long.parseLong(rest.substring(0, rest.indexOf('/')));
+            String query = ex.getRequestURI().getQuery();
+            int perPage = queryInt(query, "per_page", 30);
+            int page = queryInt(query, "page", 1);
+            send(ex, 200, assets.values().stream()
+                    .filter(a -> a.releaseId() == releaseId)
+                    .sorted(Comparator.comparingLong(ReleaseAsset::id))
+                    .skip((long) (page - 1) * perPage)
+                    .limit(perPage)
+                    .map(a -> Map.of("id", a.id(), "name", a.name()))
+                    .toList());
+        } else if ("DELETE".equals(method) && rest.startsWith("assets/")) {
+            ReleaseAsset removed = assets.remove(Long.parseLong(rest.substring("assets/".length())));
+            if (removed == null) {
+                send(ex, 404, Map.of("message", "Not Found"));
+                return;
+            }
+            ex.sendResponseHeaders(204, -1);
+        } else {
+            send(ex, 404, Map.of("message", "Not Found"));
+        }
+    }
+
+    private static int queryInt(String query, String key, int defaultValue) {
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                if (pair.startsWith(key + "=")) {
+                    return Integer.parseInt(pair.substring(key.length() + 1));
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private Map<String, Object> release(long id, String tag) {
+        return Map.of("id", id, "tag_name", tag,
+                "upload_url", baseUrl() + "/uploads/repos/owner/repo/releases/" + id + "/assets{?name,label}");
+    }
+
+    // /uploads/repos/{owner}/{repo}/releases/{id}/assets?name=...：请求体为原始字节
+    private void uploadAsset(HttpExchange ex, String method, String path) throws IOException {
+        String[] parts = path.split("/");
+        if (!"POST".equals(method) || parts.length != 8 || !"assets".equals(parts[7])) {
+            send(ex, 404, Map.of("message", "Not Found"));
+            return;
+        }
+        long releaseId = Long.parseLong(parts[6]);
+        String tag = releaseTags.entrySet().stream().filter(e -> e.getValue() == releaseId)
+                .map(Map.Entry::getKey).findFirst().orElse(null);
+        if (tag == null) {
+            send(ex, 404, Map.of("message", "Not Found"));
+            return;
+        }
+        if (ex.getRequestHeaders().getFirst("Content-Length") == null) {
+            send(ex, 411, Map.of("message", "Length Required"));
+            return;
+        }
+        String query = ex.getRequestURI().getRawQuery();
+        String name = URLDecoder.decode(query == null ? "" : query.replaceFirst("^name=", ""), StandardCharsets.UTF_8);
+        byte[] data;
+        try (InputStream in = ex.getRequestBody()) {
+            data = in.readAllBytes();
+        }
+        boolean exists = assets.values().stream().anyMatch(a -> a.releaseId() == releaseId && a.name().equals(name));
+        if (exists) {
+            send(ex, 422, Map.of("message", "Validation Failed", "errors", List.of(Map.of("code", "already_exists"))));
+            return;
+        }
+        ReleaseAsset asset = new ReleaseAsset(ids.incrementAndGet(), releaseId, name,
+                ex.getRequestHeaders().getFirst("Content-Type"), data);
+        assets.put(asset.id(), asset);
+        send(ex, 201, Map.of("id", asset.id(), "name", name, "size", data.length,
+                "browser_download_url", baseUrl() + "/owner/repo/releases/download/" + tag + "/" + name));
+    }
+
+    private static Map<String, Object> entry(String path, StoredFile file) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("name", path.substring(path.lastIndexOf('/') + 1));
+        entry.put("path", path);
+        entry.put("sha", file.sha());
+        entry.put("size", file.data().length);
+        entry.put("type", "file");
+        return entry;
+    }
+
+    private static Map<?, ?> readJson(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            return JsonUtils.jsonToObject(new String(in.readAllBytes(), StandardCharsets.UTF_8), Map.class);
+        }
+    }
+
+    private static void send(HttpExchange ex, int status, Object body) throws IOException {
+        byte[] bytes = JsonUtils.objectToJson(body).getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // 与 git 一致的 blob sha：sha1("blob {len}\0" + data)
+    public static String blobSha(byte[] data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(("blob " + data.length + "\0").getBytes(StandardCharsets.UTF_8));
+            digest.update(data);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String randomSha() {
+        return (UUID.randomUUID().toString() + UUID.randomUUID()).replace("-", "").substring(0, 40);
+    }
+
+    private void holdBlob() {
+        CountDownLatch arrived = blobArrived;
+        CountDownLatch release = blobRelease;
+        if (arrived == null || release == null) {
+            return;
+        }
+        arrived.countDown();
+        try {
+            release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long ms) {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.xirizhi.plugingithuboss.support;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.codec.multipart.FilePart;
+
+import com.xirizhi.plugingithuboss.config.Constant;
+import com.xirizhi.plugingithuboss.extension.GitHubThemeSettings;
+import com.xirizhi.plugingithuboss.extension.GithubOssPolicySettings;
+import com.xirizhi.plugingithuboss.service.GitHubMetrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import reactor.core.publisher.Mono;
+import run.halo.app.core.extension.attachment.Attachment;
+import run.halo.app.core.extension.attachment.Policy;
+import run.halo.app.core.extension.attachment.endpoint.AttachmentHandler;
+import run.halo.app.extension.ConfigMap;
+import run.halo.app.extension.Metadata;
+import run.halo.app.extension.ReactiveExtensionClient;
+import run.halo.app.infra.utils.JsonUtils;
+
+/**
+ * 组装指向 FakeGitHubApi 的插件组件：插件 ConfigMap、策略、指标等。
+ */
+public final class TestWiring {
+
+    public static final String POLICY_NAME = "github-test-policy";
+
+    private TestWiring() {
+    }
+
+    public static ReactiveExtensionClient extensionClient() {
+        Map<String, String> data = new HashMap<>();
+        data.put(GitHubThemeSettings.GitHub_BASIC, "{\"jsdelivr\":\"gcore.jsdelivr.net\",\"enableOptimization\":false}");
+        data.put(GitHubThemeSettings.GitHub_NETWORK, "{\"enabled\":false,\"timeoutMs\":10000,\"proxyPath\":\"\"}");
+        ConfigMap pluginConfig = configMap(Constant.PLUGIN_GITHUBOSS_CONFIGMAP, data);
+
+        ReactiveExtensionClient client = mock(ReactiveExtensionClient.class);
+        when(client.fetch(ConfigMap.class, Constant.PLUGIN_GITHUBOSS_CONFIGMAP)).thenReturn(Mono.just(pluginConfig));
+        return client;
+    }
+
+    /**
+     * 让 client 能按策略名查到策略及其 ConfigMap（后台任务按策略名重新读取配置时使用）。
+     */
+    public static void registerPolicy(ReactiveExtensionClient client, GithubOssPolicySettings settings) {
+        ConfigMap config = policyConfig(settings);
+        when(client.fetch(Policy.class, POLICY_NAME)).thenReturn(Mono.just(policy()));
+        when(client.fetch(ConfigMap.class, config.getMetadata().getName())).thenReturn(Mono.just(config));
+    }
+
+    public static GitHubMetrics metrics(MeterRegistry registry) {
+        return metrics(registry, ObservationRegistry.NOOP);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static GitHubMetrics metrics(MeterRegistry registry, ObservationRegistry observationRegistry) {
+        ObjectProvider<MeterRegistry> meters = mock(ObjectProvider.class);
+        when(meters.getIfAvailable(any())).thenReturn(registry);
+        ObjectProvider<ObservationRegistry> observations = mock(ObjectProvider.class);
+        when(observations.getIfAvailable(any())).thenReturn(observationRegistry);
+        return new GitHubMetrics(meters, observations);
+    }
+
+    public static GitHubMetrics metrics() {
+        return metrics(new SimpleMeterRegistry());
+    }
+
+    public static GithubOssPolicySettings settings(FakeGitHubApi api) {
+        GithubOssPolicySettings settings = new GithubOssPolicySettings();
+        settings.setOwner("owner");
+        settings.setRepoName("repo");
+        settings.setBranch("master");
+        settings.setPath("attachments");
+        settings.setNamePrefix("");
+        settings.setToken("test-token");
+        settings.setMinSizeMB(50);
+        settings.setApiBaseUrl(api.baseUrl());
+        return settings;
+    }
+
+    public static Policy policy() {
+        Policy policy = new Policy();
+        Metadata metadata = new Metadata();
+        metadata.setName(POLICY_NAME);
+        policy.setMetadata(metadata);
+        Policy.PolicySpec spec = new Policy.PolicySpec();
+        spec.setConfigMapName(POLICY_NAME + "-config");
+        spec.setTemplateName("githuboss-policy-template");
+        policy.setSpec(spec);
+        return policy;
+    }
+
+    public static ConfigMap policyConfig(GithubOssPolicySettings settings) {
+        return configMap(POLICY_NAME + "-config", Map.of("default", JsonUtils.objectToJson(settings)));
+    }
+
+    public static ConfigMap configMap(String name, Map<String, String> data) {
+        ConfigMap configMap = new ConfigMap();
+        Metadata metadata = new Metadata();
+        metadata.setName(name);
+        configMap.setMetadata(metadata);
+        configMap.setData(new HashMap<>(data));
+        return configMap;
+    }
+
+    public static AttachmentHandler.UploadContext uploadContext(FilePart file, Policy policy, ConfigMap configMap) {
+        return new AttachmentHandler.UploadContext() {
+            @Override
+            public FilePart file() {
+                return file;
+            }
+
+            @Override
+            public Policy policy() {
+                return policy;
+            }
+
+            @Override
+            public ConfigMap configMap() {
+                return configMap;
+            }
+        };
+    }
+
+    public static AttachmentHandler.DeleteContext deleteContext(Attachment attachment, Policy policy, ConfigMap configMap) {
+        return new AttachmentHandler.DeleteContext() {
+            @Override
+            public Attachment attachment() {
+                return attachment;
+            }
+
+            @Override
+            public Policy policy() {
+                return policy;
+            }
+
+            @Override
+            public ConfigMap configMap() {
+                return configMap;
+            }
+        };
+    }
+}
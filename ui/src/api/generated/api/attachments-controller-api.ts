@@ -32,6 +32,8 @@ import type { NetworkConfig } from '../models';
 // @ts-ignore
 import type { NetworkTestItem } from '../models';
 // @ts-ignore
+import type { Page } from '../models';
+// @ts-ignore
 import type { UnlinkReqObject } from '../models';
 // @ts-ignore
 import type { UnlinkRespObject } from '../models';
@@ -207,6 +209,105 @@ export const AttachmentsControllerApiAxiosParamCreator = function (configuration
 
 
     
+            setSearchParams(localVarUrlObj, localVarQueryParameter);
+            let headersFromBaseOptions = baseOptions && baseOptions.headers ? baseOptions.headers : {};
+            localVarRequestOptions.headers = {...localVarHeaderParameter, ...headersFromBaseOptions, ...options.headers};
+
+            return {
+                url: toPathString(localVarUrlObj),
+                options: localVarRequestOptions,
+            };
+        },
+        /**
+         * 
+         * @param {string} policyName 
+         * @param {string} [path] 
+         * @param {string} [name] 
+         * @param {string} [ext] 
+         * @param {number} [minSize] 
+         * @param {number} [maxSize] 
+         * @param {boolean} [linked] 
+         * @param {boolean} [filesOnly] 
+         * @param {string} [sort] 
+         * @param {boolean} [desc] 
+         * @param {string} [cursor] 
+         * @param {number} [limit] 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        listGitHubEntries: async (policyName: string, path?: string, name?: string, ext?: string, minSize?: number, maxSize?: number, linked?: boolean, filesOnly?: boolean, sort?: string, desc?: boolean, cursor?: string, limit?: number, options: RawAxiosRequestConfig = {}): Promise<RequestArgs> => {
+            // verify required parameter 'policyName' is not null or undefined
+            assertParamExists('listGitHubEntries', 'policyName', policyName)
+            const localVarPath = `/apis/githubOs.halo.run/v1alpha1/attachments/entries`;
+            // use dummy base URL string because the URL constructor only accepts absolute URLs.
+            const localVarUrlObj = new URL(localVarPath, DUMMY_BASE_URL);
+            let baseOptions;
+            if (configuration) {
+                baseOptions = configuration.baseOptions;
+            }
+
+            const localVarRequestOptions = { method: 'GET', ...baseOptions, ...options};
+            const localVarHeaderParameter = {} as any;
+            const localVarQueryParameter = {} as any;
+
+            // authentication basicAuth required
+            // http basic authentication required
+            setBasicAuthToObject(localVarRequestOptions, configuration)
+
+            // authentication bearerAuth required
+            // http bearer authentication required
+            await setBearerAuthToObject(localVarHeaderParameter, configuration)
+
+            if (policyName !== undefined) {
+                localVarQueryParameter['policyName'] = policyName;
+            }
+
+            if (path !== undefined) {
+                localVarQueryParameter['path'] = path;
+            }
+
+            if (name !== undefined) {
+                localVarQueryParameter['name'] = name;
+            }
+
+            if (ext !== undefined) {
+                localVarQueryParameter['ext'] = ext;
+            }
+
+            if (minSize !== undefined) {
+                localVarQueryParameter['minSize'] = minSize;
+            }
+
+            if (maxSize !== undefined) {
+                localVarQueryParameter['maxSize'] = maxSize;
+            }
+
+            if (linked !== undefined) {
+                localVarQueryParameter['linked'] = linked;
+            }
+
+            if (filesOnly !== undefined) {
+                localVarQueryParameter['filesOnly'] = filesOnly;
+            }
+
+            if (sort !== undefined) {
+                localVarQueryParameter['sort'] = sort;
+            }
+
+            if (desc !== undefined) {
+                localVarQueryParameter['desc'] = desc;
+            }
+
+            if (cursor !== undefined) {
+                localVarQueryParameter['cursor'] = cursor;
+            }
+
+            if (limit !== undefined) {
+                localVarQueryParameter['limit'] = limit;
+            }
+
+
+    
             setSearchParams(localVarUrlObj, localVarQueryParameter);
             let headersFromBaseOptions = baseOptions && baseOptions.headers ? baseOptions.headers : {};
             localVarRequestOptions.headers = {...localVarHeaderParameter, ...headersFromBaseOptions, ...options.headers};
@@ -441,6 +542,29 @@ export const AttachmentsControllerApiFp = function(configuration?: Configuration
             const localVarOperationServerBasePath = operationServerMap['AttachmentsControllerApi.listGitHubAttachments']?.[localVarOperationServerIndex]?.url;
             return (axios, basePath) => createRequestFunction(localVarAxiosArgs, globalAxios, BASE_PATH, configuration)(axios, localVarOperationServerBasePath || basePath);
         },
+        /**
+         * 
+         * @param {string} policyName 
+         * @param {string} [path] 
+         * @param {string} [name] 
+         * @param {string} [ext] 
+         * @param {number} [minSize] 
+         * @param {number} [maxSize] 
+         * @param {boolean} [linked] 
+         * @param {boolean} [filesOnly] 
+         * @param {string} [sort] 
+         * @param {boolean} [desc] 
+         * @param {string} [cursor] 
+         * @param {number} [limit] 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        async listGitHubEntries(policyName: string, path?: string, name?: string, ext?: string, minSize?: number, maxSize?: number, linked?: boolean, filesOnly?: boolean, sort?: string, desc?: boolean, cursor?: string, limit?: number, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<Page>> {
+            const localVarAxiosArgs = await localVarAxiosParamCreator.listGitHubEntries(policyName, path, name, ext, minSize, maxSize, linked, filesOnly, sort, desc, cursor, limit, options);
+            const localVarOperationServerIndex = configuration?.serverIndex ?? 0;
+            const localVarOperationServerBasePath = operationServerMap['AttachmentsControllerApi.listGitHubEntries']?.[localVarOperationServerIndex]?.url;
+            return (axios, basePath) => createRequestFunction(localVarAxiosArgs, globalAxios, BASE_PATH, configuration)(axios, localVarOperationServerBasePath || basePath);
+        },
         /**
          * 
          * @param {string} policyName 
@@ -533,6 +657,15 @@ export const AttachmentsControllerApiFactory = function (configuration?: Configu
         listGitHubAttachments(requestParameters: AttachmentsControllerApiListGitHubAttachmentsRequest, options?: RawAxiosRequestConfig): AxiosPromise<string> {
             return localVarFp.listGitHubAttachments(requestParameters.policyName, requestParameters.path, options).then((request) => request(axios, basePath));
         },
+        /**
+         * 
+         * @param {AttachmentsControllerApiListGitHubEntriesRequest} requestParameters Request parameters.
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        listGitHubEntries(requestParameters: AttachmentsControllerApiListGitHubEntriesRequest, options?: RawAxiosRequestConfig): AxiosPromise<Page> {
+            return localVarFp.listGitHubEntries(requestParameters.policyName, requestParameters.path, requestParameters.name, requestParameters.ext, requestParameters.minSize, requestParameters.maxSize, requestParameters.linked, requestParameters.filesOnly, requestParameters.sort, requestParameters.desc, requestParameters.cursor, requestParameters.limit, options).then((request) => request(axios, basePath));
+        },
         /**
          * 
          * @param {AttachmentsControllerApiListGitHubHaloAttachmentsRequest} requestParameters Request parameters.
@@ -620,6 +753,97 @@ export interface AttachmentsControllerApiListGitHubAttachmentsRequest {
     readonly path: string
 }
 
+/**
+ * Request parameters for listGitHubEntries operation in AttachmentsControllerApi.
+ * @export
+ * @interface AttachmentsControllerApiListGitHubEntriesRequest
+ */
+export interface AttachmentsControllerApiListGitHubEntriesRequest {
+    /**
+     * 
+     * @type {string}
+     * @memberof AttachmentsControllerApiListGitHubEntries
+     */
+    readonly policyName: string
+
+    /**
+     * 
+     * @type {string}
+     * @memberof AttachmentsControllerApiListGitHubEntries
+     */
+    readonly path?: string
+
+    /**
+     * 
+     * @type {string}
+     * @memberof AttachmentsControllerApiListGitHubEntries
+     */
+    readonly name?: string
+
+    /**
+     * 
+     * @type {string}
+     * @memberof AttachmentsControllerApiListGitHubEntries
+     */
+    readonly ext?: string
+
+    /**
+     * 
+     * @type {number}
+     * @memberof AttachmentsControllerApiListGitHubEntries
+     */
+    readonly minSize?: number
+
+    /**
+     * 
+     * @type {number}
+     * @memberof AttachmentsControllerApiListGitHubEntries
+     */
+    readonly maxSize?: number
+
+    /**
+     * 
+     * @type {boolean}
+     * @memberof AttachmentsControllerApiListGitHubEntries
+     */
+    readonly linked?: boolean
+
+    /**
+     * 
+     * @type {boolean}
+     * @memberof AttachmentsControllerApiListGitHubEntries
+     */
+    readonly filesOnly?: boolean
+
+    /**
+     * 
+     * @type {string}
+     * @memberof AttachmentsControllerApiListGitHubEntries
+     */
+    readonly sort?: string
+
+    /**
+     * 
+     * @type {boolean}
+     * @memberof AttachmentsControllerApiListGitHubEntries
+     */
+    readonly desc?: boolean
+
+    /**
+     * 
+     * @type {string}
+     * @memberof AttachmentsControllerApiListGitHubEntries
+     */
+    readonly cursor?: string
+
+    /**
+     * 
+     * @type {number}
+     * @memberof AttachmentsControllerApiListGitHubEntries
+     */
+    readonly limit?: number
+}
+
 /**
  * Request parameters for listGitHubHaloAttachments operation in AttachmentsControllerApi.
  * @export
@@ -712,6 +936,17 @@ export class AttachmentsControllerApi extends BaseAPI {
         return AttachmentsControllerApiFp(this.configuration).listGitHubAttachments(requestParameters.policyName, requestParameters.path, options).then((request) => request(this.axios, this.basePath));
     }
 
+    /**
+     * 
+     * @param {AttachmentsControllerApiListGitHubEntriesRequest} requestParameters Request parameters.
+     * @param {*} [options] Override http request option.
+     * @throws {RequiredError}
+     * @memberof AttachmentsControllerApi
+     */
+    public listGitHubEntries(requestParameters: AttachmentsControllerApiListGitHubEntriesRequest, options?: RawAxiosRequestConfig) {
+        return AttachmentsControllerApiFp(this.configuration).listGitHubEntries(requestParameters.policyName, requestParameters.path, requestParameters.name, requestParameters.ext, requestParameters.minSize, requestParameters.maxSize, requestParameters.linked, requestParameters.filesOnly, requestParameters.sort, requestParameters.desc, requestParameters.cursor, requestParameters.limit, options).then((request) => request(this.axios, this.basePath));
+    }
+
     /**
      * 
      * @param {AttachmentsControllerApiListGitHubHaloAttachmentsRequest} requestParameters Request parameters.
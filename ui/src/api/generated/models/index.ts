@@ -1,5 +1,6 @@
 export * from './add-operation';
 export * from './copy-operation';
+export * from './entry';
 export * from './github-oss-policy-settings';
 export * from './json-patch-inner';
 export * from './link-req-object';
@@ -7,6 +8,7 @@ export * from './link-resp-object';
 export * from './move-operation';
 export * from './network-config';
 export * from './network-test-item';
+export * from './page';
 export * from './remove-operation';
 export * from './replace-operation';
 export * from './test-operation';